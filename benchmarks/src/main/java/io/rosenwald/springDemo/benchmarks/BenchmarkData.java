@@ -0,0 +1,77 @@
+package io.rosenwald.springDemo.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Generates synthetic vehicle data shaped like the U.S. Department of Energy vehicle CSV file, so the benchmarks do not
+ * depend on the data file being present. The same seed always yields the same data.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class BenchmarkData {
+
+	private static final String[] MAKES = { "Chevrolet", "Ford", "Dodge", "GMC", "Toyota", "BMW", "Mercedes-Benz", "Nissan",
+			"Volkswagen", "Mitsubishi", "Mazda", "Porsche", "Honda", "Audi", "Chrysler", "Jeep", "Pontiac", "Subaru", "Hyundai",
+			"Volvo", "Kia", "Lamborghini", "Tesla", "Ferrari" };
+	private static final String[] DRIVES = { "Front-Wheel Drive", "Rear-Wheel Drive", "4-Wheel or All-Wheel Drive",
+			"All-Wheel Drive", "4-Wheel Drive", "2-Wheel Drive" };
+	private static final String[] TRANSMISSIONS = { "Automatic 4-spd", "Manual 5-spd", "Automatic (S6)", "Automatic 3-spd",
+			"Manual 6-spd", "Automatic (S8)", "Automatic (variable gear ratios)", "Automatic (AM-S7)" };
+	private static final String[] ALT_TYPES = { "", "", "", "", "", "", "FFV", "Hybrid", "EV", "Diesel" };
+	private static final int MODELS_PER_MAKE = 40;
+
+	/**
+	 * The columns of the DOE file read by {@link io.rosenwald.springDemo.db.VehicleCsvMapper}, followed by a sample of
+	 * the columns it skips. The real file has more than 80 columns.
+	 */
+	private static final String HEADER = "barrels08,city08,co2TailpipeGpm,comb08,cylinders,displ,drive,highway08,id,make,"
+			+ "model,mpgData,trany,UCity,UHighway,VClass,year,youSaveSpend,atvType,evMotor,createdOn,modifiedOn";
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * @param count The number of vehicles.
+	 * @param seed The seed of the generated values.
+	 * @return Vehicles with random IDs and DOE-like data.
+	 */
+	public static List<Vehicle> vehicles(int count, long seed) {
+		Random random = new Random(seed);
+		List<Vehicle> vehicles = new ArrayList<Vehicle>(count);
+		for (int i = 0; i < count; i++) {
+			String make = MAKES[random.nextInt(MAKES.length)];
+			String altType = ALT_TYPES[random.nextInt(ALT_TYPES.length)];
+			vehicles.add(new Vehicle(1984 + random.nextInt(36), make, make.substring(0, 3) + " " + random.nextInt(MODELS_PER_MAKE),
+					DRIVES[random.nextInt(DRIVES.length)], TRANSMISSIONS[random.nextInt(TRANSMISSIONS.length)],
+					"EV".equals(altType) ? 0 : 4 + random.nextInt(3) * 2, "EV".equals(altType) ? 0 : (10 + random.nextInt(60)) / 10f,
+					altType.isEmpty() ? null : altType, "EV".equals(altType) ? random.nextInt(300) + " kW AC PMSM" : null));
+		}
+		return vehicles;
+	}
+
+	/**
+	 * @param rows The number of data rows.
+	 * @param seed The seed of the generated values.
+	 * @return A US-ASCII CSV file with a header row and the given number of data rows.
+	 */
+	public static byte[] csv(int rows, long seed) {
+		StringBuilder csv = new StringBuilder(rows * 200).append(HEADER).append("\r\n");
+		int id = 1;
+		for (Vehicle vehicle : vehicles(rows, seed)) {
+			csv.append("15.695714,19,423.1904761904762,21,").append(vehicle.getCylinders()).append(',')
+					.append(vehicle.getDisplacement()).append(',').append(vehicle.getDrive()).append(",25,").append(id++).append(',')
+					.append(vehicle.getMake()).append(',').append(vehicle.getModel()).append(",Y,").append(vehicle.getTransmission())
+					.append(",23.3333,35.0,Compact Cars,").append(vehicle.getYear()).append(",-1250,")
+					.append(vehicle.getAltType() == null ? "" : vehicle.getAltType()).append(',')
+					.append(vehicle.getEvMotor() == null ? "" : vehicle.getEvMotor())
+					.append(",Tue Jan 01 00:00:00 EST 2013,Tue Jan 01 00:00:00 EST 2013\r\n");
+		}
+		return csv.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,46 @@
+package io.rosenwald.springDemo.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the regular JMH command line options, see java -jar target/benchmarks.jar -h. Unless -rf
+ * says otherwise, results are also written as JSON to jmh-result.json, or the file given by -rff, so runs can be
+ * compared over time, e.g. with a JMH result visualizer.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine;
+		try {
+			commandLine = new CommandLineOptions(args);
+		} catch (CommandLineOptionException ex) {
+			System.err.println("Error parsing command line:");
+			System.err.println(" " + ex.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (commandLine.shouldHelp()) {
+			commandLine.showHelp();
+			return;
+		}
+		if (commandLine.shouldList() || commandLine.shouldListWithParams() || commandLine.shouldListProfilers()
+				|| commandLine.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		new Runner(options.build()).run();
+	}
+}
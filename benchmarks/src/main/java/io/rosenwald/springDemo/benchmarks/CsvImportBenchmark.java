@@ -0,0 +1,104 @@
+package io.rosenwald.springDemo.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.rosenwald.springDemo.db.VehicleCsvMapper;
+
+/**
+ * Measures the CPU side of the CSV import of {@link io.rosenwald.springDemo.db.VehicleDataImporter}: parsing the file
+ * with the same reader and CSV format, and mapping records to vehicles with the {@link VehicleCsvMapper}, including
+ * the content hash of every vehicle. Scores are the time per file.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvImportBenchmark {
+
+	/**
+	 * The number of data rows. The DOE file has about 40000.
+	 */
+	@Param({ "1000", "40000" })
+	public int rows;
+
+	private byte[] csv;
+	private VehicleCsvMapper mapper;
+	private List<CSVRecord> records;
+
+	@Setup
+	public void setup() throws IOException {
+		csv = BenchmarkData.csv(rows, 42);
+		try (CSVParser parser = open()) {
+			mapper = new VehicleCsvMapper(parser.getHeaderMap());
+			records = new ArrayList<CSVRecord>(parser.getRecords());
+		}
+	}
+
+	/**
+	 * Parses every record without mapping it.
+	 */
+	@Benchmark
+	public void parse(Blackhole blackhole) throws IOException {
+		try (CSVParser parser = open()) {
+			for (CSVRecord record : parser) {
+				blackhole.consume(record);
+			}
+		}
+	}
+
+	/**
+	 * Maps already parsed records to vehicles.
+	 */
+	@Benchmark
+	public void map(Blackhole blackhole) {
+		for (CSVRecord record : records) {
+			blackhole.consume(mapper.map(record));
+		}
+	}
+
+	/**
+	 * Parses and maps every record, like the importer does before handing the vehicles to the database.
+	 */
+	@Benchmark
+	public void parseAndMap(Blackhole blackhole) throws IOException {
+		try (CSVParser parser = open()) {
+			VehicleCsvMapper mapper = new VehicleCsvMapper(parser.getHeaderMap());
+			for (CSVRecord record : parser) {
+				blackhole.consume(mapper.map(record));
+			}
+		}
+	}
+
+	private CSVParser open() throws IOException {
+		return new CSVParser(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.US_ASCII)),
+				CSVFormat.EXCEL.withHeader());
+	}
+}
@@ -0,0 +1,84 @@
+package io.rosenwald.springDemo.benchmarks;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import io.rosenwald.springDemo.db.JdbcVehicleBatchWriter;
+import io.rosenwald.springDemo.db.VehicleLookupTables;
+
+/**
+ * An embedded MariaDB started on a free port, holding the application's schema as created by its Flyway migrations.
+ * The server and its data are deleted when it is closed.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class EmbeddedDatabase implements AutoCloseable {
+
+	private static final String NAME = "springDemo";
+
+	private final DB database;
+	private final String url;
+	private final HikariDataSource dataSource;
+
+	/**
+	 * Starts the server, creates the database, and migrates it.
+	 *
+	 * @param maxConnections The size of the connection pool of {@link #getDataSource()}.
+	 * @throws ManagedProcessException The server could not be started.
+	 */
+	public EmbeddedDatabase(int maxConnections) throws ManagedProcessException {
+		DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder().setPort(0);
+		if ("root".equals(System.getProperty("user.name"))) {
+			config.addArg("--user=root");
+		}
+		database = DB.newEmbeddedDB(config.build());
+		database.start();
+		// Created through JDBC rather than DB.createDB(), which needs the mysql client and its native libraries.
+		new JdbcTemplate(new DriverManagerDataSource(config.getURL("test"), "root", "")).execute("CREATE DATABASE " + NAME);
+
+		// MariaDB4j's own URLs name the MySQL protocol, which would make Spring Boot load the MySQL driver.
+		url = "jdbc:mariadb://localhost:" + config.getPort() + "/" + NAME + "?rewriteBatchedStatements=true";
+		HikariConfig pool = new HikariConfig();
+		pool.setJdbcUrl(url);
+		pool.setUsername("root");
+		pool.setMaximumPoolSize(maxConnections);
+		dataSource = new HikariDataSource(pool);
+		Flyway.configure().dataSource(dataSource).load().migrate();
+	}
+
+	/**
+	 * @return The JDBC URL of the database. The user is root without a password.
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * @return A writer of the vehicles table, as used by the importer.
+	 */
+	public JdbcVehicleBatchWriter newVehicleWriter() {
+		return new JdbcVehicleBatchWriter(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource),
+				new VehicleLookupTables(dataSource));
+	}
+
+	@Override
+	public void close() throws ManagedProcessException {
+		dataSource.close();
+		database.stop();
+	}
+}
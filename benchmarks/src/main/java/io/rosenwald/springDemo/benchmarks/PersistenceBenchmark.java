@@ -0,0 +1,101 @@
+package io.rosenwald.springDemo.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.rosenwald.springDemo.db.BatchResult;
+import io.rosenwald.springDemo.db.JdbcVehicleBatchWriter;
+import io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator;
+import io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator.BatchAction;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Measures how long the {@link MultithreadedRepositoryCommunicator} takes to save and delete a set of vehicles through
+ * the {@link JdbcVehicleBatchWriter}, for several batch sizes and thread counts. Reproduces the import figures claimed
+ * in the communicator's Javadoc.
+ *
+ * The vehicles are written to an {@link EmbeddedDatabase} started for every fork. Like in the importer, the thread
+ * count is the maximum concurrency and the {@link io.rosenwald.springDemo.db.AdaptiveBatchTuner} adjusts batch size
+ * and concurrency within it, starting at the given batch size. Every iteration writes all vehicles once; the table is emptied before every save and filled
+ * before every delete, outside of the measurement.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersistenceBenchmark {
+
+	@Param({ "35000" })
+	public int rows;
+
+	@Param({ "100", "1000", "5000" })
+	public int batchSize;
+
+	@Param({ "1", "4", "16" })
+	public int threads;
+
+	private EmbeddedDatabase database;
+	private JdbcTemplate jdbcTemplate;
+	private JdbcVehicleBatchWriter writer;
+	private List<Vehicle> vehicles;
+
+	@Setup(Level.Trial)
+	public void startDatabase() throws Exception {
+		database = new EmbeddedDatabase(threads + 1);
+		jdbcTemplate = new JdbcTemplate(database.getDataSource());
+		writer = database.newVehicleWriter();
+		vehicles = BenchmarkData.vehicles(rows, 42);
+	}
+
+	@Setup(Level.Iteration)
+	public void prepareTable(BenchmarkParams params) throws Exception {
+		jdbcTemplate.execute("DELETE FROM " + JdbcVehicleBatchWriter.TABLE);
+		if (params.getBenchmark().endsWith(".delete")) {
+			writer.save(vehicles);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stopDatabase() throws Exception {
+		database.close();
+	}
+
+	@Benchmark
+	public BatchResult save() throws Exception {
+		return run(BatchAction.SAVE);
+	}
+
+	@Benchmark
+	public BatchResult delete() throws Exception {
+		return run(BatchAction.DELETE);
+	}
+
+	private BatchResult run(BatchAction action) throws Exception {
+		BatchResult result = new MultithreadedRepositoryCommunicator<Vehicle>(writer, batchSize, threads).start(vehicles, action).join();
+		if (!result.isSuccessful() || result.getRowsSucceeded() != rows) {
+			throw new IllegalStateException(action.getDescriptor() + " did not write every vehicle: " + result);
+		}
+		return result;
+	}
+}
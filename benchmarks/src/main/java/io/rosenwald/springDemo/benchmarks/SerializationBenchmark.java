@@ -0,0 +1,92 @@
+package io.rosenwald.springDemo.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Measures the Jackson encodings the vehicle endpoints respond with, see {@link io.rosenwald.springDemo.rest.WebConfig},
+ * for pages of several sizes. The mappers are built the way Spring Boot builds them for the application. Scores are the
+ * time per page.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+	/**
+	 * The number of vehicles in a page. 1000 is the default maximum page size.
+	 */
+	@Param({ "10", "1000", "10000" })
+	public int size;
+
+	/**
+	 * "json", "cbor", or "smile".
+	 */
+	@Param({ "json", "cbor", "smile" })
+	public String format;
+
+	private List<Vehicle> vehicles;
+	private ObjectWriter writer;
+	private ObjectReader reader;
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws IOException {
+		Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+		ObjectMapper mapper;
+		switch (format) {
+			case "cbor":
+				mapper = builder.factory(new CBORFactory()).build();
+				break;
+			case "smile":
+				mapper = builder.factory(new SmileFactory()).build();
+				break;
+			default:
+				mapper = builder.build();
+		}
+		TypeReference<List<Vehicle>> type = new TypeReference<List<Vehicle>>() {};
+		writer = mapper.writerFor(type);
+		reader = mapper.readerFor(type);
+		vehicles = BenchmarkData.vehicles(size, 42);
+		encoded = writer.writeValueAsBytes(vehicles);
+	}
+
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		return writer.writeValueAsBytes(vehicles);
+	}
+
+	@Benchmark
+	public List<Vehicle> deserialize() throws IOException {
+		return reader.readValue(encoded);
+	}
+}
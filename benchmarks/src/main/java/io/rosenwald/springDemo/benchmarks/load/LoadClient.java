@@ -0,0 +1,144 @@
+package io.rosenwald.springDemo.benchmarks.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.springframework.web.util.UriUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.rosenwald.springDemo.benchmarks.BenchmarkData;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Sends requests of a {@link Route} to the application, with path variables drawn from the seeded vehicles, so every
+ * query finds data. Posted vehicles are new, and deletes remove vehicles posted earlier in the run, keeping the seeded
+ * data intact; while there are none, a random ID is deleted, which the application answers without a change.
+ *
+ * Connections are kept alive by the JDK, up to the http.maxConnections system property per host.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class LoadClient {
+
+	/**
+	 * The size of the pages of {@link Route#PAGE}.
+	 */
+	static final int PAGE_SIZE = 100;
+
+	private static final int TIMEOUT_MILLIS = 60000;
+
+	private final String baseUrl;
+	private final List<Vehicle> seed;
+	private final ObjectMapper mapper;
+	private final String csrfToken = UUID.randomUUID().toString();
+	private final Queue<UUID> posted = new ConcurrentLinkedQueue<UUID>();
+
+	/**
+	 * @param baseUrl The URL of the application, without a trailing slash.
+	 * @param seed The vehicles in the database.
+	 * @param mapper The mapper of posted vehicles.
+	 */
+	public LoadClient(String baseUrl, List<Vehicle> seed, ObjectMapper mapper) {
+		this.baseUrl = baseUrl;
+		this.seed = seed;
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Sends a request and reads the complete response.
+	 *
+	 * @param route The route of the request.
+	 * @param random The source of the path variables.
+	 * @return The HTTP status of the response.
+	 * @throws IOException The request could not be sent or the response could not be read.
+	 */
+	public int send(Route route, Random random) throws IOException {
+		Vehicle sample = seed.get(random.nextInt(seed.size()));
+		byte[] body = null;
+		UUID postedId = null;
+		String path;
+		switch (route) {
+			case PAGE:
+				path = "/vehicles?limit=" + PAGE_SIZE;
+				break;
+			case YEAR:
+				path = "/vehicles/" + sample.getYear() + "?limit=" + PAGE_SIZE;
+				break;
+			case YEAR_MAKE:
+				path = "/vehicles/" + sample.getYear() + "/" + segment(sample.getMake());
+				break;
+			case YEAR_MAKE_MODEL:
+				path = "/vehicles/" + sample.getYear() + "/" + segment(sample.getMake()) + "/" + segment(sample.getModel());
+				break;
+			case MODEL_YEARS:
+				path = "/modelYears";
+				break;
+			case POST:
+				Vehicle vehicle = BenchmarkData.vehicles(1, random.nextLong()).get(0);
+				postedId = vehicle.getId();
+				body = mapper.writeValueAsBytes(vehicle);
+				path = "/vehicles";
+				break;
+			case DELETE:
+				UUID id = posted.poll();
+				path = "/vehicles/" + (id == null ? UUID.randomUUID() : id);
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported route " + route);
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(route.getMethod());
+		connection.setConnectTimeout(TIMEOUT_MILLIS);
+		connection.setReadTimeout(TIMEOUT_MILLIS);
+		connection.setRequestProperty("Accept", "application/json");
+		if (route.isWrite()) {
+			// Spring Security accepts a token that the cookie and the header agree on, see WebSecurityConfig.
+			connection.setRequestProperty("Cookie", "XSRF-TOKEN=" + csrfToken);
+			connection.setRequestProperty("X-XSRF-TOKEN", csrfToken);
+		}
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body);
+			}
+		}
+		int status = connection.getResponseCode();
+		drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+		if (postedId != null && status == 200) {
+			posted.add(postedId);
+		}
+		return status;
+	}
+
+	private static String segment(String value) {
+		return UriUtils.encodePathSegment(value, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a response to its end, which lets the JDK reuse the connection.
+	 */
+	private static void drain(InputStream in) throws IOException {
+		if (in == null) {
+			return;
+		}
+		try (InputStream stream = in) {
+			byte[] buffer = new byte[8192];
+			while (stream.read(buffer) != -1) {
+				// discard
+			}
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package io.rosenwald.springDemo.benchmarks.load;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed arrival rate, an open workload: the n-th request of a step is due at start + n / rate,
+ * regardless of how long earlier requests take. Due requests are sent by a pool of connection threads; while all of
+ * them wait for responses, due requests queue up, and the time they spend queued counts towards their latency, see
+ * {@link RouteStats}. The route of every request is drawn from the weighted mix.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class LoadGenerator {
+
+	private final LoadClient client;
+	private final Route[] routes;
+	private final int[] cumulativeWeights;
+	private final int connections;
+	private final long drainNanos;
+
+	/**
+	 * @param client The client requests are sent with.
+	 * @param mix The relative weight of every route, routes with a weight of 0 are never requested.
+	 * @param connections The maximum number of requests waiting for a response at once.
+	 * @param drainSeconds How long requests still queued or running at the end of a step are waited for.
+	 */
+	public LoadGenerator(LoadClient client, Map<Route, Integer> mix, int connections, int drainSeconds) {
+		this.client = client;
+		this.routes = mix.keySet().toArray(new Route[0]);
+		this.cumulativeWeights = new int[routes.length];
+		int total = 0;
+		for (int i = 0; i < routes.length; i++) {
+			total += mix.get(routes[i]);
+			cumulativeWeights[i] = total;
+		}
+		if (total <= 0) {
+			throw new IllegalArgumentException("The mix needs a route with a positive weight");
+		}
+		this.connections = connections;
+		this.drainNanos = TimeUnit.SECONDS.toNanos(drainSeconds);
+	}
+
+	/**
+	 * Runs a step and waits for its requests to finish.
+	 *
+	 * @param rate The requests per second.
+	 * @param seconds The time requests are sent for.
+	 * @return The responses of the step.
+	 * @throws InterruptedException The step was interrupted.
+	 */
+	public StepResult run(double rate, int seconds) throws InterruptedException {
+		Map<Route, RouteStats> stats = new EnumMap<Route, RouteStats>(Route.class);
+		for (Route route : routes) {
+			stats.put(route, new RouteStats());
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor senders = new ThreadPoolExecutor(connections, connections, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "load-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		senders.prestartAllCoreThreads();
+
+		AtomicLong lastResponse = new AtomicLong();
+		Random random = new Random();
+		long durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+		long start = System.nanoTime();
+		long scheduled = 0;
+		for (long n = 0;; n++) {
+			long due = start + (long) (n * 1e9 / rate);
+			if (due - start >= durationNanos) {
+				break;
+			}
+			long wait;
+			while ((wait = due - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			Route route = pick(random);
+			senders.execute(new Request(route, due, stats.get(route), lastResponse));
+			scheduled++;
+		}
+
+		long sendingEnded = System.nanoTime();
+		senders.shutdown();
+		if (!senders.awaitTermination(drainNanos, TimeUnit.NANOSECONDS)) {
+			// Requests that never got sent are responses that never came, as late as the step allowed for.
+			for (Runnable unsent : senders.shutdownNow()) {
+				((Request) unsent).fail();
+			}
+			senders.awaitTermination(1, TimeUnit.SECONDS);
+		}
+		long end = Math.max(lastResponse.get(), sendingEnded);
+		return new StepResult(rate, scheduled, end - start, stats);
+	}
+
+	private Route pick(Random random) {
+		int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for (int i = 0; i < routes.length; i++) {
+			if (value < cumulativeWeights[i]) {
+				return routes[i];
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * A request due at a given time.
+	 */
+	private class Request implements Runnable {
+
+		private final Route route;
+		private final long due;
+		private final RouteStats stats;
+		private final AtomicLong lastResponse;
+
+		private Request(Route route, long due, RouteStats stats, AtomicLong lastResponse) {
+			this.route = route;
+			this.due = due;
+			this.stats = stats;
+			this.lastResponse = lastResponse;
+		}
+
+		@Override
+		public void run() {
+			long sent = System.nanoTime();
+			int status;
+			try {
+				status = client.send(route, ThreadLocalRandom.current());
+			} catch (IOException ex) {
+				status = RouteStats.NO_RESPONSE;
+			}
+			long received = System.nanoTime();
+			stats.record(status, received - due, received - sent);
+			lastResponse.accumulateAndGet(received, Math::max);
+		}
+
+		private void fail() {
+			long now = System.nanoTime();
+			stats.record(RouteStats.NO_RESPONSE, now - due, 0);
+		}
+	}
+
+	/**
+	 * The responses of one step of a load test.
+	 */
+	public static class StepResult {
+
+		private final double targetRate;
+		private final long scheduled;
+		private final long elapsedNanos;
+		private final Map<Route, RouteStats> routes;
+
+		private StepResult(double targetRate, long scheduled, long elapsedNanos, Map<Route, RouteStats> routes) {
+			this.targetRate = targetRate;
+			this.scheduled = scheduled;
+			this.elapsedNanos = elapsedNanos;
+			this.routes = routes;
+		}
+
+		/**
+		 * @return The requests per second the step was to send.
+		 */
+		public double getTargetRate() {
+			return targetRate;
+		}
+
+		/**
+		 * @return The number of requests the step was to send.
+		 */
+		public long getScheduled() {
+			return scheduled;
+		}
+
+		/**
+		 * @return The successful responses per second, from the start of the step until its last response.
+		 */
+		public double getThroughput() {
+			RouteStats total = getTotal();
+			return (total.getCount() - total.getErrors()) / (elapsedNanos / 1e9);
+		}
+
+		public Map<Route, RouteStats> getRoutes() {
+			return routes;
+		}
+
+		/**
+		 * @return The responses of all routes together.
+		 */
+		public RouteStats getTotal() {
+			return RouteStats.merge(routes.values());
+		}
+
+		/**
+		 * @param sloMicros The 99th percentile latency the application has to stay below, or 0 for none.
+		 * @return Whether the application kept up with the step: at least 95% of the target rate was answered
+		 * successfully, at most 1% of the requests failed, and the latency objective was met.
+		 */
+		public boolean isSustained(long sloMicros) {
+			RouteStats total = getTotal();
+			return getThroughput() >= 0.95 * targetRate
+					&& total.getErrors() <= 0.01 * total.getCount()
+					&& (sloMicros <= 0 || total.getLatency().getValueAtPercentile(99) <= sloMicros);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package io.rosenwald.springDemo.benchmarks.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.rosenwald.springDemo.benchmarks.load.LoadGenerator.StepResult;
+
+/**
+ * Reports the steps of a load test: as a table of latency percentiles per route, and as JSON, which also holds the
+ * complete histograms, compressed and Base64 encoded, so runs can be compared and plotted later, e.g. with
+ * HdrHistogram's HistogramLogAnalyzer or the online plotter at hdrhistogram.github.io.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class LoadReport {
+
+	private static final String ALL = "all";
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+	private final long sloMicros;
+	private final List<StepResult> steps = new ArrayList<StepResult>();
+
+	/**
+	 * @param sloMicros The 99th percentile latency the application has to stay below, or 0 for none.
+	 */
+	public LoadReport(long sloMicros) {
+		this.sloMicros = sloMicros;
+	}
+
+	public void add(StepResult step) {
+		steps.add(step);
+	}
+
+	/**
+	 * @return The highest throughput of a step the application sustained, or 0 if it sustained none.
+	 */
+	public double getSaturationThroughput() {
+		double saturation = 0;
+		for (StepResult step : steps) {
+			if (step.isSustained(sloMicros)) {
+				saturation = Math.max(saturation, step.getThroughput());
+			}
+		}
+		return saturation;
+	}
+
+	/**
+	 * Prints a step as a table of latencies in milliseconds, from the scheduled send of every request.
+	 */
+	public void print(StepResult step, PrintStream out) {
+		out.println();
+		out.println(String.format(Locale.ROOT, "Target %.0f req/s, achieved %.1f req/s, %s", step.getTargetRate(),
+				step.getThroughput(), step.isSustained(sloMicros) ? "sustained" : "NOT sustained"));
+		out.println(String.format(Locale.ROOT, "%-14s %8s %7s %9s %9s %9s %9s %9s %12s", "route", "requests", "errors",
+				"p50", "p90", "p99", "p99.9", "max", "service p99"));
+		for (Map.Entry<Route, RouteStats> route : step.getRoutes().entrySet()) {
+			printRow(route.getKey().getKey(), route.getValue(), out);
+		}
+		printRow(ALL, step.getTotal(), out);
+	}
+
+	private static void printRow(String name, RouteStats stats, PrintStream out) {
+		Histogram latency = stats.getLatency();
+		StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%-14s %8d %7d", name, stats.getCount(), stats.getErrors()));
+		for (double percentile : PERCENTILES) {
+			row.append(String.format(Locale.ROOT, " %9.2f", millis(latency.getValueAtPercentile(percentile))));
+		}
+		row.append(String.format(Locale.ROOT, " %9.2f %12.2f", millis(latency.getMaxValue()),
+				millis(stats.getServiceTime().getValueAtPercentile(99))));
+		out.println(row);
+	}
+
+	/**
+	 * Prints the saturation throughput.
+	 */
+	public void printSummary(PrintStream out) {
+		out.println();
+		double saturation = getSaturationThroughput();
+		out.println(saturation > 0
+				? String.format(Locale.ROOT, "Saturation throughput: %.1f req/s", saturation)
+				: "Saturation throughput: no step was sustained");
+	}
+
+	/**
+	 * Writes the report as JSON.
+	 *
+	 * @param file The file to write.
+	 * @param options The options of the run, recorded with the results.
+	 * @param mapper The mapper to write with.
+	 * @throws IOException The file could not be written.
+	 */
+	public void write(File file, Map<String, Object> options, ObjectMapper mapper) throws IOException {
+		Map<String, Object> report = new LinkedHashMap<String, Object>();
+		report.put("options", options);
+		report.put("sloMicros", sloMicros);
+		report.put("saturationThroughput", getSaturationThroughput());
+		List<Object> stepReports = new ArrayList<Object>();
+		for (StepResult step : steps) {
+			Map<String, Object> stepReport = new LinkedHashMap<String, Object>();
+			stepReport.put("targetRate", step.getTargetRate());
+			stepReport.put("scheduled", step.getScheduled());
+			stepReport.put("throughput", step.getThroughput());
+			stepReport.put("sustained", step.isSustained(sloMicros));
+			Map<String, Object> routes = new LinkedHashMap<String, Object>();
+			for (Map.Entry<Route, RouteStats> route : step.getRoutes().entrySet()) {
+				routes.put(route.getKey().getKey(), toMap(route.getValue()));
+			}
+			routes.put(ALL, toMap(step.getTotal()));
+			stepReport.put("routes", routes);
+			stepReports.add(stepReport);
+		}
+		report.put("steps", stepReports);
+		mapper.writer().with(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+	}
+
+	private static Map<String, Object> toMap(RouteStats stats) {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("requests", stats.getCount());
+		map.put("errors", stats.getErrors());
+		map.put("statuses", stats.getStatuses());
+		map.put("latencyMicros", toMap(stats.getLatency()));
+		map.put("serviceTimeMicros", toMap(stats.getServiceTime()));
+		return map;
+	}
+
+	private static Map<String, Object> toMap(Histogram histogram) {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("mean", histogram.getMean());
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			map.put(PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]));
+		}
+		map.put("max", histogram.getMaxValue());
+		ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+		int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+		map.put("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+		return map;
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000.0;
+	}
+}
@@ -0,0 +1,156 @@
+package io.rosenwald.springDemo.benchmarks.load;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.benchmarks.BenchmarkData;
+import io.rosenwald.springDemo.benchmarks.EmbeddedDatabase;
+import io.rosenwald.springDemo.benchmarks.load.LoadGenerator.StepResult;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Load tests the vehicle endpoints of the application. Seeds an {@link EmbeddedDatabase} with synthetic vehicles, boots
+ * the application against it on a free port, and sends a weighted mix of requests at a series of fixed arrival rates
+ * with the {@link LoadGenerator}. Every step reports the latency percentiles of every route; the saturation throughput
+ * is the highest throughput of a sustained step, see {@link StepResult#isSustained(long)}.
+ *
+ * Options are given as --load.name=value, see {@link #USAGE}. All other arguments are passed on to the application,
+ * e.g. --io.rosenwald.springDemo.write-behind.enabled=true, so configurations can be compared.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class LoadTest {
+
+	private static final String PREFIX = "--load.";
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Options, all optional:",
+			"  --load.rates=50,100,200,400,800   Requests per second of the steps, in order",
+			"  --load.duration=30                Seconds every step sends requests for",
+			"  --load.warmup=30                  Seconds of discarded requests at the first rate",
+			"  --load.mix=page=15,year=15,yearMake=20,yearMakeModel=20,modelYears=10,post=15,delete=5",
+			"                                    Relative weights of the routes",
+			"  --load.connections=64             Requests waiting for a response at once",
+			"  --load.rows=40000                 Vehicles in the database",
+			"  --load.slo-ms=0                   p99 latency a step has to stay below, 0 for none",
+			"  --load.stop-when-saturated=true   Skip the remaining steps after one is not sustained",
+			"  --load.output=load-test-result.json",
+			"Other --name=value arguments are passed on to the application.");
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		options.put("rates", "50,100,200,400,800");
+		options.put("duration", "30");
+		options.put("warmup", "30");
+		options.put("mix", "page=15,year=15,yearMake=20,yearMakeModel=20,modelYears=10,post=15,delete=5");
+		options.put("connections", "64");
+		options.put("rows", "40000");
+		options.put("slo-ms", "0");
+		options.put("stop-when-saturated", "true");
+		options.put("output", "load-test-result.json");
+
+		Map<String, String> properties = new LinkedHashMap<String, String>();
+		properties.put("server.port", "0");
+		properties.put("io.rosenwald.springDemo.db.import", "false");
+		properties.put("logging.level.io.rosenwald.springDemo", "WARN");
+
+		for (String arg : args) {
+			if ("-h".equals(arg) || "--help".equals(arg)) {
+				System.out.println(USAGE);
+				return;
+			}
+			int equals = arg.indexOf('=');
+			if (!arg.startsWith("--") || equals < 0) {
+				fail("Expected --name=value, got " + arg);
+			}
+			if (arg.startsWith(PREFIX)) {
+				String name = arg.substring(PREFIX.length(), equals);
+				if (!options.containsKey(name)) {
+					fail("Unknown option " + arg);
+				}
+				options.put(name, arg.substring(equals + 1));
+			} else {
+				properties.put(arg.substring(2, equals), arg.substring(equals + 1));
+			}
+		}
+
+		List<Double> rates = new ArrayList<Double>();
+		for (String rate : options.get("rates").split(",")) {
+			rates.add(Double.valueOf(rate.trim()));
+		}
+		Map<Route, Integer> mix = new LinkedHashMap<Route, Integer>();
+		for (String weight : options.get("mix").split(",")) {
+			String[] pair = weight.split("=");
+			if (pair.length != 2) {
+				fail("Expected route=weight in the mix, got " + weight);
+			}
+			mix.put(Route.of(pair[0]), Integer.valueOf(pair[1].trim()));
+		}
+		int duration = Integer.parseInt(options.get("duration"));
+		int warmup = Integer.parseInt(options.get("warmup"));
+		int connections = Integer.parseInt(options.get("connections"));
+		int rows = Integer.parseInt(options.get("rows"));
+		long sloMicros = TimeUnit.MILLISECONDS.toMicros(Long.parseLong(options.get("slo-ms")));
+		boolean stopWhenSaturated = Boolean.parseBoolean(options.get("stop-when-saturated"));
+
+		// Must be set before the first connection, the JDK keeps 5 idle connections per host by default.
+		System.setProperty("http.maxConnections", String.valueOf(connections));
+
+		try (EmbeddedDatabase database = new EmbeddedDatabase(4)) {
+			System.out.println("Seeding " + rows + " vehicles");
+			List<Vehicle> seed = BenchmarkData.vehicles(rows, 42);
+			database.newVehicleWriter().save(seed);
+
+			properties.putIfAbsent("spring.datasource.url", database.getUrl());
+			properties.putIfAbsent("spring.datasource.username", "root");
+			List<String> applicationArgs = new ArrayList<String>();
+			properties.forEach((name, value) -> applicationArgs.add("--" + name + "=" + value));
+
+			try (ConfigurableApplicationContext application = new SpringApplicationBuilder(DemoApplication.class)
+					.run(applicationArgs.toArray(new String[0]))) {
+				int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+				LoadClient client = new LoadClient("http://localhost:" + port, seed, application.getBean(ObjectMapper.class));
+				LoadGenerator generator = new LoadGenerator(client, mix, connections, Math.max(duration, 10));
+				LoadReport report = new LoadReport(sloMicros);
+
+				if (warmup > 0) {
+					System.out.println("Warming up for " + warmup + " s at " + rates.get(0) + " req/s");
+					generator.run(rates.get(0), warmup);
+				}
+				for (double rate : rates) {
+					StepResult step = generator.run(rate, duration);
+					report.add(step);
+					report.print(step, System.out);
+					if (stopWhenSaturated && !step.isSustained(sloMicros)) {
+						break;
+					}
+				}
+				report.printSummary(System.out);
+
+				Map<String, Object> recorded = new LinkedHashMap<String, Object>(options);
+				recorded.put("application", properties);
+				File output = new File(options.get("output"));
+				report.write(output, recorded, new ObjectMapper());
+				System.out.println("Results written to " + output.getAbsolutePath());
+			}
+		}
+	}
+
+	private static void fail(String message) {
+		System.err.println(message);
+		System.err.println(USAGE);
+		System.exit(1);
+	}
+}
@@ -0,0 +1,71 @@
+package io.rosenwald.springDemo.benchmarks.load;
+
+import java.util.Locale;
+
+/**
+ * The routes of {@link io.rosenwald.springDemo.rest.VehicleRestController} the load test drives. Deleting every vehicle
+ * is left out, it would empty the data set the other routes read.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public enum Route {
+
+	PAGE("page", "GET", "/vehicles"),
+	YEAR("year", "GET", "/vehicles/{year}"),
+	YEAR_MAKE("yearMake", "GET", "/vehicles/{year}/{make}"),
+	YEAR_MAKE_MODEL("yearMakeModel", "GET", "/vehicles/{year}/{make}/{model}"),
+	MODEL_YEARS("modelYears", "GET", "/modelYears"),
+	POST("post", "POST", "/vehicles"),
+	DELETE("delete", "DELETE", "/vehicles/{id}");
+
+	private final String key;
+	private final String method;
+	private final String template;
+
+	private Route(String key, String method, String template) {
+		this.key = key;
+		this.method = method;
+		this.template = template;
+	}
+
+	/**
+	 * @return The name of the route in the mix option and the report.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return The path of the route as mapped by the controller.
+	 */
+	public String getTemplate() {
+		return template;
+	}
+
+	/**
+	 * @return Whether the route changes data, and therefore needs a CSRF token.
+	 */
+	public boolean isWrite() {
+		return !"GET".equals(method);
+	}
+
+	/**
+	 * @param key The name of a route, ignoring case.
+	 * @return The route.
+	 * @throws IllegalArgumentException There is no route of that name.
+	 */
+	public static Route of(String key) {
+		for (Route route : values()) {
+			if (route.key.toLowerCase(Locale.ROOT).equals(key.trim().toLowerCase(Locale.ROOT))) {
+				return route;
+			}
+		}
+		throw new IllegalArgumentException("Unknown route " + key + ", expected one of page, year, yearMake, yearMakeModel, "
+				+ "modelYears, post, delete");
+	}
+}
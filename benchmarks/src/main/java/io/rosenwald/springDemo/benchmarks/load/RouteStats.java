@@ -0,0 +1,100 @@
+package io.rosenwald.springDemo.benchmarks.load;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The responses to the requests of one {@link Route} during one step of a load test. Values are recorded in
+ * microseconds, with three significant digits.
+ *
+ * Latency is measured from the time a request was scheduled to be sent, not from the time it was sent, so requests
+ * held back by a slow application count the wait. Measuring from the send, like the service time does, hides the
+ * stalls that delay them, which is known as coordinated omission.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class RouteStats {
+
+	/**
+	 * The status recorded for requests that failed without a response, or were never sent.
+	 */
+	public static final int NO_RESPONSE = 0;
+
+	private final Histogram latency = new ConcurrentHistogram(3);
+	private final Histogram serviceTime = new ConcurrentHistogram(3);
+	private final ConcurrentMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<Integer, AtomicLong>();
+
+	/**
+	 * @param status The HTTP status of the response, or {@link #NO_RESPONSE}.
+	 * @param latencyNanos The time from the scheduled send until the response was read.
+	 * @param serviceTimeNanos The time from the actual send until the response was read.
+	 */
+	void record(int status, long latencyNanos, long serviceTimeNanos) {
+		latency.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(latencyNanos, 0)));
+		serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(serviceTimeNanos, 0)));
+		statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+	}
+
+	/**
+	 * @return The latencies from the scheduled send, in microseconds.
+	 */
+	public Histogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return The latencies from the actual send, in microseconds.
+	 */
+	public Histogram getServiceTime() {
+		return serviceTime;
+	}
+
+	/**
+	 * @return The number of responses by HTTP status, in ascending order.
+	 */
+	public Map<Integer, Long> getStatuses() {
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+		statuses.forEach((status, count) -> counts.put(status, count.get()));
+		return counts;
+	}
+
+	public long getCount() {
+		return latency.getTotalCount();
+	}
+
+	/**
+	 * @return The number of requests without a response or with an error status. Client errors count as well, they
+	 * mean the load test sent requests the application does not accept.
+	 */
+	public long getErrors() {
+		long errors = 0;
+		for (Map.Entry<Integer, Long> status : getStatuses().entrySet()) {
+			if (status.getKey() == NO_RESPONSE || status.getKey() >= 400) {
+				errors += status.getValue();
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * @param stats Statistics of several routes.
+	 * @return The statistics of all of them together.
+	 */
+	public static RouteStats merge(Iterable<RouteStats> stats) {
+		RouteStats total = new RouteStats();
+		for (RouteStats route : stats) {
+			total.latency.add(route.latency);
+			total.serviceTime.add(route.serviceTime);
+			route.statuses.forEach((status, count) -> total.statuses.computeIfAbsent(status, s -> new AtomicLong()).addAndGet(count.get()));
+		}
+		return total;
+	}
+}
@@ -0,0 +1,162 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * Tunes the batch size and the number of concurrent batches of a
+ * {@link io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator} from the observed latency of every batch.
+ *
+ * Two simple feedback loops are used:
+ * <ul>
+ * <li>Batch size: batches slower than the target latency are halved, batches faster than half the target grow by 50%.</li>
+ * <li>Concurrency: the best observed latency per row is tracked as the uncontended baseline. When a batch takes more
+ * than twice the baseline per row, or fails, the database is assumed to be saturated and concurrency is halved.
+ * Otherwise concurrency grows by one after every window of successful batches.</li>
+ * </ul>
+ *
+ * The current concurrency is enforced through {@link #acquire()} and {@link #release()}.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class AdaptiveBatchTuner {
+
+	private static final double CONTENTION_FACTOR = 2.0;
+	private static final double BASELINE_DECAY = 1.01;
+
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final int maxConcurrency;
+	private final long targetLatencyNanos;
+	private final ResizableSemaphore permits;
+
+	private volatile int batchSize;
+	private volatile int concurrency;
+	private double baselineNanosPerRow = Double.MAX_VALUE;
+	private int successesSinceAdjustment;
+
+	/**
+	 * @param minBatchSize The smallest batch size the tuner will shrink to.
+	 * @param initialBatchSize The batch size to start with.
+	 * @param maxBatchSize The largest batch size the tuner will grow to.
+	 * @param maxConcurrency The maximum number of concurrent batches, usually bounded by the connection pool size.
+	 * @param targetLatencyMillis The desired latency of a single batch.
+	 */
+	public AdaptiveBatchTuner(int minBatchSize, int initialBatchSize, int maxBatchSize, int maxConcurrency, long targetLatencyMillis) {
+		Assert.state(minBatchSize > 0, "The minimum batch size must not be less than 1.");
+		Assert.state(minBatchSize <= initialBatchSize && initialBatchSize <= maxBatchSize,
+				"The initial batch size must be between the minimum and maximum batch size.");
+		Assert.state(maxConcurrency > 0, "The maximum concurrency must not be less than 1.");
+		Assert.state(targetLatencyMillis > 0, "The target latency must not be less than 1ms.");
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.maxConcurrency = maxConcurrency;
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		this.batchSize = initialBatchSize;
+		this.concurrency = maxConcurrency;
+		this.permits = new ResizableSemaphore(maxConcurrency);
+	}
+
+	/**
+	 * Creates a tuner that may shrink batches to a tenth of the given size and grow them to four times the size.
+	 *
+	 * @param batchSize The batch size to start with.
+	 * @param maxConcurrency The maximum number of concurrent batches, usually bounded by the connection pool size.
+	 */
+	public AdaptiveBatchTuner(int batchSize, int maxConcurrency) {
+		this(Math.max(1, batchSize / 10), batchSize, batchSize * 4, maxConcurrency, 2000);
+	}
+
+	/**
+	 * Blocks until the current concurrency allows another batch to be written.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void acquire() throws InterruptedException {
+		permits.acquire();
+	}
+
+	/**
+	 * Releases a slot taken by {@link #acquire()}.
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * Records the outcome of a single batch and adjusts the batch size and concurrency.
+	 *
+	 * @param rows The number of entities in the batch.
+	 * @param latencyNanos The time taken to write the batch.
+	 * @param success Whether the batch was written successfully.
+	 */
+	public synchronized void record(int rows, long latencyNanos, boolean success) {
+		if (!success) {
+			batchSize = Math.max(minBatchSize, batchSize / 2);
+			resize(Math.max(1, concurrency / 2));
+			return;
+		}
+
+		if (latencyNanos > targetLatencyNanos) {
+			batchSize = Math.max(minBatchSize, batchSize / 2);
+		} else if (latencyNanos < targetLatencyNanos / 2) {
+			batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, batchSize / 2));
+		}
+
+		double nanosPerRow = (double) latencyNanos / Math.max(1, rows);
+		// Let the baseline creep upwards so one unusually fast batch does not pin it forever.
+		baselineNanosPerRow = Math.min(nanosPerRow, baselineNanosPerRow * BASELINE_DECAY);
+		if (nanosPerRow > baselineNanosPerRow * CONTENTION_FACTOR) {
+			resize(Math.max(1, concurrency / 2));
+		} else if (++successesSinceAdjustment >= concurrency) {
+			resize(Math.min(maxConcurrency, concurrency + 1));
+		}
+	}
+
+	private void resize(int newConcurrency) {
+		successesSinceAdjustment = 0;
+		if (newConcurrency > concurrency) {
+			permits.release(newConcurrency - concurrency);
+		} else if (newConcurrency < concurrency) {
+			permits.reducePermits(concurrency - newConcurrency);
+		}
+		concurrency = newConcurrency;
+	}
+
+	/**
+	 * @return The batch size the next batch should be cut to.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return The number of batches currently allowed to be written at the same time.
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Semaphore whose number of permits can be lowered while permits are held.
+	 */
+	@SuppressWarnings("serial")
+	private static class ResizableSemaphore extends Semaphore {
+
+		ResizableSemaphore(int permits) {
+			super(permits, true);
+		}
+
+		@Override
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+}
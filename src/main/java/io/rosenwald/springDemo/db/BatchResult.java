@@ -0,0 +1,86 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable summary of a run of {@link io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator}. Also used
+ * as a progress snapshot while a run is still in flight.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class BatchResult {
+
+	private final long batchesSucceeded;
+	private final long batchesFailed;
+	private final long rowsSucceeded;
+	private final long rowsFailed;
+	private final long elapsedMillis;
+	private final List<Throwable> errors;
+
+	/**
+	 * @param batchesSucceeded The number of batches written successfully.
+	 * @param batchesFailed The number of batches that failed to be written.
+	 * @param rowsSucceeded The number of entities in successful batches.
+	 * @param rowsFailed The number of entities in failed batches.
+	 * @param elapsedMillis The wall clock time of the run so far.
+	 * @param errors The first errors thrown by failed batches.
+	 */
+	public BatchResult(long batchesSucceeded, long batchesFailed, long rowsSucceeded, long rowsFailed, long elapsedMillis,
+			List<Throwable> errors) {
+		this.batchesSucceeded = batchesSucceeded;
+		this.batchesFailed = batchesFailed;
+		this.rowsSucceeded = rowsSucceeded;
+		this.rowsFailed = rowsFailed;
+		this.elapsedMillis = elapsedMillis;
+		this.errors = Collections.unmodifiableList(errors);
+	}
+
+	public long getBatchesSucceeded() {
+		return batchesSucceeded;
+	}
+
+	public long getBatchesFailed() {
+		return batchesFailed;
+	}
+
+	public long getRowsSucceeded() {
+		return rowsSucceeded;
+	}
+
+	public long getRowsFailed() {
+		return rowsFailed;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return The number of successfully written entities per second of wall clock time.
+	 */
+	public double getRowsPerSecond() {
+		return elapsedMillis == 0 ? 0 : rowsSucceeded * 1000d / elapsedMillis;
+	}
+
+	/**
+	 * @return The first errors thrown by failed batches. Not every error is kept when many batches fail.
+	 */
+	public List<Throwable> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return True if no batch failed.
+	 */
+	public boolean isSuccessful() {
+		return batchesFailed == 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("BatchResult[batchesSucceeded=%d, batchesFailed=%d, rowsSucceeded=%d, rowsFailed=%d, elapsedMillis=%d, rowsPerSecond=%.1f]",
+				batchesSucceeded, batchesFailed, rowsSucceeded, rowsFailed, elapsedMillis, getRowsPerSecond());
+	}
+}
@@ -0,0 +1,33 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.List;
+
+/**
+ * Strategy used by {@link io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator} to write a single batch of 
+ * entities to the database. Implementations must be safe to call from several threads at once.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ * @param <T> The type of entity to be persisted/deleted.
+ */
+public interface BatchWriter<T> {
+	
+	/**
+	 * Persists a batch of entities.
+	 * 
+	 * @param batch The entities to persist.
+	 */
+	public void save(List<T> batch);
+	
+	/**
+	 * Deletes a batch of entities.
+	 * 
+	 * @param batch The entities to delete.
+	 */
+	public void delete(List<T> batch);
+	
+	/**
+	 * @return A short name describing this writer, used in thread names and logging.
+	 */
+	public String getDescriptor();
+}
@@ -0,0 +1,197 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Answers the read queries of the REST endpoints from the {@link VehicleRepository}, letting identical queries running
+ * at the same time share a single database call. The first caller of a query runs it; callers arriving with the same
+ * finder and arguments while it runs wait for it and receive the same result instead of running and hydrating their
+ * own copy. A failing query fails every caller waiting for it.
+ *
+ * The REST endpoints submit their queries through {@link #submit(String, Function, Object...)}, which joins a query
+ * already submitted before anything is handed to the {@link DatabaseBulkhead}. Only the first caller takes a bulkhead
+ * thread; the others compose on its future without holding a thread, so a burst of identical requests neither fills
+ * the bulkhead nor is rejected by it.
+ *
+ * Queries are told apart like the query caches tell them apart, see {@link VehicleCacheConfig#key(Object...)}, and by
+ * the {@link VehicleDatasetVersion}, so a caller arriving after a write never joins a query started before it.
+ *
+ * Queries run are counted by the vehicles.queries.executed metric and calls answered by a running query by the
+ * vehicles.queries.coalesced metric, both tagged with the finder.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class CoalescingVehicleFinder implements VehicleFinder {
+
+	private final VehicleRepository repo;
+	private final VehicleDatasetVersion datasetVersion;
+	private final DatabaseBulkhead bulkhead;
+	private final MeterRegistry registry;
+	private final ConcurrentMap<Object, CompletableFuture<Object>> running = new ConcurrentHashMap<Object, CompletableFuture<Object>>();
+
+	@Autowired
+	public CoalescingVehicleFinder(VehicleRepository repo, VehicleDatasetVersion datasetVersion, DatabaseBulkhead bulkhead, 
+			MeterRegistry registry) {
+		this.repo = repo;
+		this.datasetVersion = datasetVersion;
+		this.bulkhead = bulkhead;
+		this.registry = registry;
+	}
+
+	@Override
+	public List<Vehicle> findAll() {
+		return repo.findAll();
+	}
+
+	@Override
+	public List<Vehicle> findByYear(int year) {
+		return repo.findByYear(year);
+	}
+
+	@Override
+	public List<Vehicle> findByMake(String make) {
+		return repo.findByMake(make);
+	}
+
+	@Override
+	public List<Vehicle> findByModel(String model) {
+		return repo.findByModel(model);
+	}
+
+	@Override
+	public List<Integer> findAllYears() {
+		return coalesce("findAllYears", repo::findAllYears);
+	}
+
+	@Override
+	public List<Vehicle> findByYearAndMake(int year, String make) {
+		return coalesce("findByYearAndMake", () -> repo.findByYearAndMake(year, make), year, make);
+	}
+
+	@Override
+	public List<Vehicle> findByYearAndMakeAndModel(int year, String make, String model) {
+		return coalesce("findByYearAndMakeAndModel", () -> repo.findByYearAndMakeAndModel(year, make, model), year, make, model);
+	}
+
+	@Override
+	public List<Vehicle> findPage(VehicleFilter filter, UUID after, int limit) {
+		return coalesce("findPage", () -> repo.findPage(filter, after, limit), filter, after, limit);
+	}
+
+	@Override
+	public List<VehicleSummary> findSummaryPage(VehicleFilter filter, UUID after, int limit) {
+		return coalesce("findSummaryPage", () -> repo.findSummaryPage(filter, after, limit), filter, after, limit);
+	}
+
+	@Override
+	public List<UUID> findIdPage(VehicleFilter filter, UUID after, int limit) {
+		return coalesce("findIdPage", () -> repo.findIdPage(filter, after, limit), filter, after, limit);
+	}
+
+	/**
+	 * Runs a query on the {@link DatabaseBulkhead}, or joins the identical query already submitted without taking a
+	 * thread.
+	 *
+	 * @param finder The name of the finder, telling queries apart together with the arguments.
+	 * @param query The query against the repository.
+	 * @param args The arguments of the finder.
+	 * @return A future completed like the future of {@link DatabaseBulkhead#submit(java.util.concurrent.Callable)} of
+	 * 		the first caller.
+	 */
+	public <T> CompletableFuture<T> submit(String finder, Function<VehicleFinder, T> query, Object... args) {
+		return coalesce(finder, call -> bulkhead.submit(call::get), () -> query.apply(repo), args);
+	}
+
+	/**
+	 * @return The number of distinct queries currently running.
+	 */
+	public int getRunning() {
+		return running.size();
+	}
+
+	/**
+	 * Runs a query on the calling thread, or waits for the identical query already running.
+	 */
+	private <T> T coalesce(String finder, Supplier<T> call, Object... args) {
+		return await(coalesce(finder, CoalescingVehicleFinder::runHere, call, args));
+	}
+
+	/**
+	 * Starts a query through the given runner, or returns the future of the identical query already started.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> coalesce(String finder, Function<Supplier<T>, CompletableFuture<T>> runner,
+			Supplier<T> call, Object... args) {
+		Object[] keyParams = new Object[args.length + 2];
+		keyParams[0] = finder;
+		keyParams[1] = datasetVersion.getETag();
+		System.arraycopy(args, 0, keyParams, 2, args.length);
+		Object key = VehicleCacheConfig.key(keyParams);
+
+		CompletableFuture<Object> query = new CompletableFuture<Object>();
+		CompletableFuture<Object> other = running.putIfAbsent(key, query);
+		if (other != null) {
+			registry.counter("vehicles.queries.coalesced", "finder", finder).increment();
+			return (CompletableFuture<T>) other;
+		}
+
+		registry.counter("vehicles.queries.executed", "finder", finder).increment();
+		query.whenComplete((result, ex) -> running.remove(key, query));
+		CompletableFuture<T> started;
+		try {
+			started = runner.apply(call);
+		} catch (RuntimeException | Error ex) {
+			query.completeExceptionally(ex);
+			throw ex;
+		}
+		started.whenComplete((result, ex) -> {
+			if (ex != null) {
+				query.completeExceptionally(ex);
+			} else {
+				query.complete(result);
+			}
+		});
+		return (CompletableFuture<T>) query;
+	}
+
+	private static <T> CompletableFuture<T> runHere(Supplier<T> call) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		try {
+			result.complete(call.get());
+		} catch (RuntimeException | Error ex) {
+			result.completeExceptionally(ex);
+		}
+		return result;
+	}
+
+	private static <T> T await(CompletableFuture<T> query) {
+		try {
+			return query.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a running query.", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			} else if (ex.getCause() instanceof Error) {
+				throw (Error) ex.getCause();
+			}
+			throw new IllegalStateException(ex.getCause());
+		}
+	}
+}
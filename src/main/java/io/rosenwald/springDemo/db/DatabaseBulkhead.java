@@ -0,0 +1,208 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Runs the database calls of REST requests on a dedicated, bounded set of threads, so a slow database only ties up
+ * these threads instead of the servlet container's workers. Requests not touching the database, such as /version or
+ * queries answered by the read model, keep being served while the database calls back up.
+ *
+ * By default there are as many threads as connections the importer and ingester leave free, their reserved-connections,
+ * so REST calls never wait for a connection on top of waiting for a thread and can never take the connections of a
+ * running import; see {@link MultithreadedRepositoryCommunicator#poolBoundedConcurrency(javax.sql.DataSource, int)}.
+ * Configuring more threads than that fails at startup. A call submitted while every thread is busy and the queue is full is rejected right away with
+ * a {@link RejectedExecutionException}. A call still running at its deadline fails with a {@link TimeoutException} and
+ * its thread is interrupted; the thread stays counted as busy until the database call actually returns. Writes, see 
+ * {@link #submitWrite(Callable)}, are never interrupted: one interrupted after its commit would skip what follows the 
+ * commit, such as publishing its {@link VehicleDataChangedEvent}.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class DatabaseBulkhead {
+
+	private final ThreadPoolExecutor executor;
+	private final ScheduledExecutorService deadlines;
+	private final long timeoutMillis;
+
+	/**
+	 * @param threads The number of database calls running at the same time, or 0 for the connections the batch writers
+	 * 		leave free.
+	 * @param poolSize The maximum size of the connection pool.
+	 * @param importReservedConnections The connections the importer leaves free.
+	 * @param ingestReservedConnections The connections the ingester leaves free.
+	 * @param queueCapacity The number of calls waiting for a thread before further calls are rejected. 0 rejects calls
+	 * 		as soon as every thread is busy.
+	 * @param timeoutMillis The deadline of a call, measured from its submission.
+	 * @throws IllegalStateException The threads and the connections of the batch writers exceed the pool.
+	 */
+	@Autowired
+	public DatabaseBulkhead(@Value("${io.rosenwald.springDemo.bulkhead.threads:0}") int threads,
+			@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+			@Value("${io.rosenwald.springDemo.db.import.reserved-connections:10}") int importReservedConnections,
+			@Value("${io.rosenwald.springDemo.ingest.reserved-connections:10}") int ingestReservedConnections,
+			@Value("${io.rosenwald.springDemo.bulkhead.queue-capacity:0}") int queueCapacity,
+			@Value("${io.rosenwald.springDemo.bulkhead.timeout-ms:5000}") long timeoutMillis) {
+		this(poolBoundedThreads(threads, poolSize, Math.min(importReservedConnections, ingestReservedConnections)),
+				queueCapacity, timeoutMillis);
+	}
+	
+	/**
+	 * @param threads The number of database calls running at the same time.
+	 * @param queueCapacity The number of calls waiting for a thread before further calls are rejected. 0 rejects calls
+	 * 		as soon as every thread is busy.
+	 * @param timeoutMillis The deadline of a call, measured from its submission.
+	 */
+	public DatabaseBulkhead(int threads, int queueCapacity, long timeoutMillis) {
+		Assert.state(threads > 0, "The number of bulkhead threads must not be less than 1.");
+		Assert.state(queueCapacity >= 0, "The bulkhead queue capacity must not be negative.");
+		Assert.state(timeoutMillis > 0, "The bulkhead timeout must be positive.");
+		BlockingQueue<Runnable> queue = queueCapacity == 0 ? new SynchronousQueue<Runnable>()
+				: new ArrayBlockingQueue<Runnable>(queueCapacity);
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, runnable -> {
+			Thread thread = new Thread(runnable, "db-bulkhead-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.AbortPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+		this.deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "db-bulkhead-deadlines");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Derives the number of threads from the connections left by the batch writers, which take the pool size minus 
+	 * their reserved connections, but at least 1.
+	 * 
+	 * @param threads The configured number of threads, or 0 for all connections the batch writers leave free.
+	 * @param poolSize The maximum size of the connection pool.
+	 * @param reservedConnections The connections the batch writers leave free.
+	 * @return The number of threads.
+	 * @throws IllegalStateException The threads and the connections of the batch writers exceed the pool.
+	 */
+	static int poolBoundedThreads(int threads, int poolSize, int reservedConnections) {
+		int batchConnections = Math.max(1, poolSize - reservedConnections);
+		int resolved = threads == 0 ? poolSize - batchConnections : threads;
+		Assert.state(resolved + batchConnections <= poolSize, "The " + resolved + " bulkhead threads and the " 
+				+ batchConnections + " connections of the batch writers exceed the pool of " + poolSize + " connections.");
+		return resolved;
+	}
+	
+	/**
+	 * Runs a database call on one of the bulkhead's threads.
+	 *
+	 * @param call The call.
+	 * @return A future completed with the result of the call, or exceptionally with the exception thrown by the call, a
+	 * 		{@link RejectedExecutionException} if the bulkhead is full, or a {@link TimeoutException} once the deadline
+	 * 		has passed.
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> call) {
+		return submit(call, true);
+	}
+
+	/**
+	 * Runs a database write on one of the bulkhead's threads. Like {@link #submit(Callable)}, except that a write still 
+	 * running at its deadline is left running to completion instead of being interrupted. A write that has not started 
+	 * by its deadline never starts.
+	 *
+	 * @param call The write.
+	 * @return A future completed like the one of {@link #submit(Callable)}. A write timing out may still be committed.
+	 */
+	public <T> CompletableFuture<T> submitWrite(Callable<T> call) {
+		return submit(call, false);
+	}
+
+	private <T> CompletableFuture<T> submit(Callable<T> call, boolean interruptible) {
+		Assert.notNull(call, "The call must not be null.");
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		Future<?> task;
+		try {
+			task = executor.submit(() -> {
+				try {
+					result.complete(call.call());
+				} catch (Throwable ex) {
+					result.completeExceptionally(ex);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			result.completeExceptionally(new RejectedExecutionException("Every database thread is busy.", ex));
+			return result;
+		}
+
+		Future<?> deadline = deadlines.schedule(() -> {
+			if (result.completeExceptionally(new TimeoutException("The database call took longer than " + timeoutMillis + "ms."))) {
+				task.cancel(interruptible);
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		result.whenComplete((value, ex) -> deadline.cancel(false));
+		return result;
+	}
+
+	/**
+	 * Gives a database call running elsewhere, such as a group commit, a deadline without taking a thread.
+	 *
+	 * @param call The future of the call.
+	 * @param timeoutMillis The deadline, measured from now.
+	 * @return A future completed like the call, or exceptionally with a {@link TimeoutException} once the deadline has
+	 * 		passed. The call itself is left running.
+	 */
+	public <T> CompletableFuture<T> withDeadline(CompletableFuture<T> call, long timeoutMillis) {
+		Assert.notNull(call, "The call must not be null.");
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		Future<?> deadline = deadlines.schedule(() -> result.completeExceptionally(
+				new TimeoutException("The database call took longer than " + timeoutMillis + "ms.")), timeoutMillis, TimeUnit.MILLISECONDS);
+		call.whenComplete((value, ex) -> {
+			deadline.cancel(false);
+			if (ex != null) {
+				result.completeExceptionally(ex);
+			} else {
+				result.complete(value);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return The number of threads running a database call.
+	 */
+	public int getActive() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * @return The number of calls waiting for a thread.
+	 */
+	public int getQueued() {
+		return executor.getQueue().size();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		deadlines.shutdownNow();
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,200 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.rosenwald.springDemo.DemoApplication;
+
+/**
+ * Groups single entity saves from many threads into batches written in one transaction each, so concurrent writers
+ * share a commit instead of paying for one each.
+ *
+ * Submitted entities wait in a bounded buffer. A single flusher thread takes the first waiting entity and keeps
+ * collecting until either the maximum batch size is reached or the maximum delay since the first entity has passed,
+ * then writes the batch through its {@link BatchWriter}. Entities submitted while a batch is being written form the
+ * next batch. Every submitter gets a future completed once its batch committed. If a batch fails, its entities are
+ * written one at a time so a single bad entity only fails its own submitter.
+ *
+ * Submitting blocks while the buffer is full, pushing back on writers faster than the database. The flusher survives
+ * anything a batch throws, errors included, completing the batch's futures exceptionally instead, so submitters are
+ * never left waiting on a dead flusher.
+ *
+ * The size and latency of every flush are recorded as the vehicles.write.behind.flush.size and
+ * vehicles.write.behind.flush.latency metrics.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ * @param <T> The type of entity to be persisted.
+ */
+public class GroupCommitWriter<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+
+	private final BatchWriter<T> writer;
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final BlockingQueue<Pending<T>> buffer;
+	private final DistributionSummary flushSize;
+	private final Timer flushLatency;
+	private final Thread flusher;
+	private volatile boolean closed;
+
+	/**
+	 * @param writer The strategy used to write a batch in a single transaction.
+	 * @param maxBatchSize The number of entities that triggers a flush right away.
+	 * @param maxDelayMillis The longest time the first entity of a batch waits for more entities.
+	 * @param capacity The maximum number of entities waiting to be flushed.
+	 * @param registry The registry the flush metrics are recorded in.
+	 */
+	public GroupCommitWriter(BatchWriter<T> writer, int maxBatchSize, long maxDelayMillis, int capacity, MeterRegistry registry) {
+		Assert.notNull(writer, "The provided batch writer must not be null.");
+		Assert.notNull(registry, "The provided meter registry must not be null.");
+		Assert.state(maxBatchSize > 0, "The maximum batch size must not be less than 1.");
+		Assert.state(maxDelayMillis >= 0, "The maximum delay must not be negative.");
+		Assert.state(capacity >= maxBatchSize, "The capacity must not be less than the maximum batch size.");
+		this.writer = writer;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.buffer = new ArrayBlockingQueue<Pending<T>>(capacity);
+		this.flushSize = DistributionSummary.builder("vehicles.write.behind.flush.size")
+				.description("Entities written per group commit").register(registry);
+		this.flushLatency = Timer.builder("vehicles.write.behind.flush.latency")
+				.description("Time taken to write and commit a group").register(registry);
+		this.flusher = new Thread(this::flushContinuously, "group-commit-" + writer.getDescriptor());
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * Queues an entity to be written with the next batch, blocking while the buffer is full.
+	 *
+	 * @param entity The entity to save.
+	 * @return A future completed with the entity once its batch committed, or exceptionally if it could not be written.
+	 * @throws IllegalStateException The writer has been closed, also while waiting for room in the buffer.
+	 * @throws InterruptedException
+	 */
+	public CompletableFuture<T> submit(T entity) throws IllegalStateException, InterruptedException {
+		Assert.notNull(entity, "The entity must not be null.");
+		Assert.state(!closed, "The group commit writer has been closed.");
+		Pending<T> pending = new Pending<T>(entity);
+		buffer.put(pending);
+		// close() may have drained the buffer for the last time before the entity got in. If the entity is still there, 
+		// nobody will write it; otherwise the flusher or close() took it and completes its future.
+		if (closed && buffer.remove(pending)) {
+			throw new IllegalStateException("The group commit writer has been closed.");
+		}
+		return pending.future;
+	}
+
+	private void flushContinuously() {
+		List<Pending<T>> batch = new ArrayList<Pending<T>>(maxBatchSize);
+		while (!closed) {
+			try {
+				batch.add(buffer.take());
+				long deadline = System.nanoTime() + maxDelayNanos;
+				while (batch.size() < maxBatchSize) {
+					buffer.drainTo(batch, maxBatchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= maxBatchSize || remaining <= 0) break;
+					Pending<T> next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) break;
+					batch.add(next);
+				}
+			} catch (InterruptedException ex) {
+				// Closed. The interrupt status is cleared, so the collected batch can still be written. The entities 
+				// left in the buffer are flushed by close().
+				break;
+			}
+			flushSafely(batch);
+			batch.clear();
+		}
+		if (!batch.isEmpty()) {
+			flushSafely(batch);
+		}
+	}
+
+	/**
+	 * Writes a batch, failing its entities rather than the calling thread if anything else than a
+	 * {@link RuntimeException} is thrown, such as an {@link Error}.
+	 */
+	private void flushSafely(List<Pending<T>> batch) {
+		try {
+			flush(batch);
+		} catch (Throwable ex) {
+			logger.error("Group commit of " + batch.size() + " entities failed." + System.lineSeparator() + ex);
+			batch.forEach(pending -> pending.future.completeExceptionally(ex));
+		}
+	}
+
+	private void flush(List<Pending<T>> batch) {
+		List<T> entities = new ArrayList<T>(batch.size());
+		batch.forEach(pending -> entities.add(pending.entity));
+		long start = System.nanoTime();
+		try {
+			writer.save(entities);
+			flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			flushSize.record(batch.size());
+			batch.forEach(pending -> pending.future.complete(pending.entity));
+		} catch (RuntimeException ex) {
+			flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			if (batch.size() == 1) {
+				batch.get(0).future.completeExceptionally(ex);
+				return;
+			}
+			logger.warn("Group commit of " + batch.size() + " entities failed, writing them one at a time."
+					+ System.lineSeparator() + ex.getMessage());
+			for (Pending<T> pending : batch) {
+				flush(Collections.singletonList(pending));
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting entities and writes the ones still waiting on the calling thread.
+	 */
+	public void close() {
+		closed = true;
+		flusher.interrupt();
+		try {
+			flusher.join(TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 10000);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		List<Pending<T>> remaining = new ArrayList<Pending<T>>();
+		buffer.drainTo(remaining);
+		for (int i = 0; i < remaining.size(); i += maxBatchSize) {
+			flushSafely(remaining.subList(i, Math.min(remaining.size(), i + maxBatchSize)));
+		}
+	}
+
+	/**
+	 * @return The number of entities waiting to be flushed.
+	 */
+	public int getBuffered() {
+		return buffer.size();
+	}
+
+	/**
+	 * An entity waiting for its batch to commit.
+	 */
+	private static class Pending<T> {
+		final T entity;
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		Pending(T entity) {
+			this.entity = entity;
+		}
+	}
+}
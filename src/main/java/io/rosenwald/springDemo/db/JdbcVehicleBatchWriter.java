@@ -0,0 +1,174 @@
+package io.rosenwald.springDemo.db;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Writes batches of vehicles with plain JDBC batch statements, skipping the persistence context entirely. Each batch 
+ * runs in its own transaction. 
+ * 
+ * When the MariaDB driver is configured with rewriteBatchedStatements=true (see the datasource URL in 
+ * application.properties), a batch of INSERTs is sent to the server as multi-row INSERT statements.
+ * 
+ * An upserting writer updates vehicles whose ID already exists instead of failing on the duplicate key.
+ * 
+ * IDs are written as BINARY(16) and drive, transmission, and alternative fuel type as dictionary codes, see 
+ * {@link VehicleLookupTables}.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class JdbcVehicleBatchWriter implements BatchWriter<Vehicle> {
+	
+	/**
+	 * The physical table the VEHICLES entity is mapped to.
+	 */
+	public static final String TABLE = "vehicles";
+	
+	private static final String INSERT = "INSERT INTO %s (id, year, make, model, drive_id, transmission_id, cylinders, "
+			+ "displacement, alt_type_id, ev_motor, content_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String ON_DUPLICATE_KEY_UPDATE = " ON DUPLICATE KEY UPDATE year = VALUES(year), make = VALUES(make), "
+			+ "model = VALUES(model), drive_id = VALUES(drive_id), transmission_id = VALUES(transmission_id), "
+			+ "cylinders = VALUES(cylinders), displacement = VALUES(displacement), alt_type_id = VALUES(alt_type_id), "
+			+ "ev_motor = VALUES(ev_motor), content_hash = VALUES(content_hash)";
+	private static final String DELETE = "DELETE FROM %s WHERE id = ?";
+	
+	private final JdbcTemplate jdbcTemplate;
+	private final VehicleLookupTables lookupTables;
+	private final TransactionTemplate transactionTemplate;
+	private final String insertSql;
+	private final String deleteSql;
+	
+	/**
+	 * @param jdbcTemplate The template used to issue the batch statements.
+	 * @param transactionManager The transaction manager wrapping every batch in a transaction.
+	 * @param lookupTables The dictionaries encoding the low-cardinality columns.
+	 */
+	public JdbcVehicleBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, VehicleLookupTables lookupTables) {
+		this(jdbcTemplate, transactionManager, lookupTables, TABLE);
+	}
+	
+	/**
+	 * @param jdbcTemplate The template used to issue the batch statements.
+	 * @param transactionManager The transaction manager wrapping every batch in a transaction.
+	 * @param lookupTables The dictionaries encoding the low-cardinality columns.
+	 * @param table The table to write to. Must have the same columns as the vehicles table.
+	 */
+	public JdbcVehicleBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, VehicleLookupTables lookupTables, 
+			String table) {
+		this(jdbcTemplate, transactionManager, lookupTables, table, false);
+	}
+	
+	/**
+	 * @param jdbcTemplate The template used to issue the batch statements.
+	 * @param transactionManager The transaction manager wrapping every batch in a transaction.
+	 * @param lookupTables The dictionaries encoding the low-cardinality columns.
+	 * @param table The table to write to. Must have the same columns as the vehicles table.
+	 * @param upsert Whether saving a vehicle with an existing ID updates it rather than failing.
+	 */
+	public JdbcVehicleBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, VehicleLookupTables lookupTables, 
+			String table, boolean upsert) {
+		Assert.notNull(jdbcTemplate, "The provided JdbcTemplate must not be null.");
+		Assert.notNull(transactionManager, "The provided transaction manager must not be null.");
+		Assert.notNull(lookupTables, "The provided lookup tables must not be null.");
+		Assert.hasText(table, "The provided table must not be empty.");
+		this.jdbcTemplate = jdbcTemplate;
+		this.lookupTables = lookupTables;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.insertSql = String.format(INSERT, table) + (upsert ? ON_DUPLICATE_KEY_UPDATE : "");
+		this.deleteSql = String.format(DELETE, table);
+	}
+
+	@Override
+	public void save(List<Vehicle> batch) {
+		transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(insertSql, new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				Vehicle vehicle = batch.get(i);
+				ps.setBytes(1, toBytes(vehicle.getId()));
+				ps.setInt(2, vehicle.getYear());
+				ps.setString(3, vehicle.getMake());
+				ps.setString(4, vehicle.getModel());
+				setCode(ps, 5, lookupTables.drives().encode(vehicle.getDrive()));
+				setCode(ps, 6, lookupTables.transmissions().encode(vehicle.getTransmission()));
+				ps.setInt(7, vehicle.getCylinders());
+				ps.setFloat(8, vehicle.getDisplacement());
+				setCode(ps, 9, lookupTables.altTypes().encode(vehicle.getAltType()));
+				ps.setString(10, vehicle.getEvMotor());
+				ps.setString(11, vehicle.getContentHash());
+			}
+
+			@Override
+			public int getBatchSize() {
+				return batch.size();
+			}
+		}));
+	}
+
+	@Override
+	public void delete(List<Vehicle> batch) {
+		deleteByIds(batch.stream().map(Vehicle::getId).collect(Collectors.toList()));
+	}
+	
+	/**
+	 * Deletes a batch of vehicles by their IDs.
+	 * 
+	 * @param ids The IDs of the vehicles to delete.
+	 */
+	public void deleteByIds(List<UUID> ids) {
+		transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(deleteSql, new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setBytes(1, toBytes(ids.get(i)));
+			}
+
+			@Override
+			public int getBatchSize() {
+				return ids.size();
+			}
+		}));
+	}
+
+	@Override
+	public String getDescriptor() {
+		return "JDBC";
+	}
+	
+	/**
+	 * @param id A vehicle ID.
+	 * @return The ID as stored in the BINARY(16) id column.
+	 */
+	public static byte[] toBytes(UUID id) {
+		return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+	}
+	
+	/**
+	 * @param bytes The value of a BINARY(16) id column.
+	 * @return The vehicle ID.
+	 */
+	public static UUID toUuid(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+	
+	private static void setCode(PreparedStatement ps, int index, Short code) throws SQLException {
+		if (code == null) {
+			ps.setNull(index, Types.SMALLINT);
+		} else {
+			ps.setShort(index, code);
+		}
+	}
+}
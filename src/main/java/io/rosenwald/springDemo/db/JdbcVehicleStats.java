@@ -0,0 +1,108 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import io.rosenwald.springDemo.db.VehicleStatsQuery.Dimension;
+import io.rosenwald.springDemo.db.VehicleStatsQuery.Metric;
+
+/**
+ * Answers {@link VehicleStatsQuery}s with a single GROUP BY query, so only one row per group leaves the database. 
+ * Lookup tables are joined only for the dictionary encoded dimensions that are grouped by. The SQL is assembled from 
+ * the fixed column expressions of the dimensions and metrics; filter values are bound as parameters.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class JdbcVehicleStats {
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
+	/**
+	 * @param query The aggregation to run.
+	 * @return One map per group, see {@link VehicleStatsQuery}.
+	 */
+	public List<Map<String, Object>> aggregate(VehicleStatsQuery query) {
+		List<String> columns = new ArrayList<String>();
+		StringBuilder joins = new StringBuilder();
+		for (Dimension dimension : query.getGroupBy()) {
+			columns.add(column(dimension));
+			switch (dimension) {
+			case DRIVE: 		joins.append(" LEFT JOIN vehicle_drives d ON d.id = v.drive_id"); break;
+			case TRANSMISSION: 	joins.append(" LEFT JOIN vehicle_transmissions t ON t.id = v.transmission_id"); break;
+			case ALT_TYPE: 		joins.append(" LEFT JOIN vehicle_alt_types a ON a.id = v.alt_type_id"); break;
+			default: 			break;
+			}
+		}
+		
+		List<String> select = new ArrayList<String>(columns);
+		for (Metric metric : query.getMetrics()) {
+			select.add(metric.getField() == null ? "COUNT(*)" : metric.getFunction().name() + "(" + column(metric.getField()) + ")");
+		}
+		
+		List<Object> args = new ArrayList<Object>();
+		StringBuilder where = new StringBuilder();
+		VehicleFilter filter = query.getFilter();
+		if (filter.getYear() != null) {
+			where.append(where.length() == 0 ? " WHERE " : " AND ").append("v.year = ?");
+			args.add(filter.getYear());
+		}
+		if (filter.getMake() != null) {
+			where.append(where.length() == 0 ? " WHERE " : " AND ").append("v.make = ?");
+			args.add(filter.getMake());
+		}
+		if (filter.getModel() != null) {
+			where.append(where.length() == 0 ? " WHERE " : " AND ").append("v.model = ?");
+			args.add(filter.getModel());
+		}
+		
+		String sql = "SELECT " + String.join(", ", select) + " FROM " + JdbcVehicleBatchWriter.TABLE + " v" + joins + where 
+				+ (columns.isEmpty() ? "" : " GROUP BY " + String.join(", ", columns) + " ORDER BY " + String.join(", ", columns));
+		return jdbcTemplate.query(sql, (rs, rowNum) -> {
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			int index = 1;
+			for (Dimension dimension : query.getGroupBy()) {
+				if (dimension == Dimension.YEAR || dimension == Dimension.CYLINDERS) {
+					row.put(dimension.getFieldName(), rs.getInt(index++));
+				} else {
+					row.put(dimension.getFieldName(), rs.getString(index++));
+				}
+			}
+			for (Metric metric : query.getMetrics()) {
+				Object value = metric.getField() == null ? (Object) rs.getLong(index++) : (Object) rs.getDouble(index++);
+				row.put(metric.getLabel(), rs.wasNull() ? null : value);
+			}
+			return row;
+		}, args.toArray());
+	}
+	
+	private static String column(Dimension dimension) {
+		switch (dimension) {
+		case YEAR: 			return "v.year";
+		case MAKE: 			return "v.make";
+		case MODEL: 		return "v.model";
+		case DRIVE: 		return "d.name";
+		case TRANSMISSION: 	return "t.name";
+		case CYLINDERS: 	return "v.cylinders";
+		case ALT_TYPE: 		return "a.name";
+		default: 			throw new IllegalStateException("Unknown dimension " + dimension + ".");
+		}
+	}
+	
+	private static String column(VehicleStatsQuery.Field field) {
+		switch (field) {
+		case YEAR: 			return "v.year";
+		case CYLINDERS: 	return "v.cylinders";
+		case DISPLACEMENT: 	return "v.displacement";
+		default: 			throw new IllegalStateException("Unknown field " + field + ".");
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.util.Assert;
+
+/**
+ * Writes batches through a JpaRepository's saveAll() and deleteInBatch() methods. Every entity passes through the 
+ * persistence context, so entities with manually assigned IDs are merged, costing a SELECT before each INSERT.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ * @param <T> The type of entity to be persisted/deleted.
+ */
+public class JpaBatchWriter<T> implements BatchWriter<T> {
+	
+	private final JpaRepository<T, ?> repo;
+	
+	/**
+	 * @param repo The repository to delete/persist data.
+	 */
+	public JpaBatchWriter(JpaRepository<T, ?> repo) {
+		Assert.notNull(repo, "The provided repository must not be null.");
+		this.repo = repo;
+	}
+
+	@Override
+	public void save(List<T> batch) {
+		repo.saveAll(batch);
+	}
+
+	@Override
+	public void delete(List<T> batch) {
+		repo.deleteInBatch(batch);
+	}
+
+	@Override
+	public String getDescriptor() {
+		return "JPA";
+	}
+}
@@ -1,16 +1,37 @@
 package io.rosenwald.springDemo.db;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.util.Assert;
 
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.rosenwald.springDemo.DemoApplication;
 
 /**
@@ -21,110 +42,430 @@ import io.rosenwald.springDemo.DemoApplication;
  * iterable. The vehicle CSV data provided ~40000 rows of data, so data import could take 30-60 minutes. Now, I'm 
  * observing deletes of 35000+ rows in less than 30 seconds and persists of 35000+ rows in less than 2 minutes with a 
  * Google Cloud Platform MySQL server. Performance has degraded a bit more now that I am running my own MariaDB server 
- * on a $7/month VPS.
+ * on a $7/month VPS. The PersistenceBenchmark of the benchmarks module measures these figures against an embedded 
+ * MariaDB for several batch sizes and thread counts.
+ * 
+ * This would not be possible without increasing the pool size of the repository. The number of batches written at the 
+ * same time is bounded by a maximum concurrency, which should be derived from the size of the repository connection 
+ * pool, see {@link #poolBoundedConcurrency(DataSource, int)}. Within that bound an 
+ * {@link io.rosenwald.springDemo.db.AdaptiveBatchTuner} adjusts batch size and concurrency at runtime from the observed 
+ * latency of every batch. See the application.properties file on how to increase the maximum size of the repository 
+ * connection pool. The maximum size is currently set to 50.
+ * 
+ * How a single batch is written is decided by a {@link io.rosenwald.springDemo.db.BatchWriter}. The default 
+ * {@link io.rosenwald.springDemo.db.JpaBatchWriter} goes through the repository, while 
+ * {@link io.rosenwald.springDemo.db.JdbcVehicleBatchWriter} skips the persistence context and issues JDBC batch 
+ * statements directly.
  * 
- * This would not be possible without increasing the pool size of the repository. Depending on the batch size set, a 
- * different number of repository connections is required until some threads will begin to time out. See the 
- * application.properties file on how to increase the maximum size of the repository connection pool. The maximum size 
- * is currently set to 50.
+ * A communicator runs one batch operation at a time. Progress is tracked lock-free and can be read at any time through 
+ * {@link #getProgress()}. Given a meter registry, every batch is also recorded in the batch.write.latency timer, the 
+ * batch.write.rows counter, and the batch.write.size summary, tagged by writer, action, and outcome, so rows per second 
+ * and failures can be followed across runs; see {@link #setMeterRegistry(MeterRegistry)}.
  * 
  * This is NOT a stable production sample and should not entirely be used as so as it has not been fully tested.
  * 
  * @author Nathaniel Rosenwald
  * 
- * TODO: Improve debug logging stability and error handling.
- *
  * @param <T> The type of entity to be persisted/deleted.
  */
 public class MultithreadedRepositoryCommunicator<T> {
 	
 	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
 	
-	private List<Thread> threads;
-	private JpaRepository<T, String> repo;
-	private int batchSize;
-	private int batchesComplete;
-	private int batchesToBeCompleted;
+	private static final int DEFAULT_MAX_CONCURRENCY = 8;
+	private static final int MAX_REPORTED_ERRORS = 10;
+	
+	private final BatchWriter<T> writer;
+	private final AdaptiveBatchTuner tuner;
+	private int queueCapacity;
+	private MeterRegistry registry;
+	private final List<T> endOfStream = new ArrayList<T>(0);
+	private final AtomicBoolean running = new AtomicBoolean();
+	private volatile RunProgress currentRun;
 
 	/**
 	 * @param repo The repository to delete/persist data.
-	 * @param batchSize The maximum size of the batch statements.
+	 * @param batchSize The initial size of the batch statements.
+	 */
+	public MultithreadedRepositoryCommunicator(JpaRepository<T, ?> repo, int batchSize) {
+		this(new JpaBatchWriter<T>(repo), batchSize);
+	}
+	
+	/**
+	 * @param writer The strategy used to delete/persist a single batch.
+	 * @param batchSize The initial size of the batch statements.
 	 */
-	public MultithreadedRepositoryCommunicator(JpaRepository<T, String> repo, int batchSize) {
-		Assert.notNull(repo, "The provided repository must not be null.");
-		Assert.state(batchSize > 0, "The provided batch size must not less than or equal to 0.");
-		this.repo = repo;
-		this.batchSize = batchSize;
-		threads = new ArrayList<Thread>();
-		batchesComplete = 0;
+	public MultithreadedRepositoryCommunicator(BatchWriter<T> writer, int batchSize) {
+		this(writer, batchSize, DEFAULT_MAX_CONCURRENCY);
 	}
 	
 	/**
-	 * Creates and starts the threads.
+	 * @param writer The strategy used to delete/persist a single batch.
+	 * @param batchSize The initial size of the batch statements.
+	 * @param maxConcurrency The maximum number of batches written at the same time. Should not exceed the number of 
+	 * 		connections of the repository connection pool, see {@link #poolBoundedConcurrency(DataSource, int)}.
+	 */
+	public MultithreadedRepositoryCommunicator(BatchWriter<T> writer, int batchSize, int maxConcurrency) {
+		this(writer, new AdaptiveBatchTuner(batchSize, maxConcurrency));
+	}
+	
+	/**
+	 * @param writer The strategy used to delete/persist a single batch.
+	 * @param tuner The tuner deciding batch size and concurrency.
+	 */
+	public MultithreadedRepositoryCommunicator(BatchWriter<T> writer, AdaptiveBatchTuner tuner) {
+		Assert.notNull(writer, "The provided batch writer must not be null.");
+		Assert.notNull(tuner, "The provided batch tuner must not be null.");
+		this.writer = writer;
+		this.tuner = tuner;
+		this.queueCapacity = tuner.getMaxConcurrency() * 2;
+	}
+	
+	/**
+	 * Derives the maximum number of concurrent batches from the size of the connection pool.
+	 * 
+	 * @param dataSource The data source the batches are written to.
+	 * @param reservedConnections The number of connections left for everything else, such as REST requests.
+	 * @return The maximum pool size minus the reserved connections, but at least 1. Falls back to a default if the data 
+	 * 		source is not a Hikari pool.
+	 */
+	public static int poolBoundedConcurrency(DataSource dataSource, int reservedConnections) {
+		if (dataSource instanceof HikariDataSource) {
+			return Math.max(1, ((HikariDataSource) dataSource).getMaximumPoolSize() - reservedConnections);
+		}
+		return DEFAULT_MAX_CONCURRENCY;
+	}
+	
+	/**
+	 * Starts persisting/deleting a list of entities. See {@link #startStreaming(Iterator, BatchAction)}.
 	 * 
 	 * @param entities The entities to be persisted/deleted.
 	 * @param action The action to perform to the provided entities. 
 	 * 		{@link io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator.BatchAction}
+	 * @return A future completed with the result once every batch has been written.
 	 * @throws IllegalArgumentException The provided batch action or list of entities is null.
-	 * @throws IllegalStateException The list of entities is empty.
+	 * @throws IllegalStateException The list of entities is empty or another run is in progress.
 	 * @throws InterruptedException 
 	 */
-	public void start(List<T> entities, BatchAction action) throws IllegalArgumentException, IllegalStateException, InterruptedException {
-		Assert.notNull(action, "The batch action must not be null.");
+	public CompletableFuture<BatchResult> start(List<T> entities, BatchAction action) throws IllegalArgumentException, IllegalStateException, InterruptedException {
 		Assert.notNull(entities, "The list of entities must not be null.");
 		Assert.state(!entities.isEmpty(), "The list must contain at least one entity");
+		return startStreaming(entities.iterator(), action, entities.size());
+	}
+	
+	/**
+	 * Groups a stream of entities into batches and persists/deletes them while the stream is still being produced. 
+	 * 
+	 * Batches are cut to the size currently chosen by the {@link io.rosenwald.springDemo.db.AdaptiveBatchTuner} and 
+	 * handed to the worker threads through a bounded queue. Once the queue is full the calling thread blocks until a 
+	 * worker takes the next batch, so the number of batches held in memory does not depend on how many entities the 
+	 * iterator produces. Null entities are skipped.
+	 * 
+	 * This method returns once the last batch has been queued. The returned future completes when every batch has been 
+	 * written. Failed batches do not complete the future exceptionally; they are counted and reported in the result.
+	 * A batch throwing an {@link Error}, such as an OutOfMemoryError, is counted as failed as well, but ends its worker 
+	 * thread and completes the future exceptionally with the error. Once every worker has ended, the producer stops 
+	 * waiting for room in the queue and fails with an {@link IllegalStateException}.
+	 * 
+	 * @param entities The entities to be persisted/deleted. Consumed on the calling thread only.
+	 * @param action The action to perform to the provided entities. 
+	 * 		{@link io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator.BatchAction}
+	 * @return A future completed with the result once every batch has been written.
+	 * @throws IllegalArgumentException The provided batch action or iterator is null.
+	 * @throws IllegalStateException Another run is in progress, or every worker thread ended before the last batch 
+	 * 		was queued.
+	 * @throws InterruptedException
+	 */
+	public CompletableFuture<BatchResult> startStreaming(Iterator<T> entities, BatchAction action) 
+			throws IllegalArgumentException, IllegalStateException, InterruptedException {
+		return startStreaming(entities, action, -1);
+	}
+	
+	private CompletableFuture<BatchResult> startStreaming(Iterator<T> entities, BatchAction action, long expectedRows) 
+			throws IllegalArgumentException, IllegalStateException, InterruptedException {
+		Assert.notNull(action, "The batch action must not be null.");
+		Assert.notNull(entities, "The entity iterator must not be null.");
+		Assert.state(running.compareAndSet(false, true), "Another batch operation is already in progress.");
+		
+		RunProgress run = new RunProgress(expectedRows, 
+				registry == null ? null : new BatchMeters(registry, writer.getDescriptor(), action));
+		currentRun = run;
+		int workerCount = tuner.getMaxConcurrency();
+		BlockingQueue<List<T>> queue = new ArrayBlockingQueue<List<T>>(queueCapacity);
+		ExecutorService execService = Executors.newFixedThreadPool(workerCount, new BatchThreadFactory(action));
+		CompletableFuture<?>[] workers = new CompletableFuture<?>[workerCount];
+		AtomicInteger liveWorkers = new AtomicInteger(workerCount);
+		// Released by the producer if it fails, otherwise once the workers are done, but only once: a later run may 
+		// already be in progress when the workers of a failed run end.
+		AtomicBoolean released = new AtomicBoolean();
+		Runnable release = () -> {
+			if (released.compareAndSet(false, true)) {
+				running.set(false);
+			}
+		};
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = CompletableFuture.runAsync(() -> drain(queue, action, run, liveWorkers), execService);
+		}
 		
-		batchesToBeCompleted = (int) Math.ceil((double)(entities.size() / batchSize));
-		ExecutorService execService = Executors.newCachedThreadPool();
-		for (int i = 0; i <= entities.size() + batchSize; i += batchSize) {
-			final int index = i;
-			String threadName = "batch-" + action.getDescriptor() + "-" + i;
-			Runnable runnable = new Runnable() {
-				@Override
-				public void run() {
-					List<T> batch;
-					if (index + batchSize > entities.size()) {
-						if (entities.size() - index < 1) return;
-						batch = entities.subList(index, entities.size());
-					} else {
-						batch = entities.subList(index, index + batchSize);
-					}
-					
-					if (batch.contains(null)) {
-						batch = batch.subList(0, batch.indexOf(null));
-					}
-					if (action == BatchAction.SAVE) {
-						repo.saveAll(batch);
-					} else {
-						repo.deleteInBatch(batch);
-					}
-					logSingleBatchComplete(threadName);
+		try {
+			int currentBatchSize = tuner.getBatchSize();
+			List<T> batch = new ArrayList<T>(currentBatchSize);
+			while (entities.hasNext()) {
+				T entity = entities.next();
+				if (entity == null) continue;
+				batch.add(entity);
+				if (batch.size() >= currentBatchSize) {
+					handOver(queue, batch, liveWorkers);
+					currentBatchSize = tuner.getBatchSize();
+					batch = new ArrayList<T>(currentBatchSize);
 				}
-			};
-			execService.submit(runnable);
+			}
+			if (!batch.isEmpty()) {
+				handOver(queue, batch, liveWorkers);
+			}
+			// Workers that ended early do not take their end of stream, so stop once none is left.
+			for (int i = 0; i < workerCount; i++) {
+				if (!offer(queue, endOfStream, liveWorkers)) break;
+			}
+		} catch (InterruptedException | RuntimeException ex) {
+			execService.shutdownNow();
+			release.run();
+			throw ex;
 		}
 		
-		execService.shutdown();
-		execService.awaitTermination(20, TimeUnit.MINUTES);
+		return CompletableFuture.allOf(workers).handle((ignored, ex) -> {
+			execService.shutdown();
+			release.run();
+			BatchResult result = run.finish();
+			if (ex != null) {
+				logger.error("A worker writing " + action.getDescriptor() + " batches ended early. " + result);
+				throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+			}
+			logger.debug("Finished " + action.getDescriptor() + " batches. " + result);
+			return result;
+		});
+	}
+	
+	/**
+	 * Queues a batch for the workers.
+	 * 
+	 * @throws IllegalStateException Every worker has ended, so the batch would never be taken.
+	 */
+	private static <E> void handOver(BlockingQueue<E> queue, E batch, AtomicInteger liveWorkers) throws InterruptedException {
+		Assert.state(offer(queue, batch, liveWorkers), "Every worker thread has ended, no batch can be written anymore.");
 	}
 	
-	private synchronized void logSingleBatchComplete(String threadName) {
-		batchesComplete++;
-		if (batchesToBeCompleted == batchesComplete) {
-			threads.clear();
-			batchesComplete = 0;
-			logger.debug("Finished batches.");
-		} else {
-			logger.debug("Completed " + threadName + ". \tCompleted " + batchesComplete + " batches. ");
+	/**
+	 * Waits for room in the queue as long as any worker is alive to make room.
+	 * 
+	 * @return False if every worker has ended.
+	 */
+	private static <E> boolean offer(BlockingQueue<E> queue, E item, AtomicInteger liveWorkers) throws InterruptedException {
+		while (liveWorkers.get() > 0) {
+			if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void drain(BlockingQueue<List<T>> queue, BatchAction action, RunProgress run, AtomicInteger liveWorkers) {
+		try {
+			List<T> batch;
+			while ((batch = queue.take()) != endOfStream) {
+				write(batch, action, run);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			liveWorkers.decrementAndGet();
+		}
+	}
+	
+	private void write(List<T> batch, BatchAction action, RunProgress run) throws InterruptedException {
+		tuner.acquire();
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			if (action == BatchAction.SAVE) {
+				writer.save(batch);
+			} else {
+				writer.delete(batch);
+			}
+			success = true;
+		} catch (RuntimeException | Error ex) {
+			run.failed(batch.size(), ex);
+			logger.error("Failed to " + action.getDescriptor() + " a batch of " + batch.size() + " entities in " 
+					+ Thread.currentThread().getName() + ".", ex);
+			// Keep consuming after exceptions so the producer never waits on a queue nobody is draining. An error ends 
+			// the worker; the producer stops waiting once no worker is left.
+			if (ex instanceof Error) {
+				throw (Error) ex;
+			}
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			tuner.release();
+			tuner.record(batch.size(), elapsed, success);
+			if (run.meters != null) {
+				run.meters.record(batch.size(), elapsed, success);
+			}
+		}
+		
+		if (success) {
+			run.succeeded(batch.size());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Completed " + Thread.currentThread().getName() + ". \t" + run.describe() 
+						+ " Batch size " + tuner.getBatchSize() + ", concurrency " + tuner.getConcurrency() + ".");
+			}
 		}
 	}
 	
+	/**
+	 * @return A snapshot of the progress of the current or most recent run.
+	 */
+	public BatchResult getProgress() {
+		RunProgress run = currentRun;
+		return run == null ? new BatchResult(0, 0, 0, 0, 0, Collections.<Throwable>emptyList()) : run.snapshot();
+	}
+	
+	/**
+	 * @return The batch size the next batch will be cut to.
+	 */
 	public int getBatchSize() {
-		return batchSize;
+		return tuner.getBatchSize();
+	}
+	
+	public AdaptiveBatchTuner getTuner() {
+		return tuner;
+	}
+	
+	/**
+	 * @param registry The registry batch metrics are recorded in, or null to record none, which is the default.
+	 */
+	public void setMeterRegistry(MeterRegistry registry) {
+		this.registry = registry;
+	}
+	
+	public int getQueueCapacity() {
+		return queueCapacity;
 	}
 
-	public void setBatchSize(int batchSize) {
-		this.batchSize = batchSize;
+	/**
+	 * @param queueCapacity The maximum number of batches waiting for a worker thread. Defaults to twice the maximum 
+	 * 		concurrency.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		Assert.state(queueCapacity > 0, "The queue capacity must not be less than 1.");
+		this.queueCapacity = queueCapacity;
+	}
+	
+	/**
+	 * Lock-free progress of a single run.
+	 */
+	private static class RunProgress {
+		private final long startNanos = System.nanoTime();
+		private final long expectedRows;
+		private final BatchMeters meters;
+		private final AtomicLong batchesSucceeded = new AtomicLong();
+		private final AtomicLong batchesFailed = new AtomicLong();
+		private final AtomicLong rowsSucceeded = new AtomicLong();
+		private final AtomicLong rowsFailed = new AtomicLong();
+		private final Queue<Throwable> errors = new ConcurrentLinkedQueue<Throwable>();
+		private volatile BatchResult finished;
+		
+		RunProgress(long expectedRows, BatchMeters meters) {
+			this.expectedRows = expectedRows;
+			this.meters = meters;
+		}
+		
+		void succeeded(int rows) {
+			rowsSucceeded.addAndGet(rows);
+			batchesSucceeded.incrementAndGet();
+		}
+		
+		void failed(int rows, Throwable error) {
+			rowsFailed.addAndGet(rows);
+			if (batchesFailed.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+				errors.add(error);
+			}
+		}
+		
+		String describe() {
+			long rows = rowsSucceeded.get() + rowsFailed.get();
+			return "Completed " + (batchesSucceeded.get() + batchesFailed.get()) + " batches, " + rows 
+					+ (expectedRows < 0 ? "" : " of " + expectedRows) + " rows.";
+		}
+		
+		/**
+		 * Freezes the progress, so the throughput of a finished run no longer decays.
+		 */
+		BatchResult finish() {
+			finished = snapshot();
+			return finished;
+		}
+		
+		BatchResult snapshot() {
+			if (finished != null) {
+				return finished;
+			}
+			return new BatchResult(batchesSucceeded.get(), batchesFailed.get(), rowsSucceeded.get(), rowsFailed.get(), 
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), new ArrayList<Throwable>(errors));
+		}
+	}
+	
+	/**
+	 * The meters of the batches of one writer and action. Meters are shared by every communicator with the same tags.
+	 */
+	private static class BatchMeters {
+		private final Timer succeeded;
+		private final Timer failed;
+		private final Counter rowsSucceeded;
+		private final Counter rowsFailed;
+		private final DistributionSummary size;
+		
+		BatchMeters(MeterRegistry registry, String writer, BatchAction action) {
+			String writerTag = writer.toLowerCase(Locale.ROOT);
+			String actionTag = action.getDescriptor().toLowerCase(Locale.ROOT);
+			succeeded = latency(registry, writerTag, actionTag, "success");
+			failed = latency(registry, writerTag, actionTag, "failure");
+			rowsSucceeded = rows(registry, writerTag, actionTag, "success");
+			rowsFailed = rows(registry, writerTag, actionTag, "failure");
+			size = DistributionSummary.builder("batch.write.size").description("Entities per batch")
+					.tag("writer", writerTag).tag("action", actionTag).register(registry);
+		}
+		
+		private Timer latency(MeterRegistry registry, String writerTag, String actionTag, String outcome) {
+			return Timer.builder("batch.write.latency").description("Time taken to write a batch")
+					.tag("writer", writerTag).tag("action", actionTag).tag("outcome", outcome).register(registry);
+		}
+		
+		private Counter rows(MeterRegistry registry, String writerTag, String actionTag, String outcome) {
+			return Counter.builder("batch.write.rows").description("Entities written in batches").baseUnit("rows")
+					.tag("writer", writerTag).tag("action", actionTag).tag("outcome", outcome).register(registry);
+		}
+		
+		void record(int rows, long elapsedNanos, boolean success) {
+			(success ? succeeded : failed).record(elapsedNanos, TimeUnit.NANOSECONDS);
+			(success ? rowsSucceeded : rowsFailed).increment(rows);
+			size.record(rows);
+		}
+	}
+	
+	/**
+	 * Names worker threads after the writer and action they serve.
+	 */
+	private class BatchThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		private final BatchAction action;
+		
+		BatchThreadFactory(BatchAction action) {
+			this.action = action;
+		}
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new Thread(runnable, "batch-" + writer.getDescriptor() + "-" + action.getDescriptor() + "-" + count.incrementAndGet());
+		}
 	}
 	
 	/**
@@ -0,0 +1,76 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.Assert;
+
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Writes batches of vehicles through another {@link BatchWriter} and publishes a single
+ * {@link VehicleDataChangedEvent} per batch once it committed. The vehicles a batch overwrites are loaded with one
+ * query per batch before it is written, so the event lists them in their previous state without a lookup per vehicle.
+ *
+ * The event is published on the writing thread right after the commit, before anyone waiting for the batch is
+ * notified. A listener failing is logged rather than failing the committed batch.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class PublishingVehicleBatchWriter implements BatchWriter<Vehicle> {
+
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+
+	private final BatchWriter<Vehicle> writer;
+	private final VehicleRepository repo;
+	private final ApplicationEventPublisher publisher;
+
+	/**
+	 * @param writer The writer committing the batches.
+	 * @param repo The repository the previous state of overwritten vehicles is loaded from.
+	 * @param publisher The publisher of the change events.
+	 */
+	public PublishingVehicleBatchWriter(BatchWriter<Vehicle> writer, VehicleRepository repo, ApplicationEventPublisher publisher) {
+		Assert.notNull(writer, "The provided batch writer must not be null.");
+		Assert.notNull(repo, "The provided repository must not be null.");
+		Assert.notNull(publisher, "The provided event publisher must not be null.");
+		this.writer = writer;
+		this.repo = repo;
+		this.publisher = publisher;
+	}
+
+	@Override
+	public void save(List<Vehicle> batch) {
+		List<UUID> ids = batch.stream().map(Vehicle::getId).filter(Objects::nonNull).collect(Collectors.toList());
+		List<Vehicle> previous = ids.isEmpty() ? Collections.<Vehicle>emptyList() : repo.findAllById(ids);
+		writer.save(batch);
+		publish(VehicleDataChangedEvent.of(batch, previous));
+	}
+
+	@Override
+	public void delete(List<Vehicle> batch) {
+		writer.delete(batch);
+		publish(VehicleDataChangedEvent.deleted(batch));
+	}
+
+	@Override
+	public String getDescriptor() {
+		return writer.getDescriptor();
+	}
+
+	private void publish(VehicleDataChangedEvent event) {
+		try {
+			publisher.publishEvent(event);
+		} catch (RuntimeException ex) {
+			logger.error("Failed to apply a committed " + event + "." + System.lineSeparator() + ex.getMessage());
+		}
+	}
+}
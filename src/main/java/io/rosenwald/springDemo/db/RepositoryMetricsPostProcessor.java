@@ -0,0 +1,83 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times every method call of the Spring Data repositories, such as {@link VehicleRepository}, in the
+ * repository.invocations timer, tagged by repository, method, outcome, and exception. The timer is added as the first
+ * advice of the repository proxy, so the time includes opening and committing the transaction of the call.
+ *
+ * The meter registry is looked up on the first call. Injecting it into a post processor would create it before it
+ * could be post processed itself. Without a registry, calls are not timed.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+	private final ObjectProvider<MeterRegistry> registryProvider;
+	private volatile MeterRegistry registry;
+
+	public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> registryProvider) {
+		this.registryProvider = registryProvider;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof Repository && bean instanceof Advised) {
+			Advised proxy = (Advised) bean;
+			proxy.addAdvice(0, new TimingInterceptor(proxy.getProxiedInterfaces()[0].getSimpleName()));
+		}
+		return bean;
+	}
+
+	private MeterRegistry registry() {
+		if (registry == null) {
+			registry = registryProvider.getIfAvailable();
+		}
+		return registry;
+	}
+
+	private class TimingInterceptor implements MethodInterceptor {
+		private final String repository;
+
+		TimingInterceptor(String repository) {
+			this.repository = repository;
+		}
+
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			MeterRegistry registry = registry();
+			if (registry == null) {
+				return invocation.proceed();
+			}
+			long start = System.nanoTime();
+			Throwable error = null;
+			try {
+				return invocation.proceed();
+			} catch (Throwable ex) {
+				error = ex;
+				throw ex;
+			} finally {
+				Timer.builder("repository.invocations").description("Time taken by repository method calls")
+						.tag("repository", repository)
+						.tag("method", invocation.getMethod().getName())
+						.tag("outcome", error == null ? "success" : "error")
+						.tag("exception", error == null ? "none" : error.getClass().getSimpleName())
+						.register(registry).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+}
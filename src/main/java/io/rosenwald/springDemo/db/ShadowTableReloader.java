@@ -0,0 +1,110 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+import io.rosenwald.springDemo.DemoApplication;
+
+/**
+ * Reloads a table without readers ever seeing it empty or half filled. Data is loaded into a staging table with the
+ * same columns as the live table, the staging table's secondary indexes are built once the data is in, and the staging
+ * table is then swapped in for the live table with a single atomic RENAME TABLE. The old table is dropped afterwards,
+ * so there is no delete phase at all.
+ *
+ * Usage: {@link #prepare()}, load data into the returned staging table, then {@link #swap()} or {@link #abort()}.
+ *
+ * Rows written to the live table while the staging table is being loaded are lost with the swap, so callers keep
+ * writes out meanwhile, see {@link VehicleWriteGate}. Uses MariaDB/MySQL specific DDL.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class ShadowTableReloader {
+
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+
+	private static final String SECONDARY_INDEXES = "SELECT INDEX_NAME, NON_UNIQUE, COLUMN_NAME, SUB_PART FROM information_schema.STATISTICS "
+			+ "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME <> 'PRIMARY' ORDER BY INDEX_NAME, SEQ_IN_INDEX";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final String liveTable;
+	private final String stagingTable;
+	private final String oldTable;
+	private final Map<String, String> indexDefinitions = new LinkedHashMap<String, String>();
+
+	/**
+	 * @param jdbcTemplate The template used to issue the DDL statements.
+	 * @param liveTable The table readers are querying.
+	 */
+	public ShadowTableReloader(JdbcTemplate jdbcTemplate, String liveTable) {
+		Assert.notNull(jdbcTemplate, "The provided JdbcTemplate must not be null.");
+		Assert.state(liveTable != null && liveTable.matches("\\w+"), "The live table must be a plain table name.");
+		this.jdbcTemplate = jdbcTemplate;
+		this.liveTable = liveTable;
+		this.stagingTable = liveTable + "_staging";
+		this.oldTable = liveTable + "_old";
+	}
+
+	/**
+	 * Creates an empty staging table with the columns and primary key of the live table. Secondary indexes are left out
+	 * until {@link #swap()} so loading does not have to maintain them row by row. Leftovers of an earlier, interrupted
+	 * reload are dropped first.
+	 *
+	 * @return The name of the staging table to load data into.
+	 */
+	public String prepare() {
+		jdbcTemplate.execute("DROP TABLE IF EXISTS `" + stagingTable + "`, `" + oldTable + "`");
+		jdbcTemplate.execute("CREATE TABLE `" + stagingTable + "` LIKE `" + liveTable + "`");
+
+		indexDefinitions.clear();
+		Map<String, List<String>> columns = new LinkedHashMap<String, List<String>>();
+		Map<String, Boolean> unique = new LinkedHashMap<String, Boolean>();
+		jdbcTemplate.query(SECONDARY_INDEXES, rs -> {
+			String name = rs.getString("INDEX_NAME");
+			String column = "`" + rs.getString("COLUMN_NAME") + "`";
+			int subPart = rs.getInt("SUB_PART");
+			columns.computeIfAbsent(name, key -> new ArrayList<String>()).add(rs.wasNull() ? column : column + "(" + subPart + ")");
+			unique.put(name, rs.getInt("NON_UNIQUE") == 0);
+		}, stagingTable);
+
+		for (Map.Entry<String, List<String>> index : columns.entrySet()) {
+			String name = index.getKey();
+			indexDefinitions.put(name, (unique.get(name) ? "ADD UNIQUE INDEX `" : "ADD INDEX `") + name + "` ("
+					+ String.join(", ", index.getValue()) + ")");
+			jdbcTemplate.execute("ALTER TABLE `" + stagingTable + "` DROP INDEX `" + name + "`");
+		}
+		logger.debug("Prepared staging table " + stagingTable + ", deferring " + indexDefinitions.size() + " indexes.");
+		return stagingTable;
+	}
+
+	/**
+	 * Builds the deferred indexes of the staging table, swaps it in for the live table in one atomic rename, and drops
+	 * the old table. Readers keep seeing the old data until the rename.
+	 */
+	public void swap() {
+		if (!indexDefinitions.isEmpty()) {
+			jdbcTemplate.execute("ALTER TABLE `" + stagingTable + "` " + String.join(", ", indexDefinitions.values()));
+		}
+		jdbcTemplate.execute("RENAME TABLE `" + liveTable + "` TO `" + oldTable + "`, `" + stagingTable + "` TO `" + liveTable + "`");
+		jdbcTemplate.execute("DROP TABLE `" + oldTable + "`");
+		logger.debug("Swapped " + stagingTable + " in for " + liveTable + ".");
+	}
+
+	/**
+	 * Drops the staging table, leaving the live table untouched.
+	 */
+	public void abort() {
+		jdbcTemplate.execute("DROP TABLE IF EXISTS `" + stagingTable + "`");
+	}
+
+	public String getStagingTable() {
+		return stagingTable;
+	}
+}
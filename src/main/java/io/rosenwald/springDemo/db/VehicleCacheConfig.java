@@ -0,0 +1,63 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.Locale;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * A JavaConfig configuration class enabling the query result caches of the {@link VehicleRepository} lookups. The 
+ * cache provider, sizes, and expiry are configured through the spring.cache properties in application.properties; 
+ * Spring Boot registers hit, miss, and eviction metrics for every cache.
+ * 
+ * Cache keys ignore the case of makes and models like the database collation does. Every key includes the version of 
+ * the lookup's scope, see {@link VehicleCacheScopes}: a lookup racing with a write puts its possibly stale result 
+ * under the version it started with, which is never looked up again once the write's change event moved the scope to 
+ * a new version. {@link VehicleCacheInvalidator} moves only the scopes a change touched and evicts their old entries, 
+ * so the cached lookups of other years, makes, and models survive the change.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Configuration
+@EnableCaching
+public class VehicleCacheConfig {
+	
+	public static final String YEARS = "vehicleYears";
+	public static final String BY_YEAR_AND_MAKE = "vehiclesByYearAndMake";
+	public static final String BY_YEAR_AND_MAKE_AND_MODEL = "vehiclesByYearAndMakeAndModel";
+	public static final String STATS = "vehicleStats";
+	public static final String KEY_GENERATOR = "vehicleKeyGenerator";
+	
+	@Bean(KEY_GENERATOR)
+	public KeyGenerator vehicleKeyGenerator(VehicleCacheScopes scopes) {
+		return (target, method, params) -> scopes.key(params);
+	}
+	
+	/**
+	 * @param eTag The entity tag of the dataset version the call reads, see {@link VehicleDatasetVersion#getETag()}.
+	 * @param params The finder arguments.
+	 * @return The cache key of a finder call with the given arguments reading the given version.
+	 */
+	public static Object versionedKey(String eTag, Object... params) {
+		Object[] keyParams = new Object[params.length + 1];
+		keyParams[0] = eTag;
+		System.arraycopy(params, 0, keyParams, 1, params.length);
+		return key(keyParams);
+	}
+	
+	/**
+	 * @param params The finder arguments.
+	 * @return The cache key of a finder call with the given arguments.
+	 */
+	public static Object key(Object... params) {
+		Object[] normalized = new Object[params.length];
+		for (int i = 0; i < params.length; i++) {
+			normalized[i] = params[i] instanceof String ? ((String) params[i]).toLowerCase(Locale.ROOT) : params[i];
+		}
+		return new SimpleKey(normalized);
+	}
+}
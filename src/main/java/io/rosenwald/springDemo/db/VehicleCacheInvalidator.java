@@ -0,0 +1,69 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Evicts the query results a {@link VehicleDataChangedEvent} affects from the caches configured in 
+ * {@link VehicleCacheConfig}. For every saved or deleted vehicle only the scopes of its year and make, and of its 
+ * year, make, and model are moved to a new version, see {@link VehicleCacheScopes}, and their old entries evicted. The 
+ * list of years depends on every row and is evicted on any change, as are the statistics. Bulk changes move every 
+ * scope to a new version and clear the caches.
+ * 
+ * A lookup racing with a write may still put a result read before the write after it was evicted. It is put under the 
+ * old version of its scope and never served; it only takes up space until it expires or is evicted.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleCacheInvalidator {
+	
+	@Autowired
+	private CacheManager cacheManager;
+	
+	@Autowired
+	private VehicleCacheScopes scopes;
+	
+	// After the derived models, right before the dataset version.
+	@Order(Ordered.LOWEST_PRECEDENCE - 1)
+	@EventListener
+	public void onVehicleDataChanged(VehicleDataChangedEvent event) {
+		Cache years = cacheManager.getCache(VehicleCacheConfig.YEARS);
+		Cache byYearAndMake = cacheManager.getCache(VehicleCacheConfig.BY_YEAR_AND_MAKE);
+		Cache byYearAndMakeAndModel = cacheManager.getCache(VehicleCacheConfig.BY_YEAR_AND_MAKE_AND_MODEL);
+		Cache stats = cacheManager.getCache(VehicleCacheConfig.STATS);
+		
+		if (stats != null) {
+			stats.clear();
+		}
+		if (event.isBulk()) {
+			scopes.bumpAll();
+			if (years != null) years.clear();
+			if (byYearAndMake != null) byYearAndMake.clear();
+			if (byYearAndMakeAndModel != null) byYearAndMakeAndModel.clear();
+			return;
+		}
+		
+		evict(years, scopes.bump());
+		Stream.concat(event.getSaved().stream(), event.getDeleted().stream()).forEach((Vehicle vehicle) -> {
+			evict(byYearAndMake, scopes.bump(vehicle.getYear(), vehicle.getMake()));
+			evict(byYearAndMakeAndModel, scopes.bump(vehicle.getYear(), vehicle.getMake(), vehicle.getModel()));
+		});
+	}
+	
+	private static void evict(Cache cache, Object key) {
+		if (cache != null) {
+			cache.evict(key);
+		}
+	}
+}
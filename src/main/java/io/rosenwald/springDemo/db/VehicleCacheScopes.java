@@ -0,0 +1,64 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * The versions of the scopes the vehicle lookup caches are invalidated in, see {@link VehicleCacheConfig}. The scope of 
+ * a lookup is its arguments: a year and make, a year, make, and model, or none for the list of years. Every cache key 
+ * includes the version of its scope, so a change only makes the keys of the scopes it touched unreachable. A bulk 
+ * change bumps a generation every key includes as well.
+ * 
+ * Versions are never reset, so a key is never reused for a later version of its scope.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleCacheScopes {
+	
+	private final AtomicLong generation = new AtomicLong();
+	private final ConcurrentMap<Object, Long> versions = new ConcurrentHashMap<Object, Long>();
+	
+	/**
+	 * @param params The lookup arguments, which are also its scope.
+	 * @return The cache key of a lookup with the given arguments reading the current version of its scope.
+	 */
+	public Object key(Object... params) {
+		return versionedKey(generation.get(), versions.getOrDefault(VehicleCacheConfig.key(params), 0L), params);
+	}
+	
+	/**
+	 * Moves the scope of the given lookup arguments to a new version.
+	 * 
+	 * @param params The lookup arguments.
+	 * @return The key the lookup had before, see {@link #key(Object...)}.
+	 */
+	public Object bump(Object... params) {
+		long currentGeneration = generation.get();
+		long[] previous = new long[1];
+		versions.compute(VehicleCacheConfig.key(params), (scope, version) -> {
+			previous[0] = version == null ? 0L : version;
+			return previous[0] + 1;
+		});
+		return versionedKey(currentGeneration, previous[0], params);
+	}
+	
+	/**
+	 * Moves every scope to a new version.
+	 */
+	public void bumpAll() {
+		generation.incrementAndGet();
+	}
+	
+	private static Object versionedKey(long generation, long version, Object... params) {
+		Object[] keyParams = new Object[params.length + 2];
+		keyParams[0] = generation;
+		keyParams[1] = version;
+		System.arraycopy(params, 0, keyParams, 2, params.length);
+		return VehicleCacheConfig.key(keyParams);
+	}
+}
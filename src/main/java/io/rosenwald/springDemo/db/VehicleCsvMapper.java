@@ -0,0 +1,141 @@
+package io.rosenwald.springDemo.db;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.util.Assert;
+import org.springframework.util.NumberUtils;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Validates and maps single rows of the U.S. Department of Energy vehicle CSV file to {@link Vehicle} entities.
+ *
+ * Column indexes are resolved once from the header of the file so mapping a row does not require any map lookups.
+ * Instances are immutable and may be shared between threads.
+ * 
+ * Vehicle IDs are derived from the DOE's own numeric vehicle ID, so the same row keeps the same ID across imports. 
+ * Every mapped vehicle also carries a hash of its imported data, see {@link Vehicle#getContentHash()}.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class VehicleCsvMapper {
+	
+	/**
+	 * Fills the low 64 bits of IDs derived from DOE vehicle IDs. Reads "DOE-VEHC" in ASCII.
+	 */
+	private static final long SOURCE_ID_NAMESPACE = 0x444f452d56454843L;
+	private static final char SEPARATOR = '\u001f';
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final int idCol;
+	private final int yearCol;
+	private final int makeCol;
+	private final int modelCol;
+	private final int driveCol;
+	private final int tranyCol;
+	private final int cylCol;
+	private final int displCol;
+	private final int altCol;
+	private final int evCol;
+
+	/**
+	 * @param headerMap The header map of the CSV file, see {@link org.apache.commons.csv.CSVParser#getHeaderMap()}.
+	 * @throws IllegalArgumentException The header map is null.
+	 * @throws IllegalStateException A required column is missing from the header.
+	 */
+	public VehicleCsvMapper(Map<String, Integer> headerMap) throws IllegalArgumentException, IllegalStateException {
+		Assert.notNull(headerMap, "The CSV header map must not be null.");
+		idCol 		= column(headerMap, "id");
+		yearCol 	= column(headerMap, "year");
+		makeCol 	= column(headerMap, "make");
+		modelCol 	= column(headerMap, "model");
+		driveCol 	= column(headerMap, "drive");
+		tranyCol 	= column(headerMap, "trany");
+		cylCol 		= column(headerMap, "cylinders");
+		displCol 	= column(headerMap, "displ");
+		altCol		= column(headerMap, "atvType");
+		evCol 		= column(headerMap, "evMotor");
+	}
+
+	/**
+	 * Maps a single CSV row to a vehicle.
+	 *
+	 * @param record The CSV row.
+	 * @return The mapped vehicle, or null if the row is missing its ID, year, make, or model or if the ID, year, 
+	 * 		cylinders, or displacement are improper. Only complete numeric data is stored.
+	 */
+	public Vehicle map(CSVRecord record) {
+		String sourceId = record.get(idCol);
+		String year = record.get(yearCol);
+		String make = record.get(makeCol);
+		String model = record.get(modelCol);
+		if (sourceId == null || sourceId.isEmpty() || year == null || year.isEmpty() || make == null || make.isEmpty() 
+				|| model == null || model.isEmpty()) {
+			return null;
+		}
+
+		try {
+			Vehicle vehicle = new Vehicle(deriveId(NumberUtils.parseNumber(sourceId, Long.class)), 
+					NumberUtils.parseNumber(year, Integer.class), make, model, record.get(driveCol), record.get(tranyCol), 
+					NumberUtils.parseNumber(record.get(cylCol), Integer.class), 
+					NumberUtils.parseNumber(record.get(displCol), Float.class), record.get(altCol), record.get(evCol));
+			vehicle.setContentHash(contentHash(vehicle));
+			return vehicle;
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Derives a stable vehicle ID from the DOE's numeric vehicle ID. The DOE ID forms the high 64 bits, so IDs sort in 
+	 * the order the DOE assigned them.
+	 * 
+	 * @param sourceId The DOE vehicle ID.
+	 * @return The vehicle ID.
+	 */
+	public static UUID deriveId(long sourceId) {
+		return new UUID(sourceId, SOURCE_ID_NAMESPACE);
+	}
+	
+	/**
+	 * Hashes every imported field of a vehicle.
+	 * 
+	 * @param vehicle The vehicle to hash.
+	 * @return The hex encoded SHA-256 hash of the vehicle's data, excluding its ID.
+	 */
+	public static String contentHash(Vehicle vehicle) {
+		StringBuilder content = new StringBuilder(128)
+				.append(vehicle.getYear()).append(SEPARATOR)
+				.append(vehicle.getMake()).append(SEPARATOR)
+				.append(vehicle.getModel()).append(SEPARATOR)
+				.append(vehicle.getDrive()).append(SEPARATOR)
+				.append(vehicle.getTransmission()).append(SEPARATOR)
+				.append(vehicle.getCylinders()).append(SEPARATOR)
+				.append(vehicle.getDisplacement()).append(SEPARATOR)
+				.append(vehicle.getAltType()).append(SEPARATOR)
+				.append(vehicle.getEvMotor());
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+			char[] hex = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+				hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not available.", ex);
+		}
+	}
+
+	private static int column(Map<String, Integer> headerMap, String name) {
+		Integer index = headerMap.get(name);
+		Assert.state(index != null, "The CSV header is missing the column '" + name + "'.");
+		return index;
+	}
+}
@@ -0,0 +1,95 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Published through the application context after vehicle data was written, so anything derived from the vehicle 
+ * table can be brought up to date. Listeners are notified synchronously on the writing thread after the write 
+ * committed, in the order of their {@link org.springframework.core.annotation.Order}: the derived models first, then 
+ * the cache invalidation, and the {@link VehicleDatasetVersion} last, so a new version is only ever served together 
+ * with the new data.
+ * 
+ * An event either lists the individual vehicles that were saved and deleted, or signals a bulk change like an import 
+ * after which all vehicle data must be considered changed. A vehicle that was overwritten is listed as deleted in its 
+ * previous state and as saved in its new state. Deleted vehicles are only guaranteed to carry their ID, year, make, and 
+ * model.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class VehicleDataChangedEvent {
+	
+	private final List<Vehicle> saved;
+	private final List<Vehicle> deleted;
+	private final boolean bulk;
+	
+	private VehicleDataChangedEvent(Collection<Vehicle> saved, Collection<Vehicle> deleted, boolean bulk) {
+		this.saved = Collections.unmodifiableList(new ArrayList<Vehicle>(saved));
+		this.deleted = Collections.unmodifiableList(new ArrayList<Vehicle>(deleted));
+		this.bulk = bulk;
+	}
+	
+	/**
+	 * @param vehicles The vehicles as they were saved.
+	 * @return An event for individually saved vehicles.
+	 */
+	public static VehicleDataChangedEvent saved(Collection<Vehicle> vehicles) {
+		return new VehicleDataChangedEvent(vehicles, Collections.emptyList(), false);
+	}
+	
+	/**
+	 * @param vehicles The vehicles as they were before they were deleted.
+	 * @return An event for individually deleted vehicles.
+	 */
+	public static VehicleDataChangedEvent deleted(Collection<Vehicle> vehicles) {
+		return new VehicleDataChangedEvent(Collections.emptyList(), vehicles, false);
+	}
+	
+	/**
+	 * @param saved The vehicles as they were saved.
+	 * @param deleted The vehicles deleted or overwritten, in their previous state.
+	 * @return An event for individually saved and deleted vehicles.
+	 */
+	public static VehicleDataChangedEvent of(Collection<Vehicle> saved, Collection<Vehicle> deleted) {
+		return new VehicleDataChangedEvent(saved, deleted, false);
+	}
+	
+	/**
+	 * @return An event for a change of any number of vehicles, e.g. an import.
+	 */
+	public static VehicleDataChangedEvent bulk() {
+		return new VehicleDataChangedEvent(Collections.emptyList(), Collections.emptyList(), true);
+	}
+
+	/**
+	 * @return The saved vehicles. Empty for bulk changes.
+	 */
+	public List<Vehicle> getSaved() {
+		return saved;
+	}
+
+	/**
+	 * @return The deleted vehicles. Empty for bulk changes.
+	 */
+	public List<Vehicle> getDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * @return True if any vehicle may have changed, not just the listed ones.
+	 */
+	public boolean isBulk() {
+		return bulk;
+	}
+	
+	@Override
+	public String toString() {
+		return bulk ? "VehicleDataChangedEvent[bulk]" 
+				: "VehicleDataChangedEvent[saved=" + saved.size() + ", deleted=" + deleted.size() + "]";
+	}
+}
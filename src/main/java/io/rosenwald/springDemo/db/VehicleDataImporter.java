@@ -1,24 +1,49 @@
 package io.rosenwald.springDemo.db;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.util.NumberUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.rosenwald.springDemo.DemoApplication;
 import io.rosenwald.springDemo.entities.Vehicle;
 
@@ -26,6 +51,11 @@ import io.rosenwald.springDemo.entities.Vehicle;
  * Imports vehicle data from a CSV file provided by the U.S. Department of Energy. 
  * This component will run on application start up, but will not run during testing.
  * 
+ * Imports run on a background thread, so they do not hold up the start of the application context or the deployment 
+ * of the WAR. The first import starts once the application is ready, later ones can be started through 
+ * {@link #start(ImportMode)}. Until the first import is done, {@link VehicleImportHealthIndicator} reports the 
+ * application as loading. Only one import runs at a time.
+ * 
  * @author Nathaniel Rosenwald
  *
  */
@@ -36,96 +66,498 @@ public class VehicleDataImporter {
 	@Autowired
 	private VehicleRepository repository;
 	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	private DataSource dataSource;
+	
+	@Autowired
+	private VehicleLookupTables lookupTables;
+	
+	@Autowired
+	private ApplicationEventPublisher publisher;
+	
+	@Autowired
+	private VehicleWriteGate writeGate;
+	
+	@Autowired
+	private MeterRegistry registry;
+	
+	/**
+	 * Either "jpa" to persist through {@link VehicleRepository#saveAll(Iterable)} or "jdbc" to use JDBC batch statements, 
+	 * see {@link io.rosenwald.springDemo.db.JdbcVehicleBatchWriter}.
+	 */
+	@Value("${io.rosenwald.springDemo.db.import.writer:jpa}")
+	private String writerType;
+	
+	/**
+	 * See {@link ImportMode}.
+	 */
+	@Value("${io.rosenwald.springDemo.db.import.mode:replace}")
+	private String mode;
+	
+	@Value("${io.rosenwald.springDemo.db.import.batch-size:1000}")
+	private int batchSize;
+	
+	/**
+	 * Connections of the pool left for REST requests while importing. The rest bound the number of concurrent batches.
+	 */
+	@Value("${io.rosenwald.springDemo.db.import.reserved-connections:10}")
+	private int reservedConnections;
+	
+	@Value("${io.rosenwald.springDemo.db.import.queue-capacity:16}")
+	private int queueCapacity;
+	
 	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
-
+	
+	/**
+	 * Incremental imports changing more vehicles than this publish a bulk change instead of listing every vehicle.
+	 */
+	private static final int MAX_LISTED_CHANGES = 1000;
+	
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "vehicle-import");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicBoolean running = new AtomicBoolean();
+	
+	private volatile ImportState state = ImportState.PENDING;
+	private volatile ImportMode currentMode;
+	private volatile Date started;
+	private volatile Date finished;
+	private volatile String error;
+	private volatile boolean loaded;
+	private volatile MultithreadedRepositoryCommunicator<Vehicle> communicator;
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void onReady() {
+		start(null);
+	}
+	
+	/**
+	 * Starts importing the CSV file in the background unless an import is already running.
+	 * 
+	 * @param importMode The way to import the data, or null for the configured {@link ImportMode}.
+	 * @return True if the import was started, false if another import is still running.
+	 * @throws IllegalArgumentException No mode is given and the configured mode is unknown.
+	 */
+	public boolean start(ImportMode importMode) {
+		// Resolved before claiming the importer, so an unknown configured mode cannot leave it marked as running.
+		ImportMode resolvedMode = importMode != null ? importMode : ImportMode.fromProperty(mode);
+		if (!running.compareAndSet(false, true)) {
+			return false;
+		}
+		currentMode = resolvedMode;
+		started = new Date();
+		finished = null;
+		error = null;
+		communicator = null;
+		state = ImportState.RUNNING;
+		executor.execute(() -> run(currentMode));
+		return true;
+	}
+	
+	/**
+	 * Imports the CSV file according to the given {@link ImportMode} and publishes the resulting 
+	 * {@link VehicleDataChangedEvent}.
+	 */
 	//TODO: Apply much safer exception handling.
-	@PostConstruct
-	public void onStart() {
-		CSVParser parser = null;
+	private void run(ImportMode importMode) {
 		try {
-			parser = CSVParser.parse(new ClassPathResource("data/vehicles.csv").getFile(), Charset.forName("US-ASCII"), CSVFormat.EXCEL.withHeader());
-		} catch (IOException ex) {
-			logger.error("Could not find vehicle data for import." + System.lineSeparator() + ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
+			switch (importMode) {
+			case SHADOW:
+				reloadShadowTable();
+				publisher.publishEvent(VehicleDataChangedEvent.bulk());
+				break;
+			case INCREMENTAL:
+				publisher.publishEvent(importIncrementally());
+				break;
+			default:
+				replaceInPlace();
+				publisher.publishEvent(VehicleDataChangedEvent.bulk());
+			}
+		} catch (RuntimeException ex) {
+			fail("Vehicle import failed.", ex);
+		} finally {
+			finished = new Date();
+			if (error == null) {
+				loaded = true;
+				state = ImportState.COMPLETED;
+			} else {
+				state = ImportState.FAILED;
+			}
+			long elapsed = finished.getTime() - started.getTime();
+			logger.info("Vehicle import " + state + " after " + elapsed + "ms.");
+			Timer.builder("vehicles.import").description("Time taken to import the CSV file")
+					.tag("mode", importMode.name().toLowerCase(Locale.ROOT)).tag("outcome", state.name().toLowerCase(Locale.ROOT))
+					.register(registry).record(elapsed, TimeUnit.MILLISECONDS);
+			running.set(false);
+		}
+	}
+	
+	/**
+	 * Records why the running import failed.
+	 */
+	private void fail(String message, Exception cause) {
+		error = cause == null ? message : message + " " + cause.getMessage();
+		logger.error(error);
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * @return A snapshot of the current or most recent import.
+	 */
+	public ImportProgress getProgress() {
+		MultithreadedRepositoryCommunicator<Vehicle> current = communicator;
+		return new ImportProgress(state, currentMode, started, finished, loaded, error, 
+				current == null ? null : current.getProgress());
+	}
+	
+	/**
+	 * @return True once an import has completed, so the vehicle table holds the CSV data.
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+	
+	/**
+	 * Deletes every vehicle from the live table with a single statement and imports the CSV file into it. Readers see an 
+	 * empty or partially filled table until the import is done. The import is abandoned if the delete fails, which 
+	 * leaves the existing vehicles untouched.
+	 */
+	private void replaceInPlace() {
+		try {
+			logger.info("Deleted " + repository.deleteAllVehicles() + " vehicle records.");
+		} catch (RuntimeException ex) {
+			fail("Failed to delete the existing vehicle records.", ex);
 			return;
 		}
-		int yearCol 	= parser.getHeaderMap().get("year");
-		int makeCol 	= parser.getHeaderMap().get("make");
-		int modelCol 	= parser.getHeaderMap().get("model");
-		int driveCol 	= parser.getHeaderMap().get("drive");
-		int tranyCol 	= parser.getHeaderMap().get("trany");
-		int cylCol 		= parser.getHeaderMap().get("cylinders");
-		int displCol 	= parser.getHeaderMap().get("displ");
-		int altCol		= parser.getHeaderMap().get("atvType");
-		int evCol 		= parser.getHeaderMap().get("evMotor");
-		
-		MultithreadedRepositoryCommunicator<Vehicle> communicator = new MultithreadedRepositoryCommunicator<Vehicle>(repository, 1000);
+		importCsv(createCommunicator(createWriter()), UnaryOperator.identity());
+	}
+	
+	/**
+	 * Imports the CSV file into a staging table and swaps it in for the live table once it is complete, see 
+	 * {@link io.rosenwald.springDemo.db.ShadowTableReloader}. Readers keep seeing the old data until the swap. The 
+	 * staging table is always loaded with JDBC batch statements as JPA can only write to the live table.
+	 * 
+	 * The {@link VehicleWriteGate} is closed from before the staging table is created until after the swap, so no write 
+	 * to the live table is lost with it. Writes are turned away meanwhile.
+	 */
+	private void reloadShadowTable() {
 		try {
-			communicator.start(repository.findAll(), MultithreadedRepositoryCommunicator.BatchAction.DELETE);
-		} catch (IllegalArgumentException | IllegalStateException | InterruptedException ex) {
-			// Swallow exception. 
+			writeGate.close();
+		} catch (InterruptedException ex) {
+			writeGate.open();
+			Thread.currentThread().interrupt();
+			fail("Interrupted while waiting for the writes to the vehicle table to finish.", ex);
+			return;
+		}
+		try {
+			ShadowTableReloader reloader = new ShadowTableReloader(jdbcTemplate, JdbcVehicleBatchWriter.TABLE);
+			String stagingTable = reloader.prepare();
+			BatchResult saved = importCsv(createCommunicator(new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables, stagingTable)), 
+					UnaryOperator.identity());
+			if (saved != null && saved.isSuccessful() && saved.getRowsSucceeded() > 0) {
+				reloader.swap();
+				logger.info("Swapped freshly imported vehicle records in for the old ones.");
+			} else {
+				reloader.abort();
+				fail("Vehicle import incomplete, keeping the existing vehicle records.", null);
+			}
+		} finally {
+			writeGate.open();
+		}
+	}
+	
+	/**
+	 * Writes only the vehicles whose content changed since the last import. Vehicle IDs are derived from the DOE's 
+	 * vehicle IDs and every imported row carries a hash of its data (see 
+	 * {@link io.rosenwald.springDemo.db.VehicleCsvMapper}), so a row is inserted if its ID is unknown, updated if its 
+	 * hash differs, and skipped otherwise. Vehicles missing from the file are deleted once every change has been saved.
+	 * 
+	 * Only the ID, hash, year, make, and model of the existing vehicles are held in memory.
+	 * 
+	 * @return The change event listing the inserted, updated, and deleted vehicles, or a bulk change if there are more 
+	 * 		than {@link #MAX_LISTED_CHANGES} or the import failed.
+	 */
+	private VehicleDataChangedEvent importIncrementally() {
+		Map<UUID, ExistingVehicle> existing = new HashMap<UUID, ExistingVehicle>();
+		jdbcTemplate.query("SELECT id, content_hash, year, make, model FROM " + JdbcVehicleBatchWriter.TABLE, (ResultSet rs) -> { 
+			UUID id = JdbcVehicleBatchWriter.toUuid(rs.getBytes(1));
+			existing.put(id, new ExistingVehicle(id, rs.getString(2), rs.getInt(3), rs.getString(4), rs.getString(5))); 
+		});
+		
+		JdbcVehicleBatchWriter writer = new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables, 
+				JdbcVehicleBatchWriter.TABLE, true);
+		Set<UUID> seen = new HashSet<UUID>();
+		DeltaCounts counts = new DeltaCounts();
+		BatchResult saved = importCsv(createCommunicator(writer), vehicles -> vehicles.filter(vehicle -> {
+			if (!seen.add(vehicle.getId())) {
+				return false;
+			}
+			ExistingVehicle previous = existing.remove(vehicle.getId());
+			if (previous == null) {
+				counts.inserted++;
+				counts.track(vehicle, null);
+				return true;
+			} else if (!vehicle.getContentHash().equals(previous.contentHash)) {
+				counts.updated++;
+				counts.track(vehicle, previous.toVehicle());
+				return true;
+			}
+			counts.unchanged++;
+			return false;
+		}));
+		if (saved == null || !saved.isSuccessful()) {
+			fail("Incremental vehicle import incomplete, keeping vehicle records missing from the CSV data.", null);
+			return VehicleDataChangedEvent.bulk();
 		}
 		
+		List<UUID> stale = new ArrayList<UUID>(existing.keySet());
+		for (int i = 0; i < stale.size(); i += batchSize) {
+			writer.deleteByIds(stale.subList(i, Math.min(stale.size(), i + batchSize)));
+		}
+		existing.values().forEach(vehicle -> counts.track(null, vehicle.toVehicle()));
+		logger.info("Incremental vehicle import: " + counts.inserted + " inserted, " + counts.updated + " updated, " 
+				+ stale.size() + " deleted, " + counts.unchanged + " unchanged.");
+		return counts.overflowed ? VehicleDataChangedEvent.bulk() : VehicleDataChangedEvent.of(counts.saved, counts.deleted);
+	}
+	
+	/**
+	 * Streams the CSV file through parsing, validation, and mapping straight into the batch communicator. Records are 
+	 * read one at a time and handed over in batches through a bounded queue, so heap use does not depend on the size of 
+	 * the file and persisting overlaps with parsing.
+	 * 
+	 * @param communicator The communicator persisting the vehicles.
+	 * @param filter Applied to the stream of mapped vehicles before they are handed to the communicator.
+	 * @return The result of persisting the vehicles, or null if the file could not be read.
+	 */
+	private BatchResult importCsv(MultithreadedRepositoryCommunicator<Vehicle> communicator, UnaryOperator<Stream<Vehicle>> filter) {
 		Date start = new Date();
-		List<Vehicle> vehiclesToStore = new ArrayList<Vehicle>();
-		try {
-			parser.getRecords().parallelStream().forEach(record -> {
-				if (record.get(yearCol) != null && !record.get(yearCol).isEmpty() && record.get(makeCol) != null && 
-						!record.get(makeCol).isEmpty() && record.get(modelCol) != null && !record.get(modelCol).isEmpty()) {
-					try {
-						int year = NumberUtils.parseNumber(record.get(yearCol), Integer.class);
-						String make = record.get(makeCol);
-						String model = record.get(modelCol);
-						String drive = record.get(driveCol);
-						String transmission = record.get(tranyCol);
-						int cylinders = NumberUtils.parseNumber(record.get(cylCol), Integer.class);
-						float displacement = NumberUtils.parseNumber(record.get(displCol), Float.class);
-						String altType = record.get(altCol);
-						String evMotor = record.get(evCol);
-						
-						vehiclesToStore.add(new Vehicle(year, make, model, drive, transmission, cylinders, displacement, altType, evMotor));
-					} catch (NumberFormatException ex) {
-						// Do nothing, don't store the vehicle data if the year, cylinders, or displacement are improper. 
-						// Only want complete numeric data.
-					}
-				}
-			});
+		try (CSVParser parser = new CSVParser(new BufferedReader(new InputStreamReader(
+				new ClassPathResource("data/vehicles.csv").getInputStream(), Charset.forName("US-ASCII"))), 
+				CSVFormat.EXCEL.withHeader())) {
+			VehicleCsvMapper mapper = new VehicleCsvMapper(parser.getHeaderMap());
+			Iterator<Vehicle> vehicles = filter.apply(StreamSupport.stream(parser.spliterator(), false)
+					.map(mapper::map)
+					.filter(Objects::nonNull))
+					.iterator();
+			
+			logger.info("Streaming vehicle records to database...");
+			BatchResult saved = communicator.startStreaming(vehicles, MultithreadedRepositoryCommunicator.BatchAction.SAVE).join();
+			logger.debug("CSV import took " + (new Date().getTime() - start.getTime()) + "ms");
+			if (saved.isSuccessful()) {
+				logger.info(saved.getRowsSucceeded() + " vehicle records saved. " + saved);
+			} else {
+				fail(saved.getRowsFailed() + " vehicle records failed to save. " + saved, null);
+			}
+			return saved;
 		} catch (IOException ex) {
-			logger.error("Failed to parse the CSV data." + System.lineSeparator() + ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
+			fail("Could not read vehicle data for import.", ex);
+		} catch (IllegalArgumentException | IllegalStateException | InterruptedException ex) {
+			fail("Failed to persist all CSV vehicle data.", ex);
 		}
-		logger.debug("CSV parsing took " + (new Date().getTime() - start.getTime()) + "ms");
-		vehiclesToStore.removeIf(Objects::isNull);
-		logger.info("Saving " + vehiclesToStore.size() + " vehicle records to database...");
+		return null;
+	}
+	
+	private MultithreadedRepositoryCommunicator<Vehicle> createCommunicator(BatchWriter<Vehicle> writer) {
+		MultithreadedRepositoryCommunicator<Vehicle> communicator = new MultithreadedRepositoryCommunicator<Vehicle>(writer, 
+				batchSize, MultithreadedRepositoryCommunicator.poolBoundedConcurrency(dataSource, reservedConnections));
+		communicator.setQueueCapacity(queueCapacity);
+		communicator.setMeterRegistry(registry);
+		this.communicator = communicator;
+		return communicator;
+	}
+	
+	private BatchWriter<Vehicle> createWriter() {
+		if ("jdbc".equalsIgnoreCase(writerType)) {
+			return new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables);
+		}
+		return new JpaBatchWriter<Vehicle>(repository);
+	}
+	
+	/**
+	 * Row counts and changed vehicles of an incremental import, only touched by the thread parsing the CSV file.
+	 */
+	private static class DeltaCounts {
+		long inserted;
+		long updated;
+		long unchanged;
+		final List<Vehicle> saved = new ArrayList<Vehicle>();
+		final List<Vehicle> deleted = new ArrayList<Vehicle>();
+		boolean overflowed;
 		
-		//Multi-threaded, fixed size batching.
-		try {
-			communicator.start(vehiclesToStore, MultithreadedRepositoryCommunicator.BatchAction.SAVE);
-		} catch (IllegalArgumentException | IllegalStateException | InterruptedException ex) {
-			logger.error("Failed to persist all CSV vehicle data." + System.lineSeparator() + ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
+		/**
+		 * Lists a changed vehicle for the change event until {@link VehicleDataImporter#MAX_LISTED_CHANGES} is exceeded.
+		 */
+		void track(Vehicle savedVehicle, Vehicle deletedVehicle) {
+			if (overflowed) return;
+			if (savedVehicle != null) saved.add(savedVehicle);
+			if (deletedVehicle != null) deleted.add(deletedVehicle);
+			if (saved.size() + deleted.size() > MAX_LISTED_CHANGES) {
+				overflowed = true;
+				saved.clear();
+				deleted.clear();
+			}
+		}
+	}
+	
+	/**
+	 * The parts of an existing vehicle an incremental import needs to detect and announce changes.
+	 */
+	private static class ExistingVehicle {
+		final UUID id;
+		final String contentHash;
+		final int year;
+		final String make;
+		final String model;
+		
+		ExistingVehicle(UUID id, String contentHash, int year, String make, String model) {
+			this.id = id;
+			this.contentHash = contentHash;
+			this.year = year;
+			this.make = make;
+			this.model = model;
+		}
+		
+		Vehicle toVehicle() {
+			return new Vehicle(id, year, make, model, null, null, 0, 0, null, null);
+		}
+	}
+	
+	/**
+	 * A snapshot of the current or most recent import, see {@link VehicleDataImporter#getProgress()}.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static class ImportProgress {
+		
+		private final ImportState state;
+		private final ImportMode mode;
+		private final Date started;
+		private final Date finished;
+		private final boolean loaded;
+		private final String error;
+		private final BatchResult batches;
+		
+		ImportProgress(ImportState state, ImportMode mode, Date started, Date finished, boolean loaded, String error, 
+				BatchResult batches) {
+			this.state = state;
+			this.mode = mode;
+			this.started = started;
+			this.finished = finished;
+			this.loaded = loaded;
+			this.error = error;
+			this.batches = batches;
+		}
+
+		public ImportState getState() {
+			return state;
+		}
+
+		public ImportMode getMode() {
+			return mode;
+		}
+
+		public Date getStarted() {
+			return started;
+		}
+
+		public Date getFinished() {
+			return finished;
+		}
+
+		/**
+		 * @return True once any import has completed.
+		 */
+		public boolean isLoaded() {
+			return loaded;
+		}
+
+		/**
+		 * @return Why the import failed, or null.
+		 */
+		public String getError() {
+			return error;
 		}
 		
-		//Single-thread, fixed size batching.
-//		List<Vehicle> queue = new ArrayList<Vehicle>();
-//		AtomicInteger savedBatches = new AtomicInteger();
-//		vehiclesToStore.forEach(vehicle -> {
-//			queue.add(vehicle);
-//			if (queue.size() == 100) {
-//				repository.saveAll(queue);
-//				logger.debug(savedBatches.incrementAndGet()*100 + "vehicles saved.");
-//				queue.clear();
-//			}
-//		});
-//		
+		/**
+		 * @return The number of vehicles deleted or saved so far by the current batch operation of the import.
+		 */
+		public long getRowsSucceeded() {
+			return batches == null ? 0 : batches.getRowsSucceeded();
+		}
+		
+		/**
+		 * @return The number of vehicles that failed to be deleted or saved so far by the current batch operation.
+		 */
+		public long getRowsFailed() {
+			return batches == null ? 0 : batches.getRowsFailed();
+		}
 		
-		//Parallel queuing, Single-threaded persisting, no batching.
-//		AtomicInteger count = new AtomicInteger(vehiclesToStore.size());
-//		vehiclesToStore.parallelStream().forEach(vehicle -> {
-//			repository.save(vehicle);
-//			if ((count.get() % 20) == 0) logger.debug(count.get() + "vehicles left.");
-//			count.decrementAndGet();
-//		});
-//		repository.saveAll(vehiclesToStore);
+		/**
+		 * @return The throughput of the current batch operation.
+		 */
+		public double getRowsPerSecond() {
+			return batches == null ? 0 : batches.getRowsPerSecond();
+		}
+	}
+	
+	/**
+	 * The states of the importer.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static enum ImportState {
+		/**
+		 * No import has been started yet.
+		 */
+		PENDING,
+		RUNNING,
+		COMPLETED,
+		FAILED;
+	}
+	
+	/**
+	 * Possible ways to import the vehicle data.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static enum ImportMode {
+		/**
+		 * Delete every vehicle from the live table, then import into it.
+		 */
+		REPLACE,
+		/**
+		 * Import into a staging table, then atomically swap it in for the live table. Writes to the live table are 
+		 * turned away until the swap, see {@link VehicleWriteGate}.
+		 */
+		SHADOW,
+		/**
+		 * Insert, update, and delete only the vehicles that changed since the last import.
+		 */
+		INCREMENTAL;
 		
-		logger.info("All vehicle records saved.");
+		/**
+		 * @param value A mode name, case is ignored.
+		 * @return The mode, {@link #REPLACE} if the value is empty.
+		 * @throws IllegalArgumentException The mode is unknown.
+		 */
+		public static ImportMode fromProperty(String value) throws IllegalArgumentException {
+			return value == null || value.isEmpty() ? REPLACE : valueOf(value.trim().toUpperCase(Locale.ROOT));
+		}
 	}
 
 }
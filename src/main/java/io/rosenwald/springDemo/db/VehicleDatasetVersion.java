@@ -0,0 +1,57 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * The version of the vehicle data served by this application instance. Every {@link VehicleDataChangedEvent}, i.e. 
+ * every import, POST, and DELETE, bumps the version. Used to answer conditional requests without querying the data, 
+ * see {@link io.rosenwald.springDemo.rest.ConditionalGetInterceptor}.
+ * 
+ * The version is bumped by the last listener of the event, after the derived models and caches applied the change. A 
+ * request seeing the new entity tag therefore also sees the new data, and a 304 is never sent for data older than the 
+ * tag.
+ * 
+ * The entity tag combines the start time of the instance with a counter, so tags of different instances or restarts 
+ * never collide. Writes through other instances sharing the database are not seen.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleDatasetVersion {
+	
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+	private final AtomicLong version = new AtomicLong();
+	private volatile long lastModified = currentSecond();
+	
+	// After every listener deriving data from the vehicle table.
+	@Order(Ordered.LOWEST_PRECEDENCE)
+	@EventListener
+	public void onVehicleDataChanged(VehicleDataChangedEvent event) {
+		version.incrementAndGet();
+		lastModified = currentSecond();
+	}
+	
+	/**
+	 * @return The strong entity tag of the current version, including quotes.
+	 */
+	public String getETag() {
+		return "\"" + epoch + "-" + version.get() + "\"";
+	}
+	
+	/**
+	 * @return The time of the last change in milliseconds since the epoch, truncated to seconds like HTTP dates.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+	
+	private static long currentSecond() {
+		return System.currentTimeMillis() / 1000 * 1000;
+	}
+}
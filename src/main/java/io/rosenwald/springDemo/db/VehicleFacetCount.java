@@ -0,0 +1,41 @@
+package io.rosenwald.springDemo.db;
+
+/**
+ * The number of vehicles sharing a year, make, and model. Selected by {@link VehicleRepository#countByYearAndMakeAndModel()}.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleFacetCount {
+	
+	private final int year;
+	private final String make;
+	private final String model;
+	private final long count;
+	
+	/**
+	 * Used by the JPQL constructor expression of {@link VehicleRepository#countByYearAndMakeAndModel()}.
+	 */
+	public VehicleFacetCount(int year, String make, String model, long count) {
+		this.year = year;
+		this.make = make;
+		this.model = model;
+		this.count = count;
+	}
+
+	public int getYear() {
+		return year;
+	}
+
+	public String getMake() {
+		return make;
+	}
+
+	public String getModel() {
+		return model;
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
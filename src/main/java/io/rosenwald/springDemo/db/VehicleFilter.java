@@ -0,0 +1,56 @@
+package io.rosenwald.springDemo.db;
+
+/**
+ * The optional year, make, and model a vehicle query is restricted to. Unset criteria match every vehicle.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleFilter {
+	
+	private static final VehicleFilter ALL = new VehicleFilter(null, null, null);
+	
+	private final Integer year;
+	private final String make;
+	private final String model;
+	
+	private VehicleFilter(Integer year, String make, String model) {
+		this.year = year;
+		this.make = make;
+		this.model = model;
+	}
+	
+	/**
+	 * @param year The model year, or null.
+	 * @param make The make, or null.
+	 * @param model The model, or null.
+	 * @return A filter for the given criteria.
+	 */
+	public static VehicleFilter of(Integer year, String make, String model) {
+		return year == null && make == null && model == null ? ALL : new VehicleFilter(year, make, model);
+	}
+	
+	/**
+	 * @return A filter matching every vehicle.
+	 */
+	public static VehicleFilter all() {
+		return ALL;
+	}
+
+	public Integer getYear() {
+		return year;
+	}
+
+	public String getMake() {
+		return make;
+	}
+
+	public String getModel() {
+		return model;
+	}
+	
+	@Override
+	public String toString() {
+		return "VehicleFilter[year=" + year + ", make=" + make + ", model=" + model + "]";
+	}
+}
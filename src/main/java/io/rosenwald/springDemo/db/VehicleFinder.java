@@ -0,0 +1,53 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * The read queries the REST endpoints answer vehicle lookups with. Implemented by the {@link VehicleRepository} and by 
+ * read models serving the same queries from memory, see {@link io.rosenwald.springDemo.query.VehicleReadModel}.
+ * 
+ * Makes and models are matched like the database collation matches them, ignoring case.
+ * 
+ * The projected page queries default to projecting {@link #findPage(VehicleFilter, UUID, int)} in memory; the 
+ * repository overrides them to select only the projected columns.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public interface VehicleFinder {
+	public List<Vehicle> findAll();
+	public List<Vehicle> findByYear(int year);
+	public List<Vehicle> findByMake(String make);
+	public List<Vehicle> findByModel(String model);
+	public List<Integer> findAllYears();
+	public List<Vehicle> findByYearAndMake(int year, String make);
+	public List<Vehicle> findByYearAndMakeAndModel(int year, String make, String model);
+	
+	/**
+	 * Finds a page of vehicles using keyset pagination, see {@link VehicleKeyset}.
+	 * 
+	 * @param filter The criteria the vehicles must match.
+	 * @param after The ID the page continues after, {@link VehicleKeyset#FIRST} for the first page.
+	 * @param limit The maximum number of vehicles in the page.
+	 * @return The matching vehicles following the given ID, sorted by ID.
+	 */
+	public List<Vehicle> findPage(VehicleFilter filter, UUID after, int limit);
+	
+	/**
+	 * Like {@link #findPage(VehicleFilter, UUID, int)}, but only finds the ID, year, make, and model of the vehicles.
+	 */
+	public default List<VehicleSummary> findSummaryPage(VehicleFilter filter, UUID after, int limit) {
+		return findPage(filter, after, limit).stream().map(VehicleSummary::of).collect(Collectors.toList());
+	}
+	
+	/**
+	 * Like {@link #findPage(VehicleFilter, UUID, int)}, but only finds the IDs of the vehicles.
+	 */
+	public default List<UUID> findIdPage(VehicleFilter filter, UUID after, int limit) {
+		return findPage(filter, after, limit).stream().map(Vehicle::getId).collect(Collectors.toList());
+	}
+}
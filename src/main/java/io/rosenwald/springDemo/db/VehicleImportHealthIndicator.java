@@ -0,0 +1,48 @@
+package io.rosenwald.springDemo.db;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.rosenwald.springDemo.db.VehicleDataImporter.ImportProgress;
+import io.rosenwald.springDemo.db.VehicleDataImporter.ImportState;
+
+/**
+ * Reports the application as {@link #LOADING} under /actuator/health until the first vehicle import is done, so load 
+ * balancers keep sending requests to other instances while the vehicle table is still being filled. A failed first 
+ * import reports the application as down. Later imports run while the application stays up.
+ * 
+ * See the management.health.status properties in application.properties for how the status maps to HTTP status codes.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+@ConditionalOnProperty(prefix = "io.rosenwald.springDemo", value = "db.import", havingValue = "true", matchIfMissing = false)
+public class VehicleImportHealthIndicator implements HealthIndicator {
+	
+	/**
+	 * The vehicle data is not imported yet.
+	 */
+	public static final Status LOADING = new Status("LOADING", "Importing vehicle data.");
+	
+	@Autowired
+	private VehicleDataImporter importer;
+
+	@Override
+	public Health health() {
+		ImportProgress progress = importer.getProgress();
+		Health.Builder health;
+		if (progress.isLoaded()) {
+			health = Health.up();
+		} else if (progress.getState() == ImportState.FAILED) {
+			health = Health.down().withDetail("error", progress.getError());
+		} else {
+			health = Health.status(LOADING).withDetail("rowsSucceeded", progress.getRowsSucceeded());
+		}
+		return health.withDetail("state", progress.getState()).build();
+	}
+}
@@ -0,0 +1,379 @@
+package io.rosenwald.springDemo.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+import io.rosenwald.springDemo.query.VehicleExporter.Format;
+
+/**
+ * A single bulk ingest of vehicles posted as newline delimited JSON or as a JSON array, see
+ * {@link io.rosenwald.springDemo.db.VehicleIngester}.
+ *
+ * Records are parsed and validated one at a time while the accepted vehicles are already being persisted in batches by
+ * a {@link io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator}. Invalid records are rejected without
+ * failing the job; a newline delimited record that is not even valid JSON only rejects its own line, while a JSON array
+ * that is not valid JSON stops the job at that point. Every record gets a new vehicle ID; an "id" in a record is
+ * ignored, so posted records can neither collide with nor overwrite existing vehicles.
+ *
+ * Progress is tracked lock-free and may be read from any thread while the job runs.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class VehicleIngestJob {
+
+	/**
+	 * Jobs accepting more vehicles than this publish a bulk change instead of listing every vehicle.
+	 */
+	static final int MAX_LISTED_CHANGES = 1000;
+
+	private static final int MAX_REPORTED_REJECTIONS = 10;
+
+	private final String id;
+	private final Format format;
+	private final Date submitted = new Date();
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final Queue<String> rejections = new ConcurrentLinkedQueue<String>();
+	private final List<Vehicle> acceptedVehicles = new ArrayList<Vehicle>();
+
+	private volatile State state = State.QUEUED;
+	private volatile String error;
+	private volatile long startNanos;
+	private volatile long elapsedMillis;
+	private volatile MultithreadedRepositoryCommunicator<Vehicle> communicator;
+	private volatile BatchResult result;
+
+	/**
+	 * @param id The ID the job is tracked by.
+	 * @param format The format of the posted records.
+	 */
+	public VehicleIngestJob(String id, Format format) {
+		Assert.hasText(id, "The job ID must not be empty.");
+		Assert.notNull(format, "The record format must not be null.");
+		this.id = id;
+		this.format = format;
+	}
+
+	/**
+	 * Parses, validates, and persists the records. Blocks until every accepted vehicle has been written.
+	 *
+	 * @param records The posted records.
+	 * @param objectMapper The mapper binding records to vehicles.
+	 * @param communicator The communicator persisting the accepted vehicles. Must not be running another operation.
+	 * @return The change event listing the saved vehicles, or a bulk change if there are more than
+	 * 		{@link #MAX_LISTED_CHANGES} or not all of them could be saved. Null if nothing was saved.
+	 */
+	public VehicleDataChangedEvent run(InputStream records, ObjectMapper objectMapper, MultithreadedRepositoryCommunicator<Vehicle> communicator) {
+		this.communicator = communicator;
+		startNanos = System.nanoTime();
+		state = State.RUNNING;
+		try {
+			ObjectReader reader = objectMapper.readerFor(Vehicle.class);
+			Iterator<Vehicle> vehicles = format == Format.NDJSON ? new LineIterator(records, reader)
+					: new ArrayIterator(objectMapper.getFactory().createParser(records), reader);
+			result = communicator.startStreaming(vehicles, MultithreadedRepositoryCommunicator.BatchAction.SAVE).join();
+			state = result.isSuccessful() ? State.COMPLETED : State.FAILED;
+			if (!result.isSuccessful()) {
+				error = result.getRowsFailed() + " vehicles failed to save.";
+			}
+		} catch (IOException | UncheckedIOException | IllegalStateException | CompletionException | InterruptedException ex) {
+			state = State.FAILED;
+			error = ex.getMessage();
+			result = communicator.getProgress();
+		} finally {
+			elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		}
+
+		if (result.getRowsSucceeded() == 0) {
+			return null;
+		}
+		return state != State.COMPLETED || acceptedVehicles.size() > MAX_LISTED_CHANGES
+				? VehicleDataChangedEvent.bulk() : VehicleDataChangedEvent.saved(acceptedVehicles);
+	}
+
+	/**
+	 * Marks a job that could not be run at all as failed.
+	 *
+	 * @param message Why the job failed.
+	 */
+	public void fail(String message) {
+		state = State.FAILED;
+		error = message;
+	}
+
+	/**
+	 * @param vehicle A bound record.
+	 * @return Why the vehicle is invalid, or null if it is valid.
+	 */
+	static String validate(Vehicle vehicle) {
+		if (vehicle == null) {
+			return "The record is null.";
+		} else if (vehicle.getYear() <= 0) {
+			return "The year is missing.";
+		} else if (vehicle.getMake() == null || vehicle.getMake().trim().isEmpty()) {
+			return "The make is missing.";
+		} else if (vehicle.getModel() == null || vehicle.getModel().trim().isEmpty()) {
+			return "The model is missing.";
+		} else if (vehicle.getCylinders() < 0 || vehicle.getDisplacement() < 0) {
+			return "The cylinders and displacement must not be negative.";
+		}
+		return null;
+	}
+
+	private Vehicle accept(Vehicle vehicle, long record) {
+		String rejection = validate(vehicle);
+		if (rejection != null) {
+			reject(record, rejection);
+			return null;
+		}
+		vehicle = new Vehicle(Vehicle.newId(), vehicle.getYear(), vehicle.getMake(), vehicle.getModel(), vehicle.getDrive(),
+				vehicle.getTransmission(), vehicle.getCylinders(), vehicle.getDisplacement(), vehicle.getAltType(),
+				vehicle.getEvMotor());
+		accepted.incrementAndGet();
+		if (acceptedVehicles.size() <= MAX_LISTED_CHANGES) {
+			acceptedVehicles.add(vehicle);
+		}
+		return vehicle;
+	}
+
+	private void reject(long record, String reason) {
+		if (rejected.incrementAndGet() <= MAX_REPORTED_REJECTIONS) {
+			rejections.add("Record " + record + ": " + reason);
+		}
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	public Date getSubmitted() {
+		return submitted;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return Why the job failed, or null.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return The number of valid records handed over to be persisted so far.
+	 */
+	public long getAccepted() {
+		return accepted.get();
+	}
+
+	/**
+	 * @return The number of invalid records so far.
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return The reasons the first records were rejected for.
+	 */
+	public List<String> getRejections() {
+		return Collections.unmodifiableList(new ArrayList<String>(rejections));
+	}
+
+	/**
+	 * @return The number of vehicles written so far.
+	 */
+	public long getPersisted() {
+		return progress().getRowsSucceeded();
+	}
+
+	/**
+	 * @return The number of accepted vehicles that failed to be written so far.
+	 */
+	public long getFailed() {
+		return progress().getRowsFailed();
+	}
+
+	/**
+	 * @return The wall clock time the job has been running for.
+	 */
+	public long getElapsedMillis() {
+		if (state == State.RUNNING) {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		}
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return The number of vehicles written per second of the job's wall clock time.
+	 */
+	public double getRowsPerSecond() {
+		long elapsed = getElapsedMillis();
+		return elapsed == 0 ? 0 : getPersisted() * 1000d / elapsed;
+	}
+
+	private BatchResult progress() {
+		BatchResult finished = result;
+		if (finished != null) {
+			return finished;
+		}
+		MultithreadedRepositoryCommunicator<Vehicle> running = communicator;
+		return running == null ? new BatchResult(0, 0, 0, 0, 0, Collections.<Throwable>emptyList()) : running.getProgress();
+	}
+
+	/**
+	 * Reads one record per line, skipping blank lines. Every line is parsed on its own, so a malformed line only rejects
+	 * itself.
+	 */
+	private class LineIterator implements Iterator<Vehicle> {
+		private final BufferedReader lines;
+		private final ObjectReader reader;
+		private long record;
+		private Vehicle next;
+
+		LineIterator(InputStream records, ObjectReader reader) {
+			this.lines = new BufferedReader(new InputStreamReader(records, StandardCharsets.UTF_8));
+			this.reader = reader;
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				String line;
+				while (next == null && (line = lines.readLine()) != null) {
+					if (line.trim().isEmpty()) continue;
+					record++;
+					try {
+						next = accept(reader.readValue(line), record);
+					} catch (JsonProcessingException ex) {
+						reject(record, ex.getOriginalMessage());
+					}
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			return next != null;
+		}
+
+		@Override
+		public Vehicle next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			Vehicle vehicle = next;
+			next = null;
+			return vehicle;
+		}
+	}
+
+	/**
+	 * Reads the elements of a single JSON array. Each element is read as a tree first, so an element that cannot be
+	 * bound to a vehicle only rejects itself.
+	 */
+	private class ArrayIterator implements Iterator<Vehicle> {
+		private final JsonParser parser;
+		private final ObjectReader reader;
+		private long record;
+		private Vehicle next;
+		private boolean done;
+
+		ArrayIterator(JsonParser parser, ObjectReader reader) throws IOException {
+			this.parser = parser;
+			this.reader = reader;
+			if (parser.nextToken() != JsonToken.START_ARRAY) {
+				throw new IOException("The records must be a JSON array.");
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			try {
+				while (next == null && !done) {
+					JsonToken token = parser.nextToken();
+					if (token == null || token == JsonToken.END_ARRAY) {
+						done = true;
+						break;
+					}
+					record++;
+					if (token != JsonToken.START_OBJECT) {
+						parser.skipChildren();
+						reject(record, "The record is not a JSON object.");
+						continue;
+					}
+					ObjectNode tree = parser.readValueAsTree();
+					try {
+						next = accept(reader.readValue(tree), record);
+					} catch (JsonProcessingException ex) {
+						reject(record, ex.getOriginalMessage());
+					}
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			return next != null;
+		}
+
+		@Override
+		public Vehicle next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			Vehicle vehicle = next;
+			next = null;
+			return vehicle;
+		}
+	}
+
+	/**
+	 * The states of a job.
+	 *
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static enum State {
+		/**
+		 * Waiting for earlier jobs to finish.
+		 */
+		QUEUED,
+		/**
+		 * Reading records and persisting the accepted ones.
+		 */
+		RUNNING,
+		/**
+		 * Every accepted vehicle was saved.
+		 */
+		COMPLETED,
+		/**
+		 * The records could not be read to the end, or some accepted vehicles failed to save.
+		 */
+		FAILED;
+	}
+}
@@ -0,0 +1,287 @@
+package io.rosenwald.springDemo.db;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.entities.Vehicle;
+import io.rosenwald.springDemo.query.VehicleExporter.Format;
+
+/**
+ * Runs {@link VehicleIngestJob}s, so feeds can post thousands of vehicles in one request instead of one request and
+ * transaction per vehicle.
+ *
+ * A posted body is spooled to a temporary file and the job is queued right away, so the client does not wait for the
+ * vehicles to be written. Jobs run one after another on a single thread, each writing its vehicles in JDBC batches
+ * through its own {@link MultithreadedRepositoryCommunicator}. The most recent jobs are kept for status queries.
+ *
+ * Both the spool and the queue are bounded: a body larger than max-body-bytes fails with a
+ * {@link BodyTooLargeException}, and a job submitted while max-queued-jobs jobs are being spooled, queued, or run is
+ * rejected with a {@link RejectedExecutionException} before its body is read. At most max-queued-jobs times
+ * max-body-bytes are therefore spooled at once.
+ *
+ * Jobs write to the live table, so they are rejected while a shadow table reload keeps writes out, see
+ * {@link VehicleWriteGate}. A queued job whose turn comes during a reload fails.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleIngester {
+
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private VehicleLookupTables lookupTables;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private ApplicationEventPublisher publisher;
+	
+	@Autowired
+	private MeterRegistry registry;
+	
+	@Autowired
+	private VehicleWriteGate writeGate;
+
+	@Value("${io.rosenwald.springDemo.ingest.batch-size:1000}")
+	private int batchSize;
+
+	/**
+	 * Connections of the pool left for REST requests while ingesting. The rest bound the number of concurrent batches.
+	 */
+	@Value("${io.rosenwald.springDemo.ingest.reserved-connections:10}")
+	private int reservedConnections;
+
+	/**
+	 * The number of finished and pending jobs kept for status queries.
+	 */
+	@Value("${io.rosenwald.springDemo.ingest.max-jobs:100}")
+	private int maxJobs;
+
+	/**
+	 * The largest body accepted, in bytes.
+	 */
+	@Value("${io.rosenwald.springDemo.ingest.max-body-bytes:104857600}")
+	private long maxBodyBytes;
+
+	/**
+	 * The number of jobs spooling, waiting, or running at once, including the running job.
+	 */
+	@Value("${io.rosenwald.springDemo.ingest.max-queued-jobs:4}")
+	private int maxQueuedJobs;
+
+	private Semaphore slots;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "vehicle-ingest");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Map<String, VehicleIngestJob> jobs = Collections.synchronizedMap(new LinkedHashMap<String, VehicleIngestJob>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, VehicleIngestJob> eldest) {
+			return size() > maxJobs;
+		}
+	});
+
+	@PostConstruct
+	public void init() {
+		slots = new Semaphore(maxQueuedJobs);
+	}
+
+	/**
+	 * Spools the records and queues a job persisting them.
+	 *
+	 * @param records The posted records, read to the end before this method returns.
+	 * @param format The format of the records.
+	 * @return The queued job.
+	 * @throws IOException The records could not be spooled.
+	 * @throws BodyTooLargeException The records are larger than max-body-bytes.
+	 * @throws RejectedExecutionException max-queued-jobs jobs are already queued, or the vehicle table is being 
+	 * 		reloaded. The records have not been read.
+	 */
+	public VehicleIngestJob submit(InputStream records, Format format) throws IOException {
+		if (!writeGate.isOpen()) {
+			throw new RejectedExecutionException("The vehicle table is being reloaded.");
+		}
+		if (!slots.tryAcquire()) {
+			throw new RejectedExecutionException("Too many vehicle ingest jobs are queued.");
+		}
+		Path spool = null;
+		boolean queued = false;
+		try {
+			spool = Files.createTempFile("vehicle-ingest-", "." + format.getExtension());
+			Files.copy(new BoundedInputStream(records, maxBodyBytes), spool, StandardCopyOption.REPLACE_EXISTING);
+
+			long size = Files.size(spool);
+			VehicleIngestJob job = new VehicleIngestJob(UUID.randomUUID().toString(), format);
+			Path spooled = spool;
+			jobs.put(job.getId(), job);
+			executor.execute(() -> {
+				try {
+					run(job, spooled);
+				} finally {
+					slots.release();
+				}
+			});
+			queued = true;
+			logger.info("Queued vehicle ingest job " + job.getId() + " of " + size + " bytes.");
+			return job;
+		} finally {
+			if (!queued) {
+				slots.release();
+				if (spool != null) {
+					Files.deleteIfExists(spool);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The largest body accepted, in bytes.
+	 */
+	public long getMaxBodyBytes() {
+		return maxBodyBytes;
+	}
+
+	/**
+	 * @param id The ID of the job.
+	 * @return The job, or null if it is unknown or no longer kept.
+	 */
+	public VehicleIngestJob getJob(String id) {
+		return jobs.get(id);
+	}
+
+	private void run(VehicleIngestJob job, Path spool) {
+		if (!writeGate.tryEnter()) {
+			job.fail("The vehicle table was being reloaded, post the vehicles again once it is done.");
+			logger.warn("Vehicle ingest job " + job.getId() + " failed, the vehicle table is being reloaded.");
+			deleteSpool(job, spool);
+			return;
+		}
+		try (InputStream records = new BufferedInputStream(Files.newInputStream(spool))) {
+			MultithreadedRepositoryCommunicator<Vehicle> communicator = new MultithreadedRepositoryCommunicator<Vehicle>(
+					new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables), batchSize,
+					MultithreadedRepositoryCommunicator.poolBoundedConcurrency(dataSource, reservedConnections));
+			communicator.setMeterRegistry(registry);
+			VehicleDataChangedEvent event = job.run(records, objectMapper, communicator);
+			if (event != null) {
+				publisher.publishEvent(event);
+			}
+			logger.info("Vehicle ingest job " + job.getId() + " " + job.getState() + ": " + job.getAccepted() + " accepted, "
+					+ job.getRejected() + " rejected, " + job.getPersisted() + " persisted in " + job.getElapsedMillis() + "ms.");
+		} catch (IOException | RuntimeException ex) {
+			job.fail(ex.getMessage());
+			logger.error("Vehicle ingest job " + job.getId() + " failed." + System.lineSeparator() + ex.getMessage());
+		} finally {
+			writeGate.exit();
+			deleteSpool(job, spool);
+		}
+	}
+
+	private void deleteSpool(VehicleIngestJob job, Path spool) {
+		try {
+			Files.deleteIfExists(spool);
+		} catch (IOException ex) {
+			logger.warn("Could not delete the spooled records of vehicle ingest job " + job.getId() + ".");
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Thrown when posted records are larger than max-body-bytes.
+	 */
+	public static class BodyTooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public BodyTooLargeException(long maxBodyBytes) {
+			super("The posted records are larger than " + maxBodyBytes + " bytes.");
+		}
+	}
+
+	/**
+	 * Fails with a {@link BodyTooLargeException} once more than a maximum number of bytes have been read.
+	 */
+	private static class BoundedInputStream extends FilterInputStream {
+		private final long maxBytes;
+		private long read;
+
+		BoundedInputStream(InputStream in, long maxBytes) {
+			super(in);
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int n = super.read(buffer, offset, length);
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+
+		private void count(int bytes) throws BodyTooLargeException {
+			read += bytes;
+			if (read > maxBytes) {
+				throw new BodyTooLargeException(maxBytes);
+			}
+		}
+	}
+}
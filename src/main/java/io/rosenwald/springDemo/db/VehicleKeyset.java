@@ -0,0 +1,85 @@
+package io.rosenwald.springDemo.db;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Keyset pagination over vehicles. Pages are sorted by vehicle ID in the order the database sorts the BINARY(16) id 
+ * column, i.e. by the unsigned bytes of the ID, and continue after the ID of the last vehicle of the previous page. 
+ * Unlike OFFSET pagination, fetching a page never scans the pages before it, and pages stay stable when vehicles are 
+ * added or removed before them.
+ * 
+ * Page cursors handed out to clients are the URL-safe Base64 encoding of the last ID.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleKeyset {
+	
+	/**
+	 * The position before the first vehicle. Vehicle IDs are never the nil UUID.
+	 */
+	public static final UUID FIRST = new UUID(0, 0);
+	
+	/**
+	 * Orders vehicles by ID like the database does.
+	 */
+	public static final Comparator<Vehicle> BY_ID = (left, right) -> compare(left.getId(), right.getId());
+	
+	private VehicleKeyset() {
+	}
+	
+	/**
+	 * Compares IDs by their unsigned bytes.
+	 */
+	public static int compare(UUID left, UUID right) {
+		int high = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+		return high != 0 ? high : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+	}
+	
+	/**
+	 * @param after The ID of the last vehicle of a page.
+	 * @return The cursor of the page after it.
+	 */
+	public static String encode(UUID after) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(16)
+				.putLong(after.getMostSignificantBits()).putLong(after.getLeastSignificantBits()).array());
+	}
+	
+	/**
+	 * @param cursor A cursor created by {@link #encode(UUID)}, or null for the first page.
+	 * @return The ID the page continues after.
+	 * @throws IllegalArgumentException The cursor is malformed.
+	 */
+	public static UUID decode(String cursor) throws IllegalArgumentException {
+		if (cursor == null || cursor.isEmpty()) return FIRST;
+		byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+		if (bytes.length != 16) {
+			throw new IllegalArgumentException("Malformed page cursor '" + cursor + "'.");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+	
+	/**
+	 * Cuts a page out of an already loaded result.
+	 * 
+	 * @param vehicles Every vehicle matching a query, in any order.
+	 * @param after The ID the page continues after.
+	 * @param limit The maximum number of vehicles in the page.
+	 * @return The vehicles following the given ID, sorted by ID.
+	 */
+	public static List<Vehicle> slice(List<Vehicle> vehicles, UUID after, int limit) {
+		return vehicles.stream()
+				.filter(vehicle -> compare(vehicle.getId(), after) > 0)
+				.sorted(BY_ID)
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+}
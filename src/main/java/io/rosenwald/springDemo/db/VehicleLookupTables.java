@@ -0,0 +1,191 @@
+package io.rosenwald.springDemo.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Dictionary tables for the low-cardinality vehicle columns. Drive, transmission, and alternative fuel type are stored 
+ * as SMALLINT codes referencing the vehicle_drives, vehicle_transmissions, and vehicle_alt_types tables instead of 
+ * repeating the same few dozen strings in every row.
+ * 
+ * Codes are cached in memory after the first lookup. Unknown values are registered on first use on a separate, 
+ * auto-committed connection, so a code is never cached for a dictionary row that a rolled back transaction removed.
+ * 
+ * The nested converters map the entity's String attributes to codes and are instantiated by Hibernate through Spring.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleLookupTables {
+	
+	private final Dictionary drives;
+	private final Dictionary transmissions;
+	private final Dictionary altTypes;
+	
+	@Autowired
+	public VehicleLookupTables(DataSource dataSource) {
+		Assert.notNull(dataSource, "The provided data source must not be null.");
+		drives = new Dictionary(dataSource, "vehicle_drives");
+		transmissions = new Dictionary(dataSource, "vehicle_transmissions");
+		altTypes = new Dictionary(dataSource, "vehicle_alt_types");
+	}
+	
+	public Dictionary drives() {
+		return drives;
+	}
+	
+	public Dictionary transmissions() {
+		return transmissions;
+	}
+	
+	public Dictionary altTypes() {
+		return altTypes;
+	}
+	
+	/**
+	 * A single dictionary table mapping distinct values to SMALLINT codes.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static class Dictionary {
+		private final DataSource dataSource;
+		private final String table;
+		private final Map<String, Short> codes = new ConcurrentHashMap<String, Short>();
+		private final Map<Short, String> names = new ConcurrentHashMap<Short, String>();
+		private volatile boolean loaded;
+		
+		Dictionary(DataSource dataSource, String table) {
+			this.dataSource = dataSource;
+			this.table = table;
+		}
+		
+		/**
+		 * @param name The value to encode.
+		 * @return The code of the value, registering the value if it is unknown. Null for null values.
+		 */
+		public Short encode(String name) {
+			if (name == null) return null;
+			if (!loaded) load();
+			Short code = codes.get(name);
+			return code != null ? code : register(name);
+		}
+		
+		/**
+		 * @param code The code to decode.
+		 * @return The value the code stands for. Null for null codes.
+		 */
+		public String decode(Short code) {
+			if (code == null) return null;
+			if (!loaded) load();
+			String name = names.get(code);
+			if (name == null) {
+				// Registered by another application instance since the last load.
+				load();
+				name = names.get(code);
+			}
+			return name;
+		}
+		
+		private synchronized void load() {
+			try (Connection connection = dataSource.getConnection(); 
+					Statement statement = connection.createStatement();
+					ResultSet rs = statement.executeQuery("SELECT id, name FROM " + table)) {
+				while (rs.next()) {
+					put(rs.getShort(1), rs.getString(2));
+				}
+				loaded = true;
+			} catch (SQLException ex) {
+				throw new DataAccessResourceFailureException("Failed to load the " + table + " dictionary.", ex);
+			}
+		}
+		
+		private synchronized Short register(String name) {
+			Short code = codes.get(name);
+			if (code != null) return code;
+			
+			try (Connection connection = dataSource.getConnection()) {
+				connection.setAutoCommit(true);
+				try (PreparedStatement insert = connection.prepareStatement("INSERT IGNORE INTO " + table + " (name) VALUES (?)")) {
+					insert.setString(1, name);
+					insert.executeUpdate();
+				}
+				try (PreparedStatement select = connection.prepareStatement("SELECT id FROM " + table + " WHERE name = ?")) {
+					select.setString(1, name);
+					try (ResultSet rs = select.executeQuery()) {
+						rs.next();
+						code = rs.getShort(1);
+					}
+				}
+			} catch (SQLException ex) {
+				throw new DataAccessResourceFailureException("Failed to register '" + name + "' in the " + table + " dictionary.", ex);
+			}
+			put(code, name);
+			return code;
+		}
+		
+		private void put(Short code, String name) {
+			codes.put(name, code);
+			names.put(code, name);
+		}
+	}
+	
+	/**
+	 * Base class of the converters mapping a String attribute to its dictionary code.
+	 */
+	private static abstract class DictionaryConverter implements AttributeConverter<String, Short> {
+		@Autowired
+		protected VehicleLookupTables lookupTables;
+		
+		protected abstract Dictionary dictionary();
+		
+		@Override
+		public Short convertToDatabaseColumn(String name) {
+			return dictionary().encode(name);
+		}
+		
+		@Override
+		public String convertToEntityAttribute(Short code) {
+			return dictionary().decode(code);
+		}
+	}
+	
+	@Converter
+	public static class DriveConverter extends DictionaryConverter {
+		@Override
+		protected Dictionary dictionary() {
+			return lookupTables.drives();
+		}
+	}
+	
+	@Converter
+	public static class TransmissionConverter extends DictionaryConverter {
+		@Override
+		protected Dictionary dictionary() {
+			return lookupTables.transmissions();
+		}
+	}
+	
+	@Converter
+	public static class AltTypeConverter extends DictionaryConverter {
+		@Override
+		protected Dictionary dictionary() {
+			return lookupTables.altTypes();
+		}
+	}
+}
@@ -1,10 +1,20 @@
 package io.rosenwald.springDemo.db;
 
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import io.rosenwald.springDemo.entities.Vehicle;
 
@@ -14,20 +24,93 @@ import io.rosenwald.springDemo.entities.Vehicle;
  * {@link #findAllYears()}, {@link #findByYearAndMake(int, String)} and 
  * {@link #findByYearAndMakeAndModel(int, String, String)} all use custom SQL/SpEL queries.
  * 
+ * The read queries are shared with in-memory read models through {@link VehicleFinder}. The results of the 
+ * year/make/model lookups are cached per year, make, and model, see {@link VehicleCacheConfig}. {@link #findPage(VehicleFilter, UUID, int)} 
+ * pages through any combination of criteria with a single keyset query; unset criteria are folded away by the 
+ * database, so the query still uses the (year, make, model), make, or model index. The summary and ID variants of the 
+ * keyset query select only their columns. {@link #streamAll()} reads the whole table through a forward-only result set.
+ * 
+ * The entities returned by the read queries are loaded read-only, so Hibernate keeps no snapshots to dirty check them.
+ * 
  * @author Nathaniel Rosenwald
  *
  */
-public interface VehicleRepository extends JpaRepository<Vehicle, String> {
+public interface VehicleRepository extends JpaRepository<Vehicle, UUID>, VehicleFinder {
 	public List<Vehicle> findByYear(int year);
 	public List<Vehicle> findByMake(String make);
 	public List<Vehicle> findByModel(String model);
 
+	/**
+	 * Deletes every vehicle with a single DELETE statement in its own transaction, without loading any entity. A 
+	 * failing delete is rolled back as a whole.
+	 * @return The number of deleted vehicles.
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "DELETE FROM #{#entityName} v")
+	public int deleteAllVehicles();
+
+	@Cacheable(cacheNames = VehicleCacheConfig.YEARS, keyGenerator = VehicleCacheConfig.KEY_GENERATOR)
 	@Query(value = "SELECT DISTINCT v.year FROM #{#entityName} v ORDER BY year ASC")
 	public List<Integer> findAllYears();
 	
+	@Cacheable(cacheNames = VehicleCacheConfig.BY_YEAR_AND_MAKE, keyGenerator = VehicleCacheConfig.KEY_GENERATOR)
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
 	@Query(value = "SELECT v FROM #{#entityName} v WHERE v.year=:year AND v.make=:make")
 	public List<Vehicle> findByYearAndMake(@Param("year") int year, @Param("make") String make);
 	
+	@Cacheable(cacheNames = VehicleCacheConfig.BY_YEAR_AND_MAKE_AND_MODEL, keyGenerator = VehicleCacheConfig.KEY_GENERATOR)
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
 	@Query(value = "SELECT v FROM #{#entityName} v WHERE v.year=:year AND v.make=:make AND v.model=:model")
 	public List<Vehicle> findByYearAndMakeAndModel(@Param("year") int year, @Param("make") String make, @Param("model") String model);
+	
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true"))
+	@Query(value = "SELECT v FROM #{#entityName} v WHERE (:year IS NULL OR v.year=:year) AND (:make IS NULL OR v.make=:make) "
+			+ "AND (:model IS NULL OR v.model=:model) AND v.id > :after ORDER BY v.id")
+	public List<Vehicle> findByFilterAfter(@Param("year") Integer year, @Param("make") String make, @Param("model") String model, 
+			@Param("after") UUID after, Pageable pageable);
+	
+	@Query(value = "SELECT new io.rosenwald.springDemo.db.VehicleSummary(v.id, v.year, v.make, v.model) FROM #{#entityName} v "
+			+ "WHERE (:year IS NULL OR v.year=:year) AND (:make IS NULL OR v.make=:make) AND (:model IS NULL OR v.model=:model) "
+			+ "AND v.id > :after ORDER BY v.id")
+	public List<VehicleSummary> findSummariesByFilterAfter(@Param("year") Integer year, @Param("make") String make, 
+			@Param("model") String model, @Param("after") UUID after, Pageable pageable);
+	
+	@Query(value = "SELECT v.id FROM #{#entityName} v WHERE (:year IS NULL OR v.year=:year) AND (:make IS NULL OR v.make=:make) "
+			+ "AND (:model IS NULL OR v.model=:model) AND v.id > :after ORDER BY v.id")
+	public List<UUID> findIdsByFilterAfter(@Param("year") Integer year, @Param("make") String make, @Param("model") String model, 
+			@Param("after") UUID after, Pageable pageable);
+	
+	/**
+	 * Counts the vehicles of every year, make, and model combination. Makes and models differing only in case are 
+	 * counted together, like the database collation compares them.
+	 */
+	@Query(value = "SELECT new io.rosenwald.springDemo.db.VehicleFacetCount(v.year, v.make, v.model, COUNT(v)) "
+			+ "FROM #{#entityName} v GROUP BY v.year, v.make, v.model")
+	public List<VehicleFacetCount> countByYearAndMakeAndModel();
+	
+	/**
+	 * Streams every vehicle, sorted by ID. The driver fetches rows in chunks instead of buffering the whole result. Must 
+	 * be called within a transaction and closed after use; detach the streamed vehicles to keep memory flat.
+	 */
+	@QueryHints({ 
+			@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"), 
+			@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true") })
+	@Query(value = "SELECT v FROM #{#entityName} v ORDER BY v.id")
+	public Stream<Vehicle> streamAll();
+	
+	@Override
+	public default List<Vehicle> findPage(VehicleFilter filter, UUID after, int limit) {
+		return findByFilterAfter(filter.getYear(), filter.getMake(), filter.getModel(), after, PageRequest.of(0, limit));
+	}
+	
+	@Override
+	public default List<VehicleSummary> findSummaryPage(VehicleFilter filter, UUID after, int limit) {
+		return findSummariesByFilterAfter(filter.getYear(), filter.getMake(), filter.getModel(), after, PageRequest.of(0, limit));
+	}
+	
+	@Override
+	public default List<UUID> findIdPage(VehicleFilter filter, UUID after, int limit) {
+		return findIdsByFilterAfter(filter.getYear(), filter.getMake(), filter.getModel(), after, PageRequest.of(0, limit));
+	}
 }
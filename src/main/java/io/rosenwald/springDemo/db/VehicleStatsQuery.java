@@ -0,0 +1,248 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An aggregation over the vehicle table: the vehicles matching a {@link VehicleFilter} are grouped by any combination 
+ * of {@link Dimension}s and every group is reduced to a list of {@link Metric}s, e.g. the average displacement per 
+ * make and year. Without dimensions the matching vehicles form a single group.
+ * 
+ * Results are one map per group, holding the dimension values under their names followed by the metric values under 
+ * their labels, sorted by the dimension values. Counts are longs, all other metrics doubles. Makes and models are 
+ * grouped ignoring case, like the database collation groups them.
+ * 
+ * Instances are immutable and usable as cache keys.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleStatsQuery {
+	
+	private static final Pattern METRIC = Pattern.compile("(\\w+)\\((\\w+)\\)");
+	
+	private final VehicleFilter filter;
+	private final List<Dimension> groupBy;
+	private final List<Metric> metrics;
+	
+	private VehicleStatsQuery(VehicleFilter filter, List<Dimension> groupBy, List<Metric> metrics) {
+		this.filter = filter;
+		this.groupBy = Collections.unmodifiableList(groupBy);
+		this.metrics = Collections.unmodifiableList(metrics);
+	}
+	
+	/**
+	 * @param filter The vehicles to aggregate.
+	 * @param groupBy Comma separated dimension names, e.g. "year,make". May be null.
+	 * @param metrics Comma separated metrics, e.g. "count,avg(displacement)". Defaults to count.
+	 * @return The parsed query.
+	 * @throws IllegalArgumentException A dimension or metric is unknown.
+	 */
+	public static VehicleStatsQuery parse(VehicleFilter filter, String groupBy, String metrics) throws IllegalArgumentException {
+		Set<Dimension> dimensions = new LinkedHashSet<Dimension>();
+		for (String name : split(groupBy)) {
+			dimensions.add(Dimension.fromName(name));
+		}
+		Set<Metric> parsedMetrics = new LinkedHashSet<Metric>();
+		for (String metric : split(metrics)) {
+			parsedMetrics.add(Metric.parse(metric));
+		}
+		if (parsedMetrics.isEmpty()) {
+			parsedMetrics.add(Metric.COUNT);
+		}
+		return new VehicleStatsQuery(filter == null ? VehicleFilter.all() : filter, new ArrayList<Dimension>(dimensions), 
+				new ArrayList<Metric>(parsedMetrics));
+	}
+	
+	private static List<String> split(String values) {
+		List<String> parts = new ArrayList<String>();
+		if (values != null) {
+			for (String part : values.split(",")) {
+				if (!part.trim().isEmpty()) {
+					parts.add(part.trim());
+				}
+			}
+		}
+		return parts;
+	}
+
+	public VehicleFilter getFilter() {
+		return filter;
+	}
+
+	public List<Dimension> getGroupBy() {
+		return groupBy;
+	}
+
+	public List<Metric> getMetrics() {
+		return metrics;
+	}
+	
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof VehicleStatsQuery)) return false;
+		VehicleStatsQuery query = (VehicleStatsQuery) other;
+		return Objects.equals(filter.getYear(), query.filter.getYear()) 
+				&& Objects.equals(key(filter.getMake()), key(query.filter.getMake())) 
+				&& Objects.equals(key(filter.getModel()), key(query.filter.getModel())) 
+				&& groupBy.equals(query.groupBy) && metrics.equals(query.metrics);
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hash(filter.getYear(), key(filter.getMake()), key(filter.getModel()), groupBy, metrics);
+	}
+	
+	@Override
+	public String toString() {
+		return "VehicleStatsQuery[filter=" + filter + ", groupBy=" + groupBy + ", metrics=" + metrics + "]";
+	}
+	
+	private static String key(String value) {
+		return value == null ? null : value.toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Vehicle fields results can be grouped by.
+	 */
+	public static enum Dimension {
+		YEAR("year", false), 
+		MAKE("make", true), 
+		MODEL("model", true), 
+		DRIVE("drive", false), 
+		TRANSMISSION("transmission", false), 
+		CYLINDERS("cylinders", false), 
+		ALT_TYPE("altType", false);
+		
+		private final String fieldName;
+		private final boolean ignoringCase;
+		
+		private Dimension(String fieldName, boolean ignoringCase) {
+			this.fieldName = fieldName;
+			this.ignoringCase = ignoringCase;
+		}
+		
+		/**
+		 * @return The name of the field in the vehicle JSON and in the results.
+		 */
+		public String getFieldName() {
+			return fieldName;
+		}
+		
+		/**
+		 * @return True if values differing only in case form a single group.
+		 */
+		public boolean isIgnoringCase() {
+			return ignoringCase;
+		}
+		
+		static Dimension fromName(String name) throws IllegalArgumentException {
+			for (Dimension dimension : values()) {
+				if (dimension.fieldName.equals(name)) return dimension;
+			}
+			throw new IllegalArgumentException("Unknown vehicle dimension '" + name + "'.");
+		}
+	}
+	
+	/**
+	 * Numeric vehicle fields metrics can be computed over.
+	 */
+	public static enum Field {
+		YEAR("year"), 
+		CYLINDERS("cylinders"), 
+		DISPLACEMENT("displacement");
+		
+		private final String fieldName;
+		
+		private Field(String fieldName) {
+			this.fieldName = fieldName;
+		}
+		
+		public String getFieldName() {
+			return fieldName;
+		}
+		
+		static Field fromName(String name) throws IllegalArgumentException {
+			for (Field field : values()) {
+				if (field.fieldName.equals(name)) return field;
+			}
+			throw new IllegalArgumentException("Unknown numeric vehicle field '" + name + "'.");
+		}
+	}
+	
+	/**
+	 * Functions reducing a group to a single value.
+	 */
+	public static enum Function {
+		COUNT, SUM, AVG, MIN, MAX
+	}
+	
+	/**
+	 * A function and, except for counts, the field it is computed over. Written as "count" or "function(field)", e.g. 
+	 * "avg(displacement)".
+	 */
+	public static final class Metric {
+		
+		public static final Metric COUNT = new Metric(Function.COUNT, null);
+		
+		private final Function function;
+		private final Field field;
+		
+		private Metric(Function function, Field field) {
+			this.function = function;
+			this.field = field;
+		}
+		
+		static Metric parse(String metric) throws IllegalArgumentException {
+			if ("count".equals(metric)) {
+				return COUNT;
+			}
+			Matcher matcher = METRIC.matcher(metric);
+			if (!matcher.matches() || "count".equals(matcher.group(1))) {
+				throw new IllegalArgumentException("Unknown metric '" + metric + "'.");
+			}
+			return new Metric(Function.valueOf(matcher.group(1).toUpperCase(Locale.ROOT)), Field.fromName(matcher.group(2)));
+		}
+
+		public Function getFunction() {
+			return function;
+		}
+
+		/**
+		 * @return The field, null for counts.
+		 */
+		public Field getField() {
+			return field;
+		}
+		
+		/**
+		 * @return The key of the metric in the results, as it was written.
+		 */
+		public String getLabel() {
+			return field == null ? "count" : function.name().toLowerCase(Locale.ROOT) + "(" + field.getFieldName() + ")";
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Metric && function == ((Metric) other).function && field == ((Metric) other).field;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(function, field);
+		}
+		
+		@Override
+		public String toString() {
+			return getLabel();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package io.rosenwald.springDemo.db;
+
+import java.util.UUID;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * The ID, year, make, and model of a vehicle. Selected directly by the summary queries of {@link VehicleRepository}, 
+ * so no {@link Vehicle} entity is hydrated or tracked by the persistence context.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleSummary {
+	
+	private final UUID id;
+	private final int year;
+	private final String make;
+	private final String model;
+	
+	/**
+	 * Used by the JPQL constructor expressions of {@link VehicleRepository}.
+	 */
+	public VehicleSummary(UUID id, int year, String make, String model) {
+		this.id = id;
+		this.year = year;
+		this.make = make;
+		this.model = model;
+	}
+	
+	/**
+	 * @param vehicle The vehicle to summarize.
+	 * @return The summary of the vehicle.
+	 */
+	public static VehicleSummary of(Vehicle vehicle) {
+		return new VehicleSummary(vehicle.getId(), vehicle.getYear(), vehicle.getMake(), vehicle.getModel());
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public int getYear() {
+		return year;
+	}
+
+	public String getMake() {
+		return make;
+	}
+
+	public String getModel() {
+		return model;
+	}
+}
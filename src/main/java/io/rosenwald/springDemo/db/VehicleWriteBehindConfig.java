@@ -0,0 +1,38 @@
+package io.rosenwald.springDemo.db;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * A JavaConfig configuration class enabling the write-behind mode of POST /vehicles. Saved vehicles are grouped into 
+ * upserting JDBC batches by a {@link GroupCommitWriter}, and every request still only returns once its vehicle is 
+ * committed. Overwritten vehicles are looked up and the {@link VehicleDataChangedEvent} is published once per batch, 
+ * see {@link PublishingVehicleBatchWriter}. Enabled with io.rosenwald.springDemo.write-behind.enabled=true; see application.properties for the flush 
+ * size and delay.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "io.rosenwald.springDemo", value = "write-behind.enabled", havingValue = "true", matchIfMissing = false)
+public class VehicleWriteBehindConfig {
+	
+	@Bean(destroyMethod = "close")
+	public GroupCommitWriter<Vehicle> vehicleGroupCommitWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, 
+			VehicleLookupTables lookupTables, VehicleRepository repo, ApplicationEventPublisher publisher, MeterRegistry registry, 
+			@Value("${io.rosenwald.springDemo.write-behind.max-batch-size:100}") int maxBatchSize, 
+			@Value("${io.rosenwald.springDemo.write-behind.max-delay-ms:5}") long maxDelayMillis, 
+			@Value("${io.rosenwald.springDemo.write-behind.capacity:1000}") int capacity) {
+		return new GroupCommitWriter<Vehicle>(new PublishingVehicleBatchWriter(new JdbcVehicleBatchWriter(jdbcTemplate, 
+				transactionManager, lookupTables, JdbcVehicleBatchWriter.TABLE, true), repo, publisher), maxBatchSize, maxDelayMillis, 
+				capacity, registry);
+	}
+}
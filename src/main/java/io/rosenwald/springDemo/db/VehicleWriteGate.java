@@ -0,0 +1,60 @@
+package io.rosenwald.springDemo.db;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps writes to the live vehicles table out while it is being reloaded through a {@link ShadowTableReloader}, which
+ * would otherwise lose them with the swap. Writes enter the gate around their database calls and exit it once they are
+ * done. Closing the gate turns every later write away and waits for the writes already inside to finish; opening it
+ * lets writes in again.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleWriteGate {
+
+	private int writes;
+	private boolean closed;
+
+	/**
+	 * @return True if the write may proceed, in which case it must call {@link #exit()} once it is done. False while
+	 * 		the gate is closed.
+	 */
+	public synchronized boolean tryEnter() {
+		if (closed) {
+			return false;
+		}
+		writes++;
+		return true;
+	}
+
+	/**
+	 * Lets a write entered by {@link #tryEnter()} out.
+	 */
+	public synchronized void exit() {
+		if (--writes == 0) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Turns later writes away and waits for the writes inside to finish.
+	 *
+	 * @throws InterruptedException Interrupted while waiting. The gate stays closed.
+	 */
+	public synchronized void close() throws InterruptedException {
+		closed = true;
+		while (writes > 0) {
+			wait();
+		}
+	}
+
+	public synchronized void open() {
+		closed = false;
+	}
+
+	public synchronized boolean isOpen() {
+		return !closed;
+	}
+}
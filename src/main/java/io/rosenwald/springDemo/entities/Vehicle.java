@@ -1,9 +1,19 @@
 package io.rosenwald.springDemo.entities;
 
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.rosenwald.springDemo.db.VehicleLookupTables;
 
 /**
  * Entity representing a vehicle. All vehicle data is from the United States Department of Energy and the 
@@ -11,25 +21,53 @@ import javax.persistence.Id;
  * 
  * Vehicle data used is available for everyone at https://www.fueleconomy.gov/feg/epadata/vehicles.csv.zip.
  * 
+ * The physical layout follows the lookups in {@link io.rosenwald.springDemo.db.VehicleRepository}: IDs are stored as 
+ * BINARY(16), (year, make, model) is indexed as a whole and by its make and model prefixes, and drive, transmission, and 
+ * alternative fuel type are stored as codes into dictionary tables, see {@link VehicleLookupTables}. The schema itself 
+ * is managed by the Flyway migrations in db/migration.
+ * 
  * TODO: Potentially add emissions data to the entity or create a separate entity for emissions data.
  * 
  * @author Nathaniel Rosenwald
  *
  */
 @Entity(name = "VEHICLES")
+@Table(name = "vehicles", indexes = {
+		@Index(name = "idx_vehicles_year_make_model", columnList = "year, make, model"),
+		@Index(name = "idx_vehicles_make", columnList = "make"),
+		@Index(name = "idx_vehicles_model", columnList = "model") })
 public class Vehicle {
 
-	@Id private String id;
+	private static final AtomicInteger ID_SEQUENCE = new AtomicInteger();
+
+	@Id 
+	@Column(columnDefinition = "BINARY(16)")
+	private UUID 	id;
 	
 	private int 	year;
 	private String 	make;
 	private String 	model;
+	
+	@Convert(converter = VehicleLookupTables.DriveConverter.class)
+	@Column(name = "drive_id", columnDefinition = "SMALLINT")
 	private String 	drive;
+	
+	@Convert(converter = VehicleLookupTables.TransmissionConverter.class)
+	@Column(name = "transmission_id", columnDefinition = "SMALLINT")
 	private String 	transmission;
+	
 	private int 	cylinders;
 	private float 	displacement;
+	
+	@Convert(converter = VehicleLookupTables.AltTypeConverter.class)
+	@Column(name = "alt_type_id", columnDefinition = "SMALLINT")
 	private String 	altType;
+	
 	private String 	evMotor;
+	
+	@JsonIgnore
+	@Column(length = 64)
+	private String 	contentHash;
 
 	private static final String STRING_FORMAT = "Vehicle[id=%s, year='%d', make='%s', model='%s, drive='%s', transmission='%s', cylinders='&d', displacement='&d', altType='&s', evMotor='&s']";
 	
@@ -37,7 +75,7 @@ public class Vehicle {
 	 * No-arg constructor.
 	 */
 	public Vehicle() {
-		this.id = UUID.randomUUID().toString();
+		this.id = newId();
 	};
 	
 	/**
@@ -48,7 +86,19 @@ public class Vehicle {
 	 * @param model The model of the vehicle.
 	 */
 	public Vehicle(int year, String make, String model, String drive, String transmission, int cylinders, float displacement, String altType, String evMotor) {
-		this.id = UUID.randomUUID().toString();
+		this(newId(), year, make, model, drive, transmission, cylinders, displacement, altType, evMotor);
+	}
+	
+	/**
+	 * Full constructor with a caller provided ID, used when the ID is derived from the source data.
+	 * 
+	 * @param id The ID of the vehicle.
+	 * @param year The year of the vehicle.
+	 * @param make The make of the vehicle.
+	 * @param model The model of the vehicle.
+	 */
+	public Vehicle(UUID id, int year, String make, String model, String drive, String transmission, int cylinders, float displacement, String altType, String evMotor) {
+		this.id = id;
 		this.year = year;
 		this.make = make;
 		this.model = model;
@@ -60,10 +110,22 @@ public class Vehicle {
 		this.evMotor = evMotor;
 	}
 
-	public String getId() {
+	public UUID getId() {
 		return id;
 	}
 	
+	/**
+	 * Creates a time-ordered ID. The high 64 bits hold the current time in milliseconds followed by a 16 bit sequence 
+	 * number, the low 64 bits are random. New vehicles are therefore appended to the end of the clustered primary key 
+	 * index instead of being scattered across it like random UUIDs.
+	 * 
+	 * @return A new vehicle ID.
+	 */
+	public static UUID newId() {
+		return new UUID(System.currentTimeMillis() << 16 | (ID_SEQUENCE.getAndIncrement() & 0xffff), 
+				ThreadLocalRandom.current().nextLong());
+	}
+	
 	public int getYear() {
 		return year;
 	}
@@ -136,6 +198,18 @@ public class Vehicle {
 		this.altType = altType;
 	}
 
+	/**
+	 * @return A hash of the vehicle's data as imported, used to detect changed rows during incremental imports. Null for 
+	 * 		vehicles that were not imported.
+	 */
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
 	@Override
 	public String toString() {
 		return String.format(STRING_FORMAT, id, year, make, model, drive, transmission, cylinders, displacement, altType, evMotor);
@@ -0,0 +1,225 @@
+package io.rosenwald.springDemo.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An immutable, case-insensitive completion trie over a set of counted values, such as the makes or models of all 
+ * vehicles. Every node keeps the {@link #MAX_SUGGESTIONS} most frequent values below it, so a prefix lookup only walks 
+ * the characters of the prefix and returns the list of the node it ends at.
+ * 
+ * Fuzzy lookups also match values starting with a string within an edit distance of one from the prefix: one character 
+ * inserted, deleted, or replaced. The trie is walked depth first while keeping a row of the Levenshtein matrix per 
+ * node, giving up on branches once every cell of the row exceeds one.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class SuggestionTrie {
+	
+	/**
+	 * The most suggestions a lookup returns.
+	 */
+	public static final int MAX_SUGGESTIONS = 10;
+	
+	/**
+	 * Fuzzy matching is only applied to prefixes of at least this length, as shorter prefixes match nearly everything 
+	 * within an edit distance of one.
+	 */
+	public static final int MIN_FUZZY_LENGTH = 3;
+	
+	private static final Comparator<Suggestion> BY_COUNT = Comparator.comparingLong(Suggestion::getCount).reversed()
+			.thenComparing(suggestion -> suggestion.getValue().toLowerCase(Locale.ROOT));
+	private static final char[] NO_LABELS = new char[0];
+	private static final Node[] NO_CHILDREN = new Node[0];
+	
+	private final Node root;
+	private final int size;
+	
+	private SuggestionTrie(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+	
+	/**
+	 * @param field The field the values belong to, returned with every suggestion.
+	 * @param counts The values and the number of vehicles having them. Values differing only in case should already 
+	 * 		be merged; the most frequent spelling is kept otherwise.
+	 * @return A trie of the values.
+	 */
+	public static SuggestionTrie of(String field, Map<String, Long> counts) {
+		Builder root = new Builder();
+		for (Map.Entry<String, Long> count : counts.entrySet()) {
+			if (count.getKey() == null || count.getKey().isEmpty()) continue;
+			Builder node = root;
+			for (char c : key(count.getKey()).toCharArray()) {
+				node = node.children.computeIfAbsent(c, key -> new Builder());
+			}
+			Suggestion suggestion = new Suggestion(field, count.getKey(), count.getValue());
+			if (node.value == null || BY_COUNT.compare(suggestion, node.value) < 0) {
+				node.value = suggestion;
+			}
+		}
+		return new SuggestionTrie(root.build(), counts.size());
+	}
+	
+	/**
+	 * @param prefix The start of the values to suggest, case is ignored.
+	 * @param fuzzy Whether to also suggest values starting with a string within an edit distance of one from the prefix.
+	 * @param limit The maximum number of suggestions, capped at {@link #MAX_SUGGESTIONS}.
+	 * @return Values starting with the prefix, most frequent first, followed by fuzzy matches, most frequent first.
+	 */
+	public List<Suggestion> suggest(String prefix, boolean fuzzy, int limit) {
+		limit = Math.min(limit, MAX_SUGGESTIONS);
+		if (prefix == null || limit < 1) {
+			return Collections.emptyList();
+		}
+		char[] query = key(prefix).toCharArray();
+		
+		Node node = root;
+		for (int i = 0; i < query.length && node != null; i++) {
+			node = node.child(query[i]);
+		}
+		List<Suggestion> exact = node == null ? Collections.emptyList() : node.top;
+		if (!fuzzy || query.length < MIN_FUZZY_LENGTH || exact.size() >= limit) {
+			return exact.size() <= limit ? exact : exact.subList(0, limit);
+		}
+		
+		int[] row = new int[query.length + 1];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = i;
+		}
+		List<Suggestion> matches = new ArrayList<Suggestion>();
+		collectFuzzy(root, query, row, matches);
+		matches.sort(BY_COUNT);
+		
+		Set<Suggestion> suggestions = new LinkedHashSet<Suggestion>(exact);
+		for (int i = 0; i < matches.size() && suggestions.size() < limit; i++) {
+			suggestions.add(matches.get(i));
+		}
+		return new ArrayList<Suggestion>(suggestions);
+	}
+	
+	/**
+	 * Adds the suggestions of every node whose path is within an edit distance of one from the query. A matching node's 
+	 * suggestions cover every node below it, so matching branches are not walked any further.
+	 */
+	private static void collectFuzzy(Node node, char[] query, int[] row, List<Suggestion> matches) {
+		for (int c = 0; c < node.labels.length; c++) {
+			int[] next = new int[row.length];
+			next[0] = row[0] + 1;
+			int min = next[0];
+			for (int i = 1; i < row.length; i++) {
+				next[i] = Math.min(Math.min(row[i] + 1, next[i - 1] + 1), row[i - 1] + (query[i - 1] == node.labels[c] ? 0 : 1));
+				min = Math.min(min, next[i]);
+			}
+			if (next[query.length] <= 1) {
+				matches.addAll(node.children[c].top);
+			} else if (min <= 1) {
+				collectFuzzy(node.children[c], query, next, matches);
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of values in the trie.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	private static String key(String value) {
+		return value.toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * A suggested value and the number of vehicles having it.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static final class Suggestion {
+		
+		private final String field;
+		private final String value;
+		private final long count;
+		
+		Suggestion(String field, String value, long count) {
+			this.field = field;
+			this.value = value;
+			this.count = count;
+		}
+
+		public String getField() {
+			return field;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public long getCount() {
+			return count;
+		}
+		
+		@Override
+		public String toString() {
+			return field + "=" + value + " (" + count + ")";
+		}
+	}
+	
+	/**
+	 * A trie node with its children sorted by their character, found by binary search.
+	 */
+	private static final class Node {
+		final char[] labels;
+		final Node[] children;
+		final List<Suggestion> top;
+		
+		Node(char[] labels, Node[] children, List<Suggestion> top) {
+			this.labels = labels;
+			this.children = children;
+			this.top = top;
+		}
+		
+		Node child(char label) {
+			int index = Arrays.binarySearch(labels, label);
+			return index < 0 ? null : children[index];
+		}
+	}
+	
+	/**
+	 * A mutable node used while building the trie.
+	 */
+	private static final class Builder {
+		final TreeMap<Character, Builder> children = new TreeMap<Character, Builder>();
+		Suggestion value;
+		
+		Node build() {
+			char[] labels = children.isEmpty() ? NO_LABELS : new char[children.size()];
+			Node[] nodes = children.isEmpty() ? NO_CHILDREN : new Node[children.size()];
+			List<Suggestion> candidates = new ArrayList<Suggestion>();
+			if (value != null) {
+				candidates.add(value);
+			}
+			int i = 0;
+			for (Map.Entry<Character, Builder> child : children.entrySet()) {
+				labels[i] = child.getKey();
+				nodes[i] = child.getValue().build();
+				candidates.addAll(nodes[i].top);
+				i++;
+			}
+			candidates.sort(BY_COUNT);
+			List<Suggestion> top = candidates.size() <= MAX_SUGGESTIONS ? candidates : candidates.subList(0, MAX_SUGGESTIONS);
+			return new Node(labels, nodes, Collections.unmodifiableList(new ArrayList<Suggestion>(top)));
+		}
+	}
+}
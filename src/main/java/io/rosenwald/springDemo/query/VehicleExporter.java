@@ -0,0 +1,128 @@
+package io.rosenwald.springDemo.query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.rosenwald.springDemo.db.VehicleRepository;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Writes every vehicle to an output stream as it is read from {@link VehicleRepository#streamAll()}. Each vehicle is 
+ * serialized and detached from the persistence context right away, so memory use does not depend on the number of 
+ * vehicles. The output is flushed after the first vehicle and then every {@link #FLUSH_INTERVAL} vehicles.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleExporter {
+	
+	private static final int FLUSH_INTERVAL = 1000;
+	
+	@Autowired
+	private VehicleRepository repository;
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	/**
+	 * Exports every vehicle.
+	 * 
+	 * @param out The stream to write to. Left open.
+	 * @param format The output format.
+	 * @return The number of vehicles written.
+	 * @throws IOException Writing to the stream failed.
+	 */
+	@Transactional(readOnly = true)
+	public long export(OutputStream out, Format format) throws IOException {
+		ObjectWriter writer = objectMapper.writerFor(Vehicle.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		generator.setRootValueSeparator(null);
+		
+		long count = 0;
+		try (Stream<Vehicle> vehicles = repository.streamAll()) {
+			if (format == Format.JSON) {
+				generator.writeStartArray();
+			}
+			Iterator<Vehicle> iterator = vehicles.iterator();
+			while (iterator.hasNext()) {
+				Vehicle vehicle = iterator.next();
+				writer.writeValue(generator, vehicle);
+				if (format == Format.NDJSON) {
+					generator.writeRaw('\n');
+				}
+				entityManager.detach(vehicle);
+				if (count++ % FLUSH_INTERVAL == 0) {
+					generator.flush();
+				}
+			}
+			if (format == Format.JSON) {
+				generator.writeEndArray();
+			}
+		}
+		generator.close();
+		return count;
+	}
+	
+	/**
+	 * Possible export formats.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static enum Format {
+		/**
+		 * A single JSON array.
+		 */
+		JSON(MediaType.APPLICATION_JSON, "json"),
+		/**
+		 * Newline delimited JSON, one vehicle per line.
+		 */
+		NDJSON(MediaType.valueOf("application/x-ndjson"), "ndjson");
+		
+		private final MediaType mediaType;
+		private final String extension;
+		
+		private Format(MediaType mediaType, String extension) {
+			this.mediaType = mediaType;
+			this.extension = extension;
+		}
+		
+		public MediaType getMediaType() {
+			return mediaType;
+		}
+		
+		public String getExtension() {
+			return extension;
+		}
+		
+		/**
+		 * @param value A format name as used in request parameters, case is ignored.
+		 * @return The format.
+		 * @throws IllegalArgumentException The format is unknown.
+		 */
+		public static Format fromParameter(String value) throws IllegalArgumentException {
+			return valueOf(value.trim().toUpperCase(Locale.ROOT));
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package io.rosenwald.springDemo.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import io.rosenwald.springDemo.db.VehicleFacetCount;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * An immutable year → make → model tree of the vehicle table, counting the vehicles below every node. Every node keeps 
+ * the sorted names of its children ready to be returned, so each step of a year, make, model selection is a pair of map 
+ * lookups.
+ * 
+ * Makes and models are matched ignoring case, like the database collation matches them. A node is named after the first 
+ * spelling it was created with and removed once no vehicle is counted below it. Changes produce a new tree sharing every 
+ * untouched node with this one, see {@link #withChanges(Collection, Collection)}.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleFacetTree {
+	
+	private static final Comparator<String> YEAR_ORDER = Comparator.comparingInt(Integer::parseInt);
+	private static final VehicleFacetTree EMPTY = new VehicleFacetTree(new Facet(null, 0, 
+			Collections.unmodifiableNavigableMap(new TreeMap<String, Facet>(YEAR_ORDER))));
+	
+	private final Facet root;
+	private final List<Integer> years;
+	
+	private VehicleFacetTree(Facet root) {
+		this.root = root;
+		List<Integer> years = new ArrayList<Integer>(root.names.size());
+		for (String year : root.names) {
+			years.add(Integer.valueOf(year));
+		}
+		this.years = Collections.unmodifiableList(years);
+	}
+	
+	/**
+	 * @return A tree without any vehicles.
+	 */
+	public static VehicleFacetTree empty() {
+		return EMPTY;
+	}
+	
+	/**
+	 * @param counts The number of vehicles of every year, make, and model combination.
+	 * @return A tree of the given combinations.
+	 */
+	public static VehicleFacetTree of(Collection<VehicleFacetCount> counts) {
+		List<Delta> deltas = new ArrayList<Delta>(counts.size());
+		for (VehicleFacetCount count : counts) {
+			deltas.add(new Delta(count.getYear(), count.getMake(), count.getModel(), count.getCount()));
+		}
+		return EMPTY.apply(deltas);
+	}
+	
+	/**
+	 * @param saved Vehicles to count.
+	 * @param deleted Vehicles to stop counting. Overwritten vehicles are passed in their previous state.
+	 * @return A tree with the changes applied. This tree is left unchanged.
+	 */
+	public VehicleFacetTree withChanges(Collection<Vehicle> saved, Collection<Vehicle> deleted) {
+		List<Delta> deltas = new ArrayList<Delta>(saved.size() + deleted.size());
+		for (Vehicle vehicle : saved) {
+			deltas.add(new Delta(vehicle.getYear(), vehicle.getMake(), vehicle.getModel(), 1));
+		}
+		for (Vehicle vehicle : deleted) {
+			deltas.add(new Delta(vehicle.getYear(), vehicle.getMake(), vehicle.getModel(), -1));
+		}
+		return deltas.isEmpty() ? this : apply(deltas);
+	}
+	
+	private VehicleFacetTree apply(List<Delta> deltas) {
+		return new VehicleFacetTree(root.apply(deltas, 0));
+	}
+	
+	/**
+	 * @return Every model year, ascending.
+	 */
+	public List<Integer> getYears() {
+		return years;
+	}
+	
+	/**
+	 * @param year The model year.
+	 * @return The makes of the year, sorted ignoring case. Empty for unknown years.
+	 */
+	public List<String> getMakes(int year) {
+		Facet facet = root.children.get(Integer.toString(year));
+		return facet == null ? Collections.emptyList() : facet.names;
+	}
+	
+	/**
+	 * @param year The model year.
+	 * @param make The make, case is ignored.
+	 * @return The models of the make in the year, sorted ignoring case. Empty for unknown years and makes.
+	 */
+	public List<String> getModels(int year, String make) {
+		Facet facet = root.children.get(Integer.toString(year));
+		facet = facet == null || make == null ? null : facet.children.get(key(make));
+		return facet == null ? Collections.emptyList() : facet.names;
+	}
+	
+	/**
+	 * @return The number of vehicles of every make across all years. Spellings differing only in case are counted 
+	 * 		together under the first spelling found.
+	 */
+	public Map<String, Long> countMakes() {
+		return count(2);
+	}
+	
+	/**
+	 * @return The number of vehicles of every model across all years and makes. Spellings differing only in case are 
+	 * 		counted together under the first spelling found.
+	 */
+	public Map<String, Long> countModels() {
+		return count(3);
+	}
+	
+	private Map<String, Long> count(int depth) {
+		Map<String, String> names = new HashMap<String, String>();
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		List<Facet> level = Collections.singletonList(root);
+		for (int i = 0; i < depth; i++) {
+			List<Facet> next = new ArrayList<Facet>();
+			level.forEach(facet -> next.addAll(facet.children.values()));
+			level = next;
+		}
+		for (Facet facet : level) {
+			String name = names.computeIfAbsent(key(facet.name), key -> facet.name);
+			counts.merge(name, facet.count, Long::sum);
+		}
+		return counts;
+	}
+	
+	/**
+	 * @return The number of vehicles in the tree.
+	 */
+	public long size() {
+		return root.count;
+	}
+	
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * A year, make, or model node.
+	 */
+	private static final class Facet {
+		
+		private static final NavigableMap<String, Facet> NO_CHILDREN = Collections.emptyNavigableMap();
+		
+		final String name;
+		final long count;
+		final NavigableMap<String, Facet> children;
+		final List<String> names;
+		
+		Facet(String name, long count, NavigableMap<String, Facet> children) {
+			this.name = name;
+			this.count = count;
+			this.children = children;
+			List<String> names = new ArrayList<String>(children.size());
+			for (Facet child : children.values()) {
+				names.add(child.name);
+			}
+			this.names = Collections.unmodifiableList(names);
+		}
+		
+		/**
+		 * Applies changes below this node. Only the children touched by the changes are copied.
+		 * 
+		 * @param deltas The changes, all sharing this node's path.
+		 * @param depth The depth of this node's children: 0 for years, 1 for makes, 2 for models.
+		 */
+		Facet apply(List<Delta> deltas, int depth) {
+			long count = this.count;
+			Map<String, List<Delta>> byChild = new LinkedHashMap<String, List<Delta>>();
+			for (Delta delta : deltas) {
+				count += delta.count;
+				if (depth < Delta.DEPTH) {
+					byChild.computeIfAbsent(key(delta.path[depth]), key -> new ArrayList<Delta>()).add(delta);
+				}
+			}
+			if (byChild.isEmpty()) {
+				return new Facet(name, count, children);
+			}
+			
+			TreeMap<String, Facet> children = new TreeMap<String, Facet>(this.children);
+			for (Map.Entry<String, List<Delta>> change : byChild.entrySet()) {
+				Facet child = children.get(change.getKey());
+				if (child == null) {
+					child = new Facet(change.getValue().get(0).path[depth], 0, NO_CHILDREN);
+				}
+				child = child.apply(change.getValue(), depth + 1);
+				if (child.count > 0) {
+					children.put(change.getKey(), child);
+				} else {
+					children.remove(change.getKey());
+				}
+			}
+			return new Facet(name, count, Collections.unmodifiableNavigableMap(children));
+		}
+	}
+	
+	/**
+	 * A change of the number of vehicles of a year, make, and model.
+	 */
+	private static final class Delta {
+		
+		static final int DEPTH = 3;
+		
+		final String[] path;
+		final long count;
+		
+		Delta(int year, String make, String model, long count) {
+			this.path = new String[] { Integer.toString(year), String.valueOf(make), String.valueOf(model) };
+			this.count = count;
+		}
+	}
+}
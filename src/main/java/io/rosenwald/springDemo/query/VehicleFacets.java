@@ -0,0 +1,82 @@
+package io.rosenwald.springDemo.query;
+
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.db.VehicleDataChangedEvent;
+import io.rosenwald.springDemo.db.VehicleRepository;
+
+/**
+ * Keeps the {@link VehicleFacetTree} of the vehicle table. The tree is built from a single grouped count query once the 
+ * application context is up and after every bulk change such as an import. Individual saves and deletes are applied to 
+ * a copy of the current tree. Readers only read the volatile tree reference and never wait on writers.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleFacets {
+	
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+	
+	@Autowired
+	private VehicleRepository repository;
+	
+	private volatile VehicleFacetTree tree;
+	
+	@EventListener(ContextRefreshedEvent.class)
+	public void onStart() {
+		try {
+			reload();
+		} catch (RuntimeException ex) {
+			logger.error("Failed to build the vehicle facet tree, retrying on first use." + System.lineSeparator() + ex.getMessage());
+		}
+	}
+	
+	// Ahead of listeners reading the tree, such as VehicleSuggestions, and of the dataset version.
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	@EventListener
+	public void onVehicleDataChanged(VehicleDataChangedEvent event) {
+		if (event.isBulk()) {
+			reload();
+		} else {
+			apply(event);
+		}
+	}
+	
+	/**
+	 * Rebuilds the tree from the repository.
+	 */
+	public synchronized void reload() {
+		Date start = new Date();
+		tree = VehicleFacetTree.of(repository.countByYearAndMakeAndModel());
+		logger.info("Built the facet tree of " + tree.size() + " vehicles in " + (new Date().getTime() - start.getTime()) + "ms.");
+	}
+	
+	private synchronized void apply(VehicleDataChangedEvent event) {
+		// Not built yet, the initial build will see the change.
+		if (tree == null) return;
+		tree = tree.withChanges(event.getSaved(), event.getDeleted());
+	}
+	
+	/**
+	 * @return The current tree, built first if building it at startup failed.
+	 */
+	public VehicleFacetTree getTree() {
+		VehicleFacetTree current = tree;
+		if (current == null) {
+			reload();
+			current = tree;
+		}
+		return current;
+	}
+}
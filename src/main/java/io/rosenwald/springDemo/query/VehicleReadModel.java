@@ -0,0 +1,140 @@
+package io.rosenwald.springDemo.query;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.db.VehicleDataChangedEvent;
+import io.rosenwald.springDemo.db.VehicleFilter;
+import io.rosenwald.springDemo.db.VehicleFinder;
+import io.rosenwald.springDemo.db.VehicleRepository;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * Answers the vehicle read queries from an in-memory {@link VehicleSnapshot} instead of the database. The snapshot is 
+ * loaded once the application context is up and replaced whenever a {@link VehicleDataChangedEvent} is published: 
+ * individual saves and deletes are layered over the current snapshot without copying it, see 
+ * {@link VehicleSnapshot#withChanges(Collection, Collection)}, bulk changes reload and thereby compact it from the 
+ * repository. Readers only read the volatile snapshot reference and never wait on writers.
+ * 
+ * Enabled with io.rosenwald.springDemo.read-model=true. Until the first snapshot is loaded, {@link #isLoaded()} is 
+ * false and queries should go to the repository.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+@ConditionalOnProperty(prefix = "io.rosenwald.springDemo", value = "read-model", havingValue = "true", matchIfMissing = false)
+public class VehicleReadModel implements VehicleFinder {
+	
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+	
+	@Autowired
+	private VehicleRepository repository;
+	
+	private volatile VehicleSnapshot snapshot;
+	
+	@EventListener(ContextRefreshedEvent.class)
+	public void onStart() {
+		try {
+			reload();
+		} catch (RuntimeException ex) {
+			logger.error("Failed to load the vehicle read model, querying the repository instead." + System.lineSeparator() + ex.getMessage());
+		}
+	}
+	
+	// Ahead of the dataset version, see VehicleDataChangedEvent.
+	@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+	@EventListener
+	public void onVehicleDataChanged(VehicleDataChangedEvent event) {
+		if (event.isBulk()) {
+			reload();
+		} else {
+			apply(event.getSaved(), event.getDeleted());
+		}
+	}
+	
+	/**
+	 * Replaces the snapshot with a fresh copy of the repository.
+	 */
+	public synchronized void reload() {
+		Date start = new Date();
+		snapshot = VehicleSnapshot.of(repository.findAll());
+		logger.info("Loaded " + snapshot.size() + " vehicles into the read model in " + (new Date().getTime() - start.getTime()) + "ms.");
+	}
+	
+	private synchronized void apply(Collection<Vehicle> saved, Collection<Vehicle> deleted) {
+		// Not loaded yet, the initial load will see the change.
+		if (snapshot == null) return;
+		snapshot = snapshot.withChanges(saved, deleted);
+	}
+	
+	/**
+	 * @return True once a snapshot has been loaded.
+	 */
+	public boolean isLoaded() {
+		return snapshot != null;
+	}
+	
+	/**
+	 * @return The current snapshot. Queries against it stay consistent even if a newer snapshot is published meanwhile.
+	 */
+	public VehicleSnapshot getSnapshot() {
+		VehicleSnapshot current = snapshot;
+		Assert.state(current != null, "The vehicle read model has not been loaded yet.");
+		return current;
+	}
+
+	@Override
+	public List<Vehicle> findAll() {
+		return getSnapshot().findAll();
+	}
+
+	@Override
+	public List<Vehicle> findByYear(int year) {
+		return getSnapshot().findByYear(year);
+	}
+
+	@Override
+	public List<Vehicle> findByMake(String make) {
+		return getSnapshot().findByMake(make);
+	}
+
+	@Override
+	public List<Vehicle> findByModel(String model) {
+		return getSnapshot().findByModel(model);
+	}
+
+	@Override
+	public List<Integer> findAllYears() {
+		return getSnapshot().findAllYears();
+	}
+
+	@Override
+	public List<Vehicle> findByYearAndMake(int year, String make) {
+		return getSnapshot().findByYearAndMake(year, make);
+	}
+
+	@Override
+	public List<Vehicle> findByYearAndMakeAndModel(int year, String make, String model) {
+		return getSnapshot().findByYearAndMakeAndModel(year, make, model);
+	}
+
+	@Override
+	public List<Vehicle> findPage(VehicleFilter filter, UUID after, int limit) {
+		return getSnapshot().findPage(filter, after, limit);
+	}
+}
@@ -0,0 +1,712 @@
+package io.rosenwald.springDemo.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+import org.springframework.util.Assert;
+
+import io.rosenwald.springDemo.db.VehicleFilter;
+import io.rosenwald.springDemo.db.VehicleFinder;
+import io.rosenwald.springDemo.db.VehicleKeyset;
+import io.rosenwald.springDemo.db.VehicleStatsQuery;
+import io.rosenwald.springDemo.db.VehicleStatsQuery.Dimension;
+import io.rosenwald.springDemo.db.VehicleStatsQuery.Function;
+import io.rosenwald.springDemo.db.VehicleStatsQuery.Metric;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * An immutable, column oriented copy of every vehicle. Numeric fields are kept in primitive arrays, string fields as 
+ * codes into a shared dictionary, and every year, make, and model maps to a sorted posting list of the rows it occurs 
+ * in. Combined lookups intersect the posting lists of their keys. Rows are sorted by ID like the database sorts them, 
+ * so posting lists double as keyset pagination indexes, see {@link VehicleKeyset}.
+ * 
+ * Queries materialize fresh {@link Vehicle} instances for the matching rows, so callers may modify the results. 
+ * Content hashes are not kept. Changes produce a new snapshot, see {@link #withChanges(Collection, Collection)}. It 
+ * shares the columns of this one, marks the rows of changed vehicles as removed, and keeps the saved vehicles in a 
+ * small second block of columns. Queries merge the two blocks in ID order. Once the changes outgrow a fraction of the 
+ * snapshot, the blocks are compacted into one; reloading the snapshot with {@link #of(Collection)} compacts it as well.
+ * 
+ * {@link #aggregate(VehicleStatsQuery)} reduces the primitive columns directly, in parallel on the common fork-join 
+ * pool, without materializing any vehicle.
+ * 
+ * Every snapshot has its own {@link #getVersion()}, so results derived from it can be cached under it.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleSnapshot implements VehicleFinder {
+	
+	private static final int NULL_CODE = -1;
+	private static final int[] NO_ROWS = new int[0];
+	private static final String[] NO_STRINGS = new String[0];
+	
+	/**
+	 * The changed and removed rows a snapshot keeps before compacting, at least. Larger snapshots keep up to an eighth 
+	 * of their rows.
+	 */
+	private static final int MIN_COMPACTION_ROWS = 1024;
+	
+	private static final AtomicLong VERSIONS = new AtomicLong();
+	
+	private final long version = VERSIONS.incrementAndGet();
+	private final Block base;
+	private final Map<String, Integer> baseCodes;
+	private final String[] baseDictionary;
+	private final BitSet removed;
+	private final Block changes;
+	private final String[] addedStrings;
+	
+	private final int size;
+	private final List<Integer> allYears;
+	
+	private VehicleSnapshot(List<Vehicle> vehicles) {
+		Map<String, Integer> codes = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		base = new Block(vehicles, value -> encode(value, codes, strings, 0));
+		baseCodes = codes;
+		baseDictionary = strings.toArray(new String[strings.size()]);
+		removed = new BitSet();
+		changes = new Block(new ArrayList<Vehicle>(), value -> NULL_CODE);
+		addedStrings = NO_STRINGS;
+		size = base.size;
+		List<Integer> sortedYears = new ArrayList<Integer>(base.rowsByYear.keySet());
+		Collections.sort(sortedYears);
+		allYears = Collections.unmodifiableList(sortedYears);
+	}
+	
+	/**
+	 * Layers changes over the base block of a previous snapshot. Strings missing from the base dictionary get codes 
+	 * following it.
+	 */
+	private VehicleSnapshot(VehicleSnapshot previous, BitSet removed, List<Vehicle> changed) {
+		base = previous.base;
+		baseCodes = previous.baseCodes;
+		baseDictionary = previous.baseDictionary;
+		this.removed = removed;
+		Map<String, Integer> codes = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		changes = new Block(changed, value -> {
+			Integer code = value == null ? null : baseCodes.get(value);
+			return code != null ? code : encode(value, codes, strings, baseDictionary.length);
+		});
+		addedStrings = strings.toArray(new String[strings.size()]);
+		size = base.size - removed.cardinality() + changes.size;
+		
+		Set<Integer> years = new TreeSet<Integer>(changes.rowsByYear.keySet());
+		base.rowsByYear.forEach((year, rows) -> {
+			if (!years.contains(year) && hasRemainingRow(rows)) {
+				years.add(year);
+			}
+		});
+		allYears = Collections.unmodifiableList(new ArrayList<Integer>(years));
+	}
+	
+	/**
+	 * @param vehicles The vehicles to copy.
+	 * @return A snapshot of the given vehicles.
+	 */
+	public static VehicleSnapshot of(Collection<Vehicle> vehicles) {
+		Assert.notNull(vehicles, "The provided vehicles must not be null.");
+		return new VehicleSnapshot(new ArrayList<Vehicle>(vehicles));
+	}
+	
+	/**
+	 * Creates a snapshot with vehicles added, replaced, or removed. This snapshot is left unchanged. The work is 
+	 * proportional to the changes kept since the last compaction rather than to the size of the snapshot, except for 
+	 * the compactions themselves.
+	 * 
+	 * @param saved Vehicles to add, replacing vehicles with the same ID.
+	 * @param deleted Vehicles to remove by their ID.
+	 * @return The changed snapshot.
+	 */
+	public VehicleSnapshot withChanges(Collection<Vehicle> saved, Collection<Vehicle> deleted) {
+		Map<UUID, Vehicle> changed = new HashMap<UUID, Vehicle>();
+		for (int row = 0; row < changes.size; row++) {
+			changed.put(changes.id(row), vehicle(changes, row));
+		}
+		BitSet removed = (BitSet) this.removed.clone();
+		for (Vehicle vehicle : deleted) {
+			changed.remove(vehicle.getId());
+			remove(removed, vehicle.getId());
+		}
+		for (Vehicle vehicle : saved) {
+			changed.put(vehicle.getId(), vehicle);
+			remove(removed, vehicle.getId());
+		}
+		
+		if (changed.size() + removed.cardinality() > Math.max(MIN_COMPACTION_ROWS, base.size / 8)) {
+			List<Vehicle> vehicles = new ArrayList<Vehicle>(base.size + changed.size());
+			for (int row = removed.nextClearBit(0); row < base.size; row = removed.nextClearBit(row + 1)) {
+				vehicles.add(vehicle(base, row));
+			}
+			vehicles.addAll(changed.values());
+			return new VehicleSnapshot(vehicles);
+		}
+		return new VehicleSnapshot(this, removed, new ArrayList<Vehicle>(changed.values()));
+	}
+	
+	/**
+	 * @return The number of vehicles in the snapshot.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return The version of this snapshot, greater than that of every snapshot created before it.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public List<Vehicle> findAll() {
+		return find(block -> null, null, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Vehicle> findByYear(int year) {
+		return find(block -> block.year(year), null, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Vehicle> findByMake(String make) {
+		return find(block -> rows(block.rowsByMake, make), null, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Vehicle> findByModel(String model) {
+		return find(block -> rows(block.rowsByModel, model), null, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Integer> findAllYears() {
+		return allYears;
+	}
+
+	@Override
+	public List<Vehicle> findByYearAndMake(int year, String make) {
+		return find(block -> intersect(block.year(year), rows(block.rowsByMake, make)), null, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Vehicle> findByYearAndMakeAndModel(int year, String make, String model) {
+		return find(block -> intersect(intersect(block.year(year), rows(block.rowsByMake, make)), 
+				rows(block.rowsByModel, model)), null, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public List<Vehicle> findPage(VehicleFilter filter, UUID after, int limit) {
+		return find(block -> block.rows(filter), after, limit);
+	}
+	
+	/**
+	 * Merges the selected rows of both blocks in ID order. Removed rows of the base block are skipped; the IDs left in 
+	 * it never occur in the changes.
+	 * 
+	 * @param selector The sorted rows of a block to return, or null for all of them.
+	 * @param after The ID the vehicles have to follow, or null for none.
+	 */
+	private List<Vehicle> find(java.util.function.Function<Block, int[]> selector, UUID after, int limit) {
+		Cursor kept = new Cursor(base, selector.apply(base), after, removed);
+		Cursor changed = new Cursor(changes, selector.apply(changes), after, null);
+		List<Vehicle> vehicles = new ArrayList<Vehicle>(Math.min(limit, kept.remaining() + changed.remaining()));
+		while (vehicles.size() < limit && (kept.hasNext() || changed.hasNext())) {
+			Cursor next = !kept.hasNext() || changed.hasNext() && VehicleKeyset.compare(changed.id(), kept.id()) < 0 
+					? changed : kept;
+			vehicles.add(vehicle(next.block, next.next()));
+		}
+		return vehicles;
+	}
+	
+	/**
+	 * Runs an aggregation as a parallel reduction. Every worker groups its share of the rows into its own map of 
+	 * accumulators, the maps are merged pairwise.
+	 * 
+	 * @param query The aggregation to run.
+	 * @return One map per group, see {@link VehicleStatsQuery}.
+	 */
+	public List<Map<String, Object>> aggregate(VehicleStatsQuery query) {
+		List<Dimension> dimensions = query.getGroupBy();
+		List<Metric> metrics = query.getMetrics();
+		int[][] folds = new int[dimensions.size()][];
+		for (int i = 0; i < folds.length; i++) {
+			folds[i] = dimensions.get(i).isIgnoringCase() ? caseFolding() : null;
+		}
+		
+		Map<GroupKey, double[]> groups = reduce(base, removed, query.getFilter(), dimensions, folds, metrics);
+		reduce(changes, null, query.getFilter(), dimensions, folds, metrics)
+				.forEach((key, accumulator) -> groups.merge(key, accumulator, (a, b) -> merge(a, b, metrics)));
+		if (dimensions.isEmpty() && groups.isEmpty()) {
+			groups.put(new GroupKey(new int[0]), newAccumulator(metrics));
+		}
+		
+		List<Map.Entry<GroupKey, double[]>> sorted = new ArrayList<Map.Entry<GroupKey, double[]>>(groups.entrySet());
+		sorted.sort((left, right) -> compare(left.getKey(), right.getKey(), dimensions));
+		List<Map<String, Object>> results = new ArrayList<Map<String, Object>>(sorted.size());
+		for (Map.Entry<GroupKey, double[]> group : sorted) {
+			Map<String, Object> result = new LinkedHashMap<String, Object>();
+			for (int i = 0; i < dimensions.size(); i++) {
+				result.put(dimensions.get(i).getFieldName(), value(dimensions.get(i), group.getKey().values[i]));
+			}
+			double[] accumulator = group.getValue();
+			for (int i = 0; i < metrics.size(); i++) {
+				result.put(metrics.get(i).getLabel(), result(metrics.get(i), accumulator[0], accumulator[i + 1]));
+			}
+			results.add(result);
+		}
+		return results;
+	}
+	
+	/**
+	 * Groups the rows of a block matching the filter. Dimension values are dictionary codes, so the groups of both 
+	 * blocks can be merged.
+	 * 
+	 * @param skipped The rows to leave out, or null for none.
+	 */
+	private static Map<GroupKey, double[]> reduce(Block block, BitSet skipped, VehicleFilter filter, List<Dimension> dimensions, 
+			int[][] folds, List<Metric> metrics) {
+		int[][] columns = new int[dimensions.size()][];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = block.column(dimensions.get(i));
+		}
+		int[] rows = block.rows(filter);
+		IntStream stream = rows == null ? IntStream.range(0, block.size) : Arrays.stream(rows);
+		if (skipped != null && !skipped.isEmpty()) {
+			stream = stream.filter(row -> !skipped.get(row));
+		}
+		return stream.parallel().collect(HashMap::new, (map, row) -> {
+			int[] key = new int[columns.length];
+			for (int i = 0; i < key.length; i++) {
+				int value = columns[i][row];
+				key[i] = folds[i] == null || value == NULL_CODE ? value : folds[i][value];
+			}
+			accumulate(map.computeIfAbsent(new GroupKey(key), group -> newAccumulator(metrics)), block, row, metrics);
+		}, (left, right) -> right.forEach((key, accumulator) -> left.merge(key, accumulator, (a, b) -> merge(a, b, metrics))));
+	}
+	
+	/**
+	 * @return For every dictionary code, the first code of a string equal to it ignoring case.
+	 */
+	private int[] caseFolding() {
+		int[] folded = new int[baseDictionary.length + addedStrings.length];
+		Map<String, Integer> firstCodes = new HashMap<String, Integer>();
+		for (int code = 0; code < folded.length; code++) {
+			Integer first = firstCodes.putIfAbsent(key(string(code)), code);
+			folded[code] = first == null ? code : first;
+		}
+		return folded;
+	}
+	
+	/**
+	 * Accumulators hold the group's row count followed by one running value per metric: the sum for sums and averages, 
+	 * the minimum or maximum otherwise.
+	 */
+	private static double[] newAccumulator(List<Metric> metrics) {
+		double[] accumulator = new double[metrics.size() + 1];
+		for (int i = 0; i < metrics.size(); i++) {
+			Function function = metrics.get(i).getFunction();
+			accumulator[i + 1] = function == Function.MIN ? Double.POSITIVE_INFINITY 
+					: function == Function.MAX ? Double.NEGATIVE_INFINITY : 0;
+		}
+		return accumulator;
+	}
+	
+	private static void accumulate(double[] accumulator, Block block, int row, List<Metric> metrics) {
+		accumulator[0]++;
+		for (int i = 0; i < metrics.size(); i++) {
+			Metric metric = metrics.get(i);
+			if (metric.getField() == null) continue;
+			double value = block.field(metric.getField(), row);
+			switch (metric.getFunction()) {
+			case MIN: 	accumulator[i + 1] = Math.min(accumulator[i + 1], value); break;
+			case MAX: 	accumulator[i + 1] = Math.max(accumulator[i + 1], value); break;
+			default: 	accumulator[i + 1] += value; break;
+			}
+		}
+	}
+	
+	private static double[] merge(double[] left, double[] right, List<Metric> metrics) {
+		left[0] += right[0];
+		for (int i = 0; i < metrics.size(); i++) {
+			switch (metrics.get(i).getFunction()) {
+			case MIN: 	left[i + 1] = Math.min(left[i + 1], right[i + 1]); break;
+			case MAX: 	left[i + 1] = Math.max(left[i + 1], right[i + 1]); break;
+			default: 	left[i + 1] += right[i + 1]; break;
+			}
+		}
+		return left;
+	}
+	
+	private static Object result(Metric metric, double count, double value) {
+		switch (metric.getFunction()) {
+		case COUNT: return (long) count;
+		case SUM: 	return count == 0 ? null : value;
+		case AVG: 	return count == 0 ? null : value / count;
+		default: 	return count == 0 ? null : value;
+		}
+	}
+	
+	private Object value(Dimension dimension, int value) {
+		return dimension == Dimension.YEAR || dimension == Dimension.CYLINDERS ? (Object) value : string(value);
+	}
+	
+	/**
+	 * Orders groups like the database sorts them: numbers ascending, strings with null first and ignoring case where the 
+	 * dimension does.
+	 */
+	private int compare(GroupKey left, GroupKey right, List<Dimension> dimensions) {
+		for (int i = 0; i < dimensions.size(); i++) {
+			Dimension dimension = dimensions.get(i);
+			int comparison;
+			if (dimension == Dimension.YEAR || dimension == Dimension.CYLINDERS) {
+				comparison = Integer.compare(left.values[i], right.values[i]);
+			} else {
+				String leftString = string(left.values[i]);
+				String rightString = string(right.values[i]);
+				if (leftString == null || rightString == null) {
+					comparison = leftString == null ? (rightString == null ? 0 : -1) : 1;
+				} else {
+					comparison = dimension.isIgnoringCase() ? key(leftString).compareTo(key(rightString)) : leftString.compareTo(rightString);
+				}
+			}
+			if (comparison != 0) return comparison;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Marks the row of the vehicle with the given ID as removed, if the base block holds it.
+	 */
+	private void remove(BitSet removed, UUID id) {
+		int row = base.indexOf(id);
+		if (row >= 0) {
+			removed.set(row);
+		}
+	}
+	
+	private boolean hasRemainingRow(int[] rows) {
+		for (int row : rows) {
+			if (!removed.get(row)) return true;
+		}
+		return false;
+	}
+	
+	private Vehicle vehicle(Block block, int row) {
+		return new Vehicle(block.id(row), block.years[row], string(block.makes[row]), string(block.models[row]), 
+				string(block.drives[row]), string(block.transmissions[row]), block.cylinders[row], block.displacements[row], 
+				string(block.altTypes[row]), string(block.evMotors[row]));
+	}
+	
+	private String string(int code) {
+		return code == NULL_CODE ? null 
+				: code < baseDictionary.length ? baseDictionary[code] : addedStrings[code - baseDictionary.length];
+	}
+	
+	private static int[] rows(Map<String, int[]> postings, String value) {
+		return value == null ? NO_ROWS : postings.getOrDefault(key(value), NO_ROWS);
+	}
+	
+	/**
+	 * Intersects two sorted posting lists.
+	 */
+	private static int[] intersect(int[] left, int[] right) {
+		int[] result = new int[Math.min(left.length, right.length)];
+		int count = 0;
+		for (int i = 0, j = 0; i < left.length && j < right.length;) {
+			if (left[i] < right[j]) {
+				i++;
+			} else if (left[i] > right[j]) {
+				j++;
+			} else {
+				result[count++] = left[i];
+				i++;
+				j++;
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+	
+	/**
+	 * @param offset The code of the first string in the list.
+	 */
+	private static int encode(String value, Map<String, Integer> codes, List<String> strings, int offset) {
+		if (value == null) return NULL_CODE;
+		return codes.computeIfAbsent(value, key -> {
+			strings.add(key);
+			return offset + strings.size() - 1;
+		});
+	}
+	
+	private static String key(String value) {
+		return value.toLowerCase(Locale.ROOT);
+	}
+	
+	private static <K> Map<K, int[]> toPostingLists(Map<K, IntList> postings) {
+		Map<K, int[]> lists = new HashMap<K, int[]>(postings.size() * 2);
+		postings.forEach((key, rows) -> lists.put(key, rows.toArray()));
+		return lists;
+	}
+	
+	/**
+	 * Columns and posting lists of vehicles sorted by ID. String fields are encoded by the snapshot, which owns the 
+	 * dictionary.
+	 */
+	private static final class Block {
+		final int size;
+		final long[] idHigh;
+		final long[] idLow;
+		final int[] years;
+		final int[] cylinders;
+		final float[] displacements;
+		final int[] makes;
+		final int[] models;
+		final int[] drives;
+		final int[] transmissions;
+		final int[] altTypes;
+		final int[] evMotors;
+		
+		final Map<Integer, int[]> rowsByYear;
+		final Map<String, int[]> rowsByMake;
+		final Map<String, int[]> rowsByModel;
+		
+		Block(List<Vehicle> vehicles, ToIntFunction<String> encoder) {
+			vehicles.sort(VehicleKeyset.BY_ID);
+			size = vehicles.size();
+			idHigh = new long[size];
+			idLow = new long[size];
+			years = new int[size];
+			cylinders = new int[size];
+			displacements = new float[size];
+			makes = new int[size];
+			models = new int[size];
+			drives = new int[size];
+			transmissions = new int[size];
+			altTypes = new int[size];
+			evMotors = new int[size];
+			
+			Map<Integer, IntList> yearPostings = new HashMap<Integer, IntList>();
+			Map<String, IntList> makePostings = new HashMap<String, IntList>();
+			Map<String, IntList> modelPostings = new HashMap<String, IntList>();
+			
+			int row = 0;
+			for (Vehicle vehicle : vehicles) {
+				idHigh[row] = vehicle.getId().getMostSignificantBits();
+				idLow[row] = vehicle.getId().getLeastSignificantBits();
+				years[row] = vehicle.getYear();
+				cylinders[row] = vehicle.getCylinders();
+				displacements[row] = vehicle.getDisplacement();
+				makes[row] = encoder.applyAsInt(vehicle.getMake());
+				models[row] = encoder.applyAsInt(vehicle.getModel());
+				drives[row] = encoder.applyAsInt(vehicle.getDrive());
+				transmissions[row] = encoder.applyAsInt(vehicle.getTransmission());
+				altTypes[row] = encoder.applyAsInt(vehicle.getAltType());
+				evMotors[row] = encoder.applyAsInt(vehicle.getEvMotor());
+				
+				yearPostings.computeIfAbsent(vehicle.getYear(), key -> new IntList()).add(row);
+				if (vehicle.getMake() != null) {
+					makePostings.computeIfAbsent(key(vehicle.getMake()), key -> new IntList()).add(row);
+				}
+				if (vehicle.getModel() != null) {
+					modelPostings.computeIfAbsent(key(vehicle.getModel()), key -> new IntList()).add(row);
+				}
+				row++;
+			}
+			
+			rowsByYear = toPostingLists(yearPostings);
+			rowsByMake = toPostingLists(makePostings);
+			rowsByModel = toPostingLists(modelPostings);
+		}
+		
+		UUID id(int row) {
+			return new UUID(idHigh[row], idLow[row]);
+		}
+		
+		int[] year(int year) {
+			return rowsByYear.getOrDefault(year, NO_ROWS);
+		}
+		
+		/**
+		 * @return The rows matching the filter, or null if the filter matches every row.
+		 */
+		int[] rows(VehicleFilter filter) {
+			int[] rows = null;
+			if (filter.getYear() != null) {
+				rows = year(filter.getYear());
+			}
+			if (filter.getMake() != null) {
+				rows = rows == null ? VehicleSnapshot.rows(rowsByMake, filter.getMake()) 
+						: intersect(rows, VehicleSnapshot.rows(rowsByMake, filter.getMake()));
+			}
+			if (filter.getModel() != null) {
+				rows = rows == null ? VehicleSnapshot.rows(rowsByModel, filter.getModel()) 
+						: intersect(rows, VehicleSnapshot.rows(rowsByModel, filter.getModel()));
+			}
+			return rows;
+		}
+		
+		/**
+		 * @return The first row whose ID follows the given ID, or the size if there is none.
+		 */
+		int firstRowAfter(UUID after) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (VehicleKeyset.compare(id(middle), after) <= 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+		
+		/**
+		 * @return The row of the given ID, or -1 if there is none.
+		 */
+		int indexOf(UUID id) {
+			int row = firstRowAfter(id) - 1;
+			return row >= 0 && idHigh[row] == id.getMostSignificantBits() && idLow[row] == id.getLeastSignificantBits() ? row : -1;
+		}
+		
+		int[] column(Dimension dimension) {
+			switch (dimension) {
+			case YEAR: 			return years;
+			case MAKE: 			return makes;
+			case MODEL: 		return models;
+			case DRIVE: 		return drives;
+			case TRANSMISSION: 	return transmissions;
+			case CYLINDERS: 	return cylinders;
+			case ALT_TYPE: 		return altTypes;
+			default: 			throw new IllegalStateException("Unknown dimension " + dimension + ".");
+			}
+		}
+		
+		double field(VehicleStatsQuery.Field field, int row) {
+			switch (field) {
+			case YEAR: 			return years[row];
+			case CYLINDERS: 	return cylinders[row];
+			case DISPLACEMENT: 	return displacements[row];
+			default: 			throw new IllegalStateException("Unknown field " + field + ".");
+			}
+		}
+	}
+	
+	/**
+	 * Walks the selected rows of a block in ID order, starting after an ID and skipping removed rows.
+	 */
+	private static final class Cursor {
+		final Block block;
+		private final int[] rows;
+		private final BitSet skipped;
+		private final int end;
+		private int position;
+		
+		/**
+		 * @param rows The sorted rows to walk, or null for all rows.
+		 * @param after The ID to start after, or null to start at the first row.
+		 * @param skipped The rows to skip, or null for none.
+		 */
+		Cursor(Block block, int[] rows, UUID after, BitSet skipped) {
+			this.block = block;
+			this.rows = rows;
+			this.skipped = skipped;
+			end = rows == null ? block.size : rows.length;
+			int firstRow = after == null ? 0 : block.firstRowAfter(after);
+			if (rows == null) {
+				position = firstRow;
+			} else {
+				int start = Arrays.binarySearch(rows, firstRow);
+				position = start < 0 ? -start - 1 : start;
+			}
+			skip();
+		}
+		
+		boolean hasNext() {
+			return position < end;
+		}
+		
+		/**
+		 * @return At least the number of rows left.
+		 */
+		int remaining() {
+			return end - position;
+		}
+		
+		UUID id() {
+			return block.id(row());
+		}
+		
+		int next() {
+			int row = row();
+			position++;
+			skip();
+			return row;
+		}
+		
+		private int row() {
+			return rows == null ? position : rows[position];
+		}
+		
+		private void skip() {
+			while (skipped != null && position < end && skipped.get(row())) {
+				position++;
+			}
+		}
+	}
+	
+	/**
+	 * The dimension values of a group, as ints or dictionary codes.
+	 */
+	private static final class GroupKey {
+		final int[] values;
+		
+		GroupKey(int[] values) {
+			this.values = values;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof GroupKey && Arrays.equals(values, ((GroupKey) other).values);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(values);
+		}
+	}
+	
+	/**
+	 * Growable list of primitive ints. Rows are added in ascending order, so the lists come out sorted.
+	 */
+	private static class IntList {
+		private int[] values = new int[8];
+		private int size;
+		
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+		
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package io.rosenwald.springDemo.query;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import io.rosenwald.springDemo.db.JdbcVehicleStats;
+import io.rosenwald.springDemo.db.VehicleCacheConfig;
+import io.rosenwald.springDemo.db.VehicleDatasetVersion;
+import io.rosenwald.springDemo.db.VehicleStatsQuery;
+
+/**
+ * Runs {@link VehicleStatsQuery}s as a parallel reduction over the {@link VehicleReadModel}'s snapshot when it is 
+ * enabled and loaded, and as a GROUP BY query through {@link JdbcVehicleStats} otherwise.
+ * 
+ * Results are cached per query and version of the data they were computed from, so a result is never served after 
+ * that data changed. Results of the read model are cached under the {@link VehicleSnapshot#getVersion()} of the very 
+ * snapshot they were reduced from. Results of the database are cached under the {@link VehicleDatasetVersion} read 
+ * before the query; the version is only bumped once a change committed, so the query sees at least that version.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleStatistics {
+	
+	@Autowired
+	private JdbcVehicleStats jdbcStats;
+	
+	@Autowired(required = false)
+	private VehicleReadModel readModel;
+	
+	@Autowired
+	private VehicleDatasetVersion datasetVersion;
+	
+	@Autowired
+	private CacheManager cacheManager;
+	
+	/**
+	 * @param query The aggregation to run.
+	 * @return One map per group, see {@link VehicleStatsQuery}. Unmodifiable.
+	 */
+	public List<Map<String, Object>> aggregate(VehicleStatsQuery query) {
+		if (readModel != null && readModel.isLoaded()) {
+			VehicleSnapshot snapshot = readModel.getSnapshot();
+			return cached(VehicleCacheConfig.key(snapshot.getVersion(), query), () -> snapshot.aggregate(query));
+		}
+		return cached(VehicleCacheConfig.versionedKey(datasetVersion.getETag(), query), () -> jdbcStats.aggregate(query));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<Map<String, Object>> cached(Object key, Supplier<List<Map<String, Object>>> aggregation) {
+		Cache cache = cacheManager.getCache(VehicleCacheConfig.STATS);
+		ValueWrapper hit = cache == null ? null : cache.get(key);
+		if (hit != null) {
+			return (List<Map<String, Object>>) hit.get();
+		}
+		List<Map<String, Object>> result = Collections.unmodifiableList(aggregation.get());
+		if (cache != null) {
+			cache.put(key, result);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,103 @@
+package io.rosenwald.springDemo.query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import io.rosenwald.springDemo.db.VehicleDataChangedEvent;
+import io.rosenwald.springDemo.query.SuggestionTrie.Suggestion;
+
+/**
+ * Keeps {@link SuggestionTrie}s of the makes and models of all vehicles, ranked by their number of vehicles. The tries 
+ * are built from the counts of the {@link VehicleFacetTree}, so they follow imports, saves, and deletes without querying 
+ * the database. They are rebuilt right after the facet tree applied a change, and on first use whenever the facet tree 
+ * was replaced otherwise.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class VehicleSuggestions {
+	
+	public static final String MAKE = "make";
+	public static final String MODEL = "model";
+	
+	@Autowired
+	private VehicleFacets facets;
+	
+	private volatile Tries tries;
+	
+	// Right after VehicleFacets, and ahead of the dataset version.
+	@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+	@EventListener
+	public void onVehicleDataChanged(VehicleDataChangedEvent event) {
+		getTries();
+	}
+	
+	/**
+	 * @param prefix The start of the makes or models, case is ignored.
+	 * @param field {@link #MAKE}, {@link #MODEL}, or null to suggest both.
+	 * @param fuzzy Whether to also suggest values within an edit distance of one from the prefix.
+	 * @param limit The maximum number of suggestions.
+	 * @return The suggestions, most frequent first. When suggesting both fields, exact prefix matches of either field 
+	 * 		still come before fuzzy matches.
+	 * @throws IllegalArgumentException The field is neither make nor model.
+	 */
+	public List<Suggestion> suggest(String prefix, String field, boolean fuzzy, int limit) throws IllegalArgumentException {
+		Tries current = getTries();
+		if (MAKE.equalsIgnoreCase(field)) {
+			return current.makes.suggest(prefix, fuzzy, limit);
+		} else if (MODEL.equalsIgnoreCase(field)) {
+			return current.models.suggest(prefix, fuzzy, limit);
+		} else if (field != null) {
+			throw new IllegalArgumentException("Suggestions are only available for make and model, not '" + field + "'.");
+		}
+		
+		List<Suggestion> suggestions = merge(current.makes.suggest(prefix, false, limit), current.models.suggest(prefix, false, limit));
+		if (fuzzy && suggestions.size() < limit) {
+			List<Suggestion> fuzzyMatches = merge(current.makes.suggest(prefix, true, limit), current.models.suggest(prefix, true, limit));
+			fuzzyMatches.removeAll(suggestions);
+			suggestions.addAll(fuzzyMatches);
+		}
+		return suggestions.size() <= limit ? suggestions : new ArrayList<Suggestion>(suggestions.subList(0, limit));
+	}
+	
+	private static List<Suggestion> merge(List<Suggestion> makes, List<Suggestion> models) {
+		List<Suggestion> merged = new ArrayList<Suggestion>(makes.size() + models.size());
+		merged.addAll(makes);
+		merged.addAll(models);
+		merged.sort(Comparator.comparingLong(Suggestion::getCount).reversed());
+		return merged;
+	}
+	
+	private Tries getTries() {
+		VehicleFacetTree tree = facets.getTree();
+		Tries current = tries;
+		if (current == null || current.tree != tree) {
+			current = new Tries(tree);
+			tries = current;
+		}
+		return current;
+	}
+	
+	/**
+	 * The tries built from one facet tree.
+	 */
+	private static final class Tries {
+		final VehicleFacetTree tree;
+		final SuggestionTrie makes;
+		final SuggestionTrie models;
+		
+		Tries(VehicleFacetTree tree) {
+			this.tree = tree;
+			this.makes = SuggestionTrie.of(MAKE, tree.countMakes());
+			this.models = SuggestionTrie.of(MODEL, tree.countModels());
+		}
+	}
+}
@@ -0,0 +1,375 @@
+package io.rosenwald.springDemo.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Compresses responses with gzip when the client accepts it, the content type is one of the configured media types,
+ * and the body is at least min-response-size bytes. Compression happens in the application rather than in the servlet
+ * container, because only the embedded server reads the server.compression properties; containers the WAR is deployed
+ * to, such as WildFly, would otherwise send every response uncompressed.
+ *
+ * The start of the body is buffered until min-response-size bytes are written, then the decision is made. Flushes of
+ * the buffered start are held back until then, so streamed responses, such as exports flushing after their first
+ * vehicle, are compressed as well; every later flush sends what has been compressed so far. Responses of async requests are finished in their last dispatch, like
+ * {@link org.springframework.web.filter.ShallowEtagHeaderFilter} does, so the filter has to be registered for async
+ * dispatches as well.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+
+	private static final String RESPONSE_ATTRIBUTE = CompressionFilter.class.getName() + ".RESPONSE";
+	private static final String GZIP = "gzip";
+
+	private final List<MediaType> mediaTypes;
+	private final int minResponseSize;
+
+	/**
+	 * @param mediaTypes The content types of the responses to compress.
+	 * @param minResponseSize The size of the smallest body to compress, in bytes.
+	 */
+	public CompressionFilter(List<MediaType> mediaTypes, int minResponseSize) {
+		Assert.notEmpty(mediaTypes, "At least one media type to compress must be provided.");
+		Assert.isTrue(minResponseSize >= 0, "The minimum response size must not be negative.");
+		this.mediaTypes = new ArrayList<MediaType>(mediaTypes);
+		this.minResponseSize = minResponseSize;
+	}
+
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		CompressingResponse compressing = (CompressingResponse) request.getAttribute(RESPONSE_ATTRIBUTE);
+		if (compressing == null) {
+			compressing = new CompressingResponse(response, acceptsGzip(request));
+			request.setAttribute(RESPONSE_ATTRIBUTE, compressing);
+		}
+		// An async dispatch already gets the response the request was started with, which wraps the compressing one.
+		chain.doFilter(request, isAsyncDispatch(request) ? response : compressing);
+		if (!isAsyncStarted(request)) {
+			compressing.finish();
+		}
+	}
+
+	/**
+	 * @return Whether the Accept-Encoding headers of the request list gzip or * without a quality of 0.
+	 */
+	static boolean acceptsGzip(HttpServletRequest request) {
+		Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+		while (headers != null && headers.hasMoreElements()) {
+			for (String coding : StringUtils.tokenizeToStringArray(headers.nextElement(), ",")) {
+				String[] parts = coding.split(";");
+				String name = parts[0].trim();
+				if (GZIP.equalsIgnoreCase(name) || "*".equals(name)) {
+					return !hasZeroQuality(parts);
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasZeroQuality(String[] parts) {
+		for (int i = 1; i < parts.length; i++) {
+			String parameter = parts[i].trim();
+			if (parameter.startsWith("q=")) {
+				try {
+					return Double.parseDouble(parameter.substring(2)) == 0;
+				} catch (NumberFormatException ex) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Buffers the start of the body until it is known whether to compress it. Content-Length headers are held back,
+	 * since they are wrong once the body is compressed.
+	 */
+	private class CompressingResponse extends HttpServletResponseWrapper {
+		private final boolean acceptsGzip;
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private OutputStream target;
+		private GZIPOutputStream gzip;
+		private CompressingOutputStream stream;
+		private PrintWriter writer;
+		private Long contentLength;
+		private boolean bypassed;
+
+		CompressingResponse(HttpServletResponse response, boolean acceptsGzip) {
+			super(response);
+			this.acceptsGzip = acceptsGzip;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (writer != null) {
+				throw new IllegalStateException("getWriter() has already been called for this response.");
+			}
+			if (stream == null) {
+				stream = new CompressingOutputStream();
+			}
+			return stream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				if (stream != null) {
+					throw new IllegalStateException("getOutputStream() has already been called for this response.");
+				}
+				stream = new CompressingOutputStream();
+				writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		@Override
+		public void setContentLength(int length) {
+			contentLength = (long) length;
+		}
+
+		@Override
+		public void setContentLengthLong(long length) {
+			contentLength = length;
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+				contentLength = value == null ? null : Long.valueOf(value);
+			} else {
+				super.setHeader(name, value);
+			}
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+				setHeader(name, value);
+			} else {
+				super.addHeader(name, value);
+			}
+		}
+
+		@Override
+		public void setIntHeader(String name, int value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+				contentLength = (long) value;
+			} else {
+				super.setIntHeader(name, value);
+			}
+		}
+
+		@Override
+		public void addIntHeader(String name, int value) {
+			if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+				contentLength = (long) value;
+			} else {
+				super.addIntHeader(name, value);
+			}
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (writer != null) {
+				writer.flush();
+			} else if (stream != null) {
+				stream.flush();
+			}
+			// Committing before the decision would send the headers without Content-Encoding.
+			if (target != null) {
+				super.flushBuffer();
+			}
+		}
+
+		@Override
+		public void resetBuffer() {
+			if (target == null) {
+				buffer.reset();
+			}
+			super.resetBuffer();
+		}
+
+		@Override
+		public void reset() {
+			if (target == null) {
+				buffer.reset();
+				contentLength = null;
+			}
+			super.reset();
+		}
+
+		@Override
+		public void sendError(int status) throws IOException {
+			bypassed = true;
+			super.sendError(status);
+		}
+
+		@Override
+		public void sendError(int status, String message) throws IOException {
+			bypassed = true;
+			super.sendError(status, message);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			bypassed = true;
+			super.sendRedirect(location);
+		}
+
+		/**
+		 * Writes what is still buffered and completes the compressed body.
+		 */
+		void finish() throws IOException {
+			if (bypassed) {
+				return;
+			}
+			if (writer != null) {
+				writer.flush();
+			}
+			decide();
+			if (gzip != null) {
+				gzip.finish();
+			}
+			bypassed = true;
+		}
+
+		private void write(byte[] bytes, int offset, int length) throws IOException {
+			if (target != null) {
+				target.write(bytes, offset, length);
+				return;
+			}
+			buffer.write(bytes, offset, length);
+			if (buffer.size() >= minResponseSize) {
+				decide();
+			}
+		}
+
+		private void flush() throws IOException {
+			if (target != null) {
+				target.flush();
+			}
+		}
+
+		private void decide() throws IOException {
+			if (target != null) {
+				return;
+			}
+			boolean compressible = isCompressible();
+			if (compressible) {
+				addVary();
+			}
+			if (compressible && acceptsGzip && buffer.size() > 0 && buffer.size() >= minResponseSize) {
+				super.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+				target = gzip = new GZIPOutputStream(super.getOutputStream(), 8192, true);
+			} else {
+				if (contentLength != null) {
+					super.setContentLengthLong(contentLength);
+				}
+				target = super.getOutputStream();
+			}
+			buffer.writeTo(target);
+			buffer = null;
+		}
+
+		private boolean isCompressible() {
+			int status = getStatus();
+			if (status < 200 || status == SC_NO_CONTENT || status == SC_PARTIAL_CONTENT || status == SC_NOT_MODIFIED
+					|| containsHeader(HttpHeaders.CONTENT_ENCODING) || getContentType() == null) {
+				return false;
+			}
+			try {
+				MediaType contentType = MediaType.parseMediaType(getContentType());
+				for (MediaType mediaType : mediaTypes) {
+					if (mediaType.includes(contentType)) {
+						return true;
+					}
+				}
+			} catch (InvalidMediaTypeException ex) {
+				// Not compressed below.
+			}
+			return false;
+		}
+
+		private void addVary() {
+			for (String vary : getHeaders(HttpHeaders.VARY)) {
+				for (String header : StringUtils.tokenizeToStringArray(vary, ",")) {
+					if (HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(header) || "*".equals(header)) {
+						return;
+					}
+				}
+			}
+			super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		}
+
+		private class CompressingOutputStream extends ServletOutputStream {
+			@Override
+			public void write(int b) throws IOException {
+				CompressingResponse.this.write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				CompressingResponse.this.write(bytes, offset, length);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				CompressingResponse.this.flush();
+			}
+
+			@Override
+			public void close() throws IOException {
+				finish();
+				CompressingResponse.super.getOutputStream().close();
+			}
+
+			@Override
+			public boolean isReady() {
+				try {
+					return CompressingResponse.super.getOutputStream().isReady();
+				} catch (IOException ex) {
+					return false;
+				}
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {
+				try {
+					CompressingResponse.super.getOutputStream().setWriteListener(listener);
+				} catch (IOException ex) {
+					throw new IllegalStateException(ex);
+				}
+			}
+		}
+	}
+}
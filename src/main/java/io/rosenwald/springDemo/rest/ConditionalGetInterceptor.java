@@ -0,0 +1,54 @@
+package io.rosenwald.springDemo.rest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import io.rosenwald.springDemo.db.VehicleDatasetVersion;
+
+/**
+ * Adds ETag, Last-Modified, and Cache-Control headers derived from the {@link VehicleDatasetVersion} to GET and HEAD 
+ * responses, and answers requests whose If-None-Match or If-Modified-Since still match with 304 Not Modified before 
+ * the handler runs, so repeated polls never reach the repository.
+ * 
+ * The version tags the data rather than its bytes, which differ between the JSON, CBOR, and Smile encodings and between 
+ * compressed and uncompressed responses, so the ETag is weak, and the responses vary by Accept and Accept-Encoding for 
+ * shared caches.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public class ConditionalGetInterceptor extends HandlerInterceptorAdapter {
+	
+	private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+	
+	private final VehicleDatasetVersion datasetVersion;
+	private final String cacheControl;
+	
+	/**
+	 * @param datasetVersion The version the validators are derived from.
+	 * @param cacheControl The Cache-Control header of the responses.
+	 */
+	public ConditionalGetInterceptor(VehicleDatasetVersion datasetVersion, CacheControl cacheControl) {
+		Assert.notNull(datasetVersion, "The provided dataset version must not be null.");
+		Assert.notNull(cacheControl, "The provided cache control must not be null.");
+		this.datasetVersion = datasetVersion;
+		this.cacheControl = cacheControl.getHeaderValue();
+	}
+	
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+			return true;
+		}
+		response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+		response.setHeader(HttpHeaders.VARY, VARY);
+		return !new ServletWebRequest(request, response).checkNotModified("W/" + datasetVersion.getETag(), datasetVersion.getLastModified());
+	}
+}
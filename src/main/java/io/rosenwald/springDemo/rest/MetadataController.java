@@ -15,6 +15,7 @@ import io.rosenwald.springDemo.DemoApplication;
 
 /**
  * REST Controller with endpoints that provide metadata on this deployment. Currently only provides the build version.
+ * Conditional requests are answered by the {@link ConditionalGetInterceptor}.
  * 
  * TODO: Provide better exception handling. 
  * 
@@ -0,0 +1,39 @@
+package io.rosenwald.springDemo.rest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.actuate.metrics.web.servlet.DefaultWebMvcTagsProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Tags the http.server.requests timer of every request with the handler method that answered it, in addition to the
+ * default uri, method, status, outcome, and exception tags. Routes sharing a URI template, such as GET and POST
+ * /vehicles, can then be told apart by operation alone, e.g. postVehicle or getVehicles.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Component
+public class OperationWebMvcTagsProvider extends DefaultWebMvcTagsProvider {
+
+	private static final Tag NONE = Tag.of("operation", "none");
+
+	@Override
+	public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler, Throwable exception) {
+		return Tags.of(super.getTags(request, response, handler, exception)).and(operation(handler));
+	}
+
+	@Override
+	public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+		return Tags.of(super.getLongRequestTags(request, handler)).and(operation(handler));
+	}
+
+	static Tag operation(Object handler) {
+		return handler instanceof HandlerMethod ? Tag.of("operation", ((HandlerMethod) handler).getMethod().getName()) : NONE;
+	}
+}
@@ -0,0 +1,53 @@
+package io.rosenwald.springDemo.rest;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.rosenwald.springDemo.query.SuggestionTrie;
+import io.rosenwald.springDemo.query.SuggestionTrie.Suggestion;
+import io.rosenwald.springDemo.query.VehicleSuggestions;
+
+/**
+ * A controller completing makes and models as they are typed, answered from the in-memory 
+ * {@link io.rosenwald.springDemo.query.VehicleSuggestions} without querying the database.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@RestController
+public class SuggestController {
+	
+	@Autowired VehicleSuggestions suggestions;
+	
+	/**
+	 * Suggests makes and models starting with a prefix, e.g. /suggest?q=mus&field=model&fuzzy=true.
+	 * 
+	 * @param q The prefix, case is ignored.
+	 * @param field make or model. Omit to suggest both.
+	 * @param fuzzy Whether to also suggest values starting within one typo of the prefix. Only applies to prefixes of at 
+	 * 		least three characters.
+	 * @param limit The maximum number of suggestions, at most 10.
+	 * @return The suggestions with their field and number of vehicles, most frequent first. Fuzzy matches follow the 
+	 * 		exact ones.
+	 */
+	@GetMapping("/suggest")
+	public ResponseEntity<List<Suggestion>> suggest(@RequestParam("q") String q, 
+			@RequestParam(value="field", required=false) String field, 
+			@RequestParam(value="fuzzy", defaultValue="false") boolean fuzzy, 
+			@RequestParam(value="limit", defaultValue="" + SuggestionTrie.MAX_SUGGESTIONS) int limit) {
+		if (limit < 1) {
+			return new ResponseEntity<List<Suggestion>>(HttpStatus.BAD_REQUEST);
+		}
+		try {
+			return new ResponseEntity<List<Suggestion>>(suggestions.suggest(q, field, fuzzy, limit), HttpStatus.OK);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<List<Suggestion>>(HttpStatus.BAD_REQUEST);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package io.rosenwald.springDemo.rest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.query.VehicleExporter;
+import io.rosenwald.springDemo.query.VehicleExporter.Format;
+
+/**
+ * A controller streaming the entire vehicle table to the client, see {@link io.rosenwald.springDemo.query.VehicleExporter}. 
+ * Not subject to the page size limit of {@link VehicleRestController}; the response is written while the vehicles are 
+ * read, on an MVC async thread.
+ * 
+ * Vehicles are written as a JSON array or as newline delimited JSON (NDJSON). The format is chosen by the "format" 
+ * request parameter, or by an Accept header asking for application/x-ndjson.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@RestController
+public class VehicleExportController {
+	
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+	
+	@Autowired VehicleExporter exporter;
+	
+	/**
+	 * Streams every vehicle instead of returning a page. Only applies without filters; filtered queries are always paged.
+	 * 
+	 * @param format "json" or "ndjson". Defaults to JSON unless the Accept header asks for NDJSON.
+	 * @param accept The Accept header of the request.
+	 * @return All vehicles, sorted by ID.
+	 */
+	@GetMapping(value = "/vehicles", params = { "stream=true", "!year", "!make", "!model", "!page" })
+	public ResponseEntity<StreamingResponseBody> streamVehicles(@RequestParam(value="format", required=false) String format, 
+			@RequestHeader(value=HttpHeaders.ACCEPT, required=false) String accept) {
+		return stream(format, accept, Format.JSON, false);
+	}
+	
+	/**
+	 * Downloads every vehicle as a file.
+	 * 
+	 * @param format "json" or "ndjson". Defaults to NDJSON unless the Accept header only asks for JSON.
+	 * @param accept The Accept header of the request.
+	 * @return All vehicles, sorted by ID, as an attachment named vehicles.json or vehicles.ndjson.
+	 */
+	@GetMapping("/vehicles/export")
+	public ResponseEntity<StreamingResponseBody> exportVehicles(@RequestParam(value="format", required=false) String format, 
+			@RequestHeader(value=HttpHeaders.ACCEPT, required=false) String accept) {
+		return stream(format, accept, Format.NDJSON, true);
+	}
+	
+	private ResponseEntity<StreamingResponseBody> stream(String formatParameter, String accept, Format defaultFormat, boolean attachment) {
+		Format format;
+		try {
+			format = formatParameter != null ? Format.fromParameter(formatParameter) : negotiate(accept, defaultFormat);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<StreamingResponseBody>(HttpStatus.BAD_REQUEST);
+		}
+		
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(format.getMediaType());
+		if (attachment) {
+			headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"vehicles." + format.getExtension() + "\"");
+		}
+		StreamingResponseBody body = out -> {
+			long start = System.currentTimeMillis();
+			long count = exporter.export(out, format);
+			logger.debug("Streamed " + count + " vehicles as " + format + " in " + (System.currentTimeMillis() - start) + "ms.");
+		};
+		return new ResponseEntity<StreamingResponseBody>(body, headers, HttpStatus.OK);
+	}
+	
+	/**
+	 * Picks the first export format named by the Accept header. Wildcards keep the default.
+	 */
+	private static Format negotiate(String accept, Format defaultFormat) {
+		if (accept == null) {
+			return defaultFormat;
+		}
+		for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+			for (Format format : Format.values()) {
+				if (!mediaType.isWildcardType() && !mediaType.isWildcardSubtype() && format.getMediaType().isCompatibleWith(mediaType)) {
+					return format;
+				}
+			}
+		}
+		return defaultFormat;
+	}
+}
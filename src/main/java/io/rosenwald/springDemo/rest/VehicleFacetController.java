@@ -0,0 +1,47 @@
+package io.rosenwald.springDemo.rest;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.rosenwald.springDemo.query.VehicleFacets;
+
+/**
+ * A controller providing the options of each step of a year, make, model selection, answered from the 
+ * {@link io.rosenwald.springDemo.query.VehicleFacetTree} without querying the database. The model years themselves are 
+ * listed by {@link VehicleRestController#getAllModelYears()}.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@RestController
+public class VehicleFacetController {
+	
+	@Autowired VehicleFacets facets;
+	
+	/**
+	 * Queries for the makes of a model year.
+	 * @param year The model year.
+	 * @return The makes, sorted ignoring case. Empty for unknown years.
+	 */
+	@GetMapping("/modelYears/{year}/makes")
+	public ResponseEntity<List<String>> getMakes(@PathVariable int year) {
+		return new ResponseEntity<List<String>>(facets.getTree().getMakes(year), HttpStatus.OK);
+	}
+	
+	/**
+	 * Queries for the models of a make in a model year.
+	 * @param year The model year.
+	 * @param make The make, case is ignored.
+	 * @return The models, sorted ignoring case. Empty for unknown years and makes.
+	 */
+	@GetMapping("/modelYears/{year}/makes/{make}/models")
+	public ResponseEntity<List<String>> getModels(@PathVariable int year, @PathVariable String make) {
+		return new ResponseEntity<List<String>>(facets.getTree().getModels(year, make), HttpStatus.OK);
+	}
+}
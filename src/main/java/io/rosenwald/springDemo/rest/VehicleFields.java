@@ -0,0 +1,216 @@
+package io.rosenwald.springDemo.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import io.rosenwald.springDemo.db.VehicleSummary;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+/**
+ * A sparse fieldset of the vehicle endpoints, parsed from a comma separated "fields" request parameter such as 
+ * "year,make,model". Decides the cheapest {@link Projection} able to provide the requested fields and renders only 
+ * those fields, in the requested order, in one of two {@link Shape}s.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+public final class VehicleFields {
+	
+	/**
+	 * The fields of a vehicle as named in its JSON representation.
+	 */
+	public static final List<String> ALL = Collections.unmodifiableList(Arrays.asList("id", "year", "make", "model", "drive", 
+			"transmission", "cylinders", "displacement", "altType", "evMotor"));
+	
+	private static final Set<String> SUMMARY = new LinkedHashSet<String>(Arrays.asList("id", "year", "make", "model"));
+	private static final VehicleFields ALL_FIELDS = new VehicleFields(ALL);
+	
+	private final List<String> fields;
+	private final Projection projection;
+	
+	private VehicleFields(List<String> fields) {
+		this.fields = fields;
+		if (fields.size() == 1 && fields.contains("id")) {
+			projection = Projection.ID;
+		} else if (SUMMARY.containsAll(fields)) {
+			projection = Projection.SUMMARY;
+		} else {
+			projection = Projection.VEHICLE;
+		}
+	}
+	
+	/**
+	 * @param fields The comma separated field names. Names are case sensitive; blanks and duplicates are ignored.
+	 * @return The fieldset, or null if no fields are given, meaning whole vehicles.
+	 * @throws IllegalArgumentException A field is unknown.
+	 */
+	public static VehicleFields parse(String fields) throws IllegalArgumentException {
+		if (fields == null) {
+			return null;
+		}
+		Set<String> parsed = new LinkedHashSet<String>();
+		for (String field : fields.split(",")) {
+			field = field.trim();
+			if (field.isEmpty()) {
+				continue;
+			}
+			if (!ALL.contains(field)) {
+				throw new IllegalArgumentException("Unknown vehicle field '" + field + "'.");
+			}
+			parsed.add(field);
+		}
+		return parsed.isEmpty() ? null : new VehicleFields(new ArrayList<String>(parsed));
+	}
+	
+	/**
+	 * @return The fieldset of every vehicle field.
+	 */
+	public static VehicleFields all() {
+		return ALL_FIELDS;
+	}
+	
+	public List<String> getFields() {
+		return fields;
+	}
+	
+	/**
+	 * @return The cheapest query result able to provide every requested field.
+	 */
+	public Projection getProjection() {
+		return projection;
+	}
+	
+	/**
+	 * @param vehicles The vehicles to render.
+	 * @param shape The shape to render them in.
+	 * @return The requested fields of the vehicles.
+	 */
+	public Object renderVehicles(List<Vehicle> vehicles, Shape shape) {
+		return render(vehicles, VehicleFields::value, shape);
+	}
+	
+	/**
+	 * @param summaries The summaries to render. Only valid for the {@link Projection#SUMMARY} and {@link Projection#ID} 
+	 * 		projections.
+	 * @param shape The shape to render them in.
+	 * @return The requested fields of the summaries.
+	 */
+	public Object renderSummaries(List<VehicleSummary> summaries, Shape shape) {
+		return render(summaries, VehicleFields::value, shape);
+	}
+	
+	/**
+	 * @param ids The IDs to render. Only valid for the {@link Projection#ID} projection.
+	 * @param shape The shape to render them in.
+	 * @return The IDs.
+	 */
+	public Object renderIds(List<UUID> ids, Shape shape) {
+		return render(ids, (id, field) -> id, shape);
+	}
+	
+	private <T> Object render(List<T> results, BiFunction<T, String, Object> value, Shape shape) {
+		if (shape == Shape.TABLE) {
+			Map<String, List<Object>> columns = new LinkedHashMap<String, List<Object>>();
+			for (String field : fields) {
+				List<Object> column = new ArrayList<Object>(results.size());
+				for (T result : results) {
+					column.add(value.apply(result, field));
+				}
+				columns.put(field, column);
+			}
+			return columns;
+		}
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(results.size());
+		for (T result : results) {
+			Map<String, Object> row = new LinkedHashMap<String, Object>();
+			for (String field : fields) {
+				row.put(field, value.apply(result, field));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+	
+	private static Object value(Vehicle vehicle, String field) {
+		switch (field) {
+		case "id": 				return vehicle.getId();
+		case "year": 			return vehicle.getYear();
+		case "make": 			return vehicle.getMake();
+		case "model": 			return vehicle.getModel();
+		case "drive": 			return vehicle.getDrive();
+		case "transmission": 	return vehicle.getTransmission();
+		case "cylinders": 		return vehicle.getCylinders();
+		case "displacement": 	return vehicle.getDisplacement();
+		case "altType": 		return vehicle.getAltType();
+		case "evMotor": 		return vehicle.getEvMotor();
+		default: 				throw new IllegalStateException("Unknown vehicle field '" + field + "'.");
+		}
+	}
+	
+	private static Object value(VehicleSummary summary, String field) {
+		switch (field) {
+		case "id": 				return summary.getId();
+		case "year": 			return summary.getYear();
+		case "make": 			return summary.getMake();
+		case "model": 			return summary.getModel();
+		default: 				throw new IllegalStateException("The vehicle field '" + field + "' is not part of a summary.");
+		}
+	}
+	
+	/**
+	 * The JSON shapes results can be rendered in.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static enum Shape {
+		/**
+		 * An array holding one object per vehicle.
+		 */
+		ROWS,
+		/**
+		 * A single object holding one array of values per field, so every field name is sent only once. The arrays are 
+		 * in the same order, the values at the same index belong to the same vehicle.
+		 */
+		TABLE;
+		
+		/**
+		 * @param value A shape name as used in request parameters, case is ignored. Null for the default shape.
+		 * @return The shape.
+		 * @throws IllegalArgumentException The shape is unknown.
+		 */
+		public static Shape fromParameter(String value) throws IllegalArgumentException {
+			return value == null ? ROWS : valueOf(value.trim().toUpperCase(Locale.ROOT));
+		}
+	}
+	
+	/**
+	 * The query results a fieldset can be rendered from, from cheapest to most expensive.
+	 * 
+	 * @author Nathaniel Rosenwald
+	 *
+	 */
+	public static enum Projection {
+		/**
+		 * Just the vehicle IDs.
+		 */
+		ID,
+		/**
+		 * {@link VehicleSummary} objects.
+		 */
+		SUMMARY,
+		/**
+		 * Whole {@link Vehicle} entities.
+		 */
+		VEHICLE
+	}
+}
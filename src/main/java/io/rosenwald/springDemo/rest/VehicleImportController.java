@@ -0,0 +1,59 @@
+package io.rosenwald.springDemo.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.rosenwald.springDemo.db.VehicleDataImporter;
+import io.rosenwald.springDemo.db.VehicleDataImporter.ImportMode;
+import io.rosenwald.springDemo.db.VehicleDataImporter.ImportProgress;
+
+/**
+ * An administrative controller starting and monitoring re-imports of the vehicle CSV data, see 
+ * {@link io.rosenwald.springDemo.db.VehicleDataImporter}. Requires the ADMIN role, see {@link WebSecurityConfig}. 
+ * Answers 404 if imports are disabled.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@RestController
+public class VehicleImportController {
+	
+	@Autowired(required = false) VehicleDataImporter importer;
+	
+	/**
+	 * Starts a re-import in the background.
+	 * @param mode replace, shadow, or incremental. Defaults to the configured mode.
+	 * @return 202 with the progress of the started import, 409 if an import is already running, 400 for unknown modes.
+	 */
+	@PostMapping("/admin/import")
+	public ResponseEntity<ImportProgress> startImport(@RequestParam(value="mode", required=false) String mode) {
+		if (importer == null) {
+			return new ResponseEntity<ImportProgress>(HttpStatus.NOT_FOUND);
+		}
+		ImportMode importMode;
+		try {
+			importMode = mode == null ? null : ImportMode.fromProperty(mode);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<ImportProgress>(HttpStatus.BAD_REQUEST);
+		}
+		boolean started = importer.start(importMode);
+		return new ResponseEntity<ImportProgress>(importer.getProgress(), started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT);
+	}
+	
+	/**
+	 * Queries for the progress of the current or most recent import.
+	 * @return The state, mode, start and end, error, and row counts of the import.
+	 */
+	@GetMapping("/admin/import")
+	public ResponseEntity<ImportProgress> getImport() {
+		if (importer == null) {
+			return new ResponseEntity<ImportProgress>(HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<ImportProgress>(importer.getProgress(), HttpStatus.OK);
+	}
+}
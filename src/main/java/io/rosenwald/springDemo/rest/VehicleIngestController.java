@@ -0,0 +1,102 @@
+package io.rosenwald.springDemo.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.db.VehicleIngestJob;
+import io.rosenwald.springDemo.db.VehicleIngester;
+import io.rosenwald.springDemo.db.VehicleIngester.BodyTooLargeException;
+import io.rosenwald.springDemo.query.VehicleExporter.Format;
+
+/**
+ * A controller ingesting many vehicles per request, see {@link io.rosenwald.springDemo.db.VehicleIngester}. Requires 
+ * HTTP basic authentication, see {@link WebSecurityConfig}.
+ *
+ * @author Nathaniel Rosenwald
+ *
+ */
+@RestController
+public class VehicleIngestController {
+
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+
+	@Autowired VehicleIngester ingester;
+
+	/**
+	 * Queues the posted vehicles to be saved. Every vehicle gets a new ID; IDs in the records are ignored.
+	 *
+	 * @param contentType application/x-ndjson for one vehicle per line, or application/json for a JSON array of vehicles.
+	 * @param contentLength The length of the body, if known up front.
+	 * @param body The vehicles.
+	 * @return 202 with the queued job and its status URL in the Location header, 415 for other content types, 413 if 
+	 * 		the body is larger than the ingester accepts, 503 with a Retry-After header if too many jobs are queued.
+	 */
+	@PostMapping("/vehicles/batch")
+	public ResponseEntity<VehicleIngestJob> postVehicles(@RequestHeader(value="Content-Type", required=false) String contentType,
+			@RequestHeader(value="Content-Length", required=false) Long contentLength, InputStream body) {
+		Format format = null;
+		try {
+			MediaType mediaType = MediaType.parseMediaType(contentType);
+			for (Format candidate : Format.values()) {
+				if (candidate.getMediaType().includes(mediaType)) {
+					format = candidate;
+				}
+			}
+		} catch (IllegalArgumentException ex) {
+			// Unsupported below.
+		}
+		if (format == null) {
+			return new ResponseEntity<VehicleIngestJob>(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+		}
+		if (contentLength != null && contentLength > ingester.getMaxBodyBytes()) {
+			return new ResponseEntity<VehicleIngestJob>(HttpStatus.PAYLOAD_TOO_LARGE);
+		}
+
+		try {
+			VehicleIngestJob job = ingester.submit(body, format);
+			return ResponseEntity.accepted()
+					.location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.getId()).toUri())
+					.body(job);
+		} catch (BodyTooLargeException ex) {
+			logger.warn(ex.getMessage());
+			return new ResponseEntity<VehicleIngestJob>(HttpStatus.PAYLOAD_TOO_LARGE);
+		} catch (RejectedExecutionException ex) {
+			logger.warn(ex.getMessage());
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.RETRY_AFTER, "1");
+			return new ResponseEntity<VehicleIngestJob>(headers, HttpStatus.SERVICE_UNAVAILABLE);
+		} catch (IOException ex) {
+			logger.error("Could not receive posted vehicles." + System.lineSeparator() + ex.getMessage());
+			return new ResponseEntity<VehicleIngestJob>(HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	/**
+	 * Queries for the progress of an ingest job.
+	 *
+	 * @param id The ID of the job.
+	 * @return The job's state, the number of accepted, rejected, and persisted vehicles, and the rows persisted per
+	 * 		second. 404 if the job is unknown or too old.
+	 */
+	@GetMapping("/vehicles/batch/{id}")
+	public ResponseEntity<VehicleIngestJob> getJob(@PathVariable String id) {
+		VehicleIngestJob job = ingester.getJob(id);
+		return job == null ? new ResponseEntity<VehicleIngestJob>(HttpStatus.NOT_FOUND) : new ResponseEntity<VehicleIngestJob>(job, HttpStatus.OK);
+	}
+}
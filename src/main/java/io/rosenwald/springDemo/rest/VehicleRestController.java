@@ -1,12 +1,23 @@
 package io.rosenwald.springDemo.rest;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.NumberUtils;
@@ -17,14 +28,53 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import io.micrometer.core.annotation.Timed;
 import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.db.CoalescingVehicleFinder;
+import io.rosenwald.springDemo.db.DatabaseBulkhead;
+import io.rosenwald.springDemo.db.GroupCommitWriter;
+import io.rosenwald.springDemo.db.VehicleDataChangedEvent;
+import io.rosenwald.springDemo.db.VehicleFilter;
+import io.rosenwald.springDemo.db.VehicleFinder;
+import io.rosenwald.springDemo.db.VehicleKeyset;
 import io.rosenwald.springDemo.db.VehicleRepository;
+import io.rosenwald.springDemo.db.VehicleSummary;
+import io.rosenwald.springDemo.db.VehicleWriteGate;
 import io.rosenwald.springDemo.entities.Vehicle;
+import io.rosenwald.springDemo.query.VehicleReadModel;
+import io.rosenwald.springDemo.rest.VehicleFields.Projection;
+import io.rosenwald.springDemo.rest.VehicleFields.Shape;
 
 /**
  * A controller providing the REST endpoints and their querying logic. Retrieves its vehicle data from the 
- * {@link io.rosenwald.springDemo.db.VehicleRepository}.
+ * {@link io.rosenwald.springDemo.db.VehicleRepository}; identical queries running at the same time share one database 
+ * call, see {@link io.rosenwald.springDemo.db.CoalescingVehicleFinder}. Queries are answered from the in-memory 
+ * {@link io.rosenwald.springDemo.query.VehicleReadModel} instead when it is enabled and loaded. Writes publish a 
+ * {@link io.rosenwald.springDemo.db.VehicleDataChangedEvent}.
+ * 
+ * The vehicle queries accept a sparse fieldset such as fields=year,make,model, see {@link VehicleFields}. Fieldsets 
+ * covered by the ID or the ID, year, make, and model are answered by projection queries selecting only those columns. 
+ * shape=table returns the page as one array per field instead of one object per vehicle.
+ * 
+ * Responses are available as JSON, CBOR, or Smile depending on the Accept header, see {@link WebConfig}.
+ * 
+ * Conditional GET requests are answered with 304 Not Modified by the {@link ConditionalGetInterceptor} before any 
+ * handler runs.
+ * 
+ * Every handler returns a future and runs its database calls on the {@link io.rosenwald.springDemo.db.DatabaseBulkhead}, 
+ * releasing the servlet thread while the database works. Of identical queries only the first takes a bulkhead thread. 
+ * A request the bulkhead has no room for, or whose database calls miss their deadline, is answered with 503 Service 
+ * Unavailable and a Retry-After header. A write missing its deadline may still be committed. Queries answered by the 
+ * read model do not use the bulkhead.
+ * 
+ * Writes are answered with 503 as well while the vehicle table is reloaded through a shadow table, which would lose 
+ * them, see {@link io.rosenwald.springDemo.db.VehicleWriteGate}.
+ * 
+ * Every request is timed in http.server.requests with a percentile histogram, tagged by route and by handler method, 
+ * see {@link OperationWebMvcTagsProvider}.
  * 
  * TODO: Provide better error handling/input validation with different response statuses.
  * 
@@ -32,26 +82,66 @@ import io.rosenwald.springDemo.entities.Vehicle;
  *
  */
 @RestController
+@Timed(histogram = true)
 public class VehicleRestController {
 	
 	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
 
 	@Autowired VehicleRepository repo;
 	
+	@Autowired(required = false) VehicleReadModel readModel;
+	
+	@Autowired ApplicationEventPublisher publisher;
+	
+	@Autowired(required = false) GroupCommitWriter<Vehicle> groupCommit;
+	
+	@Autowired DatabaseBulkhead bulkhead;
+	
+	@Autowired CoalescingVehicleFinder coalescingFinder;
+	
+	@Autowired VehicleWriteGate writeGate;
+	
 	private static final String NULL = "null";
 	
 	/**
-	 * Queries for a list of vehicles based on the properties provided. 
+	 * Response header carrying the cursor of the next page. Absent on the last page. The same URL is also provided as a 
+	 * Link header with rel="next".
+	 */
+	public static final String NEXT_PAGE_HEADER = "X-Next-Page";
+	
+	/**
+	 * The maximum and default number of vehicles in a page.
+	 */
+	@Value("${io.rosenwald.springDemo.page.max-size:1000}")
+	private int maxPageSize;
+	
+	/**
+	 * How long a request waits for its vehicle to be committed in write-behind mode.
+	 */
+	@Value("${io.rosenwald.springDemo.write-behind.timeout-ms:5000}")
+	private long writeBehindTimeoutMillis;
+	
+	/**
+	 * Queries for a page of vehicles based on the properties provided. 
 	 * 
 	 * @param year The model year of a vehicle.
 	 * @param make The make of a vehicle.
 	 * @param model The model of a vehicle.
-	 * @return A list of matching vehicles. Provided as a JSON array to the client of the REST endpoint.
+	 * @param page The cursor of the page to return, see {@link #NEXT_PAGE_HEADER}. Omit for the first page.
+	 * @param limit The maximum number of vehicles in the page. Capped at the configured maximum page size.
+	 * @param fields The comma separated fields to return, see {@link VehicleFields}. Omit for whole vehicles.
+	 * @param shape "rows" or "table", see {@link VehicleFields.Shape}. Defaults to rows.
+	 * @return A page of matching vehicles, sorted by ID. Provided as a JSON array to the client of the REST endpoint, or 
+	 * 		as an object of arrays in the table shape.
 	 */
 	@GetMapping("/vehicles")
-	public ResponseEntity<List<Vehicle>> getVehicles(@RequestParam(value="year", defaultValue=NULL) String year, 
+	public CompletableFuture<ResponseEntity<Object>> getVehicles(@RequestParam(value="year", defaultValue=NULL) String year, 
 			@RequestParam(value="make", defaultValue=NULL) String make, 
-			@RequestParam(value="model", defaultValue=NULL) String model) {
+			@RequestParam(value="model", defaultValue=NULL) String model,
+			@RequestParam(value="page", required=false) String page,
+			@RequestParam(value="limit", required=false) Integer limit,
+			@RequestParam(value="fields", required=false) String fields,
+			@RequestParam(value="shape", required=false) String shape) {
 		Integer numericYear;
 		if (year == null || NULL.equals(year)) {
 			numericYear = null;
@@ -59,28 +149,11 @@ public class VehicleRestController {
 			try {
 				numericYear = NumberUtils.parseNumber(year, Integer.class);
 			} catch (Exception ex) {
-				return new ResponseEntity<List<Vehicle>>(new ArrayList<Vehicle>(), HttpStatus.OK);
+				return CompletableFuture.completedFuture(new ResponseEntity<Object>(new ArrayList<Vehicle>(), HttpStatus.OK));
 			}
 		}
 		
-		try {
-			if (numericYear != null && make.equals(NULL) && model.equals(NULL)) {
-				return new ResponseEntity<List<Vehicle>>(repo.findByYear(numericYear), HttpStatus.OK);
-			} else if (numericYear == null && !make.equals(NULL) && model.equals(NULL)) {
-				return new ResponseEntity<List<Vehicle>>(repo.findByMake(make), HttpStatus.OK);
-			} else if (numericYear == null && make.equals(NULL) && !model.equals(NULL)) {
-				return new ResponseEntity<List<Vehicle>>(repo.findByModel(model), HttpStatus.OK);
-			} else if (numericYear != null && !make.equals(NULL) && model.equals(NULL)) {
-				return new ResponseEntity<List<Vehicle>>(repo.findByYearAndMake(numericYear, make), HttpStatus.OK);
-			} else if (numericYear == null && make.equals(NULL) && model.equals(NULL)) {
-				return new ResponseEntity<List<Vehicle>>(repo.findAll(), HttpStatus.OK);
-			}
-			
-			return new ResponseEntity<List<Vehicle>>(repo.findByYearAndMakeAndModel(numericYear, make, model), HttpStatus.OK);
-		} catch (Exception ex) {
-			logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
-			return new ResponseEntity<List<Vehicle>>(HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+		return findPage(VehicleFilter.of(numericYear, NULL.equals(make) ? null : make, NULL.equals(model) ? null : model), page, limit, fields, shape);
 	}
 	
 //	/**
@@ -94,48 +167,46 @@ public class VehicleRestController {
 //	}
 	
 	/**
-	 * Queries for vehicles based on their model year. 
+	 * Queries for a page of vehicles based on their model year. 
 	 * @param id The model year of the vehicles.
 	 * @return A list of matching vehicles.
 	 */
 	@GetMapping("/vehicles/{year}")
-	public ResponseEntity<List<Vehicle>> getVehiclesByYear(@PathVariable int year) {
-		try {
-			return new ResponseEntity<List<Vehicle>>(repo.findByYear(year), HttpStatus.OK);
-		} catch (Exception ex) {
-			logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
-			return new ResponseEntity<List<Vehicle>>(HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+	public CompletableFuture<ResponseEntity<Object>> getVehiclesByYear(@PathVariable int year, 
+			@RequestParam(value="page", required=false) String page,
+			@RequestParam(value="limit", required=false) Integer limit,
+			@RequestParam(value="fields", required=false) String fields,
+			@RequestParam(value="shape", required=false) String shape) {
+		return findPage(VehicleFilter.of(year, null, null), page, limit, fields, shape);
 	}
 	
 	/**
-	 * Queries for vehicles based on their model year and make. 
+	 * Queries for a page of vehicles based on their model year and make. 
 	 * @param id The make of the vehicles.
 	 * @return A list of matching vehicles.
 	 */
 	@GetMapping("/vehicles/{year}/{make}")
-	public ResponseEntity<List<Vehicle>> getVehiclesByYearAndMake(@PathVariable int year, @PathVariable String make) {
-		try {
-			return new ResponseEntity<List<Vehicle>>(repo.findByYearAndMake(year, make), HttpStatus.OK);
-		} catch (Exception ex) {
-			logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
-			return new ResponseEntity<List<Vehicle>>(HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+	public CompletableFuture<ResponseEntity<Object>> getVehiclesByYearAndMake(@PathVariable int year, @PathVariable String make, 
+			@RequestParam(value="page", required=false) String page,
+			@RequestParam(value="limit", required=false) Integer limit,
+			@RequestParam(value="fields", required=false) String fields,
+			@RequestParam(value="shape", required=false) String shape) {
+		return findPage(VehicleFilter.of(year, make, null), page, limit, fields, shape);
 	}
 	
 	/**
-	 * Queries for vehicles based on their model year, make, and ymodel. 
+	 * Queries for a page of vehicles based on their model year, make, and ymodel. 
 	 * @param id The model of the vehicles.
 	 * @return A list of matching vehicles.
 	 */
 	@GetMapping("/vehicles/{year}/{make}/{model}")
-	public ResponseEntity<List<Vehicle>> getVehiclesByYearAndMakeAndModel(@PathVariable int year, @PathVariable String make, @PathVariable String model) {
-		try {
-			return new ResponseEntity<List<Vehicle>>(repo.findByYearAndMakeAndModel(year, make, model), HttpStatus.OK);
-		} catch (Exception ex) {
-			logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
-			return new ResponseEntity<List<Vehicle>>(HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+	public CompletableFuture<ResponseEntity<Object>> getVehiclesByYearAndMakeAndModel(@PathVariable int year, @PathVariable String make, 
+			@PathVariable String model, 
+			@RequestParam(value="page", required=false) String page,
+			@RequestParam(value="limit", required=false) Integer limit,
+			@RequestParam(value="fields", required=false) String fields,
+			@RequestParam(value="shape", required=false) String shape) {
+		return findPage(VehicleFilter.of(year, make, model), page, limit, fields, shape);
 	}
 	
 	/**
@@ -143,28 +214,62 @@ public class VehicleRestController {
 	 * @return A list of integers all representing a model year.
 	 */
 	@GetMapping("/modelYears")
-	public ResponseEntity<List<Integer>> getAllModelYears() {
-		try {
-			return new ResponseEntity<List<Integer>>(repo.findAllYears(), HttpStatus.OK);
-		} catch (Exception ex) {
-			logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
-			return new ResponseEntity<List<Integer>>(HttpStatus.INTERNAL_SERVER_ERROR);
-		}
+	public CompletableFuture<ResponseEntity<List<Integer>>> getAllModelYears() {
+		return query("findAllYears", VehicleFinder::findAllYears, years -> new ResponseEntity<List<Integer>>(years, HttpStatus.OK));
 	}
 	
 	/**
-	 * Saves a vehicle to the repository.
+	 * Saves a vehicle to the repository. In write-behind mode the vehicle is committed together with concurrently posted 
+	 * vehicles, see {@link io.rosenwald.springDemo.db.VehicleWriteBehindConfig}; the request waits for the commit 
+	 * without holding a bulkhead thread, and the response is still only sent once the vehicle is committed, or with 503 
+	 * once the write-behind timeout has passed.
 	 * @param vehicle The vehicle to save.
 	 * @return The vehicle that was saved.
 	 */
 	@PostMapping("/vehicles")
-	public ResponseEntity<Vehicle> postVehicle(@RequestBody Vehicle vehicle) {
+	public CompletableFuture<ResponseEntity<Vehicle>> postVehicle(@RequestBody Vehicle vehicle) {
+		if (groupCommit != null) {
+			return writeBehind(vehicle);
+		}
+		return executeWrite(() -> {
+			try {
+				Optional<Vehicle> previous = vehicle.getId() == null ? Optional.empty() : repo.findById(vehicle.getId());
+				Vehicle saved = repo.save(vehicle);
+				publisher.publishEvent(previous.isPresent() 
+						? VehicleDataChangedEvent.of(Collections.singletonList(saved), Collections.singletonList(previous.get())) 
+						: VehicleDataChangedEvent.saved(Collections.singletonList(saved)));
+				return new ResponseEntity<Vehicle>(saved, HttpStatus.OK);
+			} catch (Exception ex) {
+				logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
+				return new ResponseEntity<Vehicle>(HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+	
+	/**
+	 * Hands a vehicle to the group commit. The change event is published once per group by the group commit itself, 
+	 * see {@link io.rosenwald.springDemo.db.PublishingVehicleBatchWriter}. The vehicle stays inside the 
+	 * {@link VehicleWriteGate} until it is committed, even if the request has timed out meanwhile.
+	 */
+	private CompletableFuture<ResponseEntity<Vehicle>> writeBehind(Vehicle vehicle) {
+		if (!writeGate.tryEnter()) {
+			logger.warn("Rejected a write, the vehicle table is being reloaded.");
+			return CompletableFuture.completedFuture(serviceUnavailable());
+		}
+		CompletableFuture<Vehicle> committed;
 		try {
-			return new ResponseEntity<Vehicle>(repo.save(vehicle), HttpStatus.OK);
-		} catch (Exception ex) {
-			logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
-			return new ResponseEntity<Vehicle>(HttpStatus.INTERNAL_SERVER_ERROR);
+			committed = groupCommit.submit(vehicle);
+		} catch (IllegalStateException | InterruptedException ex) {
+			writeGate.exit();
+			if (ex instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			logger.warn("Vehicle " + vehicle.getId() + " was not accepted by the group commit. " + ex.getMessage());
+			return CompletableFuture.completedFuture(serviceUnavailable());
 		}
+		committed.whenComplete((saved, ex) -> writeGate.exit());
+		return answerFailures(bulkhead.withDeadline(committed, writeBehindTimeoutMillis)
+				.thenApply(saved -> new ResponseEntity<Vehicle>(saved, HttpStatus.OK)));
 	}
 	
 	/**
@@ -173,33 +278,187 @@ public class VehicleRestController {
 	 * @return The deleted vehicle.
 	 */
 	@DeleteMapping("/vehicles/{id}")
-	public ResponseEntity<Vehicle> deleteVehicle(@PathVariable String id) {
-		Optional<Vehicle> vehicle = repo.findById(id);
-		if (vehicle.isPresent()) {
-			repo.deleteById(id);
-			return new ResponseEntity<Vehicle>(vehicle.get(), HttpStatus.OK);
+	public CompletableFuture<ResponseEntity<Vehicle>> deleteVehicle(@PathVariable String id) {
+		UUID uuid;
+		try {
+			uuid = UUID.fromString(id);
+		} catch (IllegalArgumentException ex) {
+			return CompletableFuture.completedFuture(new ResponseEntity<Vehicle>(HttpStatus.NO_CONTENT));
 		}
-		return new ResponseEntity<Vehicle>(HttpStatus.NO_CONTENT);
+		return executeWrite(() -> {
+			Optional<Vehicle> vehicle = repo.findById(uuid);
+			if (vehicle.isPresent()) {
+				repo.deleteById(uuid);
+				publisher.publishEvent(VehicleDataChangedEvent.deleted(Collections.singletonList(vehicle.get())));
+				return new ResponseEntity<Vehicle>(vehicle.get(), HttpStatus.OK);
+			}
+			return new ResponseEntity<Vehicle>(HttpStatus.NO_CONTENT);
+		});
 	}
 	
 	/**
-	 * Deletes the entire repository. Uses multi-threaded, fixed size batching; see 
-	 * {@link io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator}.
+	 * Deletes the entire repository with a single set-based statement; see 
+	 * {@link io.rosenwald.springDemo.db.VehicleRepository#deleteAllVehicles()}. No vehicle is loaded, and a failed delete 
+	 * is rolled back by the database, leaving every vehicle in place.
 	 * 
 	 * *This should probably not exist in a production application but I'm leaving it anyways for now.*
 	 * 
-	 * TODO: Provide better rollback in case of repository error. May not do this as this endpoint is not necessary at all.
-	 * 
-	 * @return The list of all deleted vehicles. 
+	 * @return The number of deleted vehicles. 
 	 */
 	@DeleteMapping("/vehicles")
-	public ResponseEntity<List<Vehicle>> deleteVehicle() {
-		List<Vehicle> vehicles = repo.findAll();
-		repo.deleteAll();
-		if (repo.count() != 0) {
-			repo.saveAll(vehicles);
-			return new ResponseEntity<List<Vehicle>>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+	public CompletableFuture<ResponseEntity<Integer>> deleteAllVehicles() {
+		return executeWrite(() -> {
+			try {
+				int deleted = repo.deleteAllVehicles();
+				publisher.publishEvent(VehicleDataChangedEvent.bulk());
+				return new ResponseEntity<Integer>(deleted, HttpStatus.OK);
+			} catch (Exception ex) {
+				logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
+				return new ResponseEntity<Integer>(HttpStatus.INTERNAL_SERVER_ERROR);
+			}
+		});
+	}
+	
+	/**
+	 * Answers a vehicle query with a single page using keyset pagination, see 
+	 * {@link io.rosenwald.springDemo.db.VehicleKeyset}. One vehicle more than the page size is fetched to tell whether 
+	 * there is a next page. The request URL is captured up front, since the page is looked up on another thread.
+	 * 
+	 * Fieldsets covered by a projection are selected by the projection queries on every route. Other year and make 
+	 * lookups page the cached whole vehicles of {@link VehicleFinder#findByYearAndMake(int, String)} and 
+	 * {@link VehicleFinder#findByYearAndMakeAndModel(int, String, String)} in memory.
+	 */
+	private CompletableFuture<ResponseEntity<Object>> findPage(VehicleFilter filter, String page, Integer limit, String fieldsParameter, 
+			String shapeParameter) {
+		UUID after;
+		VehicleFields fields;
+		Shape shape;
+		try {
+			after = VehicleKeyset.decode(page);
+			fields = VehicleFields.parse(fieldsParameter);
+			shape = Shape.fromParameter(shapeParameter);
+		} catch (IllegalArgumentException ex) {
+			return CompletableFuture.completedFuture(new ResponseEntity<Object>(HttpStatus.BAD_REQUEST));
 		}
-		return new ResponseEntity<List<Vehicle>>(HttpStatus.INTERNAL_SERVER_ERROR);
+		if (limit != null && limit < 1) {
+			return CompletableFuture.completedFuture(new ResponseEntity<Object>(HttpStatus.BAD_REQUEST));
+		}
+		int pageSize = limit == null ? maxPageSize : Math.min(limit, maxPageSize);
+		VehicleFields pageFields = fields == null && shape == Shape.TABLE ? VehicleFields.all() : fields;
+		UriComponentsBuilder requestUri = ServletUriComponentsBuilder.fromCurrentRequest();
+		return findPage(filter, after, pageSize, pageFields, shape, requestUri);
+	}
+	
+	private CompletableFuture<ResponseEntity<Object>> findPage(VehicleFilter filter, UUID after, int pageSize, VehicleFields fields, 
+			Shape shape, UriComponentsBuilder requestUri) {
+		HttpHeaders headers = new HttpHeaders();
+		int fetchSize = pageSize + 1;
+		if (fields != null && fields.getProjection() == Projection.ID) {
+			return query("findIdPage", finder -> finder.findIdPage(filter, after, fetchSize), ids -> new ResponseEntity<Object>(
+					fields.renderIds(trim(ids, pageSize, Function.identity(), headers, requestUri), shape), headers, HttpStatus.OK), 
+					filter, after, fetchSize);
+		} else if (fields != null && fields.getProjection() == Projection.SUMMARY) {
+			return query("findSummaryPage", finder -> finder.findSummaryPage(filter, after, fetchSize), summaries -> new ResponseEntity<Object>(
+					fields.renderSummaries(trim(summaries, pageSize, VehicleSummary::getId, headers, requestUri), shape), headers, HttpStatus.OK), 
+					filter, after, fetchSize);
+		} else if (filter.getYear() != null && filter.getMake() != null) {
+			// Small, cached results; paged and projected in memory.
+			int year = filter.getYear();
+			Function<List<Vehicle>, ResponseEntity<Object>> respond = vehicles -> vehiclePage(trim(VehicleKeyset.slice(vehicles, after, fetchSize), 
+					pageSize, Vehicle::getId, headers, requestUri), fields, shape, headers);
+			return filter.getModel() == null 
+					? query("findByYearAndMake", finder -> finder.findByYearAndMake(year, filter.getMake()), respond, year, filter.getMake())
+					: query("findByYearAndMakeAndModel", finder -> finder.findByYearAndMakeAndModel(year, filter.getMake(), filter.getModel()), 
+							respond, year, filter.getMake(), filter.getModel());
+		}
+		return query("findPage", finder -> finder.findPage(filter, after, fetchSize), vehicles -> vehiclePage(trim(vehicles, pageSize, 
+				Vehicle::getId, headers, requestUri), fields, shape, headers), filter, after, fetchSize);
+	}
+	
+	private static ResponseEntity<Object> vehiclePage(List<Vehicle> vehicles, VehicleFields fields, Shape shape, HttpHeaders headers) {
+		return new ResponseEntity<Object>(fields == null ? vehicles : fields.renderVehicles(vehicles, shape), headers, HttpStatus.OK);
+	}
+	
+	/**
+	 * Cuts the extra result off a page and links the next page in the headers if there is one.
+	 */
+	private static <T> List<T> trim(List<T> results, int pageSize, Function<T, UUID> id, HttpHeaders headers, 
+			UriComponentsBuilder requestUri) {
+		if (results.size() <= pageSize) {
+			return results;
+		}
+		results = results.subList(0, pageSize);
+		String next = VehicleKeyset.encode(id.apply(results.get(pageSize - 1)));
+		headers.set(NEXT_PAGE_HEADER, next);
+		headers.set(HttpHeaders.LINK, "<" + requestUri.cloneBuilder()
+				.replaceQueryParam("page", next).toUriString() + ">; rel=\"next\"");
+		return results;
+	}
+	
+	/**
+	 * Answers a query from the read model right away if it is enabled and loaded. Otherwise the query is submitted to 
+	 * the bulkhead through the {@link CoalescingVehicleFinder}, joining the identical query already submitted without 
+	 * taking a thread. Requests the bulkhead rejects or times out are answered with 503.
+	 * 
+	 * @param finder The name of the finder the query calls.
+	 * @param query The query.
+	 * @param respond Turns the result of the query into the response.
+	 * @param args The arguments of the finder.
+	 */
+	private <Q, T> CompletableFuture<ResponseEntity<T>> query(String finder, Function<VehicleFinder, Q> query, 
+			Function<Q, ResponseEntity<T>> respond, Object... args) {
+		if (readModel != null && readModel.isLoaded()) {
+			try {
+				return CompletableFuture.completedFuture(respond.apply(query.apply(readModel)));
+			} catch (Exception ex) {
+				logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
+				return CompletableFuture.completedFuture(new ResponseEntity<T>(HttpStatus.INTERNAL_SERVER_ERROR));
+			}
+		}
+		return answerFailures(coalescingFinder.submit(finder, query, args).thenApply(respond));
+	}
+	
+	/**
+	 * Answers rejected and timed out database calls with 503, and other failures with 500.
+	 */
+	private <T> CompletableFuture<ResponseEntity<T>> answerFailures(CompletableFuture<ResponseEntity<T>> response) {
+		return response.exceptionally(ex -> {
+			Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+			if (cause instanceof RejectedExecutionException || cause instanceof TimeoutException) {
+				logger.warn(cause.getMessage());
+				return serviceUnavailable();
+			}
+			logger.error(cause.getMessage() + System.lineSeparator() + cause.getStackTrace());
+			return new ResponseEntity<T>(HttpStatus.INTERNAL_SERVER_ERROR);
+		});
+	}
+	
+	/**
+	 * Runs a handler writing to the vehicle table on the bulkhead, unless the {@link VehicleWriteGate} keeps writes out. 
+	 * The gate is entered on the bulkhead thread, so a write is inside it until its database calls are done, even if 
+	 * the request has timed out meanwhile. The deadline never interrupts a write, so a write committed after it still 
+	 * publishes its change event; see {@link DatabaseBulkhead#submitWrite(java.util.concurrent.Callable)}.
+	 */
+	private <T> CompletableFuture<ResponseEntity<T>> executeWrite(Supplier<ResponseEntity<T>> call) {
+		return answerFailures(bulkhead.submitWrite(() -> {
+			if (!writeGate.tryEnter()) {
+				logger.warn("Rejected a write, the vehicle table is being reloaded.");
+				return serviceUnavailable();
+			}
+			try {
+				return call.get();
+			} finally {
+				writeGate.exit();
+			}
+		}));
+	}
+	
+	/**
+	 * @return 503 with a Retry-After header.
+	 */
+	private static <T> ResponseEntity<T> serviceUnavailable() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, "1");
+		return new ResponseEntity<T>(headers, HttpStatus.SERVICE_UNAVAILABLE);
 	}
 }
@@ -0,0 +1,66 @@
+package io.rosenwald.springDemo.rest;
+
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.rosenwald.springDemo.DemoApplication;
+import io.rosenwald.springDemo.db.VehicleFilter;
+import io.rosenwald.springDemo.db.VehicleStatsQuery;
+import io.rosenwald.springDemo.query.VehicleStatistics;
+
+/**
+ * A controller providing counts and other metrics of groups of vehicles, see 
+ * {@link io.rosenwald.springDemo.db.VehicleStatsQuery} and {@link io.rosenwald.springDemo.query.VehicleStatistics}.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@RestController
+public class VehicleStatsController {
+	
+	private static final Logger logger = LoggerFactory.getLogger(DemoApplication.class);
+	
+	@Autowired VehicleStatistics statistics;
+	
+	/**
+	 * Aggregates the vehicles, e.g. /vehicles/stats?groupBy=year,make&metrics=count,avg(displacement).
+	 * 
+	 * @param groupBy Comma separated dimensions: year, make, model, drive, transmission, cylinders, altType. Omit for a 
+	 * 		single group of all matching vehicles.
+	 * @param metrics Comma separated metrics: count, or sum, avg, min, or max of year, cylinders, or displacement, 
+	 * 		e.g. max(cylinders). Defaults to count.
+	 * @param year Restricts the vehicles to a model year.
+	 * @param make Restricts the vehicles to a make.
+	 * @param model Restricts the vehicles to a model.
+	 * @return One object per group holding its dimension values and metrics, sorted by the dimension values.
+	 */
+	@GetMapping("/vehicles/stats")
+	public ResponseEntity<List<Map<String, Object>>> getStats(@RequestParam(value="groupBy", required=false) String groupBy, 
+			@RequestParam(value="metrics", required=false) String metrics, 
+			@RequestParam(value="year", required=false) Integer year, 
+			@RequestParam(value="make", required=false) String make, 
+			@RequestParam(value="model", required=false) String model) {
+		VehicleStatsQuery query;
+		try {
+			query = VehicleStatsQuery.parse(VehicleFilter.of(year, make, model), groupBy, metrics);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<List<Map<String, Object>>>(HttpStatus.BAD_REQUEST);
+		}
+		
+		try {
+			return new ResponseEntity<List<Map<String, Object>>>(statistics.aggregate(query), HttpStatus.OK);
+		} catch (Exception ex) {
+			logger.error(ex.getMessage() + System.lineSeparator() + ex.getStackTrace());
+			return new ResponseEntity<List<Map<String, Object>>>(HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package io.rosenwald.springDemo.rest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.DispatcherType;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.rosenwald.springDemo.db.VehicleDatasetVersion;
+
+/**
+ * A JavaConfig configuration class customizing Spring MVC. Registers the {@link ConditionalGetInterceptor} for the 
+ * vehicle and metadata endpoints, and the {@link CompressionFilter} for all requests.
+ * 
+ * Also provides the binary CBOR (application/cbor) and Smile (application/x-jackson-smile) encodings, chosen through 
+ * the Accept header. They are configured like the JSON encoding and appended after all other converters, so JSON stays 
+ * the encoding of requests accepting any media type.
+ * 
+ * @author Nathaniel Rosenwald
+ *
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+	
+	@Autowired
+	private VehicleDatasetVersion datasetVersion;
+	
+	@Autowired
+	private ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+	
+	/**
+	 * How long clients may reuse a response without revalidating it.
+	 */
+	@Value("${io.rosenwald.springDemo.http.max-age:0}")
+	private long maxAge;
+	
+	@Value("${io.rosenwald.springDemo.http.compression.enabled:true}")
+	private boolean compressionEnabled;
+	
+	@Value("${io.rosenwald.springDemo.http.compression.mime-types:application/json,application/x-ndjson,application/cbor,application/x-jackson-smile}")
+	private String[] compressedMimeTypes;
+	
+	@Value("${io.rosenwald.springDemo.http.compression.min-response-size:1024}")
+	private int compressionMinResponseSize;
+	
+	@Bean
+	public FilterRegistrationBean<CompressionFilter> compressionFilter() {
+		FilterRegistrationBean<CompressionFilter> registration = new FilterRegistrationBean<CompressionFilter>(
+				new CompressionFilter(MediaType.parseMediaTypes(Arrays.asList(compressedMimeTypes)), compressionMinResponseSize));
+		// Responses of async requests are written and finished in their async dispatch.
+		registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+		registration.setEnabled(compressionEnabled);
+		return registration;
+	}
+	
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new ConditionalGetInterceptor(datasetVersion, CacheControl.maxAge(maxAge, TimeUnit.SECONDS).mustRevalidate()))
+				.addPathPatterns("/vehicles", "/vehicles/**", "/modelYears", "/modelYears/**", "/suggest", "/version")
+				// Job status changes without the dataset version changing.
+				.excludePathPatterns("/vehicles/batch/**");
+	}
+	
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter 
+				|| converter instanceof MappingJackson2SmileHttpMessageConverter);
+		converters.add(new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.getObject().factory(new CBORFactory()).build()));
+		converters.add(new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.getObject().factory(new SmileFactory()).build()));
+	}
+}
@@ -1,5 +1,9 @@
 package io.rosenwald.springDemo.rest;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.info.InfoEndpoint;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
@@ -10,13 +14,45 @@ import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
  * to provide the CSRF token as a cookie to the client of a REST endpoint. This allows keeping CSRF security enabled 
  * while still being able to test the endpoints with REST clients such as Insomnia or Postman. 
  * 
+ * The /admin endpoints require HTTP basic authentication of a user with the ADMIN role. The /vehicles/batch endpoints, 
+ * which spool whole bodies to disk, require an authenticated user of any role. Of the actuator endpoints only health 
+ * and info are public; the others, such as metrics and caches, which can clear the caches, require the ADMIN role. The 
+ * prometheus endpoint may also be scraped by a user with the METRICS role, or without credentials from the addresses 
+ * listed in io.rosenwald.springDemo.metrics.scrape-addresses. The user is configured through the spring.security.user 
+ * properties; see application.properties.
+ * 
  * @author Nathaniel Rosenwald
  *
  */
 @EnableWebSecurity
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
+	
+	/**
+	 * IP addresses or subnets, such as 10.0.0.0/8, the prometheus endpoint can be scraped from without credentials.
+	 */
+	@Value("${io.rosenwald.springDemo.metrics.scrape-addresses:}")
+	private String[] scrapeAddresses;
+	
 	@Override
     protected void configure(HttpSecurity http) throws Exception {
         http.csrf().csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse());
+        http.authorizeRequests()
+        		.antMatchers("/admin/**").hasRole("ADMIN")
+        		.antMatchers("/vehicles/batch/**").authenticated()
+        		.requestMatchers(EndpointRequest.to(HealthEndpoint.class, InfoEndpoint.class)).permitAll()
+        		.requestMatchers(EndpointRequest.to("prometheus")).access(scrapeAccess())
+        		.requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ADMIN")
+        		.anyRequest().permitAll()
+        		.and().httpBasic();
     }
+	
+	private String scrapeAccess() {
+		StringBuilder access = new StringBuilder("hasAnyRole('ADMIN', 'METRICS')");
+		for (String address : scrapeAddresses) {
+			if (!address.trim().isEmpty()) {
+				access.append(" or hasIpAddress('").append(address.trim()).append("')");
+			}
+		}
+		return access.toString();
+	}
 }
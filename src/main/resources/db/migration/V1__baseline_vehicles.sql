@@ -0,0 +1,16 @@
+-- The vehicles table as it was created by hibernate.ddl-auto=update. Databases created that way are baselined at this
+-- version (spring.flyway.baseline-on-migrate) and only run the migrations after it.
+CREATE TABLE vehicles (
+	id VARCHAR(255) NOT NULL,
+	alt_type VARCHAR(255),
+	content_hash VARCHAR(64),
+	cylinders INTEGER NOT NULL,
+	displacement FLOAT NOT NULL,
+	drive VARCHAR(255),
+	ev_motor VARCHAR(255),
+	make VARCHAR(255),
+	model VARCHAR(255),
+	transmission VARCHAR(255),
+	year INTEGER NOT NULL,
+	PRIMARY KEY (id)
+) ENGINE=InnoDB;
@@ -0,0 +1,68 @@
+-- Rebuilds the vehicles table around its access paths:
+--  * 16 byte binary IDs instead of 36 character strings, keeping the clustered index and every secondary index small.
+--  * A (year, make, model) index serving the year/make/model lookups, plus make and model indexes for the lookups by
+--    make or model alone.
+--  * Drive, transmission, and alternative fuel type moved into dictionary tables referenced by SMALLINT codes.
+-- Dictionary names use a binary collation so values differing only in case keep distinct codes. There are no foreign
+-- keys as the shadow table import copies the table with CREATE TABLE ... LIKE, which does not copy them.
+
+-- Databases created by ddl-auto before content hashes were introduced lack the column.
+ALTER TABLE vehicles ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+
+CREATE TABLE vehicle_drives (
+	id SMALLINT NOT NULL AUTO_INCREMENT,
+	name VARCHAR(191) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+	PRIMARY KEY (id),
+	UNIQUE KEY uk_vehicle_drives_name (name)
+) ENGINE=InnoDB;
+
+CREATE TABLE vehicle_transmissions (
+	id SMALLINT NOT NULL AUTO_INCREMENT,
+	name VARCHAR(191) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+	PRIMARY KEY (id),
+	UNIQUE KEY uk_vehicle_transmissions_name (name)
+) ENGINE=InnoDB;
+
+CREATE TABLE vehicle_alt_types (
+	id SMALLINT NOT NULL AUTO_INCREMENT,
+	name VARCHAR(191) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+	PRIMARY KEY (id),
+	UNIQUE KEY uk_vehicle_alt_types_name (name)
+) ENGINE=InnoDB;
+
+INSERT IGNORE INTO vehicle_drives (name) 
+	SELECT MIN(drive) FROM vehicles WHERE drive IS NOT NULL GROUP BY BINARY drive;
+INSERT IGNORE INTO vehicle_transmissions (name) 
+	SELECT MIN(transmission) FROM vehicles WHERE transmission IS NOT NULL GROUP BY BINARY transmission;
+INSERT IGNORE INTO vehicle_alt_types (name) 
+	SELECT MIN(alt_type) FROM vehicles WHERE alt_type IS NOT NULL GROUP BY BINARY alt_type;
+
+CREATE TABLE vehicles_compact (
+	id BINARY(16) NOT NULL,
+	year INTEGER NOT NULL,
+	make VARCHAR(255),
+	model VARCHAR(255),
+	drive_id SMALLINT,
+	transmission_id SMALLINT,
+	cylinders INTEGER NOT NULL,
+	displacement FLOAT NOT NULL,
+	alt_type_id SMALLINT,
+	ev_motor VARCHAR(255),
+	content_hash VARCHAR(64),
+	PRIMARY KEY (id),
+	KEY idx_vehicles_year_make_model (year, make, model),
+	KEY idx_vehicles_make (make),
+	KEY idx_vehicles_model (model)
+) ENGINE=InnoDB;
+
+INSERT INTO vehicles_compact (id, year, make, model, drive_id, transmission_id, cylinders, displacement, alt_type_id, 
+		ev_motor, content_hash)
+	SELECT UNHEX(REPLACE(v.id, '-', '')), v.year, v.make, v.model, d.id, t.id, v.cylinders, v.displacement, a.id, 
+		v.ev_motor, v.content_hash
+	FROM vehicles v
+	LEFT JOIN vehicle_drives d ON d.name = BINARY v.drive
+	LEFT JOIN vehicle_transmissions t ON t.name = BINARY v.transmission
+	LEFT JOIN vehicle_alt_types a ON a.name = BINARY v.alt_type;
+
+RENAME TABLE vehicles TO vehicles_legacy, vehicles_compact TO vehicles;
+DROP TABLE vehicles_legacy;
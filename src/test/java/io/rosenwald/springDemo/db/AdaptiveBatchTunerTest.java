@@ -0,0 +1,56 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveBatchTunerTest {
+	
+	private static final long TARGET_MILLIS = 1000;
+	
+	@Test
+	public void slowBatchesShrinkTheBatchSize() {
+		AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(10, 100, 400, 4, TARGET_MILLIS);
+		
+		tuner.record(100, TimeUnit.MILLISECONDS.toNanos(TARGET_MILLIS * 2), true);
+		
+		assertEquals(50, tuner.getBatchSize());
+	}
+	
+	@Test
+	public void fastBatchesGrowTheBatchSizeUpToTheMaximum() {
+		AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(10, 100, 400, 4, TARGET_MILLIS);
+		
+		for (int i = 0; i < 10; i++) {
+			tuner.record(100, TimeUnit.MILLISECONDS.toNanos(10), true);
+		}
+		
+		assertEquals(400, tuner.getBatchSize());
+	}
+	
+	@Test
+	public void contentionHalvesConcurrencyAndRecoveryRestoresIt() throws Exception {
+		AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(10, 100, 400, 8, TARGET_MILLIS);
+		tuner.record(100, TimeUnit.MILLISECONDS.toNanos(100), true);
+		
+		tuner.record(100, TimeUnit.MILLISECONDS.toNanos(500), true);
+		assertEquals(4, tuner.getConcurrency());
+		
+		for (int i = 0; i < 100; i++) {
+			tuner.record(100, TimeUnit.MILLISECONDS.toNanos(100), true);
+		}
+		assertEquals(8, tuner.getConcurrency());
+	}
+	
+	@Test
+	public void failuresHalveConcurrencyAndBatchSize() {
+		AdaptiveBatchTuner tuner = new AdaptiveBatchTuner(10, 100, 400, 8, TARGET_MILLIS);
+		
+		tuner.record(100, TimeUnit.MILLISECONDS.toNanos(100), false);
+		
+		assertEquals(4, tuner.getConcurrency());
+		assertEquals(50, tuner.getBatchSize());
+	}
+}
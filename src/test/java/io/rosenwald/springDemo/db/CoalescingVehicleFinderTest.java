@@ -0,0 +1,157 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class CoalescingVehicleFinderTest {
+	
+	private VehicleRepository repo;
+	private VehicleDatasetVersion datasetVersion;
+	private SimpleMeterRegistry registry;
+	private CoalescingVehicleFinder finder;
+	private CountDownLatch started;
+	private CountDownLatch release;
+	
+	@Before
+	public void initTest() {
+		repo = mock(VehicleRepository.class);
+		datasetVersion = new VehicleDatasetVersion();
+		registry = new SimpleMeterRegistry();
+		finder = new CoalescingVehicleFinder(repo, datasetVersion, new DatabaseBulkhead(4, 0, 5000), registry);
+		started = new CountDownLatch(1);
+		release = new CountDownLatch(1);
+	}
+	
+	@Test
+	public void sharesTheRunningQuery() throws Exception {
+		List<Vehicle> ford = Arrays.asList(new Vehicle());
+		when(repo.findByYearAndMake(2016, "Ford")).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return ford;
+		});
+		
+		CompletableFuture<List<Vehicle>> first = CompletableFuture.supplyAsync(() -> finder.findByYearAndMake(2016, "Ford"));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<List<Vehicle>> second = CompletableFuture.supplyAsync(() -> finder.findByYearAndMake(2016, "ford"));
+		awaitWaiting(1);
+		release.countDown();
+		
+		assertSame(ford, first.get(5, TimeUnit.SECONDS));
+		assertSame(ford, second.get(5, TimeUnit.SECONDS));
+		verify(repo, times(1)).findByYearAndMake(2016, "Ford");
+		assertEquals(1, registry.get("vehicles.queries.executed").tag("finder", "findByYearAndMake").counter().count(), 0);
+		assertEquals(0, finder.getRunning());
+	}
+	
+	@Test
+	public void joinsSubmittedQueriesWithoutTakingAThread() throws Exception {
+		finder = new CoalescingVehicleFinder(repo, datasetVersion, new DatabaseBulkhead(1, 0, 5000), registry);
+		List<Vehicle> ford = Arrays.asList(new Vehicle());
+		when(repo.findByYearAndMake(2016, "Ford")).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return ford;
+		});
+		
+		CompletableFuture<List<Vehicle>> first = finder.submit("findByYearAndMake", 
+				vehicles -> vehicles.findByYearAndMake(2016, "Ford"), 2016, "Ford");
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		List<CompletableFuture<List<Vehicle>>> followers = new ArrayList<CompletableFuture<List<Vehicle>>>();
+		for (int i = 0; i < 20; i++) {
+			followers.add(finder.submit("findByYearAndMake", vehicles -> vehicles.findByYearAndMake(2016, "Ford"), 2016, "Ford"));
+		}
+		// Another query finds the only thread busy.
+		CompletableFuture<List<Integer>> other = finder.submit("findAllYears", VehicleFinder::findAllYears);
+		release.countDown();
+		
+		assertSame(ford, first.get(5, TimeUnit.SECONDS));
+		for (CompletableFuture<List<Vehicle>> follower : followers) {
+			assertSame(ford, follower.get(5, TimeUnit.SECONDS));
+		}
+		try {
+			other.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("The bulkhead has no thread left for another query.");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof RejectedExecutionException);
+		}
+		verify(repo, times(1)).findByYearAndMake(2016, "Ford");
+		assertEquals(20, registry.get("vehicles.queries.coalesced").tag("finder", "findByYearAndMake").counter().count(), 0);
+	}
+	
+	@Test
+	public void doesNotShareQueriesAcrossWrites() throws Exception {
+		when(repo.findAllYears()).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return Collections.singletonList(2016);
+		});
+		
+		CompletableFuture<List<Integer>> beforeWrite = CompletableFuture.supplyAsync(finder::findAllYears);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		datasetVersion.onVehicleDataChanged(VehicleDataChangedEvent.bulk());
+		CompletableFuture<List<Integer>> afterWrite = CompletableFuture.supplyAsync(finder::findAllYears);
+		release.countDown();
+		
+		assertEquals(Collections.singletonList(2016), beforeWrite.get(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList(2016), afterWrite.get(5, TimeUnit.SECONDS));
+		verify(repo, times(2)).findAllYears();
+		assertEquals(0, registry.find("vehicles.queries.coalesced").counters().size());
+	}
+	
+	@Test
+	public void failsEveryWaitingCaller() throws Exception {
+		when(repo.findAllYears()).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			throw new IllegalStateException("Lost connection");
+		});
+		
+		CompletableFuture<List<Integer>> first = CompletableFuture.supplyAsync(finder::findAllYears);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<List<Integer>> second = CompletableFuture.supplyAsync(finder::findAllYears);
+		awaitWaiting(1);
+		release.countDown();
+		
+		for (CompletableFuture<List<Integer>> caller : Arrays.asList(first, second)) {
+			try {
+				caller.get(5, TimeUnit.SECONDS);
+				throw new AssertionError("The failed query must fail every caller.");
+			} catch (ExecutionException ex) {
+				assertTrue(ex.getCause() instanceof IllegalStateException);
+			}
+		}
+		verify(repo, times(1)).findAllYears();
+	}
+	
+	/**
+	 * Waits for the given number of callers to join a running query.
+	 */
+	private void awaitWaiting(int callers) throws InterruptedException {
+		for (int i = 0; i < 500 && registry.find("vehicles.queries.coalesced").counters().stream()
+				.mapToDouble(counter -> counter.count()).sum() < callers; i++) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class DatabaseBulkheadTest {
+
+	@Test
+	public void rejectsCallsWhenFull() throws Exception {
+		DatabaseBulkhead bulkhead = new DatabaseBulkhead(2, 0, 5000);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> first = bulkhead.submit(() -> { release.await(); return "first"; });
+		CompletableFuture<String> second = bulkhead.submit(() -> { release.await(); return "second"; });
+
+		CompletableFuture<String> rejected = bulkhead.submit(() -> "rejected");
+		assertTrue(rejected.isCompletedExceptionally());
+		assertCause(rejected, RejectedExecutionException.class);
+
+		release.countDown();
+		assertEquals("first", first.get(5, TimeUnit.SECONDS));
+		assertEquals("second", second.get(5, TimeUnit.SECONDS));
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void interruptsCallsPastTheDeadline() throws Exception {
+		DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 0, 100);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		CompletableFuture<String> slow = bulkhead.submit(() -> {
+			try {
+				Thread.sleep(10000);
+				return "slow";
+			} catch (InterruptedException ex) {
+				interrupted.countDown();
+				throw ex;
+			}
+		});
+
+		assertCause(slow, TimeoutException.class);
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		// The thread is busy until the interrupted call returned.
+		for (int i = 0; i < 500 && bulkhead.getActive() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("fast", bulkhead.submit(() -> "fast").get(5, TimeUnit.SECONDS));
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void leavesWritesRunningPastTheDeadline() throws Exception {
+		DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 0, 100);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> published = new CompletableFuture<Boolean>();
+		CompletableFuture<String> write = bulkhead.submitWrite(() -> {
+			release.await();
+			// Committed after the deadline; the change event must still be published.
+			published.complete(!Thread.currentThread().isInterrupted());
+			return "committed";
+		});
+
+		assertCause(write, TimeoutException.class);
+		release.countDown();
+		assertTrue(published.get(5, TimeUnit.SECONDS));
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void givesCallsRunningElsewhereADeadlineWithoutAThread() throws Exception {
+		DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 0, 5000);
+		CompletableFuture<String> commit = new CompletableFuture<String>();
+
+		CompletableFuture<String> late = bulkhead.withDeadline(commit, 100);
+		CompletableFuture<String> inTime = bulkhead.withDeadline(commit, 5000);
+		assertEquals(0, bulkhead.getActive());
+
+		assertCause(late, TimeoutException.class);
+		commit.complete("committed");
+		assertEquals("committed", inTime.get(5, TimeUnit.SECONDS));
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void passesOnExceptionsOfTheCall() throws Exception {
+		DatabaseBulkhead bulkhead = new DatabaseBulkhead(1, 0, 5000);
+
+		assertCause(bulkhead.submit(() -> { throw new IllegalStateException("Lost connection"); }), IllegalStateException.class);
+		bulkhead.shutdown();
+	}
+
+	@Test
+	public void leavesTheBatchWritersTheirConnections() {
+		assertEquals(10, DatabaseBulkhead.poolBoundedThreads(0, 50, 10));
+		assertEquals(4, DatabaseBulkhead.poolBoundedThreads(4, 50, 10));
+		// The batch writers always get at least one connection.
+		assertEquals(9, DatabaseBulkhead.poolBoundedThreads(0, 10, 10));
+		try {
+			DatabaseBulkhead.poolBoundedThreads(50, 50, 10);
+			throw new AssertionError("Threads exceeding the reserved connections must be rejected.");
+		} catch (IllegalStateException ex) {
+			assertTrue(ex.getMessage().contains("exceed the pool of 50"));
+		}
+	}
+
+	private static void assertCause(CompletableFuture<?> future, Class<? extends Throwable> type) throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("The call must fail with " + type.getSimpleName() + ".");
+		} catch (ExecutionException ex) {
+			assertTrue(type.isInstance(ex.getCause()));
+		}
+	}
+}
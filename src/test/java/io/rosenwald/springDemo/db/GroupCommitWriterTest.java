@@ -0,0 +1,167 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GroupCommitWriterTest {
+	
+	private SimpleMeterRegistry registry;
+	private List<List<String>> batches;
+	
+	@Before
+	public void initTest() {
+		registry = new SimpleMeterRegistry();
+		batches = Collections.synchronizedList(new ArrayList<List<String>>());
+	}
+	
+	@Test
+	public void groupsConcurrentSavesIntoBatches() throws Exception {
+		GroupCommitWriter<String> writer = new GroupCommitWriter<String>(new RecordingWriter(), 10, 200, 100, registry);
+		List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+		for (int i = 0; i < 25; i++) {
+			futures.add(writer.submit(Integer.toString(i)));
+		}
+		
+		for (int i = 0; i < 25; i++) {
+			assertEquals(Integer.toString(i), futures.get(i).get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(25, batches.stream().mapToInt(List::size).sum());
+		assertTrue(batches.size() <= 4);
+		assertEquals(25, registry.get("vehicles.write.behind.flush.size").summary().totalAmount(), 0);
+		assertEquals(batches.size(), registry.get("vehicles.write.behind.flush.latency").timer().count());
+		writer.close();
+	}
+	
+	@Test
+	public void failsOnlyTheBadEntityOfAFailedBatch() throws Exception {
+		GroupCommitWriter<String> writer = new GroupCommitWriter<String>(new RecordingWriter(), 10, 200, 100, registry);
+		CompletableFuture<String> good = writer.submit("good");
+		CompletableFuture<String> bad = writer.submit("bad");
+		
+		assertEquals("good", good.get(5, TimeUnit.SECONDS));
+		try {
+			bad.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("The bad entity must not be saved.");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalArgumentException);
+		}
+		writer.close();
+	}
+	
+	@Test
+	public void closeFlushesBufferedEntities() throws Exception {
+		GroupCommitWriter<String> writer = new GroupCommitWriter<String>(new RecordingWriter(), 10, 60000, 100, registry);
+		CompletableFuture<String> first = writer.submit("first");
+		CompletableFuture<String> second = writer.submit("second");
+		
+		writer.close();
+		
+		assertEquals("first", first.get(5, TimeUnit.SECONDS));
+		assertEquals("second", second.get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void survivesErrorsOfTheWriter() throws Exception {
+		GroupCommitWriter<String> writer = new GroupCommitWriter<String>(new RecordingWriter(), 10, 0, 100, registry);
+		CompletableFuture<String> fatal = writer.submit("fatal");
+		
+		try {
+			fatal.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("The fatal entity must not be saved.");
+		} catch (ExecutionException ex) {
+			assertEquals("fatal", ex.getCause().getMessage());
+		}
+		assertEquals("good", writer.submit("good").get(5, TimeUnit.SECONDS));
+		writer.close();
+	}
+	
+	@Test
+	public void rejectsSubmitsWaitingForRoomWhileClosing() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		GroupCommitWriter<String> writer = new GroupCommitWriter<String>(new RecordingWriter() {
+			@Override
+			public void save(List<String> batch) {
+				while (release.getCount() > 0) {
+					try {
+						release.await();
+					} catch (InterruptedException ex) {
+						// Interrupted by close(), keep blocking the flusher until released.
+					}
+				}
+				super.save(batch);
+			}
+		}, 1, 0, 1, registry);
+		CompletableFuture<String> first = writer.submit("first");
+		for (int i = 0; i < 500 && writer.getBuffered() > 0; i++) {
+			Thread.sleep(10);
+		}
+		CompletableFuture<String> second = writer.submit("second");
+		AtomicReference<Throwable> thirdFailure = new AtomicReference<Throwable>();
+		Thread third = new Thread(() -> {
+			try {
+				writer.submit("third");
+			} catch (Throwable ex) {
+				thirdFailure.set(ex);
+			}
+		});
+		third.start();
+		for (int i = 0; i < 500 && third.getState() != Thread.State.WAITING; i++) {
+			Thread.sleep(10);
+		}
+		
+		new Thread(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException ex) {
+				// Released right away.
+			}
+			release.countDown();
+		}).start();
+		writer.close();
+		third.join(5000);
+		
+		assertEquals("first", first.get(5, TimeUnit.SECONDS));
+		assertEquals("second", second.get(5, TimeUnit.SECONDS));
+		assertTrue(thirdFailure.get() instanceof IllegalStateException);
+	}
+	
+	/**
+	 * Records every batch, fails batches containing "bad", and throws an error for batches containing "fatal".
+	 */
+	private class RecordingWriter implements BatchWriter<String> {
+		@Override
+		public void save(List<String> batch) {
+			if (batch.contains("bad")) {
+				throw new IllegalArgumentException("bad");
+			}
+			if (batch.contains("fatal")) {
+				throw new Error("fatal");
+			}
+			batches.add(new ArrayList<String>(batch));
+		}
+
+		@Override
+		public void delete(List<String> batch) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String getDescriptor() {
+			return "RECORDING";
+		}
+	}
+}
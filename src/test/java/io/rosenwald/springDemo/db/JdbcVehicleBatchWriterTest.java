@@ -0,0 +1,148 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.rosenwald.springDemo.db.VehicleLookupTables.Dictionary;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class JdbcVehicleBatchWriterTest {
+	
+	private JdbcTemplate jdbcTemplate;
+	private PlatformTransactionManager transactionManager;
+	private VehicleLookupTables lookupTables;
+	private Dictionary drives;
+	private Dictionary transmissions;
+	private Dictionary altTypes;
+	private PreparedStatement ps;
+	
+	@Before
+	public void initTest() {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		transactionManager = mock(PlatformTransactionManager.class);
+		lookupTables = mock(VehicleLookupTables.class);
+		drives = mock(Dictionary.class);
+		transmissions = mock(Dictionary.class);
+		altTypes = mock(Dictionary.class);
+		when(lookupTables.drives()).thenReturn(drives);
+		when(lookupTables.transmissions()).thenReturn(transmissions);
+		when(lookupTables.altTypes()).thenReturn(altTypes);
+		ps = mock(PreparedStatement.class);
+	}
+	
+	@Test
+	public void idsAreBigEndianBinary() {
+		UUID id = UUID.fromString("00112233-4455-6677-8899-aabbccddeeff");
+		
+		byte[] bytes = JdbcVehicleBatchWriter.toBytes(id);
+		
+		assertArrayEquals(new byte[] { 0x00, 0x11, 0x22, 0x33, 0x44, 0x55, 0x66, 0x77, (byte) 0x88, (byte) 0x99,
+				(byte) 0xaa, (byte) 0xbb, (byte) 0xcc, (byte) 0xdd, (byte) 0xee, (byte) 0xff }, bytes);
+		assertEquals(id, JdbcVehicleBatchWriter.toUuid(bytes));
+	}
+	
+	@Test
+	public void savesLookupValuesAsDictionaryCodes() throws Exception {
+		Vehicle vehicle = new Vehicle(2016, "Ford", "Mustang", "Rear-Wheel Drive", "Manual 6-spd", 8, 5.0f, "Hybrid", "Electric");
+		when(drives.encode("Rear-Wheel Drive")).thenReturn((short) 3);
+		when(transmissions.encode("Manual 6-spd")).thenReturn((short) 7);
+		when(altTypes.encode("Hybrid")).thenReturn((short) 1);
+		
+		String sql = save(new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables), vehicle);
+		
+		assertTrue(sql.startsWith("INSERT INTO vehicles "));
+		verify(ps).setBytes(1, JdbcVehicleBatchWriter.toBytes(vehicle.getId()));
+		verify(ps).setInt(2, 2016);
+		verify(ps).setString(3, "Ford");
+		verify(ps).setString(4, "Mustang");
+		verify(ps).setShort(5, (short) 3);
+		verify(ps).setShort(6, (short) 7);
+		verify(ps).setInt(7, 8);
+		verify(ps).setFloat(8, 5.0f);
+		verify(ps).setShort(9, (short) 1);
+		verify(ps).setString(10, "Electric");
+		verify(ps).setString(11, vehicle.getContentHash());
+	}
+	
+	@Test
+	public void savesNullLookupValuesAsNull() throws Exception {
+		Vehicle vehicle = new Vehicle(1988, "Lamborghini", "Countach", null, null, 12, 5.2f, null, null);
+		when(drives.encode(null)).thenReturn(null);
+		when(transmissions.encode(null)).thenReturn(null);
+		when(altTypes.encode(null)).thenReturn(null);
+		
+		save(new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables), vehicle);
+		
+		verify(ps).setNull(5, Types.SMALLINT);
+		verify(ps).setNull(6, Types.SMALLINT);
+		verify(ps).setNull(9, Types.SMALLINT);
+		verify(ps).setString(10, null);
+	}
+	
+	@Test
+	public void upsertsUpdateExistingIds() throws Exception {
+		Vehicle vehicle = new Vehicle(2016, "Ford", "Mustang", null, null, 8, 5.0f, null, null);
+		
+		String insert = save(new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables, "vehicles_shadow"), vehicle);
+		String upsert = save(new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables, "vehicles_shadow", true), vehicle);
+		
+		assertTrue(insert.startsWith("INSERT INTO vehicles_shadow "));
+		assertFalse(insert.contains("ON DUPLICATE KEY UPDATE"));
+		assertTrue(upsert.startsWith("INSERT INTO vehicles_shadow "));
+		assertTrue(upsert.contains(" ON DUPLICATE KEY UPDATE year = VALUES(year)"));
+		assertTrue(upsert.endsWith("content_hash = VALUES(content_hash)"));
+	}
+	
+	@Test
+	public void deletesByBinaryIds() throws Exception {
+		UUID id = UUID.randomUUID();
+		
+		new JdbcVehicleBatchWriter(jdbcTemplate, transactionManager, lookupTables).deleteByIds(Collections.singletonList(id));
+		
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<BatchPreparedStatementSetter> setter = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+		verify(jdbcTemplate).batchUpdate(sql.capture(), setter.capture());
+		assertEquals("DELETE FROM vehicles WHERE id = ?", sql.getValue());
+		assertEquals(1, setter.getValue().getBatchSize());
+		setter.getValue().setValues(ps, 0);
+		verify(ps).setBytes(1, JdbcVehicleBatchWriter.toBytes(id));
+	}
+	
+	/**
+	 * Saves a single vehicle and sets its values on the mock statement.
+	 *
+	 * @return The SQL of the batch.
+	 */
+	private String save(JdbcVehicleBatchWriter writer, Vehicle vehicle) throws Exception {
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<BatchPreparedStatementSetter> setter = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+		when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenReturn(new int[] { 1 });
+		
+		writer.save(Collections.singletonList(vehicle));
+		
+		verify(jdbcTemplate, atLeastOnce()).batchUpdate(sql.capture(), setter.capture());
+		assertEquals(1, setter.getValue().getBatchSize());
+		setter.getValue().setValues(ps, 0);
+		return sql.getValue();
+	}
+}
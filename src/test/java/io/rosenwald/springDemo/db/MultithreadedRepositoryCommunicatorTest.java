@@ -0,0 +1,194 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rosenwald.springDemo.db.MultithreadedRepositoryCommunicator.BatchAction;
+
+public class MultithreadedRepositoryCommunicatorTest {
+	
+	private JpaRepository<String, String> repo;
+	private List<String> saved;
+	
+	@Before
+	@SuppressWarnings("unchecked")
+	public void initTest() {
+		repo = mock(JpaRepository.class);
+		saved = Collections.synchronizedList(new ArrayList<String>());
+		doAnswer(invocation -> {
+			saved.addAll(invocation.getArgument(0));
+			return invocation.getArgument(0);
+		}).when(repo).saveAll(anyList());
+	}
+	
+	@Test
+	public void startStreamingSavesEveryEntity() throws Exception {
+		List<String> entities = IntStream.range(0, 2550).mapToObj(Integer::toString).collect(Collectors.toList());
+		MultithreadedRepositoryCommunicator<String> communicator = new MultithreadedRepositoryCommunicator<String>(
+				new JpaBatchWriter<String>(repo), 100, 4);
+		communicator.setQueueCapacity(2);
+		
+		BatchResult result = communicator.startStreaming(entities.iterator(), BatchAction.SAVE).get();
+		
+		assertTrue(result.isSuccessful());
+		assertEquals(entities.size(), result.getRowsSucceeded());
+		assertEquals(entities.size(), saved.size());
+		assertEquals(entities, saved.stream().sorted((a, b) -> Integer.parseInt(a) - Integer.parseInt(b)).collect(Collectors.toList()));
+	}
+	
+	@Test
+	public void startStreamingSkipsNullEntities() throws Exception {
+		List<String> entities = new ArrayList<String>();
+		entities.add("a");
+		entities.add(null);
+		entities.add("b");
+		MultithreadedRepositoryCommunicator<String> communicator = new MultithreadedRepositoryCommunicator<String>(repo, 1);
+		
+		BatchResult result = communicator.start(entities, BatchAction.SAVE).get();
+		
+		assertEquals(2, result.getRowsSucceeded());
+		assertEquals(2, saved.size());
+	}
+	
+	@Test
+	public void failedBatchesAreReported() throws Exception {
+		List<String> entities = IntStream.range(0, 10).mapToObj(Integer::toString).collect(Collectors.toList());
+		BatchWriter<String> failingWriter = new BatchWriter<String>() {
+			@Override
+			public void save(List<String> batch) {
+				if (batch.contains("3")) {
+					throw new IllegalStateException("Batch rejected.");
+				}
+				saved.addAll(batch);
+			}
+			
+			@Override
+			public void delete(List<String> batch) {
+			}
+			
+			@Override
+			public String getDescriptor() {
+				return "TEST";
+			}
+		};
+		MultithreadedRepositoryCommunicator<String> communicator = new MultithreadedRepositoryCommunicator<String>(
+				failingWriter, new AdaptiveBatchTuner(2, 2, 2, 2, 1000));
+		
+		BatchResult result = communicator.start(entities, BatchAction.SAVE).get();
+		
+		assertFalse(result.isSuccessful());
+		assertEquals(1, result.getBatchesFailed());
+		assertEquals(4, result.getBatchesSucceeded());
+		assertEquals(2, result.getRowsFailed());
+		assertEquals(8, result.getRowsSucceeded());
+		assertEquals(1, result.getErrors().size());
+		assertEquals(8, saved.size());
+	}
+	
+	@Test
+	public void errorsEndTheRunExceptionally() throws Exception {
+		List<String> entities = IntStream.range(0, 10).mapToObj(Integer::toString).collect(Collectors.toList());
+		MultithreadedRepositoryCommunicator<String> communicator = new MultithreadedRepositoryCommunicator<String>(
+				new ErrorWriter(new AtomicBoolean(false), "3"), new AdaptiveBatchTuner(2, 2, 2, 2, 1000));
+		
+		CompletableFuture<BatchResult> result = communicator.start(entities, BatchAction.SAVE);
+		
+		try {
+			result.get(5, TimeUnit.SECONDS);
+			throw new AssertionError("A batch throwing an error must fail the run.");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof OutOfMemoryError);
+		}
+		assertEquals(1, communicator.getProgress().getBatchesFailed());
+	}
+	
+	@Test(timeout = 10000)
+	public void producersFailFastOnceEveryWorkerEnded() throws Exception {
+		List<String> entities = IntStream.range(0, 100).mapToObj(Integer::toString).collect(Collectors.toList());
+		AtomicBoolean fatal = new AtomicBoolean(true);
+		MultithreadedRepositoryCommunicator<String> communicator = new MultithreadedRepositoryCommunicator<String>(
+				new ErrorWriter(fatal, null), new AdaptiveBatchTuner(1, 1, 1, 2, 1000));
+		communicator.setQueueCapacity(1);
+		
+		try {
+			communicator.start(entities, BatchAction.SAVE);
+			throw new AssertionError("Nobody is left to take the batches.");
+		} catch (IllegalStateException ex) {
+			assertTrue(ex.getMessage().contains("Every worker thread has ended"));
+		}
+		
+		// The permits of the failed batches were released, and the communicator can run again.
+		fatal.set(false);
+		BatchResult result = communicator.start(entities, BatchAction.SAVE).get(5, TimeUnit.SECONDS);
+		assertTrue(result.isSuccessful());
+		assertEquals(100, saved.size());
+	}
+	
+	@Test
+	public void batchesAreRecordedInTheMeterRegistry() throws Exception {
+		List<String> entities = IntStream.range(0, 250).mapToObj(Integer::toString).collect(Collectors.toList());
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MultithreadedRepositoryCommunicator<String> communicator = new MultithreadedRepositoryCommunicator<String>(
+				new JpaBatchWriter<String>(repo), new AdaptiveBatchTuner(100, 100, 100, 2, 1000));
+		communicator.setMeterRegistry(registry);
+		
+		BatchResult result = communicator.start(entities, BatchAction.SAVE).get();
+		
+		assertTrue(result.isSuccessful());
+		assertEquals(3, registry.get("batch.write.latency").tags("writer", "jpa", "action", "save", "outcome", "success")
+				.timer().count());
+		assertTrue(registry.get("batch.write.latency").tags("outcome", "success").timer().totalTime(TimeUnit.NANOSECONDS) > 0);
+		assertEquals(250, registry.get("batch.write.rows").tags("outcome", "success").counter().count(), 0);
+		assertEquals(250, registry.get("batch.write.size").summary().totalAmount(), 0);
+		assertEquals(0, registry.get("batch.write.rows").tags("outcome", "failure").counter().count(), 0);
+	}
+	
+	/**
+	 * Throws an {@link OutOfMemoryError} for every batch while fatal, or for batches containing the given entity.
+	 */
+	private class ErrorWriter implements BatchWriter<String> {
+		private final AtomicBoolean fatal;
+		private final String fatalEntity;
+		
+		ErrorWriter(AtomicBoolean fatal, String fatalEntity) {
+			this.fatal = fatal;
+			this.fatalEntity = fatalEntity;
+		}
+		
+		@Override
+		public void save(List<String> batch) {
+			if (fatal.get() || batch.contains(fatalEntity)) {
+				throw new OutOfMemoryError("Java heap space");
+			}
+			saved.addAll(batch);
+		}
+		
+		@Override
+		public void delete(List<String> batch) {
+		}
+		
+		@Override
+		public String getDescriptor() {
+			return "TEST";
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class PublishingVehicleBatchWriterTest {
+	
+	private BatchWriter<Vehicle> writer;
+	private VehicleRepository repo;
+	private ApplicationEventPublisher publisher;
+	private PublishingVehicleBatchWriter publishingWriter;
+	
+	@Before
+	@SuppressWarnings("unchecked")
+	public void initTest() {
+		writer = mock(BatchWriter.class);
+		repo = mock(VehicleRepository.class);
+		publisher = mock(ApplicationEventPublisher.class);
+		publishingWriter = new PublishingVehicleBatchWriter(writer, repo, publisher);
+	}
+	
+	@Test
+	public void publishesOneEventPerBatchWithTheOverwrittenVehicles() {
+		Vehicle mustang = new Vehicle(2016, "Ford", "Mustang", "RWD", "Manual 6-spd", 8, 5.0f, null, null);
+		Vehicle camaro = new Vehicle(2016, "Chevrolet", "Camaro", "RWD", "Manual 6-spd", 8, 6.2f, null, null);
+		Vehicle previousMustang = new Vehicle(mustang.getId(), 2015, "Ford", "Mustang", "RWD", "Manual 6-spd", 8, 5.0f, null, null);
+		List<Vehicle> batch = Arrays.asList(mustang, camaro);
+		when(repo.findAllById(Arrays.asList(mustang.getId(), camaro.getId()))).thenReturn(Collections.singletonList(previousMustang));
+		
+		publishingWriter.save(batch);
+		
+		InOrder order = inOrder(repo, writer, publisher);
+		order.verify(repo).findAllById(any());
+		order.verify(writer).save(batch);
+		ArgumentCaptor<VehicleDataChangedEvent> event = ArgumentCaptor.forClass(VehicleDataChangedEvent.class);
+		order.verify(publisher).publishEvent(event.capture());
+		assertEquals(batch, event.getValue().getSaved());
+		assertEquals(Collections.singletonList(previousMustang), event.getValue().getDeleted());
+	}
+	
+	@Test
+	public void committedBatchesSurviveFailingListeners() {
+		Vehicle mustang = new Vehicle(2016, "Ford", "Mustang", "RWD", "Manual 6-spd", 8, 5.0f, null, null);
+		when(repo.findAllById(any())).thenReturn(Collections.emptyList());
+		doThrow(new IllegalStateException("Listener failed")).when(publisher).publishEvent(any(Object.class));
+		
+		publishingWriter.save(Collections.singletonList(mustang));
+		
+		verify(writer).save(Collections.singletonList(mustang));
+	}
+}
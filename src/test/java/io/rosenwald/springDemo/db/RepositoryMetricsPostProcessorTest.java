@@ -0,0 +1,57 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.repository.Repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RepositoryMetricsPostProcessorTest {
+	
+	private SimpleMeterRegistry registry;
+	private TestRepository repository;
+	
+	@Before
+	public void initTest() {
+		registry = new SimpleMeterRegistry();
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean("registry", registry);
+		ProxyFactory proxy = new ProxyFactory(new TestRepository() {
+			@Override
+			public int count(boolean fail) {
+				if (fail) {
+					throw new IllegalStateException("Query failed.");
+				}
+				return 1;
+			}
+		});
+		repository = (TestRepository) new RepositoryMetricsPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class))
+				.postProcessAfterInitialization(proxy.getProxy(), "testRepository");
+	}
+	
+	@Test
+	public void callsAreTimedByMethodAndOutcome() {
+		assertEquals(1, repository.count(false));
+		assertEquals(1, repository.count(false));
+		try {
+			repository.count(true);
+			fail();
+		} catch (IllegalStateException ex) {
+		}
+		
+		assertEquals(2, registry.get("repository.invocations").tags("repository", "TestRepository", "method", "count", 
+				"outcome", "success", "exception", "none").timer().count());
+		assertEquals(1, registry.get("repository.invocations").tags("outcome", "error", 
+				"exception", "IllegalStateException").timer().count());
+	}
+	
+	public interface TestRepository extends Repository<Object, Long> {
+		int count(boolean fail);
+	}
+}
@@ -0,0 +1,81 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+public class ShadowTableReloaderTest {
+	
+	private JdbcTemplate jdbcTemplate;
+	private ShadowTableReloader reloader;
+	
+	@Before
+	public void initTest() throws Exception {
+		jdbcTemplate = mock(JdbcTemplate.class);
+		reloader = new ShadowTableReloader(jdbcTemplate, "vehicles");
+		
+		// The staging table has a composite index, the second column of which is a prefix, and a unique index.
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getString("INDEX_NAME")).thenReturn("year_make", "year_make", "content_hash");
+		when(rs.getString("COLUMN_NAME")).thenReturn("year", "make", "content_hash");
+		when(rs.getInt("SUB_PART")).thenReturn(0, 20, 0);
+		when(rs.wasNull()).thenReturn(true, false, true);
+		when(rs.getInt("NON_UNIQUE")).thenReturn(1, 1, 0);
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (int i = 0; i < 3; i++) {
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq("vehicles_staging"));
+	}
+	
+	@Test
+	public void preparesAStagingTableWithoutSecondaryIndexes() {
+		assertEquals("vehicles_staging", reloader.prepare());
+		
+		InOrder order = inOrder(jdbcTemplate);
+		order.verify(jdbcTemplate).execute("DROP TABLE IF EXISTS `vehicles_staging`, `vehicles_old`");
+		order.verify(jdbcTemplate).execute("CREATE TABLE `vehicles_staging` LIKE `vehicles`");
+		order.verify(jdbcTemplate).execute("ALTER TABLE `vehicles_staging` DROP INDEX `year_make`");
+		order.verify(jdbcTemplate).execute("ALTER TABLE `vehicles_staging` DROP INDEX `content_hash`");
+	}
+	
+	@Test
+	public void swapsInTheIndexedStagingTable() {
+		reloader.prepare();
+		
+		reloader.swap();
+		
+		InOrder order = inOrder(jdbcTemplate);
+		order.verify(jdbcTemplate).execute("ALTER TABLE `vehicles_staging` ADD INDEX `year_make` (`year`, `make`(20)), "
+				+ "ADD UNIQUE INDEX `content_hash` (`content_hash`)");
+		order.verify(jdbcTemplate).execute("RENAME TABLE `vehicles` TO `vehicles_old`, `vehicles_staging` TO `vehicles`");
+		order.verify(jdbcTemplate).execute("DROP TABLE `vehicles_old`");
+	}
+	
+	@Test
+	public void abortingLeavesTheLiveTableAlone() {
+		reloader.prepare();
+		
+		reloader.abort();
+		
+		verify(jdbcTemplate).execute("DROP TABLE IF EXISTS `vehicles_staging`");
+		verify(jdbcTemplate, never()).execute("RENAME TABLE `vehicles` TO `vehicles_old`, `vehicles_staging` TO `vehicles`");
+	}
+}
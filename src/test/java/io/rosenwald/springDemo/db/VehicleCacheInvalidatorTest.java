@@ -0,0 +1,104 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class VehicleCacheInvalidatorTest {
+	
+	private VehicleCacheScopes scopes;
+	private KeyGenerator keyGenerator;
+	private VehicleCacheInvalidator invalidator;
+	private Cache years;
+	private Cache byYearAndMake;
+	private Cache byYearAndMakeAndModel;
+	
+	@Before
+	public void initTest() {
+		scopes = new VehicleCacheScopes();
+		keyGenerator = new VehicleCacheConfig().vehicleKeyGenerator(scopes);
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(VehicleCacheConfig.YEARS, 
+				VehicleCacheConfig.BY_YEAR_AND_MAKE, VehicleCacheConfig.BY_YEAR_AND_MAKE_AND_MODEL);
+		invalidator = new VehicleCacheInvalidator();
+		ReflectionTestUtils.setField(invalidator, "cacheManager", cacheManager);
+		ReflectionTestUtils.setField(invalidator, "scopes", scopes);
+		years = cacheManager.getCache(VehicleCacheConfig.YEARS);
+		byYearAndMake = cacheManager.getCache(VehicleCacheConfig.BY_YEAR_AND_MAKE);
+		byYearAndMakeAndModel = cacheManager.getCache(VehicleCacheConfig.BY_YEAR_AND_MAKE_AND_MODEL);
+		
+		years.put(key(), Collections.emptyList());
+		byYearAndMake.put(key(2016, "Ford"), Collections.emptyList());
+		byYearAndMakeAndModel.put(key(2016, "ford", "mustang"), Collections.emptyList());
+		byYearAndMake.put(key(2016, "Chevrolet"), Collections.emptyList());
+		byYearAndMakeAndModel.put(key(2016, "Chevrolet", "Camaro"), Collections.emptyList());
+	}
+	
+	@Test
+	public void keysIgnoreCaseAndIncludeTheScopeVersion() {
+		Object before = key(2016, "FORD", "Mustang");
+		assertEquals(key(2016, "ford", "mustang"), before);
+		
+		// A lookup that started before the change put its result under the old version.
+		invalidator.onVehicleDataChanged(VehicleDataChangedEvent.saved(Collections.singletonList(mustang())));
+		
+		assertNotEquals(before, key(2016, "FORD", "Mustang"));
+	}
+	
+	@Test
+	public void changesEvictTheirYearMakeAndModel() {
+		Object allYears = key();
+		Object fords = key(2016, "Ford");
+		Object mustangs = key(2016, "Ford", "Mustang");
+		
+		invalidator.onVehicleDataChanged(VehicleDataChangedEvent.saved(Collections.singletonList(mustang())));
+		
+		assertNull(years.get(allYears));
+		assertNull(byYearAndMake.get(fords));
+		assertNull(byYearAndMakeAndModel.get(mustangs));
+	}
+	
+	@Test
+	public void unrelatedKeysSurviveAnUpdate() {
+		Vehicle previous = mustang();
+		Vehicle updated = new Vehicle(previous.getYear(), previous.getMake(), previous.getModel(), "RWD", "Automatic 10-spd", 
+				8, 5.0f, null, null);
+		
+		invalidator.onVehicleDataChanged(VehicleDataChangedEvent.of(Collections.singletonList(updated), 
+				Collections.singletonList(previous)));
+		
+		assertNotNull(byYearAndMake.get(key(2016, "Chevrolet")));
+		assertNotNull(byYearAndMakeAndModel.get(key(2016, "Chevrolet", "Camaro")));
+	}
+	
+	@Test
+	public void bulkChangesClearEverything() {
+		Object before = key(2016, "Chevrolet", "Camaro");
+		
+		invalidator.onVehicleDataChanged(VehicleDataChangedEvent.bulk());
+		
+		assertNull(years.get(key()));
+		assertNull(byYearAndMake.get(key(2016, "Chevrolet")));
+		assertNull(byYearAndMakeAndModel.get(before));
+		assertNotEquals(before, key(2016, "Chevrolet", "Camaro"));
+	}
+	
+	private static Vehicle mustang() {
+		return new Vehicle(2016, "FORD", "Mustang", "RWD", "Manual 6-spd", 8, 5.0f, null, null);
+	}
+	
+	private Object key(Object... params) {
+		return keyGenerator.generate(null, null, params);
+	}
+}
@@ -0,0 +1,70 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class VehicleCsvMapperTest {
+	
+	private static final String HEADER = "atvType,cylinders,displ,drive,evMotor,id,make,model,trany,year\n";
+	
+	@Test
+	public void mapsCompleteRows() throws IOException {
+		CSVParser parser = parse(HEADER + ",8,5.0,Rear-Wheel Drive,,33000,Ford,Mustang,Manual 6-spd,2016\n");
+		
+		Vehicle mustang = new VehicleCsvMapper(parser.getHeaderMap()).map(parser.getRecords().get(0));
+		
+		assertEquals(VehicleCsvMapper.deriveId(33000), mustang.getId());
+		assertEquals(2016, mustang.getYear());
+		assertEquals("Ford", mustang.getMake());
+		assertEquals("Mustang", mustang.getModel());
+		assertEquals(8, mustang.getCylinders());
+		assertEquals(5.0f, mustang.getDisplacement(), 0);
+		assertEquals(VehicleCsvMapper.contentHash(mustang), mustang.getContentHash());
+	}
+	
+	@Test
+	public void rejectsIncompleteRows() throws IOException {
+		CSVParser parser = parse(HEADER 
+				+ ",8,5.0,Rear-Wheel Drive,,33000,Ford,,Manual 6-spd,2016\n"
+				+ ",eight,5.0,Rear-Wheel Drive,,33001,Ford,Mustang,Manual 6-spd,2016\n");
+		VehicleCsvMapper mapper = new VehicleCsvMapper(parser.getHeaderMap());
+		List<CSVRecord> records = parser.getRecords();
+		
+		assertNull(mapper.map(records.get(0)));
+		assertNull(mapper.map(records.get(1)));
+	}
+	
+	@Test
+	public void idsAreStableAndHashesTrackContent() throws IOException {
+		CSVParser parser = parse(HEADER 
+				+ ",8,5.0,Rear-Wheel Drive,,33000,Ford,Mustang,Manual 6-spd,2016\n"
+				+ ",8,5.0,Rear-Wheel Drive,,33000,Ford,Mustang,Manual 6-spd,2016\n"
+				+ ",8,5.2,Rear-Wheel Drive,,33000,Ford,Mustang,Manual 6-spd,2016\n");
+		VehicleCsvMapper mapper = new VehicleCsvMapper(parser.getHeaderMap());
+		List<CSVRecord> records = parser.getRecords();
+		Vehicle first = mapper.map(records.get(0));
+		Vehicle same = mapper.map(records.get(1));
+		Vehicle changed = mapper.map(records.get(2));
+		
+		assertEquals(first.getId(), same.getId());
+		assertEquals(first.getContentHash(), same.getContentHash());
+		assertEquals(first.getId(), changed.getId());
+		assertNotEquals(first.getContentHash(), changed.getContentHash());
+	}
+	
+	private static CSVParser parse(String csv) throws IOException {
+		return new CSVParser(new StringReader(csv), CSVFormat.EXCEL.withHeader());
+	}
+}
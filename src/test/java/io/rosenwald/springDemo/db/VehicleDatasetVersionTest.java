@@ -0,0 +1,117 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.MapPropertySource;
+
+import io.rosenwald.springDemo.entities.Vehicle;
+import io.rosenwald.springDemo.query.VehicleFacets;
+import io.rosenwald.springDemo.query.VehicleReadModel;
+import io.rosenwald.springDemo.query.VehicleSuggestions;
+
+public class VehicleDatasetVersionTest {
+	
+	private VehicleRepository repository;
+	private AnnotationConfigApplicationContext context;
+	private VehicleDatasetVersion datasetVersion;
+	private List<String> eTagsRead;
+	
+	@Before
+	public void initTest() {
+		repository = mock(VehicleRepository.class);
+		eTagsRead = new ArrayList<String>();
+		// Records the entity tag served while the derived models read the repository.
+		when(repository.findAll()).thenAnswer(invocation -> {
+			recordETag();
+			return new ArrayList<Vehicle>();
+		});
+		when(repository.countByYearAndMakeAndModel()).thenAnswer(invocation -> {
+			recordETag();
+			return new ArrayList<VehicleFacetCount>();
+		});
+	
+		context = new AnnotationConfigApplicationContext();
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+				Collections.<String, Object>singletonMap("io.rosenwald.springDemo.read-model", "true")));
+		context.registerBean(VehicleRepository.class, () -> repository);
+		context.register(VehicleDatasetVersion.class, VehicleReadModel.class, VehicleFacets.class, VehicleSuggestions.class,
+				SnapshotProbe.class);
+		context.refresh();
+		datasetVersion = context.getBean(VehicleDatasetVersion.class);
+		eTagsRead.clear();
+	}
+	
+	@After
+	public void closeContext() {
+		context.close();
+	}
+	
+	@Test
+	public void bulkChangesReloadTheModelsBeforeTheVersionChanges() {
+		String before = datasetVersion.getETag();
+	
+		context.publishEvent(VehicleDataChangedEvent.bulk());
+	
+		assertEquals(2, eTagsRead.size());
+		assertEquals(before, eTagsRead.get(0));
+		assertEquals(before, eTagsRead.get(1));
+		assertNotEquals(before, datasetVersion.getETag());
+	}
+	
+	@Test
+	public void theVersionOnlyChangesAfterTheSnapshotChanged() {
+		String before = datasetVersion.getETag();
+		Vehicle mustang = new Vehicle(2016, "Ford", "Mustang", "RWD", "Manual 6-spd", 8, 5.0f, null, null);
+	
+		context.publishEvent(VehicleDataChangedEvent.saved(Collections.singletonList(mustang)));
+	
+		SnapshotProbe probe = context.getBean(SnapshotProbe.class);
+		assertEquals(before, probe.eTag);
+		assertEquals(1, probe.size);
+		assertNotEquals(before, datasetVersion.getETag());
+	}
+	
+	private void recordETag() {
+		// Not set yet while the context starts.
+		if (datasetVersion != null) {
+			eTagsRead.add(datasetVersion.getETag());
+		}
+	}
+	
+	/**
+	 * Listens right before the dataset version, like the cache invalidation.
+	 */
+	static class SnapshotProbe {
+	
+		private final VehicleReadModel readModel;
+		private final VehicleDatasetVersion datasetVersion;
+		private String eTag;
+		private int size;
+	
+		SnapshotProbe(VehicleReadModel readModel, VehicleDatasetVersion datasetVersion) {
+			this.readModel = readModel;
+			this.datasetVersion = datasetVersion;
+		}
+	
+		@Order(Ordered.LOWEST_PRECEDENCE - 1)
+		@EventListener
+		public void onVehicleDataChanged(VehicleDataChangedEvent event) {
+			eTag = datasetVersion.getETag();
+			size = readModel.getSnapshot().size();
+		}
+	}
+}
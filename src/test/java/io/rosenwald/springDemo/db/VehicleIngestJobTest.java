@@ -0,0 +1,115 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.rosenwald.springDemo.db.VehicleIngestJob.State;
+import io.rosenwald.springDemo.entities.Vehicle;
+import io.rosenwald.springDemo.query.VehicleExporter.Format;
+
+public class VehicleIngestJobTest {
+	
+	private static final String MUSTANG = "{\"year\":2015,\"make\":\"Ford\",\"model\":\"Mustang\",\"cylinders\":8,\"displacement\":5.0}";
+	private static final String CAMARO = "{\"year\":2016,\"make\":\"Chevrolet\",\"model\":\"Camaro\",\"cylinders\":6,\"displacement\":3.6}";
+	private static final String NO_MAKE = "{\"year\":2016,\"model\":\"Corvette\"}";
+	
+	private ObjectMapper objectMapper;
+	private MultithreadedRepositoryCommunicator<Vehicle> communicator;
+	private List<Vehicle> saved;
+	
+	@Before
+	@SuppressWarnings("unchecked")
+	public void initTest() {
+		objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+		JpaRepository<Vehicle, String> repo = mock(JpaRepository.class);
+		saved = Collections.synchronizedList(new ArrayList<Vehicle>());
+		doAnswer(invocation -> {
+			saved.addAll(invocation.getArgument(0));
+			return invocation.getArgument(0);
+		}).when(repo).saveAll(anyList());
+		communicator = new MultithreadedRepositoryCommunicator<Vehicle>(new JpaBatchWriter<Vehicle>(repo), 2, 2);
+	}
+	
+	@Test
+	public void ingestsNdjsonRejectingInvalidLines() {
+		VehicleIngestJob job = new VehicleIngestJob("ndjson", Format.NDJSON);
+		String records = String.join("\n", MUSTANG, "", NO_MAKE, "{\"year\":", CAMARO, MUSTANG) + "\n";
+		
+		VehicleDataChangedEvent event = job.run(stream(records), objectMapper, communicator);
+		
+		assertEquals(State.COMPLETED, job.getState());
+		assertEquals(3, job.getAccepted());
+		assertEquals(2, job.getRejected());
+		assertEquals(3, job.getPersisted());
+		assertEquals(3, saved.size());
+		assertEquals("Record 2: The make is missing.", job.getRejections().get(0));
+		assertTrue(job.getRejections().get(1).startsWith("Record 3: "));
+		assertFalse(event.isBulk());
+		assertEquals(3, event.getSaved().size());
+	}
+	
+	@Test
+	public void ingestsJsonArrayRejectingInvalidElements() {
+		VehicleIngestJob job = new VehicleIngestJob("json", Format.JSON);
+		String records = "[" + String.join(",", MUSTANG, NO_MAKE, "{\"year\":\"soon\",\"make\":\"Ford\"}", "42", CAMARO) + "]";
+		
+		job.run(stream(records), objectMapper, communicator);
+		
+		assertEquals(State.COMPLETED, job.getState());
+		assertEquals(2, job.getAccepted());
+		assertEquals(3, job.getRejected());
+		assertEquals("Record 4: The record is not a JSON object.", job.getRejections().get(2));
+		assertEquals(2, saved.size());
+	}
+	
+	@Test
+	public void failsOnMalformedJsonArray() {
+		VehicleIngestJob job = new VehicleIngestJob("json", Format.JSON);
+		
+		VehicleDataChangedEvent event = job.run(stream("[" + MUSTANG + "," + CAMARO + ", {\"year\""), objectMapper, communicator);
+		
+		assertEquals(State.FAILED, job.getState());
+		assertEquals(2, job.getAccepted());
+		assertTrue(job.getError() != null);
+		assertTrue(event == null || event.isBulk());
+	}
+	
+	@Test
+	public void ignoresPostedIds() {
+		VehicleIngestJob job = new VehicleIngestJob("ids", Format.NDJSON);
+		UUID posted = UUID.randomUUID();
+		String withId = "{\"id\":\"" + posted + "\"," + MUSTANG.substring(1);
+		
+		job.run(stream(withId + "\n" + withId + "\n"), objectMapper, communicator);
+		
+		assertEquals(State.COMPLETED, job.getState());
+		assertEquals(2, saved.size());
+		assertNotEquals(posted, saved.get(0).getId());
+		assertNotEquals(posted, saved.get(1).getId());
+		assertNotEquals(saved.get(0).getId(), saved.get(1).getId());
+		assertEquals("Mustang", saved.get(0).getModel());
+	}
+	
+	private static ByteArrayInputStream stream(String records) {
+		return new ByteArrayInputStream(records.getBytes(StandardCharsets.UTF_8));
+	}
+}
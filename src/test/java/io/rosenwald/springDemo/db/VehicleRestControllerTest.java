@@ -1,13 +1,22 @@
 package io.rosenwald.springDemo.db;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.doAnswer;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.util.ArrayList;
@@ -24,12 +33,22 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.rosenwald.springDemo.db.VehicleRepository;
 import io.rosenwald.springDemo.entities.Vehicle;
 import io.rosenwald.springDemo.rest.VehicleRestController;
@@ -37,6 +56,8 @@ import io.rosenwald.springDemo.rest.VehicleRestController;
 //TODO: Add more tests as more error handling is added to the REST controller.
 @RunWith(SpringRunner.class)
 @WebMvcTest(VehicleRestController.class)
+@Import({VehicleDatasetVersion.class, DatabaseBulkhead.class, CoalescingVehicleFinder.class, VehicleWriteGate.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "io.rosenwald.springDemo.bulkhead.timeout-ms=1000")
 public class VehicleRestControllerTest {
 	
     @Autowired
@@ -45,6 +66,9 @@ public class VehicleRestControllerTest {
 	@MockBean
 	private VehicleRepository repo;
 	
+	@Autowired
+	private VehicleWriteGate writeGate;
+	
 	private static ObjectMapper mapper;
 	
 	private Vehicle countach;
@@ -110,17 +134,27 @@ public class VehicleRestControllerTest {
 		vehicleList = Arrays.stream(new Vehicle[] {countach, mustang, camaro, corvette, porsche918}).collect(Collectors.toCollection(ArrayList::new));
 	}
 	
+	/**
+	 * Performs a request and, if its handler returned a future, the dispatch of its result.
+	 */
+	private ResultActions perform(RequestBuilder request) throws Exception {
+		ResultActions actions = mvc.perform(request);
+		MvcResult result = actions.andReturn();
+		return result.getRequest().isAsyncStarted() ? mvc.perform(asyncDispatch(result)) : actions;
+	}
+	
 	@Test
 	public void getVehiclesByYearTest() throws Exception {
 		List<Vehicle> expectedList = vehicleList.subList(1, 4);
 		String expectedJson = mapper.writeValueAsString(expectedList);
-	    when(repo.findByYear(mustang.getYear())).thenReturn(vehicleList.subList(1, 4));
+	    when(repo.findPage(argThat(filter -> filter.getYear() == mustang.getYear()), eq(VehicleKeyset.FIRST), anyInt()))
+	    	.thenReturn(vehicleList.subList(1, 4));
 	    
-	    mvc.perform(get("/vehicles?year=" + mustang.getYear()))
+	    perform(get("/vehicles?year=" + mustang.getYear()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	    
-	    mvc.perform(get("/vehicles/" + mustang.getYear()))
+	    perform(get("/vehicles/" + mustang.getYear()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
@@ -129,9 +163,10 @@ public class VehicleRestControllerTest {
 	public void getVehiclesByMakeTest() throws Exception {
 		List<Vehicle> expectedList = vehicleList.subList(2, 4);
 		String expectedJson = mapper.writeValueAsString(expectedList);
-	    when(repo.findByMake(camaro.getMake())).thenReturn(vehicleList.subList(2, 4));
+	    when(repo.findPage(argThat(filter -> camaro.getMake().equals(filter.getMake())), eq(VehicleKeyset.FIRST), anyInt()))
+	    	.thenReturn(vehicleList.subList(2, 4));
 	    
-	    mvc.perform(get("/vehicles?make=" + corvette.getMake()))
+	    perform(get("/vehicles?make=" + corvette.getMake()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
@@ -140,9 +175,10 @@ public class VehicleRestControllerTest {
 	public void getVehicleByModelTest() throws Exception {
 		List<Vehicle> expectedList = vehicleList.subList(4, 5);
 		String expectedJson = mapper.writeValueAsString(expectedList);
-	    when(repo.findByModel(porsche918.getModel())).thenReturn(vehicleList.subList(4, 5));
+	    when(repo.findPage(argThat(filter -> porsche918.getModel().equals(filter.getModel())), eq(VehicleKeyset.FIRST), anyInt()))
+	    	.thenReturn(vehicleList.subList(4, 5));
 	    
-	    mvc.perform(get("/vehicles?model=" + porsche918.getModel()))
+	    perform(get("/vehicles?model=" + porsche918.getModel()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
@@ -153,11 +189,11 @@ public class VehicleRestControllerTest {
 		String expectedJson = mapper.writeValueAsString(expectedList);
 	    when(repo.findByYearAndMake(camaro.getYear(), camaro.getMake())).thenReturn(vehicleList.subList(2, 4));
 	    
-	    mvc.perform(get("/vehicles?year=" + camaro.getYear() + "&make=" + camaro.getMake()))
+	    perform(get("/vehicles?year=" + camaro.getYear() + "&make=" + camaro.getMake()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	    
-	    mvc.perform(get("/vehicles/" + camaro.getYear() + "/" + camaro.getMake()))
+	    perform(get("/vehicles/" + camaro.getYear() + "/" + camaro.getMake()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
@@ -168,11 +204,11 @@ public class VehicleRestControllerTest {
 		String expectedJson = mapper.writeValueAsString(expectedList);
 	    when(repo.findByYearAndMakeAndModel(corvette.getYear(), corvette.getMake(), corvette.getModel())).thenReturn(vehicleList.subList(3, 4));
 	    
-	    mvc.perform(get("/vehicles?year=" + corvette.getYear() + "&make=" + corvette.getMake() + "&model=" + corvette.getModel()))
+	    perform(get("/vehicles?year=" + corvette.getYear() + "&make=" + corvette.getMake() + "&model=" + corvette.getModel()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	    
-	    mvc.perform(get("/vehicles/" + corvette.getYear() + "/" + corvette.getMake() + "/" + corvette.getModel())
+	    perform(get("/vehicles/" + corvette.getYear() + "/" + corvette.getMake() + "/" + corvette.getModel())
 	    		.contentType(MediaType.APPLICATION_JSON))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
@@ -181,18 +217,134 @@ public class VehicleRestControllerTest {
 	@Test
 	public void getAllVehicles() throws Exception {
 		String expectedJson = mapper.writeValueAsString(vehicleList);
-	    when(repo.findAll()).thenReturn(vehicleList);
+	    when(repo.findPage(eq(VehicleFilter.all()), eq(VehicleKeyset.FIRST), anyInt())).thenReturn(vehicleList);
 	    
-	    mvc.perform(get("/vehicles"))
+	    perform(get("/vehicles"))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
 	
+	@Test
+	public void getVehiclesPaged() throws Exception {
+		List<Vehicle> sorted = new ArrayList<Vehicle>(vehicleList);
+		sorted.sort(VehicleKeyset.BY_ID);
+		String next = VehicleKeyset.encode(sorted.get(1).getId());
+	    when(repo.findPage(VehicleFilter.all(), VehicleKeyset.FIRST, 3)).thenReturn(sorted.subList(0, 3));
+	    when(repo.findPage(VehicleFilter.all(), sorted.get(1).getId(), 3)).thenReturn(sorted.subList(2, 5));
+	    
+	    perform(get("/vehicles?limit=2"))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json(mapper.writeValueAsString(sorted.subList(0, 2)), true))
+	    	.andExpect(header().string(VehicleRestController.NEXT_PAGE_HEADER, next))
+	    	.andExpect(header().string(HttpHeaders.LINK, "<http://localhost/vehicles?limit=2&page=" + next + ">; rel=\"next\""));
+	    
+	    perform(get("/vehicles?limit=2&page=" + next))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json(mapper.writeValueAsString(sorted.subList(2, 4)), true))
+	    	.andExpect(header().exists(VehicleRestController.NEXT_PAGE_HEADER));
+	}
+	
+	@Test
+	public void getVehiclesPagedByYearAndMake() throws Exception {
+		List<Vehicle> sorted = new ArrayList<Vehicle>(vehicleList.subList(2, 4));
+		sorted.sort(VehicleKeyset.BY_ID);
+	    when(repo.findByYearAndMake(camaro.getYear(), camaro.getMake())).thenReturn(vehicleList.subList(2, 4));
+	    
+	    perform(get("/vehicles/" + camaro.getYear() + "/" + camaro.getMake() + "?limit=1&page=" + VehicleKeyset.encode(sorted.get(0).getId())))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json(mapper.writeValueAsString(sorted.subList(1, 2)), true))
+	    	.andExpect(header().doesNotExist(VehicleRestController.NEXT_PAGE_HEADER));
+	}
+	
+	@Test
+	public void getVehiclesInvalidPage() throws Exception {
+	    perform(get("/vehicles?page=not-a-cursor"))
+	    	.andExpect(status().isBadRequest());
+	    
+	    perform(get("/vehicles?limit=0"))
+	    	.andExpect(status().isBadRequest());
+	}
+	
+	@Test
+	public void getVehiclesSummaryFields() throws Exception {
+		List<VehicleSummary> summaries = vehicleList.stream().map(VehicleSummary::of).collect(Collectors.toList());
+	    when(repo.findSummaryPage(eq(VehicleFilter.all()), eq(VehicleKeyset.FIRST), anyInt())).thenReturn(summaries);
+	    
+	    perform(get("/vehicles?fields=model,make"))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json("[{\"model\":\"Countach\",\"make\":\"Lamborghini\"},{\"model\":\"Mustang\",\"make\":\"Ford\"},"
+	    			+ "{\"model\":\"Camaro\",\"make\":\"Chevrolet\"},{\"model\":\"Corvette\",\"make\":\"Chevrolet\"},"
+	    			+ "{\"model\":\"918 Spyder\",\"make\":\"Porsche\"}]", true));
+	    verify(repo, times(0)).findPage(any(), any(), anyInt());
+	}
+	
+	@Test
+	public void getVehicleIdFields() throws Exception {
+	    when(repo.findIdPage(argThat(filter -> filter.getYear() == 1988), eq(VehicleKeyset.FIRST), anyInt()))
+	    	.thenReturn(Collections.singletonList(countach.getId()));
+	    
+	    perform(get("/vehicles/1988?fields=id"))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json("[{\"id\":\"" + countach.getId() + "\"}]", true));
+	}
+	
+	@Test
+	public void getVehicleSummaryFieldsByYearAndMakeAndModel() throws Exception {
+	    when(repo.findSummaryPage(argThat(filter -> corvette.getModel().equals(filter.getModel())), eq(VehicleKeyset.FIRST), anyInt()))
+	    	.thenReturn(Collections.singletonList(VehicleSummary.of(corvette)));
+	    
+	    perform(get("/vehicles/" + corvette.getYear() + "/" + corvette.getMake() + "/" + corvette.getModel() + "?fields=model"))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json("[{\"model\":\"Corvette\"}]", true));
+	    verify(repo, times(0)).findByYearAndMakeAndModel(anyInt(), any(), any());
+	}
+	
+	@Test
+	public void getVehicleFieldsOfCachedResults() throws Exception {
+	    when(repo.findByYearAndMakeAndModel(corvette.getYear(), corvette.getMake(), corvette.getModel())).thenReturn(vehicleList.subList(3, 4));
+	    
+	    perform(get("/vehicles/" + corvette.getYear() + "/" + corvette.getMake() + "/" + corvette.getModel() + "?fields=cylinders,transmission"))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json("[{\"cylinders\":8,\"transmission\":\"Manual 7-spd\"}]", true));
+	}
+	
+	@Test
+	public void getVehiclesTableShape() throws Exception {
+	    when(repo.findSummaryPage(argThat(filter -> filter.getYear() == 2016), eq(VehicleKeyset.FIRST), anyInt()))
+	    	.thenReturn(vehicleList.subList(1, 4).stream().map(VehicleSummary::of).collect(Collectors.toList()));
+	    
+	    perform(get("/vehicles/2016?fields=make,model&shape=table"))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().json("{\"make\":[\"Ford\",\"Chevrolet\",\"Chevrolet\"],\"model\":[\"Mustang\",\"Camaro\",\"Corvette\"]}", true));
+	    
+	    perform(get("/vehicles/2016?shape=matrix"))
+	    	.andExpect(status().isBadRequest());
+	}
+	
+	@Test
+	public void getVehiclesAsCbor() throws Exception {
+	    when(repo.findPage(eq(VehicleFilter.all()), eq(VehicleKeyset.FIRST), anyInt())).thenReturn(vehicleList);
+	    
+	    byte[] cbor = perform(get("/vehicles").accept(MediaType.valueOf("application/cbor")))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().contentTypeCompatibleWith("application/cbor"))
+	    	.andReturn().getResponse().getContentAsByteArray();
+	    List<Vehicle> vehicles = new ObjectMapper(new CBORFactory()).readValue(cbor, new TypeReference<List<Vehicle>>() {});
+	    assertEquals(vehicleList.size(), vehicles.size());
+	    assertEquals(porsche918.getEvMotor(), vehicles.get(4).getEvMotor());
+	}
+	
+	@Test
+	public void getVehiclesInvalidFields() throws Exception {
+	    perform(get("/vehicles?fields=year,contentHash"))
+	    	.andExpect(status().isBadRequest());
+	}
+	
 	@Test
 	public void getVehiclesInvalidYear() throws Exception {
 		String expectedJson = mapper.writeValueAsString(new Object[] {});
 	    
-	    mvc.perform(get("/vehicles?year=InvalidYear"))
+	    perform(get("/vehicles?year=InvalidYear"))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
@@ -205,17 +357,63 @@ public class VehicleRestControllerTest {
 		String expectedJson = mapper.writeValueAsString(years);
 		when(repo.findAllYears()).thenReturn(years);
 	    
-	    mvc.perform(get("/modelYears"))
+	    perform(get("/modelYears"))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
 	
+	@Test
+	public void getModelYearsTimeout() throws Exception {
+		doAnswer(invocation -> {
+			Thread.sleep(10000);
+			return Arrays.asList(2015, 2016);
+		}).when(repo).findAllYears();
+		
+	    perform(get("/modelYears"))
+	    	.andExpect(status().isServiceUnavailable())
+	    	.andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+	}
+	
+	@Test
+	public void getModelYearsNotModified() throws Exception {
+		when(repo.findAllYears()).thenReturn(Arrays.asList(2015, 2016));
+		
+		String eTag = perform(get("/modelYears"))
+	    	.andExpect(status().isOk())
+	    	.andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+	    	.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=0, must-revalidate"))
+	    	.andExpect(header().string(HttpHeaders.VARY, "Accept, Accept-Encoding"))
+	    	.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+	    assertEquals("W/", eTag.substring(0, 2));
+	    
+	    perform(get("/modelYears").header(HttpHeaders.IF_NONE_MATCH, eTag))
+	    	.andExpect(status().isNotModified())
+	    	.andExpect(header().string(HttpHeaders.ETAG, eTag));
+	    verify(repo, times(1)).findAllYears();
+	}
+	
+	@Test
+	public void writesChangeTheETag() throws Exception {
+		when(repo.findAllYears()).thenReturn(Arrays.asList(2015, 2016));
+		when(repo.save(any(Vehicle.class))).thenReturn(countach);
+		String eTag = perform(get("/modelYears")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		
+		perform(post("/vehicles")
+	    		.content(mapper.writeValueAsString(countach))
+	    		.contentType(MediaType.APPLICATION_JSON)
+	    		.with(csrf()))
+	    	.andExpect(status().isOk());
+	    
+	    perform(get("/modelYears").header(HttpHeaders.IF_NONE_MATCH, eTag))
+	    	.andExpect(status().isOk());
+	}
+	
 	@Test
 	public void postVehicle() throws Exception {
 		String expectedJson = mapper.writeValueAsString(countach);
 	    when(repo.save(any(Vehicle.class))).thenReturn(countach);
 	    
-	    mvc.perform(post("/vehicles")
+	    perform(post("/vehicles")
 	    		.content(expectedJson)
 	    		.contentType(MediaType.APPLICATION_JSON)
 	    		.with(csrf()))
@@ -226,19 +424,53 @@ public class VehicleRestControllerTest {
 	@Test
 	public void deleteVehicle() throws Exception {
 		String expectedJson = mapper.writeValueAsString(countach);
-	    when(repo.findById(anyString())).thenReturn(Optional.of(countach));
+	    when(repo.findById(any())).thenReturn(Optional.of(countach));
 	    
-	    mvc.perform(delete("/vehicles/" + countach.getId())
+	    perform(delete("/vehicles/" + countach.getId())
 	    		.with(csrf()))
 	    	.andExpect(status().isOk())
 	    	.andExpect(content().json(expectedJson));
 	}
 	
+	@Test
+	public void deleteAllVehicles() throws Exception {
+	    when(repo.deleteAllVehicles()).thenReturn(5);
+	    
+	    perform(delete("/vehicles")
+	    		.with(csrf()))
+	    	.andExpect(status().isOk())
+	    	.andExpect(content().string("5"));
+	    verify(repo, never()).findAll();
+	}
+	
+	@Test
+	public void deleteAllVehiclesFailure() throws Exception {
+	    when(repo.deleteAllVehicles()).thenThrow(new DataAccessResourceFailureException("Lost connection"));
+	    
+	    perform(delete("/vehicles")
+	    		.with(csrf()))
+	    	.andExpect(status().isInternalServerError());
+	}
+	
+	@Test
+	public void writesAreRejectedWhileTheTableIsReloaded() throws Exception {
+		writeGate.close();
+		try {
+		    perform(delete("/vehicles/" + countach.getId())
+		    		.with(csrf()))
+		    	.andExpect(status().isServiceUnavailable())
+		    	.andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+		    verify(repo, times(0)).deleteById(any());
+		} finally {
+			writeGate.open();
+		}
+	}
+	
 	@Test
 	public void deleteVehicleInvalidId() throws Exception {
-	    when(repo.findById(anyString())).thenReturn(Optional.empty());
+	    when(repo.findById(any())).thenReturn(Optional.empty());
 	    
-	    mvc.perform(delete("/vehicles/INVALID-ID")
+	    perform(delete("/vehicles/INVALID-ID")
 	    		.with(csrf()))
 	    	.andExpect(status().isNoContent());
 	}
@@ -0,0 +1,36 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import io.rosenwald.springDemo.db.VehicleStatsQuery.Dimension;
+import io.rosenwald.springDemo.db.VehicleStatsQuery.Metric;
+
+public class VehicleStatsQueryTest {
+	
+	@Test
+	public void parsesDimensionsAndMetrics() {
+		VehicleStatsQuery query = VehicleStatsQuery.parse(VehicleFilter.all(), "year, make,year", "count,avg(displacement),max(cylinders)");
+		
+		assertEquals(Arrays.asList(Dimension.YEAR, Dimension.MAKE), query.getGroupBy());
+		assertEquals(Arrays.asList("count", "avg(displacement)", "max(cylinders)"), 
+				Arrays.asList(query.getMetrics().stream().map(Metric::getLabel).toArray()));
+		assertEquals(Collections.singletonList(Metric.COUNT), VehicleStatsQuery.parse(null, null, null).getMetrics());
+		assertEquals(VehicleStatsQuery.parse(VehicleFilter.of(2016, "Ford", null), "make", null), 
+				VehicleStatsQuery.parse(VehicleFilter.of(2016, "FORD", null), "make", "count"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownDimensions() {
+		VehicleStatsQuery.parse(VehicleFilter.all(), "color", null);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMetricsOfStrings() {
+		VehicleStatsQuery.parse(VehicleFilter.all(), null, "avg(make)");
+	}
+}
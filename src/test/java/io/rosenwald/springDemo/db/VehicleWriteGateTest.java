@@ -0,0 +1,51 @@
+package io.rosenwald.springDemo.db;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class VehicleWriteGateTest {
+	
+	@Test
+	public void closingWaitsForTheWritesInside() throws Exception {
+		VehicleWriteGate gate = new VehicleWriteGate();
+		assertTrue(gate.tryEnter());
+		
+		CompletableFuture<Void> closing = CompletableFuture.runAsync(() -> {
+			try {
+				gate.close();
+			} catch (InterruptedException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+		try {
+			closing.get(200, TimeUnit.MILLISECONDS);
+			throw new AssertionError("The gate must not close while a write is inside.");
+		} catch (TimeoutException ex) {
+			// Still waiting for the write.
+		}
+		assertFalse(gate.tryEnter());
+		
+		gate.exit();
+		closing.get(5, TimeUnit.SECONDS);
+	}
+	
+	@Test
+	public void openingLetsWritesInAgain() throws Exception {
+		VehicleWriteGate gate = new VehicleWriteGate();
+		
+		gate.close();
+		assertFalse(gate.isOpen());
+		assertFalse(gate.tryEnter());
+		
+		gate.open();
+		assertTrue(gate.isOpen());
+		assertTrue(gate.tryEnter());
+		gate.exit();
+	}
+}
@@ -0,0 +1,61 @@
+package io.rosenwald.springDemo.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.rosenwald.springDemo.query.SuggestionTrie.Suggestion;
+
+public class SuggestionTrieTest {
+	
+	private SuggestionTrie trie;
+	
+	@Before
+	public void initTest() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		counts.put("Mustang", 40L);
+		counts.put("Mulsanne", 5L);
+		counts.put("Murano", 12L);
+		counts.put("Musso", 1L);
+		counts.put("Camaro", 30L);
+		counts.put("Corvette", 25L);
+		trie = SuggestionTrie.of("model", counts);
+	}
+	
+	@Test
+	public void suggestsPrefixMatchesByCount() {
+		assertEquals(Arrays.asList("Mustang", "Murano", "Mulsanne", "Musso"), values(trie.suggest("mu", false, 10)));
+		assertEquals(Arrays.asList("Mustang", "Musso"), values(trie.suggest("MUS", false, 10)));
+		assertEquals(Arrays.asList("Mustang", "Murano"), values(trie.suggest("m", false, 2)));
+		assertEquals(Arrays.asList("Camaro"), values(trie.suggest("camaro", false, 10)));
+		assertEquals(40L, trie.suggest("mustang", false, 10).get(0).getCount());
+		assertTrue(trie.suggest("mustangs", false, 10).isEmpty());
+		assertEquals(6, trie.suggest("", false, 10).size());
+	}
+	
+	@Test
+	public void suggestsWithinOneTypo() {
+		assertTrue(trie.suggest("mstn", true, 10).isEmpty());
+		// Transposed letters are two edits.
+		assertTrue(trie.suggest("cmaaro", true, 10).isEmpty());
+		assertEquals(Arrays.asList("Mustang"), values(trie.suggest("mustanf", true, 10)));
+		assertEquals(Arrays.asList("Corvette"), values(trie.suggest("corvete", true, 10)));
+		assertEquals(Arrays.asList("Camaro"), values(trie.suggest("kamaro", true, 10)));
+		// Exact matches first, then fuzzy ones.
+		assertEquals(Arrays.asList("Murano", "Mustang", "Mulsanne", "Musso"), values(trie.suggest("mur", true, 10)));
+		// Too short for fuzzy matching.
+		assertTrue(trie.suggest("xu", true, 10).isEmpty());
+	}
+	
+	private static List<String> values(List<Suggestion> suggestions) {
+		return suggestions.stream().map(Suggestion::getValue).collect(Collectors.toList());
+	}
+}
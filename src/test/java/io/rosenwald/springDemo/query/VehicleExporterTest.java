@@ -0,0 +1,81 @@
+package io.rosenwald.springDemo.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.rosenwald.springDemo.db.VehicleRepository;
+import io.rosenwald.springDemo.entities.Vehicle;
+import io.rosenwald.springDemo.query.VehicleExporter.Format;
+
+@RunWith(MockitoJUnitRunner.class)
+public class VehicleExporterTest {
+	
+	@Mock
+	private VehicleRepository repository;
+	
+	@Mock
+	private EntityManager entityManager;
+	
+	@Spy
+	private ObjectMapper objectMapper = new ObjectMapper();
+	
+	@InjectMocks
+	private VehicleExporter exporter;
+	
+	private Vehicle mustang;
+	private Vehicle camaro;
+	
+	@Before
+	public void initTest() {
+		mustang = new Vehicle(2016, "Ford", "Mustang", "Rear-Wheel Drive", "Manual 6-spd", 8, 5.0f, null, null);
+		camaro = new Vehicle(2016, "Chevrolet", "Camaro", "Rear-Wheel Drive", "Manual 6-spd", 8, 6.2f, null, null);
+		when(repository.streamAll()).thenReturn(Stream.of(mustang, camaro));
+	}
+	
+	@Test
+	public void exportsJsonArray() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(2, exporter.export(out, Format.JSON));
+		
+		List<Vehicle> vehicles = objectMapper.readValue(out.toByteArray(), new TypeReference<List<Vehicle>>() {});
+		assertEquals(2, vehicles.size());
+		assertEquals(mustang.getId(), vehicles.get(0).getId());
+		assertEquals("Camaro", vehicles.get(1).getModel());
+		verify(entityManager, times(1)).detach(mustang);
+		verify(entityManager, times(1)).detach(camaro);
+	}
+	
+	@Test
+	public void exportsOneVehiclePerLine() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(2, exporter.export(out, Format.NDJSON));
+		
+		String ndjson = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(ndjson.endsWith("\n"));
+		String[] lines = ndjson.split("\n");
+		assertEquals(2, lines.length);
+		assertEquals(mustang.getId(), objectMapper.readValue(lines[0], Vehicle.class).getId());
+		assertEquals(camaro.getId(), objectMapper.readValue(lines[1], Vehicle.class).getId());
+	}
+}
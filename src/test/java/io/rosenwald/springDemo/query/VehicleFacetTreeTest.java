@@ -0,0 +1,66 @@
+package io.rosenwald.springDemo.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.rosenwald.springDemo.db.VehicleFacetCount;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class VehicleFacetTreeTest {
+	
+	private VehicleFacetTree tree;
+	
+	@Before
+	public void initTest() {
+		tree = VehicleFacetTree.of(Arrays.asList(
+				new VehicleFacetCount(2016, "Ford", "Mustang", 3),
+				new VehicleFacetCount(2016, "Chevrolet", "Corvette", 1),
+				new VehicleFacetCount(2016, "Chevrolet", "Camaro", 2),
+				new VehicleFacetCount(999, "Benz", "Patent-Motorwagen", 1),
+				new VehicleFacetCount(2015, "Ford", "Mustang", 1)));
+	}
+	
+	@Test
+	public void navigatesYearsMakesAndModels() {
+		assertEquals(Arrays.asList(999, 2015, 2016), tree.getYears());
+		assertEquals(Arrays.asList("Chevrolet", "Ford"), tree.getMakes(2016));
+		assertEquals(Arrays.asList("Camaro", "Corvette"), tree.getModels(2016, "chevrolet"));
+		assertEquals(8, tree.size());
+		assertTrue(tree.getMakes(2017).isEmpty());
+		assertTrue(tree.getModels(2015, "Chevrolet").isEmpty());
+	}
+	
+	@Test
+	public void countsMakesAndModelsAcrossYears() {
+		tree = tree.withChanges(Collections.singletonList(
+				new Vehicle(2016, "FORD", "Mustang", "Rear-Wheel Drive", "Manual 6-spd", 8, 5.0f, null, null)), Collections.emptyList());
+		assertEquals(Long.valueOf(5), tree.countMakes().get("Ford"));
+		assertEquals(Long.valueOf(3), tree.countMakes().get("Chevrolet"));
+		assertEquals(3, tree.countMakes().size());
+		assertEquals(Long.valueOf(5), tree.countModels().get("Mustang"));
+		assertEquals(4, tree.countModels().size());
+	}
+	
+	@Test
+	public void appliesChangesToCopy() {
+		Vehicle mustang = new Vehicle(2015, "Ford", "Mustang", "Rear-Wheel Drive", "Manual 6-spd", 8, 5.0f, null, null);
+		Vehicle gt = new Vehicle(2015, "FORD", "GT", "Rear-Wheel Drive", "Manual 6-spd", 8, 5.4f, null, null);
+		Vehicle cruze = new Vehicle(2015, "Chevrolet", "Cruze", "Front-Wheel Drive", "Automatic 6-spd", 4, 1.4f, null, null);
+		
+		VehicleFacetTree changed = tree.withChanges(Arrays.asList(gt, cruze), Collections.singletonList(mustang));
+		assertEquals(Arrays.asList("Chevrolet", "Ford"), changed.getMakes(2015));
+		assertEquals(Arrays.asList("GT"), changed.getModels(2015, "Ford"));
+		assertEquals(9, changed.size());
+		assertEquals(Arrays.asList("Mustang"), tree.getModels(2015, "Ford"));
+		
+		changed = changed.withChanges(Collections.emptyList(), Arrays.asList(gt, cruze));
+		assertTrue(changed.getMakes(2015).isEmpty());
+		assertEquals(Arrays.asList(999, 2016), changed.getYears());
+	}
+}
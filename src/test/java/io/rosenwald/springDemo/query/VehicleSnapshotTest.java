@@ -0,0 +1,157 @@
+package io.rosenwald.springDemo.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.rosenwald.springDemo.db.VehicleFilter;
+import io.rosenwald.springDemo.db.VehicleKeyset;
+import io.rosenwald.springDemo.db.VehicleStatsQuery;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class VehicleSnapshotTest {
+	
+	private Vehicle mustang;
+	private Vehicle camaro;
+	private Vehicle mustang2015;
+	private VehicleSnapshot snapshot;
+	
+	@Before
+	public void initTest() {
+		mustang = new Vehicle(2016, "Ford", "Mustang", "Rear-Wheel Drive", "Manual 6-spd", 8, 5.0f, null, null);
+		camaro = new Vehicle(2016, "Chevrolet", "Camaro", "Rear-Wheel Drive", "Manual 6-spd", 8, 6.2f, null, null);
+		mustang2015 = new Vehicle(2015, "Ford", "Mustang", "Rear-Wheel Drive", "Automatic 6-spd", 6, 3.7f, null, null);
+		snapshot = VehicleSnapshot.of(Arrays.asList(mustang, camaro, mustang2015));
+	}
+	
+	@Test
+	public void answersFindersFromPostingLists() {
+		assertEquals(ids(mustang, camaro), ids(snapshot.findByYear(2016)));
+		assertEquals(ids(mustang, mustang2015), ids(snapshot.findByMake("ford")));
+		assertEquals(ids(mustang, mustang2015), ids(snapshot.findByModel("Mustang")));
+		assertEquals(ids(mustang), ids(snapshot.findByYearAndMake(2016, "Ford")));
+		assertEquals(ids(mustang2015), ids(snapshot.findByYearAndMakeAndModel(2015, "Ford", "Mustang")));
+		assertTrue(snapshot.findByYearAndMakeAndModel(2015, "Chevrolet", "Mustang").isEmpty());
+		assertTrue(snapshot.findByMake(null).isEmpty());
+		assertEquals(Arrays.asList(2015, 2016), snapshot.findAllYears());
+	}
+	
+	@Test
+	public void materializesEveryColumn() {
+		Vehicle copy = snapshot.findByYearAndMake(2015, "Ford").get(0);
+		
+		assertEquals(mustang2015.getId(), copy.getId());
+		assertEquals(mustang2015.toString(), copy.toString());
+		assertEquals(3.7f, copy.getDisplacement(), 0);
+		assertEquals(null, copy.getAltType());
+	}
+	
+	@Test
+	public void changesProduceANewSnapshot() {
+		Vehicle updated = new Vehicle(mustang.getId(), 2017, "Ford", "Mustang", "Rear-Wheel Drive", "Manual 6-spd", 8, 5.0f, null, null);
+		
+		VehicleSnapshot changed = snapshot.withChanges(Collections.singletonList(updated), Collections.singletonList(camaro));
+		
+		assertEquals(ids(updated), ids(changed.findByYear(2017)));
+		assertTrue(changed.findByYear(2016).isEmpty());
+		assertEquals(2, changed.size());
+		assertEquals(ids(mustang, camaro), ids(snapshot.findByYear(2016)));
+	}
+	
+	@Test
+	public void layeredChangesAnswerLikeAFreshSnapshot() {
+		Vehicle gt = new Vehicle(2017, "FORD", "GT", "Rear-Wheel Drive", "Automatic 7-spd", 6, 3.5f, "Hybrid", null);
+		Vehicle cruze = new Vehicle(2016, "Chevrolet", "Cruze", "Front-Wheel Drive", "Manual 6-spd", 4, 1.4f, null, null);
+		VehicleSnapshot changed = snapshot.withChanges(Arrays.asList(gt, cruze), Collections.singletonList(mustang2015))
+				.withChanges(Collections.emptyList(), Collections.singletonList(cruze));
+		VehicleSnapshot fresh = VehicleSnapshot.of(Arrays.asList(mustang, camaro, gt));
+		
+		assertEquals(3, changed.size());
+		assertEquals(Arrays.asList(2016, 2017), changed.findAllYears());
+		assertEquals(strings(fresh.findAll()), strings(changed.findAll()));
+		assertEquals(strings(fresh.findByMake("Ford")), strings(changed.findByMake("ford")));
+		assertTrue(changed.findByYearAndMakeAndModel(2015, "Ford", "Mustang").isEmpty());
+		List<Vehicle> first = changed.findPage(VehicleFilter.all(), VehicleKeyset.FIRST, 2);
+		assertEquals(strings(fresh.findPage(VehicleFilter.all(), VehicleKeyset.FIRST, 2)), strings(first));
+		assertEquals(strings(fresh.findPage(VehicleFilter.all(), first.get(1).getId(), 2)), 
+				strings(changed.findPage(VehicleFilter.all(), first.get(1).getId(), 2)));
+		VehicleStatsQuery query = VehicleStatsQuery.parse(VehicleFilter.all(), "make,altType", "count,sum(displacement)");
+		assertEquals(fresh.aggregate(query), changed.aggregate(query));
+	}
+	
+	@Test
+	public void compactsManyChanges() {
+		List<Vehicle> saved = new ArrayList<Vehicle>();
+		for (int i = 0; i < 2000; i++) {
+			saved.add(new Vehicle(2000 + i % 10, "Make " + i % 7, "Model " + i, null, null, 4, 2.0f, null, null));
+		}
+		List<Vehicle> all = new ArrayList<Vehicle>(saved);
+		all.add(mustang);
+		all.add(mustang2015);
+		
+		VehicleSnapshot changed = snapshot.withChanges(saved, Collections.singletonList(camaro));
+		VehicleSnapshot fresh = VehicleSnapshot.of(all);
+		
+		assertEquals(2002, changed.size());
+		assertEquals(fresh.findAllYears(), changed.findAllYears());
+		assertEquals(strings(fresh.findPage(VehicleFilter.of(2003, null, null), VehicleKeyset.FIRST, 50)), 
+				strings(changed.findPage(VehicleFilter.of(2003, null, null), VehicleKeyset.FIRST, 50)));
+	}
+	
+	@Test
+	public void pagesInIdOrder() {
+		List<Vehicle> sorted = Arrays.asList(mustang, camaro, mustang2015);
+		sorted.sort(VehicleKeyset.BY_ID);
+		
+		List<Vehicle> first = snapshot.findPage(VehicleFilter.all(), VehicleKeyset.FIRST, 2);
+		List<Vehicle> second = snapshot.findPage(VehicleFilter.all(), first.get(1).getId(), 2);
+		
+		assertEquals(ids(sorted.get(0), sorted.get(1)), ids(first));
+		assertEquals(ids(sorted.get(2)), ids(second));
+		assertEquals(ids(snapshot.findByMake("Ford")), ids(snapshot.findPage(VehicleFilter.of(null, "FORD", null), VehicleKeyset.FIRST, 10)));
+		assertEquals(ids(mustang2015), ids(snapshot.findPage(VehicleFilter.of(2015, null, "mustang"), VehicleKeyset.FIRST, 10)));
+	}
+	
+	@Test
+	public void aggregatesGroups() {
+		Vehicle ford = new Vehicle(2016, "FORD", "GT", "Rear-Wheel Drive", "Automatic 7-spd", 6, 3.5f, null, null);
+		VehicleSnapshot changed = snapshot.withChanges(Collections.singletonList(ford), Collections.emptyList());
+		
+		List<Map<String, Object>> stats = changed.aggregate(VehicleStatsQuery.parse(VehicleFilter.all(), "year,make", 
+				"count,avg(displacement),max(cylinders)"));
+		assertEquals(3, stats.size());
+		assertEquals(Arrays.asList("year", "make", "count", "avg(displacement)", "max(cylinders)"), new ArrayList<String>(stats.get(0).keySet()));
+		assertEquals(Arrays.asList(2015, "Ford", 1L, (double) 3.7f, 6.0), new ArrayList<Object>(stats.get(0).values()));
+		assertEquals("Chevrolet", stats.get(1).get("make"));
+		assertEquals(2L, stats.get(2).get("count"));
+		assertEquals(4.25, (double) stats.get(2).get("avg(displacement)"), 0.0001);
+		assertEquals(8.0, stats.get(2).get("max(cylinders)"));
+		
+		List<Map<String, Object>> total = snapshot.aggregate(VehicleStatsQuery.parse(VehicleFilter.of(2016, null, null), null, "sum(cylinders)"));
+		assertEquals(Collections.singletonMap("sum(cylinders)", 16.0), total.get(0));
+	}
+	
+	/**
+	 * @return The vehicles in their order, field by field.
+	 */
+	private static List<String> strings(List<Vehicle> vehicles) {
+		return vehicles.stream().map(Vehicle::toString).collect(Collectors.toList());
+	}
+	
+	private static List<String> ids(Vehicle... vehicles) {
+		return ids(Arrays.asList(vehicles));
+	}
+	
+	private static List<String> ids(List<Vehicle> vehicles) {
+		return vehicles.stream().map(vehicle -> vehicle.getId().toString()).sorted().collect(Collectors.toList());
+	}
+}
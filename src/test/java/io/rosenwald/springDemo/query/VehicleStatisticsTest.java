@@ -0,0 +1,55 @@
+package io.rosenwald.springDemo.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.rosenwald.springDemo.db.VehicleCacheConfig;
+import io.rosenwald.springDemo.db.VehicleDatasetVersion;
+import io.rosenwald.springDemo.db.VehicleFilter;
+import io.rosenwald.springDemo.db.VehicleStatsQuery;
+import io.rosenwald.springDemo.entities.Vehicle;
+
+public class VehicleStatisticsTest {
+	
+	private VehicleReadModel readModel;
+	private VehicleStatistics statistics;
+	private VehicleStatsQuery count;
+	
+	@Before
+	public void initTest() {
+		readModel = mock(VehicleReadModel.class);
+		when(readModel.isLoaded()).thenReturn(true);
+		statistics = new VehicleStatistics();
+		ReflectionTestUtils.setField(statistics, "readModel", readModel);
+		ReflectionTestUtils.setField(statistics, "datasetVersion", new VehicleDatasetVersion());
+		ReflectionTestUtils.setField(statistics, "cacheManager", new ConcurrentMapCacheManager(VehicleCacheConfig.STATS));
+		count = VehicleStatsQuery.parse(VehicleFilter.all(), null, "count");
+	}
+	
+	@Test
+	public void resultsAreCachedPerSnapshot() {
+		Vehicle mustang = new Vehicle(2016, "Ford", "Mustang", "RWD", "Manual 6-spd", 8, 5.0f, null, null);
+		VehicleSnapshot before = VehicleSnapshot.of(Collections.singletonList(mustang));
+		when(readModel.getSnapshot()).thenReturn(before);
+		Object counted = statistics.aggregate(count);
+		assertEquals(counted, statistics.aggregate(count));
+		
+		// The snapshot changed, but the dataset version has not been bumped yet.
+		Vehicle countach = new Vehicle(1988, "Lamborghini", "Countach", null, null, 12, 5.2f, null, null);
+		VehicleSnapshot after = before.withChanges(Collections.singletonList(countach), Collections.emptyList());
+		when(readModel.getSnapshot()).thenReturn(after);
+		
+		assertEquals(before.aggregate(count), counted);
+		assertNotEquals(counted, statistics.aggregate(count));
+		assertEquals(after.aggregate(count), statistics.aggregate(count));
+	}
+}
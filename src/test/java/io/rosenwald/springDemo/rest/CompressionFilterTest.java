@@ -0,0 +1,139 @@
+package io.rosenwald.springDemo.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+public class CompressionFilterTest {
+
+	private final CompressionFilter filter = new CompressionFilter(Arrays.asList(MediaType.APPLICATION_JSON), 1024);
+
+	@Test
+	public void compressesLargeResponsesWhenAccepted() throws Exception {
+		byte[] body = body(4096);
+		MockHttpServletResponse response = filter(request("gzip, deflate"), MediaType.APPLICATION_JSON_VALUE, body);
+
+		assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+		assertNull(response.getHeader(HttpHeaders.CONTENT_LENGTH));
+		assertArrayEquals(body, gunzip(response.getContentAsByteArray()));
+	}
+
+	@Test
+	public void leavesSmallResponsesUncompressed() throws Exception {
+		byte[] body = body(100);
+		MockHttpServletResponse response = filter(request("gzip"), MediaType.APPLICATION_JSON_VALUE, body);
+
+		assertFalse(response.containsHeader(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+		assertEquals(100, response.getContentLength());
+		assertArrayEquals(body, response.getContentAsByteArray());
+	}
+
+	@Test
+	public void leavesResponsesUncompressedUnlessGzipIsAccepted() throws Exception {
+		byte[] body = body(4096);
+		for (String acceptEncoding : new String[] { null, "deflate", "gzip;q=0", "identity, *;q=0" }) {
+			MockHttpServletResponse response = filter(request(acceptEncoding), MediaType.APPLICATION_JSON_VALUE, body);
+
+			assertFalse(acceptEncoding, response.containsHeader(HttpHeaders.CONTENT_ENCODING));
+			assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+			assertArrayEquals(body, response.getContentAsByteArray());
+		}
+		assertTrue(CompressionFilter.acceptsGzip(request("br;q=1.0, gzip;q=0.8")));
+		assertTrue(CompressionFilter.acceptsGzip(request("*")));
+	}
+
+	@Test
+	public void leavesOtherContentTypesUncompressed() throws Exception {
+		byte[] body = body(4096);
+		MockHttpServletResponse response = filter(request("gzip"), MediaType.TEXT_HTML_VALUE, body);
+
+		assertFalse(response.containsHeader(HttpHeaders.CONTENT_ENCODING));
+		assertFalse(response.containsHeader(HttpHeaders.VARY));
+		assertArrayEquals(body, response.getContentAsByteArray());
+	}
+
+	@Test
+	public void holdsEarlyFlushesOfStreamsBack() throws Exception {
+		byte[] body = body(4096);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request("gzip"), response, new MockFilterChain(new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+				response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+				response.getOutputStream().write(body, 0, 100);
+				response.getOutputStream().flush();
+				assertFalse(response.isCommitted());
+				response.getOutputStream().write(body, 100, 2000);
+				response.getOutputStream().flush();
+				assertTrue(response.isCommitted());
+				response.getOutputStream().write(body, 2100, body.length - 2100);
+			}
+		}));
+
+		assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+		assertArrayEquals(body, gunzip(response.getContentAsByteArray()));
+	}
+
+	private MockHttpServletResponse filter(MockHttpServletRequest request, String contentType, byte[] body) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				response.setContentType(contentType);
+				response.setContentLength(body.length);
+				response.getOutputStream().write(body);
+			}
+		}));
+		return response;
+	}
+
+	private static MockHttpServletRequest request(String acceptEncoding) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/vehicles");
+		if (acceptEncoding != null) {
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		return request;
+	}
+
+	private static byte[] body(int length) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		while (body.size() < length) {
+			body.write('a' + body.size() % 26);
+		}
+		return body.toByteArray();
+	}
+
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return StreamUtils.copyToByteArray(in);
+		}
+	}
+}